@@ -0,0 +1,23 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "gemini.cache")
+public class AiCacheConfig {
+    private boolean enabled = true;
+
+    // số câu trả lời giữ trong cache, quá thì bỏ entry ít dùng nhất
+    private int maxEntries = 500;
+
+    private long ttlMinutes = 60;
+
+    // độ giống (Jaccard trên shingle 3 ký tự) tối thiểu để coi 2 câu hỏi là một, >= 1 thì chỉ khớp chính xác
+    private double similarityThreshold = 0.85;
+}
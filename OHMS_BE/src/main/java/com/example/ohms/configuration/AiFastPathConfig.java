@@ -0,0 +1,18 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "gemini.fast-path")
+public class AiFastPathConfig {
+    private boolean enabled = true;
+
+    // xác suất tối thiểu của bộ phân loại cục bộ để trả lời luôn, thấp hơn thì gửi Gemini
+    private double minConfidence = 0.9;
+}
@@ -0,0 +1,43 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "gemini.resilience")
+public class AiResilienceConfig {
+    // bulkhead: số call Gemini (blocking) chạy cùng lúc
+    private int maxConcurrentCalls = 8;
+
+    // chờ tối đa bao lâu để vào bulkhead, quá thì trả gợi ý dự phòng
+    private long maxWaitMs = 200;
+
+    // tổng thời gian cho 1 call kể cả retry; phải >= connect + read (1 lần thử đủ),
+    // retry chỉ chạy khi phần còn lại đủ cho backoff + 1 lần thử nữa nên không bị guard cắt giữa chừng
+    private long callTimeoutSeconds = 25;
+
+    private int connectTimeoutMs = 3000;
+
+    private int readTimeoutMs = 20000;
+
+    // số lần thử lại call blocking khi lỗi, chờ retryBackoffMs * lần thử giữa các lần
+    private int maxRetries = 2;
+
+    private long retryBackoffMs = 1000;
+
+    // số lỗi liên tiếp để mở circuit
+    private int failureThreshold = 5;
+
+    // circuit mở bao lâu trước khi cho 1 call thử
+    private long openSeconds = 30;
+
+    // thời gian tối đa của 1 lần gọi blocking
+    public long attemptBudgetMs() {
+        return (long) connectTimeoutMs + readTimeoutMs;
+    }
+}
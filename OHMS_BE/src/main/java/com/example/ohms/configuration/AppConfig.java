@@ -4,17 +4,23 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 import java.util.ArrayList;
 import java.util.List;
 
 @Data
 @EnableAsync
+@EnableScheduling
 @Configuration
 @ConfigurationProperties(prefix = "app")
 public class AppConfig {
     private List<String> authorizedRedirectUris = new ArrayList<>();
 
+    // khóa HS256 cho token đăng nhập (app.signal-key)
+    private String signalKey = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9";
+
+    // khóa HS512 (base64) của token OAuth2 kiểu cũ
     private String tokenSecret;
 
     private long tokenExpirationMsec;
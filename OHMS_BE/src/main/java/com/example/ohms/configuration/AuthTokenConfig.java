@@ -0,0 +1,25 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.auth")
+public class AuthTokenConfig {
+    // access token sống ngắn, hết hạn thì client dùng refresh token để lấy cặp mới
+    private long accessTokenMinutes = 15;
+
+    private long refreshTokenDays = 30;
+
+    // kích thước Bloom filter chứa id token đã thu hồi, vượt quá thì tỉ lệ dương tính giả tăng dần
+    private int revocationExpectedEntries = 100_000;
+    private double revocationFalsePositiveRate = 0.01;
+
+    // đọc thêm các thu hồi mới từ DB (từ instance khác) mỗi khoảng này
+    private long revocationSyncMs = 30_000;
+}
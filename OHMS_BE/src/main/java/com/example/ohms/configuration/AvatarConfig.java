@@ -0,0 +1,33 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.avatar")
+public class AvatarConfig {
+    // folder trên storage cho avatar
+    private String folder = "avatars";
+
+    // url lưu vào user trong lúc avatar đang xử lý, để trống thì FE hiện avatar mặc định
+    private String placeholderUrl;
+
+    // cạnh dài nhất của avatar sau khi resize (px)
+    private int maxSize = 512;
+
+    // file upload lớn hơn thì từ chối ngay, không spool ra disk
+    private long maxUploadBytes = 10 * 1024 * 1024;
+
+    // số thread decode/resize/upload và hàng đợi tối đa, đầy thì upload bị từ chối (client nhận FAILED)
+    private int workers = 2;
+    private int queueCapacity = 64;
+
+    // thư mục chứa file upload chờ xử lý, file sót lại quá staleMinutes (vd server tắt giữa chừng) bị dọn
+    private String spoolDirectory = System.getProperty("java.io.tmpdir") + "/ohms-avatars";
+    private long staleMinutes = 60;
+}
@@ -0,0 +1,25 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "gemini.batch")
+public class BatchTriageConfig {
+    // số phiếu tối đa trong một request
+    private int maxItems = 100;
+
+    // số phiếu gộp chung vào một lần gọi Gemini
+    private int groupSize = 10;
+
+    // số nhóm gọi Gemini song song cho một request, vẫn chịu giới hạn chung của bulkhead
+    private int maxConcurrentGroups = 4;
+
+    // token output cho mỗi phiếu trong nhóm
+    private int outputTokensPerItem = 200;
+}
@@ -0,0 +1,28 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "chat.archive")
+public class ChatArchiveConfig {
+    // tắt thì job không chạy, history vẫn đọc segment đã có
+    private boolean enabled = true;
+
+    // thư mục chứa segment gzip NDJSON, mỗi room một thư mục con
+    private String directory = "data/chat-archive";
+
+    // message cũ hơn số ngày này sẽ chuyển xuống cold store
+    private int maxAgeDays = 180;
+
+    // số message mỗi segment / mỗi lần xóa
+    private int batchSize = 1000;
+
+    // tổng số message đã decode giữ trên RAM cho history API, room lớn hơn thì không cache
+    private int cacheMaxMessages = 50000;
+}
@@ -0,0 +1,19 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "chat.presence")
+public class ChatPresenceConfig {
+    // heartbeat STOMP 2 chiều (ms), client mất heartbeat sẽ bị coi là disconnect
+    private long heartbeatMs = 10000;
+
+    // số typing event tối đa mỗi giây cho 1 user trong 1 room
+    private int typingMaxPerSecond = 2;
+}
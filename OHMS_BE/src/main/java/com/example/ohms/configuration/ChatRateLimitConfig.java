@@ -0,0 +1,28 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "chat.rate-limit")
+public class ChatRateLimitConfig {
+    // mỗi session gửi được burst sessionCapacity frame, sau đó sessionRefillPerSecond frame/giây
+    private int sessionCapacity = 20;
+    private double sessionRefillPerSecond = 5;
+
+    // giới hạn chung cho cả room, chặn nhiều session cùng spam 1 room
+    private int roomCapacity = 60;
+    private double roomRefillPerSecond = 20;
+
+    // outbound: client đọc chậm để buffer vượt ngưỡng hoặc 1 lần gửi quá lâu thì đóng session
+    private int sendBufferSizeLimit = 512 * 1024;
+    private int sendTimeLimitMs = 10000;
+
+    // kích thước tối đa 1 frame inbound
+    private int messageSizeLimit = 64 * 1024;
+}
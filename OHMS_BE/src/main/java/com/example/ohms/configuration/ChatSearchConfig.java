@@ -0,0 +1,22 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "chat.search")
+public class ChatSearchConfig {
+    // thư mục lucene index, để trống thì index nằm trên RAM (test)
+    private String indexDirectory = "data/chat-index";
+
+    // số kết quả tối đa mỗi lần search
+    private int maxResults = 50;
+
+    // số message đọc mỗi lượt khi build lại index từ DB
+    private int reindexBatchSize = 1000;
+}
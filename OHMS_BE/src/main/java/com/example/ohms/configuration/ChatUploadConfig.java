@@ -0,0 +1,40 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "chat.upload")
+public class ChatUploadConfig {
+    // "cloudinary" (mặc định) hoặc "local" cho test/dev
+    private String storage = "cloudinary";
+
+    // thư mục gốc khi storage = local
+    private String localDirectory = "uploads";
+
+    // folder trên storage cho ảnh chat
+    private String folder = "chat_images";
+
+    // folder chứa thumbnail
+    private String thumbnailFolder = "chat_thumbnails";
+
+    // cạnh dài nhất của thumbnail (px)
+    private int thumbnailMaxSize = 320;
+
+    // số thread decode/resize ảnh, việc này tốn CPU nên không chạy trên virtual thread
+    private int thumbnailWorkers = 2;
+
+    // số ảnh tối đa mỗi request
+    private int maxFiles = 10;
+
+    // số upload chạy song song trong 1 request
+    private int maxConcurrency = 4;
+
+    // tổng số byte ảnh được giữ trên heap cùng lúc trong 1 request, vượt quá thì spool ra disk
+    private long maxInMemoryBytes = 8 * 1024 * 1024;
+}
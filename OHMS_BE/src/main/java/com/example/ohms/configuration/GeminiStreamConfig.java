@@ -0,0 +1,25 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "gemini.stream")
+public class GeminiStreamConfig {
+    // đổi sang server giả lập khi test tải
+    private String baseUrl = "https://generativelanguage.googleapis.com";
+
+    // số stream tới Gemini chạy cùng lúc, vượt quá thì trả lỗi bận ngay
+    private int maxConcurrentStreams = 16;
+
+    // thời gian tối đa giữa 2 chunk liên tiếp (tính cả chunk đầu)
+    private long idleTimeoutSeconds = 30;
+
+    // số lần retry khi lỗi trước khi nhận được chunk đầu tiên (5xx, 429, lỗi kết nối)
+    private int maxRetries = 2;
+}
@@ -0,0 +1,19 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.oauth2")
+public class OAuth2LoginConfig {
+    // gọi thêm userinfo endpoint của Google khi đăng nhập, mặc định tắt vì ID token đã có email/name/picture
+    private boolean fetchUserInfo = false;
+
+    // JWKS của Google được giữ trong RAM, gặp kid lạ (Google xoay khóa) thì tải lại ngay, ngoài ra làm mới định kỳ
+    private long jwksRefreshMinutes = 720;
+}
@@ -2,14 +2,18 @@ package com.example.ohms.configuration;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
+import com.example.ohms.security.BoundedPasswordEncoder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
 @Configuration
 public class PasswordConfig {
     
+    // BCrypt chạy trên pool riêng có giới hạn (xem BoundedPasswordEncoder), Spring gọi close() khi tắt app
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(10);
+    public PasswordEncoder passwordEncoder(PasswordHashConfig passwordHashConfig, MeterRegistry meterRegistry) {
+        return new BoundedPasswordEncoder(passwordHashConfig, meterRegistry);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,28 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.password")
+public class PasswordHashConfig {
+    // work factor BCrypt, tăng lên thì hash cũ được hash lại ở lần đăng nhập đúng kế tiếp
+    private int strength = 10;
+
+    // số thread hash riêng và hàng đợi tối đa, đầy thì từ chối ngay thay vì giữ thread Tomcat
+    private int workers = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private int queueCapacity = 64;
+
+    // mỗi IP thử đăng nhập được burst loginIpCapacity lần, sau đó loginIpRefillPerSecond lần/giây
+    private int loginIpCapacity = 20;
+    private double loginIpRefillPerSecond = 0.5;
+
+    // giới hạn theo email, chặn dò mật khẩu một tài khoản từ nhiều IP
+    private int loginAccountCapacity = 5;
+    private double loginAccountRefillPerSecond = 0.05;
+}
@@ -0,0 +1,22 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "patient.search")
+public class PatientSearchConfig {
+    // số kết quả tối đa mỗi lần gõ
+    private int maxResults = 20;
+
+    // số bệnh nhân đọc mỗi lượt khi dựng index lúc khởi động
+    private int reindexBatchSize = 5000;
+
+    // chu kỳ trộn các thay đổi mới vào mảng đã sắp xếp (PrefixIndex.compact)
+    private long compactIntervalMs = 30000;
+}
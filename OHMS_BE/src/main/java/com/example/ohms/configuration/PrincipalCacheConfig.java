@@ -0,0 +1,21 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "app.principal-cache")
+public class PrincipalCacheConfig {
+    private boolean enabled = true;
+
+    // principal được dùng lại tối đa bao lâu nếu không có event đổi quyền/mật khẩu nào
+    private long ttlSeconds = 60;
+
+    // số user tối đa giữ trong cache, đầy thì request mới vẫn load từ DB nhưng không cache
+    private int maxEntries = 10000;
+}
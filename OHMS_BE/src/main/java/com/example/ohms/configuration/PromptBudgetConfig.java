@@ -0,0 +1,27 @@
+package com.example.ohms.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+@Configuration
+@ConfigurationProperties(prefix = "gemini.prompt")
+public class PromptBudgetConfig {
+    // ngân sách token cho toàn bộ prompt (ước lượng), phần vượt thì cắt bớt dữ liệu ít liên quan
+    private int maxInputTokens = 12000;
+
+    // ước lượng token = số ký tự / charsPerToken, tiếng Việt có dấu tốn token hơn tiếng Anh
+    private double charsPerToken = 3.0;
+
+    private int maxHistoryTurns = 5;
+
+    // tỉ lệ tối đa của phần còn lại (sau phần bắt buộc) dành cho hội thoại gần đây
+    private double historyShare = 0.3;
+
+    // số chuyên khoa liên quan nhất luôn được ưu tiên đưa dịch vụ/bác sĩ vào prompt
+    private int topSpecialties = 3;
+}
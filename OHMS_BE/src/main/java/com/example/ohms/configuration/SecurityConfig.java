@@ -1,7 +1,6 @@
 package com.example.ohms.configuration;
 
 import java.util.List;
-import javax.crypto.spec.SecretKeySpec;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,19 +8,15 @@ import org.springframework.security.config.annotation.method.configuration.Enabl
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.http.SessionCreationPolicy;
-import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
-import org.springframework.security.oauth2.jwt.JwtDecoder;
-import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
-import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
-import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
-import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
-import com.example.ohms.security.TokenAuthenticationFilter;
+import com.example.ohms.security.JwtTokenService;
+import com.example.ohms.security.TokenAuthenticationConverter;
 import com.example.ohms.security.oauth2.CustomOAuth2UserService;
+import com.example.ohms.security.oauth2.CustomOidcUserService;
 import com.example.ohms.security.oauth2.HttpCookieOAuth2AuthorizationRequestRepository;
 import com.example.ohms.security.oauth2.OAuth2AuthenticationFailureHandler;
 import com.example.ohms.security.oauth2.OAuth2AuthenticationSuccessHandler;
@@ -38,9 +33,12 @@ import lombok.experimental.FieldDefaults;
 public class SecurityConfig {
 
     CustomOAuth2UserService customOAuth2UserService;
+    CustomOidcUserService customOidcUserService;
     OAuth2AuthenticationSuccessHandler oAuth2AuthenticationSuccessHandler;
     OAuth2AuthenticationFailureHandler oAuth2AuthenticationFailureHandler;
     HttpCookieOAuth2AuthorizationRequestRepository httpCookieOAuth2AuthorizationRequestRepository;
+    JwtTokenService jwtTokenService;
+    TokenAuthenticationConverter tokenAuthenticationConverter;
 
     String[] PUBLIC = {
         "/api/v1/payos/**",  // PayOS payment endpoints - must be public for webhooks
@@ -82,38 +80,22 @@ public class SecurityConfig {
             .redirectionEndpoint(redir -> redir
                 .baseUri("/oauth2/callback/*")
             )
-            .userInfoEndpoint(user -> user.userService(customOAuth2UserService))
+            // Google có scope openid nên đi qua oidcUserService, userService chỉ cho provider không có OIDC
+            .userInfoEndpoint(user -> user
+                .userService(customOAuth2UserService)
+                .oidcUserService(customOidcUserService))
             .successHandler(oAuth2AuthenticationSuccessHandler)
             .failureHandler(oAuth2AuthenticationFailureHandler)
         )
+            // mỗi request verify token đúng một lần, cả token HS256 lẫn HS512 kiểu cũ
             .oauth2ResourceServer(oauth2 -> oauth2
-                .jwt(jwt -> jwt.decoder(jwtDecoder())
-                    .jwtAuthenticationConverter(jwtAuthenticationConverter()))
-            )
-
-            // Add custom filter
-            .addFilterBefore(tokenAuthenticationFilter(), UsernamePasswordAuthenticationFilter.class);
+                .jwt(jwt -> jwt.decoder(jwtTokenService)
+                    .jwtAuthenticationConverter(tokenAuthenticationConverter))
+            );
 
         return http.build();
     }
 
-    @Bean
-    JwtAuthenticationConverter jwtAuthenticationConverter() {
-        JwtGrantedAuthoritiesConverter converter = new JwtGrantedAuthoritiesConverter();
-        converter.setAuthorityPrefix("");
-        JwtAuthenticationConverter authConverter = new JwtAuthenticationConverter();
-        authConverter.setJwtGrantedAuthoritiesConverter(converter);
-        return authConverter;
-    }
-
-    @Bean
-    JwtDecoder jwtDecoder() {
-        SecretKeySpec secretKey = new SecretKeySpec("eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9".getBytes(), "HmacSHA256");
-        return NimbusJwtDecoder.withSecretKey(secretKey)
-                .macAlgorithm(MacAlgorithm.HS256)
-                .build();
-    }
-
     @Bean
     CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration config = new CorsConfiguration();
@@ -135,11 +117,6 @@ public class SecurityConfig {
         return source;
     }
 
-    @Bean
-    public TokenAuthenticationFilter tokenAuthenticationFilter() {
-        return new TokenAuthenticationFilter();
-    }
-
     @Bean
     public HttpCookieOAuth2AuthorizationRequestRepository cookieAuthorizationRequestRepository() {
         return new HttpCookieOAuth2AuthorizationRequestRepository();
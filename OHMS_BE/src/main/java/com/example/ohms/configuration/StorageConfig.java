@@ -0,0 +1,28 @@
+package com.example.ohms.configuration;
+
+import java.nio.file.Path;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.ohms.service.CloudinaryService;
+import com.example.ohms.service.storage.CloudinaryImageStorage;
+import com.example.ohms.service.storage.ImageStorage;
+import com.example.ohms.service.storage.LocalImageStorage;
+
+@Configuration
+public class StorageConfig {
+
+    @Bean
+    @ConditionalOnProperty(prefix = "chat.upload", name = "storage", havingValue = "cloudinary", matchIfMissing = true)
+    public ImageStorage cloudinaryImageStorage(CloudinaryService cloudinaryService) {
+        return new CloudinaryImageStorage(cloudinaryService);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "chat.upload", name = "storage", havingValue = "local")
+    public ImageStorage localImageStorage(ChatUploadConfig chatUploadConfig) {
+        return new LocalImageStorage(Path.of(chatUploadConfig.getLocalDirectory()));
+    }
+}
@@ -1,23 +1,85 @@
 package com.example.ohms.configuration;
 
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import com.example.ohms.security.StompAuthChannelInterceptor;
+import com.example.ohms.security.StompRateLimitInterceptor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
 
 @Configuration
 @EnableWebSocketMessageBroker // bật STOMP qua websocket
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+    StompAuthChannelInterceptor stompAuthChannelInterceptor;
+    StompRateLimitInterceptor stompRateLimitInterceptor;
+    ChatPresenceConfig chatPresenceConfig;
+    ChatRateLimitConfig chatRateLimitConfig;
+    MeterRegistry meterRegistry;
 
     @Override
     public void configureMessageBroker(MessageBrokerRegistry config) {
         // app là chỗ gửi message
         // topic là chỗ bắn cái message đó cho những thằng join room
-        config.enableSimpleBroker("/topic", "/queue");
+        // heartbeat để phát hiện client chết -> SessionDisconnectEvent -> offline
+        long heartbeat = chatPresenceConfig.getHeartbeatMs();
+        config.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[] {heartbeat, heartbeat})
+                .setTaskScheduler(heartbeatScheduler());
         config.setApplicationDestinationPrefixes("/app");
     }
 
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompAuthChannelInterceptor, stompRateLimitInterceptor);
+    }
+
+    // client đọc chậm: buffer outbound vượt giới hạn hoặc gửi quá lâu thì Spring đóng session
+    // (SESSION_NOT_RELIABLE) thay vì để message dồn trên heap
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registration) {
+        Counter slowConsumerClosed = Counter.builder("chat.stomp.sessions.closed")
+                .description("WebSocket sessions closed by the server")
+                .tag("reason", "slow_consumer")
+                .register(meterRegistry);
+        registration.setSendBufferSizeLimit(chatRateLimitConfig.getSendBufferSizeLimit())
+                .setSendTimeLimit(chatRateLimitConfig.getSendTimeLimitMs())
+                .setMessageSizeLimit(chatRateLimitConfig.getMessageSizeLimit())
+                .addDecoratorFactory(handler -> new WebSocketHandlerDecorator(handler) {
+                    @Override
+                    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+                        if (CloseStatus.SESSION_NOT_RELIABLE.equals(status)) {
+                            slowConsumerClosed.increment();
+                        }
+                        super.afterConnectionClosed(session, status);
+                    }
+                });
+    }
+
+    private ThreadPoolTaskScheduler heartbeatScheduler() {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setPoolSize(1);
+        scheduler.setThreadNamePrefix("ws-heartbeat-");
+        scheduler.initialize();
+        return scheduler;
+    }
+
     @Override
     public void registerStompEndpoints(StompEndpointRegistry registry) {
         // Read from environment variable, fallback to defaults
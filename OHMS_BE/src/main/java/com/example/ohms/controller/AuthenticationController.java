@@ -3,6 +3,11 @@ package com.example.ohms.controller;
 import java.text.ParseException;
 
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -10,10 +15,15 @@ import org.springframework.web.bind.annotation.RestController;
 
 import com.example.ohms.dto.request.AuthenticationRequest;
 import com.example.ohms.dto.request.IntroSpectRequest;
+import com.example.ohms.dto.request.OAuth2CodeExchangeRequest;
+import com.example.ohms.dto.request.RefreshTokenRequest;
 import com.example.ohms.dto.response.ApiResponse;
 import com.example.ohms.dto.response.AuthenticationResponse;
 import com.example.ohms.dto.response.IntroSpectResponse;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
 import com.example.ohms.security.oauth2.HttpCookieOAuth2AuthorizationRequestRepository;
+import com.example.ohms.security.oauth2.OAuth2LoginCodeStore;
 import com.example.ohms.service.AuthenticationService;
 import com.example.ohms.utils.CookieUtils;
 import com.nimbusds.jose.JOSEException;
@@ -34,12 +44,13 @@ import lombok.extern.slf4j.Slf4j;
 public class AuthenticationController {
    AuthenticationService authenticationService;
    HttpCookieOAuth2AuthorizationRequestRepository httpCookieOAuth2AuthorizationRequestRepository;
+   OAuth2LoginCodeStore oAuth2LoginCodeStore;
    // login
    @PostMapping("/login")
-   public ApiResponse<AuthenticationResponse> loginUser(@RequestBody AuthenticationRequest authenticationRequest){
+   public ApiResponse<AuthenticationResponse> loginUser(@RequestBody AuthenticationRequest authenticationRequest, HttpServletRequest request){
       return ApiResponse.<AuthenticationResponse>builder()
       .code(200)
-      .results(authenticationService.loginUser(authenticationRequest))
+      .results(authenticationService.loginUser(authenticationRequest, request.getRemoteAddr()))
       .build();
    }
    // check token
@@ -50,10 +61,43 @@ public class AuthenticationController {
       .results(authenticationService.introspect(introSpectRequest))
       .build();
    }
+   // đổi refresh token lấy cặp token mới
+   @PostMapping("/refresh")
+   public ApiResponse<AuthenticationResponse> refreshToken(@RequestBody RefreshTokenRequest refreshTokenRequest){
+      return ApiResponse.<AuthenticationResponse>builder()
+      .code(200)
+      .results(authenticationService.refresh(refreshTokenRequest.getRefreshToken()))
+      .build();
+   }
+   // đổi mã một lần từ redirect OAuth2 lấy cặp token, refresh token không đi qua URL
+   @PostMapping("/oauth2/exchange")
+   public ApiResponse<AuthenticationResponse> exchangeOAuth2Code(@RequestBody OAuth2CodeExchangeRequest exchangeRequest){
+      return ApiResponse.<AuthenticationResponse>builder()
+      .code(200)
+      .results(oAuth2LoginCodeStore.redeem(exchangeRequest.getCode())
+            .orElseThrow(() -> new AppException(ErrorCode.UNAUTHENTICATED)))
+      .build();
+   }
+   // đăng xuất mọi thiết bị của user
+   @PostMapping("/revoke-all/{userId}")
+   @PreAuthorize("hasRole('ADMIN') or #userId == authentication.name")
+   public ApiResponse<Void> revokeAllSessions(@PathVariable String userId){
+      authenticationService.revokeAllSessions(userId);
+      return ApiResponse.<Void>builder()
+      .code(200)
+      .message("All sessions revoked")
+      .build();
+   }
 @PostMapping("/logout")
 public ResponseEntity<String> logout(HttpServletRequest request, HttpServletResponse response) {
     log.info("Logout initiated – Clearing session and cookies");
 
+    // Thu hồi access token đang dùng + refresh token (nếu request có kèm bearer token)
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication != null && authentication.getPrincipal() instanceof Jwt jwt) {
+        authenticationService.logout(jwt);
+    }
+
     // Bỏ session.invalidate() vì STATELESS (nếu cần, check config)
 
     // Clear OAuth cookies qua repo
@@ -1,26 +1,39 @@
 package com.example.ohms.controller;
 import java.io.FileReader;
+import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 
+import org.springframework.http.MediaType;
 import org.springframework.messaging.handler.annotation.DestinationVariable;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.multipart.MultipartFile;
 
 import com.example.ohms.dto.request.ConversationRequest;
 import com.example.ohms.dto.request.FileRequest;
+import com.example.ohms.dto.request.TypingRequest;
 import com.example.ohms.dto.response.ApiResponse;
+import com.example.ohms.dto.response.ChatImageResponse;
 import com.example.ohms.dto.response.ConversationResponse;
-import com.example.ohms.service.CloudinaryService;
+import com.example.ohms.dto.response.MessageSearchResponse;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+import com.example.ohms.service.ChatImageUploadService;
 import com.example.ohms.service.MessageService;
+import com.example.ohms.service.PresenceService;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -35,7 +48,8 @@ import lombok.extern.slf4j.Slf4j;
 public class ConversationController {
    MessageService messageService;
     SimpMessagingTemplate simpMessagingTemplate;
-    CloudinaryService cloudinaryService;
+    ChatImageUploadService chatImageUploadService;
+    PresenceService presenceService;
 
    // New: Upload images via HTTP first (returns Cloudinary URLs)
    @PostMapping("/upload-images")
@@ -54,7 +68,9 @@ public class ConversationController {
             }
             
             // Upload to Cloudinary
-            imageUrls = cloudinaryService.uploadMulti(imageBytesList);
+            imageUrls = chatImageUploadService.uploadBytes(imageBytesList).stream()
+               .map(ChatImageResponse::getUrl)
+               .toList();
             log.info("Uploaded {} images to Cloudinary", imageUrls.size());
          }
          
@@ -71,6 +87,18 @@ public class ConversationController {
       }
    }
 
+   // multipart: file lớn được spool ra disk thay vì decode base64 trên heap, upload song song
+   // trả về cả url gốc và thumbnail
+   @PostMapping(value = "/upload-images/multipart", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+   public ApiResponse<List<ChatImageResponse>> uploadImagesMultipart(
+      @RequestPart("files") List<MultipartFile> files
+   ){
+      return ApiResponse.<List<ChatImageResponse>>builder()
+         .code(200)
+         .results(chatImageUploadService.upload(files))
+         .build();
+   }
+
 //app/chat/{roomId chỗ này handle cho fontend gọi send
    @MessageMapping("chat/{roomId}")    // xác lập message bắn lên cái room
     public void sendMessage(
@@ -91,6 +119,44 @@ public class ConversationController {
             simpMessagingTemplate.convertAndSend("/topic/room/" + roomId, "Error: " + e.getMessage());
         }
     }
+   // search tin nhắn theo nội dung, chỉ trong các room mà user đang đăng nhập tham gia
+   @GetMapping("/search")
+   public ApiResponse<List<MessageSearchResponse>> search(
+      Authentication authentication,
+      @RequestParam("q") String query,
+      @RequestParam(value = "limit", defaultValue = "20") int limit
+   ){
+      if (authentication == null || !(authentication.getPrincipal() instanceof Jwt jwt)) {
+         throw new AppException(ErrorCode.UNAUTHENTICATED);
+      }
+      return ApiResponse.<List<MessageSearchResponse>>builder()
+      .code(200)
+      .results(messageService.search(jwt.getSubject(), query, limit))
+      .build();
+   }
+   // typing indicator, chỉ bắn qua broker, không lưu DB; user lấy từ token lúc CONNECT, không tin payload
+   @MessageMapping("chat/typing/{roomId}")
+   public void typing(
+      @DestinationVariable("roomId") String roomId,
+      @Payload TypingRequest request,
+      Principal principal
+   ){
+      if (principal == null) {
+         throw new AppException(ErrorCode.UNAUTHENTICATED);
+      }
+      presenceService.typing(roomId, principal.getName(), request.isTyping());
+   }
+
+   // ai đang online trong room, client gọi 1 lần rồi nghe tiếp /topic/room/{id}/presence
+   @GetMapping("{roomId}/presence")
+   public ApiResponse<List<String>> getPresence(
+      @PathVariable("roomId") String roomId
+   ){
+      return ApiResponse.<List<String>>builder()
+      .code(200)
+      .results(presenceService.onlineUsers(roomId))
+      .build();
+   }
    //  get id from room
    @GetMapping("{roomId}")
    public ApiResponse<List<ConversationResponse>> getConversation(
@@ -1,22 +1,45 @@
 package com.example.ohms.controller;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 
+import com.example.ohms.configuration.BatchTriageConfig;
+import com.example.ohms.dto.request.BatchTriageRequest;
 import com.example.ohms.dto.request.DiagnosisRequest;
+import com.example.ohms.dto.response.ApiResponse;
 import com.example.ohms.dto.response.DiagnosisResponse;
 import com.example.ohms.dto.response.SpecialtyRecommendationResponse;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
 import com.example.ohms.service.GeminiService;
 
+import com.example.ohms.service.ai.BatchTriageService;
+import com.example.ohms.service.ai.BookingJsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Slf4j
 @RestController
 @RequestMapping("/api/diagnose")
 public class DiagnosisController {
 
     private final GeminiService geminiService;
+    private final BatchTriageService batchTriageService;
+    private final BatchTriageConfig batchTriageConfig;
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
-    public DiagnosisController(GeminiService geminiService) {
+    public DiagnosisController(GeminiService geminiService, BatchTriageService batchTriageService,
+            BatchTriageConfig batchTriageConfig) {
         this.geminiService = geminiService;
+        this.batchTriageService = batchTriageService;
+        this.batchTriageConfig = batchTriageConfig;
     }
 
     @GetMapping("/health")
@@ -32,7 +55,7 @@ public class DiagnosisController {
         }
 
         try {
-            String reply = geminiService.generateDiagnosisReply(request);
+            String reply = geminiService.diagnosisReplyOrFallback(request);
             DiagnosisResponse resp = new DiagnosisResponse();
             resp.setReply(reply);
             return ResponseEntity.ok(resp);
@@ -43,6 +66,31 @@ public class DiagnosisController {
         }
     }
 
+    /**
+     * Stream câu trả lời qua SSE: event "token" cho từng đoạn text, "booking" (JSON) nếu AI đã chốt lịch,
+     * "done" khi xong, "error" nếu lỗi.
+     * Client đóng kết nối thì request tới Gemini cũng bị hủy.
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> diagnoseStream(@RequestBody DiagnosisRequest request) {
+        if (request == null || request.getMessage() == null || request.getMessage().trim().isEmpty()) {
+            return Flux.just(ServerSentEvent.<String>builder("Missing message in request body").event("error").build());
+        }
+
+        // đọc JSON đặt lịch ngay trong lúc stream, xong thì gửi thêm event "booking" nếu AI đã chốt lịch
+        BookingJsonParser bookingParser = new BookingJsonParser();
+        return geminiService.streamDiagnosisReply(request)
+                .doOnNext(bookingParser::feed)
+                .map(token -> ServerSentEvent.<String>builder(token).event("token").build())
+                .concatWith(Mono.defer(() -> geminiService.streamedBooking(bookingParser))
+                        .map(booking -> ServerSentEvent.<String>builder(toJson(booking)).event("booking").build()))
+                .concatWith(Flux.just(ServerSentEvent.<String>builder("").event("done").build()))
+                .onErrorResume(e -> {
+                    String message = e instanceof AppException app ? app.getErrorCode().getMessage() : "Internal server error: " + e.getMessage();
+                    return Flux.just(ServerSentEvent.<String>builder(message).event("error").build());
+                });
+    }
+
     /**
      * Gợi ý chuyên khoa khám bệnh + danh sách dịch vụ khám + link đặt lịch
      */
@@ -54,11 +102,8 @@ public class DiagnosisController {
         }
 
         try {
-            // Lấy AI response
-            String aiResponse = geminiService.generateDiagnosisReply(request);
-            
-            // Parse response để lấy thông tin gợi ý
-            SpecialtyRecommendationResponse recommendation = geminiService.parseAIResponse(aiResponse, request);
+            // Lấy AI response rồi parse, AI lỗi/quá tải thì trả gợi ý offline
+            SpecialtyRecommendationResponse recommendation = geminiService.recommendSpecialty(request);
             
             return ResponseEntity.ok(recommendation);
         } catch (Exception e) {
@@ -67,4 +112,39 @@ public class DiagnosisController {
                     .body("{\"error\":\"Internal server error: " + e.getMessage() + "\"}");
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Gợi ý chuyên khoa cho nhiều phiếu tiếp nhận một lượt (lễ tân nhập phiếu bệnh nhân vãng lai).
+     * Mỗi phiếu có status riêng, phiếu lỗi không làm hỏng cả request.
+     */
+    @PostMapping("/triage/batch")
+    public ResponseEntity<?> triageBatch(@RequestBody BatchTriageRequest request) {
+        if (request == null || request.getItems() == null || request.getItems().isEmpty()) {
+            return error(ErrorCode.TRIAGE_ITEMS_REQUIRED);
+        }
+        if (request.getItems().size() > batchTriageConfig.getMaxItems()) {
+            return error(ErrorCode.TRIAGE_TOO_MANY_ITEMS);
+        }
+
+        try {
+            return ResponseEntity.ok(batchTriageService.triage(request));
+        } catch (Exception e) {
+            // chi tiết lỗi chỉ ghi log, không trả nguyên e.getMessage() về client
+            log.error("Batch triage failed for {} items", request.getItems().size(), e);
+            return error(ErrorCode.TRIAGE_FAILED);
+        }
+    }
+
+    private static ResponseEntity<ApiResponse<Void>> error(ErrorCode errorCode) {
+        return ResponseEntity.status(errorCode.getStatusCode()).body(
+                ApiResponse.<Void>builder().code(errorCode.getCode()).message(errorCode.getMessage()).build());
+    }
+
+    private String toJson(SpecialtyRecommendationResponse booking) {
+        try {
+            return objectMapper.writeValueAsString(booking);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
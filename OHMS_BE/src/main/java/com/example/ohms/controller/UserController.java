@@ -14,6 +14,7 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
@@ -22,9 +23,16 @@ import com.example.ohms.dto.request.ChangePasswordRequest;
 import com.example.ohms.dto.request.EmailRequest;
 import com.example.ohms.dto.request.ResetPasswordRequest;
 import com.example.ohms.dto.request.UserRequest;
+import com.example.ohms.dto.request.UserSearchRequest;
 import com.example.ohms.dto.response.ApiResponse;
+import com.example.ohms.dto.response.DoctorSummary;
+import com.example.ohms.dto.response.PageResponse;
+import com.example.ohms.dto.response.PatientMatch;
+import com.example.ohms.dto.response.UserListItem;
 import com.example.ohms.dto.response.UserResponse;
 import com.example.ohms.entity.User;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.service.PatientSearchService;
 import com.example.ohms.service.UserService;
 
 import jakarta.mail.MessagingException;
@@ -42,6 +50,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class UserController {
     UserService userService;
+    PatientSearchService patientSearchService;
 // create user with role admin
    @PostMapping(value = "/createUser" , consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
 public ApiResponse<UserResponse> createUser(
@@ -159,6 +168,34 @@ public ApiResponse<UserResponse> register(
         .results(userService.getListDoctor())
         .build();
     }
+    // bản rút gọn (không có roles/phone/dob/address) lấy từ danh bạ bác sĩ trong RAM
+    @GetMapping("/getListDoctorSummary")
+    public ApiResponse<List<DoctorSummary>> getListDoctorSummary(){
+        return ApiResponse.<List<DoctorSummary>>builder()
+        .code(200)
+        .results(userService.getDoctorSummaries())
+        .build();
+    }
+    @GetMapping("/getListDoctorSummary/{specialty}")
+    public ApiResponse<List<DoctorSummary>> getListDoctorBySpecialty(@PathVariable MedicalSpecialty specialty){
+        return ApiResponse.<List<DoctorSummary>>builder()
+        .code(200)
+        .results(userService.getDoctorsBySpecialty(specialty))
+        .build();
+    }
+    // admin: danh sách user phân trang, lọc theo role/provider/enabled/chuyên khoa và tiền tố tên/email/sđt
+    // vd: /users/admin/list?role=DOCTOR&specialty=CARDIOLOGY&q=ngu&sort=username&direction=asc&page=0&size=20
+    @GetMapping("/admin/list")
+    public ApiResponse<PageResponse<UserListItem>> searchUsers(
+        @ModelAttribute UserSearchRequest filter,
+        @RequestParam(defaultValue = "0") int page,
+        @RequestParam(defaultValue = "20") int size
+    ){
+        return ApiResponse.<PageResponse<UserListItem>>builder()
+        .code(200)
+        .results(userService.searchUsers(filter, page, size))
+        .build();
+    }
     @DeleteMapping(value = "/deleteUser/{userId}")
     public ApiResponse<Void> deleteUser(
         @PathVariable("userId") String id
@@ -192,6 +229,17 @@ public ApiResponse<UserResponse> register(
         .results(userService.getListUserHoho())
         .build();
     }
+    // typeahead tìm bệnh nhân ở quầy: tiền tố sđt ("0912", "+84 912"), tên có/không dấu hoặc số định danh
+    @GetMapping("/patients/search")
+    public ApiResponse<List<PatientMatch>> searchPatients(
+        @RequestParam String q,
+        @RequestParam(defaultValue = "10") int limit
+    ){
+        return ApiResponse.<List<PatientMatch>>builder()
+        .code(200)
+        .results(patientSearchService.search(q, limit))
+        .build();
+    }
     @GetMapping("/offline/phone/{phone}")
     public ApiResponse<com.example.ohms.dto.response.OfflineUserResponse> getOfflineUserByPhone(
             @PathVariable Integer phone) {
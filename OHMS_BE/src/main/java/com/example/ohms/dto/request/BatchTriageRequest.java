@@ -0,0 +1,34 @@
+package com.example.ohms.dto.request;
+
+import java.util.List;
+import java.util.Map;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Builder
+public class BatchTriageRequest {
+    List<Item> items;
+
+    /**
+     * Một phiếu tiếp nhận. reference là mã do lễ tân tự đặt (số phiếu, tên bệnh nhân...), trả lại nguyên vẹn.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Builder
+    public static class Item {
+        String reference;
+        String message;
+        Map<String, String> patientInfo;
+    }
+}
@@ -0,0 +1,17 @@
+package com.example.ohms.dto.request;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@Builder
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TypingRequest {
+   // không còn dùng: user lấy từ principal của session, giữ field để client cũ vẫn deserialize được
+   String user;
+   boolean typing;
+}
@@ -0,0 +1,28 @@
+package com.example.ohms.dto.request;
+
+import com.example.ohms.enums.AuthProvider;
+import com.example.ohms.enums.MedicalSpecialty;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+// bộ lọc cho /users/admin/list, field nào null thì bỏ qua
+@Data
+@Builder
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class UserSearchRequest {
+    String role;
+    AuthProvider provider;
+    Boolean enabled;
+    MedicalSpecialty specialty;
+    // tiền tố của tên, email hoặc số điện thoại
+    String q;
+    // username | email | phone | id
+    String sort;
+    // asc | desc
+    String direction;
+}
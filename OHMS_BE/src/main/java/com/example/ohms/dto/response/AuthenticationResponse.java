@@ -12,4 +12,7 @@ import lombok.NoArgsConstructor;
 public class AuthenticationResponse {
    boolean authenticated;
    String token;
+   String refreshToken;
+   // số giây access token còn hiệu lực
+   long expiresIn;
 }
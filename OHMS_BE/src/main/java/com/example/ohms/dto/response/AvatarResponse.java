@@ -0,0 +1,19 @@
+package com.example.ohms.dto.response;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+// kết quả xử lý avatar, gửi riêng cho user qua /user/queue/avatar
+@Data
+@Builder
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AvatarResponse {
+    // READY hoặc FAILED
+    String status;
+    String userId;
+    String imageUrl;
+}
@@ -0,0 +1,48 @@
+package com.example.ohms.dto.response;
+
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Builder
+public class BatchTriageResponse {
+    int total;
+    int succeeded;
+    int fallback;
+    int failed;
+    List<Item> items;
+
+    public enum Status {
+        // Gemini trả lời cho phiếu này
+        OK,
+        // bộ phân loại cục bộ đủ chắc, không gọi Gemini
+        LOCAL,
+        // nhóm gọi Gemini lỗi hoặc thiếu/sai kết quả cho phiếu này, dùng gợi ý theo từ khóa
+        FALLBACK,
+        // phiếu không hợp lệ, không có gợi ý
+        FAILED
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    @FieldDefaults(level = AccessLevel.PRIVATE)
+    @Builder
+    public static class Item {
+        // vị trí trong request, bắt đầu từ 0
+        int index;
+        String reference;
+        Status status;
+        SpecialtyRecommendationResponse recommendation;
+        String error;
+    }
+}
@@ -12,7 +12,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class ConversationResponse {
@@ -20,6 +20,8 @@ public class ConversationResponse {
     String message;
     UserResponse user;
     List<String> imageUrls;
+    // cùng thứ tự với imageUrls, ảnh không có thumbnail thì dùng luôn url gốc
+    List<String> thumbnailUrls;
     
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     LocalDateTime createdAt;
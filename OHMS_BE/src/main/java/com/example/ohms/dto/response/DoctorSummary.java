@@ -0,0 +1,29 @@
+package com.example.ohms.dto.response;
+
+import java.util.Set;
+
+import com.example.ohms.enums.MedicalSpecialty;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+// bản rút gọn bất biến của bác sĩ, giữ trong DoctorDirectoryService và dùng chung giữa các request
+@Data
+@Builder
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class DoctorSummary {
+    String id;
+    String username;
+    String imageUrl;
+    String email;
+    String gender;
+    Set<MedicalSpecialty> medicleSpecially;
+    String education;
+    Integer experience;
+    String certifications;
+    String description;
+}
@@ -0,0 +1,19 @@
+package com.example.ohms.dto.response;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+// một kết quả typeahead tìm bệnh nhân, phone đã chuẩn hóa dạng "0xxxxxxxxx"
+@Data
+@Builder
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PatientMatch {
+    String id;
+    String username;
+    String phone;
+    String identification;
+}
@@ -0,0 +1,21 @@
+package com.example.ohms.dto.response;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+// event gửi trên /topic/room/{id}/presence, không lưu DB
+@Data
+@Builder
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PresenceResponse {
+    // ONLINE, OFFLINE, TYPING
+    String type;
+    String roomId;
+    String userId;
+    boolean typing;
+    long timestamp;
+}
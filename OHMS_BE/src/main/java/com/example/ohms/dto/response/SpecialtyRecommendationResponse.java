@@ -27,6 +27,9 @@ public class SpecialtyRecommendationResponse {
     private String urgencyLevel;
     private boolean needMoreInfo;
     private String followUpQuestion;
+
+    // true khi AI không dùng được và đây là gợi ý offline theo từ khóa
+    private Boolean degraded;
     
     // ========== NEW BOOKING FIELDS ==========
     
@@ -0,0 +1,30 @@
+package com.example.ohms.dto.response;
+
+import java.util.Set;
+
+import com.example.ohms.enums.AuthProvider;
+import com.example.ohms.enums.MedicalSpecialty;
+
+import lombok.AccessLevel;
+import lombok.Builder;
+import lombok.Data;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+// một dòng trong danh sách user của admin, chỉ các cột cần hiển thị
+@Data
+@Builder
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class UserListItem {
+    String id;
+    String username;
+    String email;
+    Integer phone;
+    String imageUrl;
+    String gender;
+    AuthProvider provider;
+    Boolean enabled;
+    Set<String> roles;
+    Set<MedicalSpecialty> medicleSpecially;
+}
@@ -0,0 +1,64 @@
+package com.example.ohms.entity;
+
+import java.time.LocalDateTime;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import org.springframework.data.domain.Persistable;
+
+// index nội dung ảnh đã upload: cùng 1 file (cùng sha-256) chỉ upload 1 lần
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "media_asset", indexes = @Index(name = "idx_media_asset_original_url", columnList = "original_url"))
+public class MediaAsset implements Persistable<String> {
+    // sha-256 hex của nội dung file
+    @Id
+    @Column(length = 64)
+    String id;
+
+    @Column(name = "original_url", length = 512, nullable = false)
+    String originalUrl;
+
+    // null nếu file không decode được bằng ImageIO (pdf, heic...)
+    @Column(name = "thumbnail_url", length = 512)
+    String thumbnailUrl;
+
+    long contentLength;
+
+    @Builder.Default
+    LocalDateTime createdAt = LocalDateTime.now();
+
+    // save() luôn persist (insert) thay vì merge: 2 upload cùng hash thì insert sau lỗi duplicate key,
+    // không ghi đè originalUrl của bản đã lưu
+    @Transient
+    @Builder.Default
+    boolean fresh = true;
+
+    @Override
+    public boolean isNew() {
+        return fresh;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markStored() {
+        fresh = false;
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.ohms.entity;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+// token đã thu hồi: id là jti của access token, hoặc "user:<userId>" khi thu hồi mọi phiên của user
+// (mọi token của user phát hành trước revokedAt đều bị từ chối). Hết expiresAt thì xóa được vì token cũng đã hết hạn.
+@Data
+@Entity
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+@Table(name = "revoked_token", indexes = {
+        @Index(name = "idx_revoked_token_revoked_at", columnList = "revoked_at"),
+        @Index(name = "idx_revoked_token_expires_at", columnList = "expires_at")
+})
+public class RevokedToken {
+    @Id
+    @Column(length = 64)
+    String id;
+
+    @Column(name = "user_id", length = 64)
+    String userId;
+
+    @Column(name = "revoked_at", nullable = false)
+    Instant revokedAt;
+
+    @Column(name = "expires_at", nullable = false)
+    Instant expiresAt;
+}
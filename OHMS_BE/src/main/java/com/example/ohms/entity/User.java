@@ -13,7 +13,9 @@ import jakarta.persistence.Enumerated;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToMany;
+import jakarta.persistence.Table;
 import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
@@ -27,6 +29,12 @@ import lombok.experimental.FieldDefaults;
 @NoArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE)
 @Builder
+// index cho đăng nhập theo email, tra số điện thoại tại quầy và tìm/sắp xếp theo tiền tố ở danh sách admin
+@Table(indexes = {
+   @Index(name = "idx_user_username", columnList = "username"),
+   @Index(name = "idx_user_email", columnList = "email"),
+   @Index(name = "idx_user_phone", columnList = "phone")
+})
 public class User {
    @Id
    @GeneratedValue(strategy = GenerationType.UUID)
@@ -0,0 +1,18 @@
+package com.example.ohms.exception;
+
+// AI không gọi được (circuit mở, bulkhead đầy, timeout, lỗi API); caller nên chuyển sang gợi ý dự phòng
+public class AiUnavailableException extends AppException {
+    private final String reason;
+
+    public AiUnavailableException(String reason, Throwable cause) {
+        super(ErrorCode.AI_BUSY);
+        this.reason = reason;
+        if (cause != null) {
+            initCause(cause);
+        }
+    }
+
+    public String getReason() {
+        return reason;
+    }
+}
@@ -54,7 +54,14 @@ METHOD_NOT_ALLOW(1040,"method not allow",HttpStatus.BAD_REQUEST),
    CHAT_NOT_ALLOWED(1051, "Chat is not allowed at this time", HttpStatus.FORBIDDEN),
    SCHEDULE_CONFLICT(1052, "Schedule time conflict with existing schedule", HttpStatus.CONFLICT),
    PENDING_REQUEST_CONFLICT(1053, "Schedule time conflict with pending request", HttpStatus.CONFLICT),
-   NO_TIME_CHANGE(1054, "No time change detected for UPDATE request", HttpStatus.BAD_REQUEST);
+   NO_TIME_CHANGE(1054, "No time change detected for UPDATE request", HttpStatus.BAD_REQUEST),
+   UPLOAD_LIMIT_EXCEEDED(1055, "Too many files in one upload", HttpStatus.BAD_REQUEST),
+   AI_BUSY(1056, "AI assistant is busy, please try again shortly", HttpStatus.SERVICE_UNAVAILABLE),
+   TRIAGE_ITEMS_REQUIRED(1057, "Missing items in request body", HttpStatus.BAD_REQUEST),
+   TRIAGE_TOO_MANY_ITEMS(1058, "Too many items in one triage batch", HttpStatus.BAD_REQUEST),
+   TRIAGE_FAILED(1059, "Batch triage failed, please try again", HttpStatus.INTERNAL_SERVER_ERROR),
+   TOO_MANY_LOGIN_ATTEMPTS(1060, "Too many login attempts, please try again later", HttpStatus.TOO_MANY_REQUESTS),
+   AUTH_BUSY(1061, "Authentication is busy, please try again shortly", HttpStatus.SERVICE_UNAVAILABLE);
    
    private int code;
    private String message;
@@ -16,5 +16,6 @@ public interface ConversationMapper  {
    @Mapping(target = "imageUrls", ignore = true)
    Conversation toConversation(ConversationRequest conversationRequest);
    
+   @Mapping(target = "thumbnailUrls", ignore = true)
    ConversationResponse toConversationResponse(Conversation conversation);
 }
@@ -1,19 +1,59 @@
 package com.example.ohms.repository;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import com.example.ohms.entity.Conversation;
+import com.example.ohms.repository.projection.MessageIndexView;
 
 public interface ConversationRepository extends JpaRepository<Conversation,String>  {
    List<Conversation> findByRoomChatId(String roomId);
-   void deleteByRoomChatId(String roomId);
+   // xóa theo set, không load từng entity như derived delete
+   // bảng ảnh (element collection) phải xóa trước vì JPQL bulk delete không cascade
+   @Modifying
+   @Query(value = """
+      DELETE FROM conversation_images_urls
+      WHERE conversation_id IN (SELECT id FROM conversation WHERE room_chat_id = :roomId)
+   """, nativeQuery = true)
+   int deleteImageUrlsByRoomChatId(@Param("roomId") String roomId);
+
+   @Modifying
+   @Query("DELETE FROM Conversation c WHERE c.roomChat.id = :roomId")
+   void deleteByRoomChatId(@Param("roomId") String roomId);
+
+   @Modifying
+   @Query(value = "DELETE FROM conversation_images_urls WHERE conversation_id IN (:ids)", nativeQuery = true)
+   int deleteImageUrlsByConversationIds(@Param("ids") Collection<String> ids);
+
+   @Modifying
+   @Query("DELETE FROM Conversation c WHERE c.id IN :ids")
+   int deleteByIdIn(@Param("ids") Collection<String> ids);
+
+   // archive: room nào có message cũ hơn cutoff
+   @Query("SELECT DISTINCT c.roomChat.id FROM Conversation c WHERE c.createdAt < :cutoff")
+   List<String> findRoomIdsWithMessagesBefore(@Param("cutoff") LocalDateTime cutoff);
+
+   @Query("SELECT c FROM Conversation c LEFT JOIN FETCH c.user WHERE c.roomChat.id = :roomId AND c.createdAt < :cutoff ORDER BY c.createdAt, c.id")
+   List<Conversation> findByRoomChatIdCreatedBefore(@Param("roomId") String roomId, @Param("cutoff") LocalDateTime cutoff, Pageable pageable);
+
+   // [conversationId, imageUrl] cho cả batch, tránh load element collection từng message
+   @Query("SELECT c.id, i FROM Conversation c JOIN c.imageUrls i WHERE c.id IN :ids")
+   List<Object[]> findImageUrlsByConversationIds(@Param("ids") Collection<String> ids);
    
    @Query("SELECT c FROM Conversation c LEFT JOIN FETCH c.user u LEFT JOIN FETCH u.roles WHERE c.roomChat.id = :roomId ORDER BY c.createdAt")
    List<Conversation> findByRoomChatIdWithUserAndRoles(@Param("roomId") String roomId);
 
-   
-
+   // keyset paging theo id để build lại search index, không dùng offset
+   @Query("""
+      SELECT c.id AS id, r.id AS roomId, u.id AS userId, c.message AS message, c.createdAt AS createdAt
+      FROM Conversation c LEFT JOIN c.roomChat r LEFT JOIN c.user u
+      WHERE c.id > :afterId ORDER BY c.id
+   """)
+   List<MessageIndexView> findIndexRowsAfter(@Param("afterId") String afterId, Pageable pageable);
 }
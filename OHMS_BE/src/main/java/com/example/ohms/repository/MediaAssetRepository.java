@@ -0,0 +1,12 @@
+package com.example.ohms.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import com.example.ohms.entity.MediaAsset;
+
+public interface MediaAssetRepository extends JpaRepository<MediaAsset, String> {
+    List<MediaAsset> findByOriginalUrlIn(Collection<String> originalUrls);
+}
@@ -0,0 +1,25 @@
+package com.example.ohms.repository;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.ohms.entity.RevokedToken;
+
+public interface RevokedTokenRepository extends JpaRepository<RevokedToken, String> {
+    @Query("SELECT r.id FROM RevokedToken r WHERE r.expiresAt > :now")
+    List<String> findActiveIds(@Param("now") Instant now);
+
+    @Query("SELECT r.id FROM RevokedToken r WHERE r.revokedAt > :since")
+    List<String> findIdsRevokedAfter(@Param("since") Instant since);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM RevokedToken r WHERE r.expiresAt <= :now")
+    int deleteExpired(@Param("now") Instant now);
+}
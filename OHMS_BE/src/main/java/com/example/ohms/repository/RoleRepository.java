@@ -1,12 +1,16 @@
 package com.example.ohms.repository;
 
+import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 
 import com.example.ohms.entity.Role;
 
 public interface RoleRepository extends JpaRepository<Role,String> {
 Optional<Role> findByName(String name);
+   @Query("SELECT DISTINCT r FROM Role r LEFT JOIN FETCH r.permissions")
+   List<Role> findAllWithPermissions();
 
 }
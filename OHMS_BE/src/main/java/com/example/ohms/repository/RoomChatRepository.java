@@ -5,6 +5,7 @@ import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.ohms.entity.RoomChat;
 
@@ -17,4 +18,9 @@ public  interface RoomChatRepository extends JpaRepository<RoomChat, String>{
     """)
     Optional<RoomChat> findRoomByTwoUsers(String userId1, String userId2);
     List<RoomChat> findByUser_Id(String userId);
+
+    @Query("SELECT r.id FROM RoomChat r JOIN r.user u WHERE u.id = :userId")
+    List<String> findRoomIdsByUserId(@Param("userId") String userId);
+
+    boolean existsByIdAndUser_Id(String roomId, String userId);
 }
@@ -11,4 +11,5 @@ public interface ScheduleRepository extends JpaRepository<Schedule,String> {
  boolean existsByDoctor_IdAndWorkDate(String doctor_id, LocalDate workDate);
  List<Schedule> findByWorkDate(LocalDate workDate);
  List<Schedule> findByDoctor_IdAndWorkDate(String doctorId, LocalDate workDate);
+ List<Schedule> findByWorkDateBetween(LocalDate from, LocalDate to);
 }
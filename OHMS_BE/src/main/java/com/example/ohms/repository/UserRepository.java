@@ -1,13 +1,22 @@
 package com.example.ohms.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.ohms.entity.User;
+import com.example.ohms.enums.AuthProvider;
+import com.example.ohms.repository.projection.OAuth2LoginView;
+import com.example.ohms.repository.projection.PatientIndexView;
+import com.example.ohms.repository.projection.UserListView;
 
 public interface UserRepository extends JpaRepository<User,String> {
    Optional<User> findByUsername(String username);
@@ -21,6 +30,102 @@ Optional<User> findByEmailWithRoles(@Param("email") String email);
    @Query("SELECT u FROM User u LEFT JOIN FETCH u.roles WHERE u.id = :id")
    Optional<User> findByIdWithRoles(@Param("id") String id);
 
+   // đi qua FK roles_name của bảng nối user-role (đã có index), không quét cả bảng user
    @Query("SELECT u FROM User u JOIN u.roles r WHERE r.name = :roleName")
    List<User> findByRoleName(@Param("roleName") String roleName);
+   // như trên nhưng nạp luôn toàn bộ role của từng user (để map sang UserResponse không lazy load từng người)
+   @Query("SELECT DISTINCT u FROM User u LEFT JOIN FETCH u.roles WHERE u.id IN "
+         + "(SELECT u2.id FROM User u2 JOIN u2.roles r WHERE r.name = :roleName)")
+   List<User> findByRoleNameWithRoles(@Param("roleName") String roleName);
+
+   // bộ lọc dùng chung cho query trang và query đếm. LIKE so theo collation của MySQL (không phân biệt hoa thường)
+   // nên không bọc LOWER(), giữ được index username/email/phone. Service chỉ truyền một trong ba nhánh của q
+   // (chữ -> username/email, có '@' -> email, số -> khoảng phone) để mỗi nhánh là range trên đúng index của nó.
+   // medicleSpecially lưu serialize trong cột của user, SQL không lọc được nên lọc chuyên khoa bằng danh sách
+   // id bác sĩ lấy từ DoctorDirectoryService
+   String SEARCH_FILTER = """
+      FROM User u
+      WHERE (:role IS NULL OR EXISTS (SELECT 1 FROM User u2 JOIN u2.roles r WHERE u2.id = u.id AND r.name = :role))
+        AND (:provider IS NULL OR u.provider = :provider)
+        AND (:enabled IS NULL OR COALESCE(u.enabled, TRUE) = :enabled)
+        AND (:bySpecialty = FALSE OR u.id IN :specialtyIds)
+        AND (:textPrefix IS NULL OR u.username LIKE :textPrefix ESCAPE '!' OR u.email LIKE :textPrefix ESCAPE '!')
+        AND (:emailPrefix IS NULL OR u.email LIKE :emailPrefix ESCAPE '!')
+        AND (:phoneFrom IS NULL OR u.phone BETWEEN :phoneFrom AND :phoneTo)
+   """;
+
+   @Query(value = """
+      SELECT u.id AS id, u.username AS username, u.email AS email, u.phone AS phone, u.imageUrl AS imageUrl,
+             u.gender AS gender, u.provider AS provider, u.enabled AS enabled
+   """ + SEARCH_FILTER, countQuery = "SELECT COUNT(u) " + SEARCH_FILTER)
+   Page<UserListView> search(@Param("role") String role,
+                             @Param("provider") AuthProvider provider,
+                             @Param("enabled") Boolean enabled,
+                             @Param("bySpecialty") boolean bySpecialty,
+                             @Param("specialtyIds") Collection<String> specialtyIds,
+                             @Param("textPrefix") String textPrefix,
+                             @Param("emailPrefix") String emailPrefix,
+                             @Param("phoneFrom") Integer phoneFrom,
+                             @Param("phoneTo") Integer phoneTo,
+                             Pageable pageable);
+
+   // [userId, roleName] cho cả trang, tránh load roles từng user
+   @Query("SELECT u.id, r.name FROM User u JOIN u.roles r WHERE u.id IN :ids")
+   List<Object[]> findRoleNamesByUserIds(@Param("ids") Collection<String> ids);
+
+   // keyset paging theo id để dựng index tìm bệnh nhân, không dùng offset
+   @Query("""
+      SELECT u.id AS id, u.username AS username, u.phone AS phone, u.identification AS identification
+      FROM User u
+      WHERE u.id > :afterId
+        AND EXISTS (SELECT 1 FROM User u2 JOIN u2.roles r WHERE u2.id = u.id AND r.name IN :roles)
+      ORDER BY u.id
+   """)
+   List<PatientIndexView> findPatientIndexRowsAfter(@Param("afterId") String afterId,
+                                                    @Param("roles") Collection<String> roles,
+                                                    Pageable pageable);
+
+   // user tạo tại quầy (không có email)
+   @Query("SELECT u FROM User u WHERE u.email IS NULL OR u.email = ''")
+   List<User> findOfflineUsers();
+
+   @Query("SELECT u.imageUrl FROM User u WHERE u.id = :id")
+   Optional<String> findImageUrlById(@Param("id") String id);
+
+   // chỉ ghi cột ảnh, worker avatar không ghi đè thay đổi khác của user đang diễn ra song song;
+   // chỉ ghi khi ảnh hiện tại vẫn là {@code expected} để 2 job avatar của cùng user không ghi đè nhau
+   @Transactional
+   @Modifying
+   @Query("""
+      UPDATE User u SET u.imageUrl = :imageUrl
+      WHERE u.id = :id AND (u.imageUrl = :expected OR (:expected IS NULL AND u.imageUrl IS NULL))
+   """)
+   int replaceImageUrl(@Param("id") String id, @Param("expected") String expected, @Param("imageUrl") String imageUrl);
+
+   // đăng nhập Google: user và tên role trong 1 query thay cho findByEmail rồi findByEmailWithRoles
+   @Query("""
+      SELECT u.id AS id, u.username AS username, u.imageUrl AS imageUrl, u.provider AS provider,
+             u.enabled AS enabled, r.name AS role
+      FROM User u LEFT JOIN u.roles r
+      WHERE u.email = :email
+      ORDER BY u.id
+   """)
+   List<OAuth2LoginView> findOAuth2LoginRows(@Param("email") String email);
+
+   @Transactional
+   @Modifying
+   @Query("UPDATE User u SET u.username = :username, u.imageUrl = :imageUrl, u.provider = :provider WHERE u.id = :id")
+   int updateOAuth2Profile(@Param("id") String id, @Param("username") String username,
+                           @Param("imageUrl") String imageUrl, @Param("provider") AuthProvider provider);
+
+   @Transactional
+   @Modifying
+   @Query("UPDATE User u SET u.refreshToken = :refreshToken WHERE u.id = :id")
+   int updateRefreshToken(@Param("id") String id, @Param("refreshToken") String refreshToken);
+
+   // xoay refresh token kiểu compare-and-set: chỉ ghi khi hash hiện tại vẫn là hash cũ, trả 0 nếu request khác đã xoay trước
+   @Transactional
+   @Modifying
+   @Query("UPDATE User u SET u.refreshToken = :newHash WHERE u.id = :id AND u.refreshToken = :oldHash")
+   int rotateRefreshToken(@Param("id") String id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
 }
@@ -0,0 +1,16 @@
+package com.example.ohms.repository.projection;
+
+import java.time.LocalDateTime;
+
+// chỉ select các cột cần để build lại search index
+public interface MessageIndexView {
+    String getId();
+
+    String getRoomId();
+
+    String getUserId();
+
+    String getMessage();
+
+    LocalDateTime getCreatedAt();
+}
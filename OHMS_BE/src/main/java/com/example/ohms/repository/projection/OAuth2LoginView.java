@@ -0,0 +1,18 @@
+package com.example.ohms.repository.projection;
+
+import com.example.ohms.enums.AuthProvider;
+
+// user đăng nhập Google kèm 1 role mỗi dòng (role null nếu user chưa có role)
+public interface OAuth2LoginView {
+    String getId();
+
+    String getUsername();
+
+    String getImageUrl();
+
+    AuthProvider getProvider();
+
+    Boolean getEnabled();
+
+    String getRole();
+}
@@ -0,0 +1,12 @@
+package com.example.ohms.repository.projection;
+
+// các cột cần để dựng index tìm bệnh nhân ở quầy tiếp đón
+public interface PatientIndexView {
+    String getId();
+
+    String getUsername();
+
+    Integer getPhone();
+
+    String getIdentification();
+}
@@ -0,0 +1,22 @@
+package com.example.ohms.repository.projection;
+
+import com.example.ohms.enums.AuthProvider;
+
+// các cột cho danh sách user của admin, không kéo mấy cột TEXT của bác sĩ và password/token
+public interface UserListView {
+    String getId();
+
+    String getUsername();
+
+    String getEmail();
+
+    Integer getPhone();
+
+    String getImageUrl();
+
+    String getGender();
+
+    AuthProvider getProvider();
+
+    Boolean getEnabled();
+}
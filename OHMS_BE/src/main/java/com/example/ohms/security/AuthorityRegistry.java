@@ -0,0 +1,95 @@
+package com.example.ohms.security;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.ohms.entity.Permission;
+import com.example.ohms.entity.Role;
+import com.example.ohms.repository.RoleRepository;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bảng role → quyền (ROLE_xxx + tên permission) giữ trong RAM, nạp một lần lúc khởi động bằng một query
+ * fetch join và nạp lại khi RoleService/PermissionService đổi role/permission ({@link PrincipalChangedEvent#all()}).
+ * Dựng scope cho token và quyền cho principal chỉ cần tên role của user, không lazy load permission qua Hibernate.
+ */
+@Component
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AuthorityRegistry {
+    private static final String ROLE_PREFIX = "ROLE_";
+
+    RoleRepository roleRepository;
+    // bản mới thay nguyên map, người đọc không bao giờ thấy map dựng dở
+    @NonFinal
+    volatile Map<String, List<String>> authoritiesByRole = Map.of();
+
+    public AuthorityRegistry(RoleRepository roleRepository) {
+        this.roleRepository = roleRepository;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void refresh() {
+        load(roleRepository.findAllWithPermissions());
+        log.info("Authority registry loaded {} roles", authoritiesByRole.size());
+    }
+
+    public void load(Collection<Role> roles) {
+        authoritiesByRole = roles.stream().collect(Collectors.toUnmodifiableMap(Role::getName, AuthorityRegistry::authoritiesOf));
+    }
+
+    // chạy trước PrincipalCache để principal load lại sau khi invalidate đã thấy quyền mới
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrincipalChanged(PrincipalChangedEvent event) {
+        if (event.userId() == null) {
+            refresh();
+        }
+    }
+
+    /**
+     * Quyền của các role theo thứ tự, bỏ trùng. Role chưa có trong bảng (vừa tạo ngoài service) chỉ có ROLE_xxx.
+     */
+    public List<String> expand(Collection<String> roleNames) {
+        Map<String, List<String>> current = authoritiesByRole;
+        Set<String> authorities = new LinkedHashSet<>();
+        for (String roleName : roleNames) {
+            authorities.addAll(current.getOrDefault(roleName, List.of(ROLE_PREFIX + roleName)));
+        }
+        return List.copyOf(authorities);
+    }
+
+    public String buildScope(Collection<String> roleNames) {
+        return String.join(" ", expand(roleNames));
+    }
+
+    public List<GrantedAuthority> grantedAuthorities(Collection<String> roleNames) {
+        return expand(roleNames).stream().<GrantedAuthority>map(SimpleGrantedAuthority::new).toList();
+    }
+
+    private static List<String> authoritiesOf(Role role) {
+        Set<String> authorities = new LinkedHashSet<>();
+        authorities.add(ROLE_PREFIX + role.getName());
+        if (role.getPermissions() != null) {
+            role.getPermissions().stream().map(Permission::getName).sorted().forEach(authorities::add);
+        }
+        return List.copyOf(authorities);
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.ohms.security;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.example.ohms.configuration.PasswordHashConfig;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * PasswordEncoder chạy BCrypt trên pool thread riêng có giới hạn thay vì trên thread Tomcat.
+ * Hàng đợi đầy (đợt đăng nhập dồn dập, dò mật khẩu) thì từ chối ngay bằng {@link ErrorCode#AUTH_BUSY},
+ * các endpoint khác vẫn còn thread và CPU để chạy. Mọi chỗ inject PasswordEncoder đều đi qua đây.
+ */
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class BoundedPasswordEncoder implements PasswordEncoder, AutoCloseable {
+    PasswordEncoder delegate;
+    ThreadPoolExecutor executor;
+    Timer encodeTimer;
+    Timer matchesTimer;
+    Counter rejected;
+
+    public BoundedPasswordEncoder(PasswordHashConfig config, MeterRegistry meterRegistry) {
+        this(config, meterRegistry, new BCryptPasswordEncoder(config.getStrength()));
+    }
+
+    public BoundedPasswordEncoder(PasswordHashConfig config, MeterRegistry meterRegistry, PasswordEncoder delegate) {
+        this.delegate = delegate;
+        AtomicInteger counter = new AtomicInteger();
+        int workers = Math.max(1, config.getWorkers());
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity())), r -> {
+                    Thread thread = new Thread(r, "password-hash-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        this.encodeTimer = Timer.builder("security.password.hash")
+                .description("Time spent hashing passwords, excluding queue wait")
+                .tag("op", "encode")
+                .register(meterRegistry);
+        this.matchesTimer = Timer.builder("security.password.hash")
+                .description("Time spent hashing passwords, excluding queue wait")
+                .tag("op", "matches")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("security.password.hash.rejected")
+                .description("Hash requests rejected because the queue was full")
+                .register(meterRegistry);
+        meterRegistry.gauge("security.password.hash.queue", executor.getQueue(), q -> q.size());
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return run(() -> encodeTimer.recordCallable(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return run(() -> matchesTimer.recordCallable(() -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    // chỉ đọc cost trong chuỗi hash, không tốn CPU nên chạy luôn trên thread gọi
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private <T> T run(Callable<T> task) {
+        Future<T> future;
+        try {
+            future = executor.submit(task);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new AppException(ErrorCode.AUTH_BUSY);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AppException(ErrorCode.AUTH_BUSY);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
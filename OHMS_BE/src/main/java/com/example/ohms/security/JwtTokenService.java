@@ -0,0 +1,188 @@
+package com.example.ohms.security;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.jwt.MappedJwtClaimSetConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.example.ohms.configuration.AppConfig;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ký và verify JWT cho cả hai loại token đang tồn tại:
+ * HS256 ký bằng {@code app.signal-key} (đăng nhập thường, OAuth2) và HS512 kiểu cũ ký bằng {@code app.token-secret}
+ * (jjwt, base64). Header được đọc một lần để chọn verifier; signer/verifier/key dựng sẵn lúc khởi động.
+ * Kết quả là {@link Jwt} của Spring nên {@code @PreAuthorize} (qua scope) và controller (principal là Jwt)
+ * dùng chung một kiểu claims. Đây là JwtDecoder duy nhất: resource server, STOMP CONNECT và introspect đều đi qua đây.
+ * Token đã verify còn được đối chiếu với danh sách thu hồi ({@link TokenRevocationService}).
+ */
+@Component
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class JwtTokenService implements JwtDecoder {
+    // cùng độ lệch đồng hồ mặc định với NimbusJwtDecoder
+    private static final Duration CLOCK_SKEW = Duration.ofSeconds(60);
+
+    MACSigner signer;
+    // HMAC-SHA256 cùng app.signal-key, ký refresh token để phân biệt token server phát hành với token giả
+    SecretKeySpec refreshTokenKey;
+    JWSVerifier hs256Verifier;
+    // null khi chưa cấu hình app.token-secret, lúc đó token HS512 bị từ chối
+    JWSVerifier hs512Verifier;
+    Converter<Map<String, Object>, Map<String, Object>> claimSetConverter =
+            MappedJwtClaimSetConverter.withDefaults(Collections.emptyMap());
+    Clock clock;
+    // null thì bỏ qua kiểm tra thu hồi (test, benchmark)
+    TokenRevocationService revocationService;
+
+    @Autowired
+    public JwtTokenService(AppConfig appConfig, TokenRevocationService revocationService) {
+        this(appConfig, Clock.systemUTC(), revocationService);
+    }
+
+    public JwtTokenService(AppConfig appConfig) {
+        this(appConfig, Clock.systemUTC(), null);
+    }
+
+    public JwtTokenService(AppConfig appConfig, Clock clock) {
+        this(appConfig, clock, null);
+    }
+
+    public JwtTokenService(AppConfig appConfig, Clock clock, TokenRevocationService revocationService) {
+        this.clock = clock;
+        this.revocationService = revocationService;
+        try {
+            byte[] signalKey = appConfig.getSignalKey().getBytes();
+            this.signer = new MACSigner(signalKey);
+            this.hs256Verifier = new MACVerifier(signalKey);
+            this.refreshTokenKey = new SecretKeySpec(signalKey, "HmacSHA256");
+        } catch (JOSEException e) {
+            throw new IllegalStateException("app.signal-key không dùng được cho HS256", e);
+        }
+        this.hs512Verifier = legacyVerifier(appConfig.getTokenSecret());
+    }
+
+    private static JWSVerifier legacyVerifier(String tokenSecret) {
+        if (!StringUtils.hasText(tokenSecret)) {
+            return null;
+        }
+        try {
+            // jjwt coi secret dạng String là base64
+            return new MACVerifier(Base64.getDecoder().decode(tokenSecret));
+        } catch (JOSEException | IllegalArgumentException e) {
+            log.warn("app.token-secret is not a usable HS512 key, legacy tokens will be rejected: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    public String sign(JWTClaimsSet claims) {
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims);
+        try {
+            jwt.sign(signer);
+            return jwt.serialize();
+        } catch (JOSEException e) {
+            throw new AppException(ErrorCode.SIGNAL_KEY_NOT_VAILID);
+        }
+    }
+
+    // chữ ký refresh token, base64url không padding để ghép thẳng vào token
+    public String refreshTokenMac(String payload) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(refreshTokenKey);
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString(mac.doFinal(payload.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        SignedJWT signed;
+        JWTClaimsSet claims;
+        try {
+            signed = SignedJWT.parse(token);
+            claims = signed.getJWTClaimsSet();
+        } catch (ParseException e) {
+            throw new BadJwtException("Malformed token", e);
+        }
+
+        JWSAlgorithm algorithm = signed.getHeader().getAlgorithm();
+        JWSVerifier verifier = JWSAlgorithm.HS256.equals(algorithm) ? hs256Verifier
+                : JWSAlgorithm.HS512.equals(algorithm) ? hs512Verifier
+                : null;
+        if (verifier == null) {
+            throw new BadJwtException("Unsupported token algorithm " + algorithm);
+        }
+        try {
+            if (!signed.verify(verifier)) {
+                throw new BadJwtException("Invalid token signature");
+            }
+        } catch (JOSEException e) {
+            throw new BadJwtException("Invalid token signature", e);
+        }
+
+        Instant now = clock.instant();
+        Date expiresAt = claims.getExpirationTime();
+        if (expiresAt != null && now.minus(CLOCK_SKEW).isAfter(expiresAt.toInstant())) {
+            throw new BadJwtException("Token expired");
+        }
+        Date notBefore = claims.getNotBeforeTime();
+        if (notBefore != null && now.plus(CLOCK_SKEW).isBefore(notBefore.toInstant())) {
+            throw new BadJwtException("Token not yet valid");
+        }
+        // chỉ chạm DB khi Bloom filter báo trùng
+        Date issuedAt = claims.getIssueTime();
+        if (revocationService != null && revocationService.isRevoked(claims.getJWTID(), claims.getSubject(),
+                issuedAt != null ? issuedAt.toInstant() : null)) {
+            throw new BadJwtException("Token revoked");
+        }
+
+        return Jwt.withTokenValue(token)
+                .headers(headers -> headers.putAll(signed.getHeader().toJSONObject()))
+                .claims(values -> values.putAll(claimSetConverter.convert(claims.getClaims())))
+                .build();
+    }
+
+    public boolean isValid(String token) {
+        try {
+            decode(token);
+            return true;
+        } catch (JwtException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.ohms.security;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.ohms.configuration.PasswordHashConfig;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+import com.example.ohms.utils.TokenBucket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Giới hạn số lần thử đăng nhập theo IP và theo email bằng token bucket, kiểm tra trước khi chạy BCrypt
+ * nên request bị chặn không tốn CPU hash. Đếm các lần đăng nhập bị từ chối theo lý do.
+ */
+@Component
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class LoginThrottle {
+    PasswordHashConfig config;
+    Map<String, TokenBucket> ipBuckets = new ConcurrentHashMap<>();
+    Map<String, TokenBucket> accountBuckets = new ConcurrentHashMap<>();
+    Counter ipThrottled;
+    Counter accountThrottled;
+    Counter badCredentials;
+
+    public LoginThrottle(PasswordHashConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.ipThrottled = rejectedCounter(meterRegistry, "ip");
+        this.accountThrottled = rejectedCounter(meterRegistry, "account");
+        this.badCredentials = rejectedCounter(meterRegistry, "credentials");
+        meterRegistry.gauge("security.login.rate_limit.ips", ipBuckets, Map::size);
+        meterRegistry.gauge("security.login.rate_limit.accounts", accountBuckets, Map::size);
+    }
+
+    private static Counter rejectedCounter(MeterRegistry meterRegistry, String reason) {
+        return Counter.builder("security.login.rejected")
+                .description("Login attempts rejected before or after password check")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Trừ một lượt của IP và của email, hết lượt thì ném {@link ErrorCode#TOO_MANY_LOGIN_ATTEMPTS}.
+     * clientIp null (gọi nội bộ) thì chỉ giới hạn theo email.
+     */
+    public void acquire(String clientIp, String email) {
+        if (clientIp != null && !ipBuckets.computeIfAbsent(clientIp, ip -> new TokenBucket(
+                config.getLoginIpCapacity(), config.getLoginIpRefillPerSecond())).tryConsume()) {
+            ipThrottled.increment();
+            log.debug("Throttled login from {}", clientIp);
+            throw new AppException(ErrorCode.TOO_MANY_LOGIN_ATTEMPTS);
+        }
+        if (email != null && !accountBuckets.computeIfAbsent(email.toLowerCase(Locale.ROOT), key -> new TokenBucket(
+                config.getLoginAccountCapacity(), config.getLoginAccountRefillPerSecond())).tryConsume()) {
+            accountThrottled.increment();
+            log.debug("Throttled login for account {}", email);
+            throw new AppException(ErrorCode.TOO_MANY_LOGIN_ATTEMPTS);
+        }
+    }
+
+    public void recordBadCredentials() {
+        badCredentials.increment();
+    }
+
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleBuckets() {
+        ipBuckets.values().removeIf(TokenBucket::isIdle);
+        accountBuckets.values().removeIf(TokenBucket::isIdle);
+    }
+}
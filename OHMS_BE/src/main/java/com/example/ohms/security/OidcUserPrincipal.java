@@ -0,0 +1,34 @@
+package com.example.ohms.security;
+
+import java.util.Map;
+
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.OidcUserInfo;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+
+// principal của đăng nhập OpenID Connect (Google có scope openid): id/quyền như UserPrincipal, kèm ID token
+public class OidcUserPrincipal extends UserPrincipal implements OidcUser {
+    private final OidcIdToken idToken;
+    private final OidcUserInfo userInfo;
+
+    public OidcUserPrincipal(UserPrincipal user, OidcIdToken idToken, OidcUserInfo userInfo) {
+        super(user.getId(), user.getEmail(), user.getPassword(), user.isEnabled(), user.getAuthorities());
+        this.idToken = idToken;
+        this.userInfo = userInfo;
+    }
+
+    @Override
+    public Map<String, Object> getClaims() {
+        return getAttributes();
+    }
+
+    @Override
+    public OidcUserInfo getUserInfo() {
+        return userInfo;
+    }
+
+    @Override
+    public OidcIdToken getIdToken() {
+        return idToken;
+    }
+}
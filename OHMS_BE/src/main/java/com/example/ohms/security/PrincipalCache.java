@@ -0,0 +1,106 @@
+package com.example.ohms.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.ohms.configuration.PrincipalCacheConfig;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Cache {@link UserPrincipal} theo userId để {@link TokenAuthenticationConverter} không phải query DB mỗi request.
+ * Entry hết hạn sau ttlSeconds, và bị bỏ ngay khi có {@link PrincipalChangedEvent} (sau khi transaction commit).
+ * Mỗi lần invalidate tăng generation: principal đang load dở từ trước đó không được ghi vào cache,
+ * tránh trường hợp load bản cũ rồi ghi đè sau khi đã invalidate.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PrincipalCache {
+    PrincipalCacheConfig config;
+    LongSupplier nanoClock;
+    Map<String, Entry> entries = new ConcurrentHashMap<>();
+    AtomicLong generation = new AtomicLong();
+    Counter hits;
+    Counter misses;
+
+    private record Entry(UserPrincipal principal, long expiresAt) {
+    }
+
+    @Autowired
+    public PrincipalCache(PrincipalCacheConfig config, MeterRegistry meterRegistry) {
+        this(config, meterRegistry, System::nanoTime);
+    }
+
+    public PrincipalCache(PrincipalCacheConfig config, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.config = config;
+        this.nanoClock = nanoClock;
+        this.hits = meterRegistry.counter("security.principal.cache", "result", "hit");
+        this.misses = meterRegistry.counter("security.principal.cache", "result", "miss");
+        Gauge.builder("security.principal.cache.size", entries, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * Principal của userId, lấy từ cache nếu còn hạn, không thì gọi loader (query DB) và cache lại.
+     */
+    public UserPrincipal get(String userId, Function<String, UserPrincipal> loader) {
+        if (!config.isEnabled()) {
+            return loader.apply(userId);
+        }
+        long now = nanoClock.getAsLong();
+        Entry entry = entries.get(userId);
+        if (entry != null && now - entry.expiresAt() < 0) {
+            hits.increment();
+            return entry.principal();
+        }
+        misses.increment();
+
+        long loadedAt = generation.get();
+        UserPrincipal principal = loader.apply(userId);
+        if (entries.size() >= config.getMaxEntries()) {
+            entries.values().removeIf(e -> now - e.expiresAt() >= 0);
+        }
+        if (entries.size() < config.getMaxEntries()) {
+            entries.put(userId, new Entry(principal, now + TimeUnit.SECONDS.toNanos(config.getTtlSeconds())));
+            // có invalidate trong lúc load thì bản vừa load có thể đã cũ
+            if (generation.get() != loadedAt) {
+                entries.remove(userId);
+            }
+        }
+        return principal;
+    }
+
+    public void invalidate(String userId) {
+        generation.incrementAndGet();
+        entries.remove(userId);
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrincipalChanged(PrincipalChangedEvent event) {
+        if (event.userId() == null) {
+            invalidateAll();
+        } else {
+            invalidate(event.userId());
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.ohms.security;
+
+/**
+ * Bắn ra khi quyền, trạng thái, mật khẩu hoặc hồ sơ của user thay đổi. userId null nghĩa là ảnh hưởng mọi user
+ * (đổi role/permission). {@link PrincipalCache} nghe event này để bỏ principal đã cache,
+ * {@link AuthorityRegistry} nạp lại bảng role → quyền khi userId null, DoctorDirectoryService cập nhật danh bạ bác sĩ,
+ * PatientSearchService cập nhật index tìm bệnh nhân.
+ */
+public record PrincipalChangedEvent(String userId) {
+
+    public static PrincipalChangedEvent user(String userId) {
+        return new PrincipalChangedEvent(userId);
+    }
+
+    public static PrincipalChangedEvent all() {
+        return new PrincipalChangedEvent(null);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.ohms.security;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Đọc header Authorization lúc STOMP CONNECT và gắn user vào session,
+ * để presence/typing biết ai đang online mà không phải hỏi DB.
+ * Token sai thì vẫn cho connect (như trước), chỉ là session không có user.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class StompAuthChannelInterceptor implements ChannelInterceptor {
+    JwtDecoder jwtDecoder;
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() != StompCommand.CONNECT) {
+            return message;
+        }
+        String header = accessor.getFirstNativeHeader("Authorization");
+        if (StringUtils.hasText(header) && header.startsWith("Bearer ")) {
+            try {
+                Jwt jwt = jwtDecoder.decode(header.substring(7));
+                accessor.setUser(new JwtAuthenticationToken(jwt));
+            } catch (JwtException e) {
+                log.warn("Invalid token on STOMP CONNECT: {}", e.getMessage());
+            }
+        }
+        return message;
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.ohms.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.ohms.configuration.ChatRateLimitConfig;
+import com.example.ohms.utils.TokenBucket;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Giới hạn số frame SEND theo session và theo room (token bucket).
+ * Frame vượt giới hạn bị bỏ trước khi tới @MessageMapping nên không đụng tới DB.
+ * Typing tính vào bucket của session (1 socket không spam được room nào), nhưng không tính vào bucket room
+ * vì roomId lấy từ destination client gửi và typing đã được PresenceService gộp.
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class StompRateLimitInterceptor implements ChannelInterceptor {
+    private static final Pattern CHAT_DESTINATION = Pattern.compile("^/app/chat/(?:(delete|update|typing)/)?([^/]+)(?:/.*)?$");
+
+    ChatRateLimitConfig chatRateLimitConfig;
+    Map<String, TokenBucket> sessionBuckets = new ConcurrentHashMap<>();
+    Map<String, TokenBucket> roomBuckets = new ConcurrentHashMap<>();
+    Counter sessionThrottled;
+    Counter roomThrottled;
+
+    public StompRateLimitInterceptor(ChatRateLimitConfig chatRateLimitConfig, MeterRegistry meterRegistry) {
+        this.chatRateLimitConfig = chatRateLimitConfig;
+        this.sessionThrottled = Counter.builder("chat.stomp.frames.throttled")
+                .description("Inbound STOMP frames dropped by rate limit")
+                .tag("scope", "session")
+                .register(meterRegistry);
+        this.roomThrottled = Counter.builder("chat.stomp.frames.throttled")
+                .description("Inbound STOMP frames dropped by rate limit")
+                .tag("scope", "room")
+                .register(meterRegistry);
+        meterRegistry.gauge("chat.stomp.rate_limit.sessions", sessionBuckets, Map::size);
+        meterRegistry.gauge("chat.stomp.rate_limit.rooms", roomBuckets, Map::size);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(message);
+        StompCommand command = accessor.getCommand();
+        if (command == StompCommand.DISCONNECT) {
+            sessionBuckets.remove(accessor.getSessionId());
+            return message;
+        }
+        if (command != StompCommand.SEND || accessor.getDestination() == null) {
+            return message;
+        }
+        Matcher matcher = CHAT_DESTINATION.matcher(accessor.getDestination());
+        if (!matcher.matches()) {
+            return message;
+        }
+        String sessionId = accessor.getSessionId();
+        if (sessionId != null && !sessionBuckets.computeIfAbsent(sessionId, id -> new TokenBucket(
+                chatRateLimitConfig.getSessionCapacity(), chatRateLimitConfig.getSessionRefillPerSecond())).tryConsume()) {
+            sessionThrottled.increment();
+            log.debug("Throttled STOMP frame from session {} to {}", sessionId, accessor.getDestination());
+            return null;
+        }
+        if ("typing".equals(matcher.group(1))) {
+            return message;
+        }
+        String roomId = matcher.group(2);
+        if (!roomBuckets.computeIfAbsent(roomId, id -> new TokenBucket(
+                chatRateLimitConfig.getRoomCapacity(), chatRateLimitConfig.getRoomRefillPerSecond())).tryConsume()) {
+            roomThrottled.increment();
+            log.debug("Throttled STOMP frame to room {}", roomId);
+            return null;
+        }
+        return message;
+    }
+
+    // session đóng không gửi DISCONNECT (mất mạng, bị đóng vì chậm) thì bucket được dọn ở đây
+    @Scheduled(fixedDelay = 60000)
+    public void evictIdleBuckets() {
+        sessionBuckets.values().removeIf(TokenBucket::isIdle);
+        roomBuckets.values().removeIf(TokenBucket::isIdle);
+    }
+}
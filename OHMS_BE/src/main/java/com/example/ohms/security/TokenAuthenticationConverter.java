@@ -0,0 +1,55 @@
+package com.example.ohms.security;
+
+import java.util.Collection;
+
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+import org.springframework.stereotype.Component;
+
+import com.example.ohms.service.UserService;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Dựng Authentication từ Jwt đã verify bởi {@link JwtTokenService}. Principal luôn là Jwt, name là subject.
+ * Token có claim scope lấy quyền thẳng từ scope, không đụng DB. Token HS512 kiểu cũ không có scope
+ * thì lấy quyền từ {@link PrincipalCache} (chỉ query DB khi cache miss), user bị khóa thì từ chối.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TokenAuthenticationConverter implements Converter<Jwt, AbstractAuthenticationToken> {
+    private static final String SCOPE_CLAIM = "scope";
+
+    JwtGrantedAuthoritiesConverter scopeConverter = new JwtGrantedAuthoritiesConverter();
+    PrincipalCache principalCache;
+    UserService userService;
+
+    // UserService kéo theo nhiều bean, inject lazy để cấu hình security không phụ thuộc vòng
+    public TokenAuthenticationConverter(PrincipalCache principalCache, @Lazy UserService userService) {
+        this.principalCache = principalCache;
+        this.userService = userService;
+        scopeConverter.setAuthorityPrefix("");
+    }
+
+    @Override
+    public AbstractAuthenticationToken convert(Jwt jwt) {
+        Collection<? extends GrantedAuthority> authorities;
+        if (jwt.hasClaim(SCOPE_CLAIM)) {
+            authorities = scopeConverter.convert(jwt);
+        } else {
+            UserPrincipal principal = principalCache.get(jwt.getSubject(), userService::loadUserById);
+            if (!principal.isEnabled()) {
+                throw new DisabledException("User is disabled");
+            }
+            authorities = principal.getAuthorities();
+        }
+        return new JwtAuthenticationToken(jwt, authorities, jwt.getSubject());
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.ohms.security;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.ohms.configuration.AppConfig;
+import com.example.ohms.configuration.AuthTokenConfig;
+import com.example.ohms.entity.RevokedToken;
+import com.example.ohms.repository.RevokedTokenRepository;
+import com.example.ohms.utils.BloomFilter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Danh sách token đã thu hồi. Bảng revoked_token là nguồn chính, trong RAM giữ một Bloom filter các id
+ * để request bình thường (Bloom trả false) không phải query DB; chỉ khi Bloom báo có mới kiểm tra DB.
+ * Thu hồi từ instance khác được đọc thêm mỗi revocationSyncMs; mỗi giờ xóa dòng đã hết hạn và dựng lại filter.
+ */
+@Component
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class TokenRevocationService {
+    static final String USER_PREFIX = "user:";
+    // lùi lại một chút khi sync để không sót dòng commit trễ
+    private static final Duration SYNC_OVERLAP = Duration.ofSeconds(5);
+
+    RevokedTokenRepository revokedTokenRepository;
+    AuthTokenConfig config;
+    AppConfig appConfig;
+    Clock clock;
+    @NonFinal
+    volatile BloomFilter filter;
+    @NonFinal
+    volatile Instant lastSync;
+    Counter bloomMisses;
+    Counter falsePositives;
+    Counter revokedHits;
+
+    @Autowired
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository, AuthTokenConfig config,
+            AppConfig appConfig, MeterRegistry meterRegistry) {
+        this(revokedTokenRepository, config, appConfig, meterRegistry, Clock.systemUTC());
+    }
+
+    public TokenRevocationService(RevokedTokenRepository revokedTokenRepository, AuthTokenConfig config,
+            AppConfig appConfig, MeterRegistry meterRegistry, Clock clock) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.config = config;
+        this.appConfig = appConfig;
+        this.clock = clock;
+        this.filter = newFilter();
+        this.lastSync = clock.instant();
+        this.bloomMisses = meterRegistry.counter("security.revocation.checks", "result", "bloom_miss");
+        this.falsePositives = meterRegistry.counter("security.revocation.checks", "result", "false_positive");
+        this.revokedHits = meterRegistry.counter("security.revocation.checks", "result", "revoked");
+    }
+
+    /**
+     * Token có bị thu hồi không: theo jti, hoặc user đã bị thu hồi mọi phiên sau thời điểm token được phát hành.
+     */
+    public boolean isRevoked(String tokenId, String userId, Instant issuedAt) {
+        BloomFilter current = filter;
+        boolean tokenHit = tokenId != null && current.mightContain(tokenId);
+        boolean userHit = userId != null && current.mightContain(USER_PREFIX + userId);
+        if (!tokenHit && !userHit) {
+            bloomMisses.increment();
+            return false;
+        }
+
+        boolean revoked = tokenHit && revokedTokenRepository.existsById(tokenId);
+        if (!revoked && userHit) {
+            Optional<RevokedToken> all = revokedTokenRepository.findById(USER_PREFIX + userId);
+            // iat chỉ có độ chính xác giây, token phát hành cùng giây với lúc thu hồi cũng coi như bị thu hồi
+            revoked = all.isPresent() && (issuedAt == null || !issuedAt.isAfter(all.get().getRevokedAt()));
+        }
+        (revoked ? revokedHits : falsePositives).increment();
+        return revoked;
+    }
+
+    public void revoke(String tokenId, String userId, Instant expiresAt) {
+        Instant now = clock.instant();
+        revokedTokenRepository.save(RevokedToken.builder()
+                .id(tokenId)
+                .userId(userId)
+                .revokedAt(now)
+                .expiresAt(expiresAt != null ? expiresAt : now.plus(longestTokenLifetime()))
+                .build());
+        filter.add(tokenId);
+    }
+
+    /**
+     * Thu hồi mọi access token đang lưu hành của user (kể cả token HS512 kiểu cũ không có jti).
+     */
+    public void revokeAllSessions(String userId) {
+        Instant now = clock.instant();
+        revokedTokenRepository.save(RevokedToken.builder()
+                .id(USER_PREFIX + userId)
+                .userId(userId)
+                .revokedAt(now)
+                .expiresAt(now.plus(longestTokenLifetime()))
+                .build());
+        filter.add(USER_PREFIX + userId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "0 0 * * * *")
+    public void rebuild() {
+        Instant now = clock.instant();
+        int purged = revokedTokenRepository.deleteExpired(now);
+        List<String> ids = revokedTokenRepository.findActiveIds(now);
+        BloomFilter rebuilt = newFilter();
+        ids.forEach(rebuilt::add);
+        filter = rebuilt;
+        lastSync = now;
+        log.info("Token revocation filter rebuilt with {} ids ({} expired rows purged)", ids.size(), purged);
+    }
+
+    @Scheduled(fixedDelayString = "${app.auth.revocation-sync-ms:30000}")
+    public void sync() {
+        Instant now = clock.instant();
+        BloomFilter current = filter;
+        revokedTokenRepository.findIdsRevokedAfter(lastSync.minus(SYNC_OVERLAP)).forEach(current::add);
+        lastSync = now;
+    }
+
+    private BloomFilter newFilter() {
+        return new BloomFilter(config.getRevocationExpectedEntries(), config.getRevocationFalsePositiveRate());
+    }
+
+    // token HS512 kiểu cũ có thể sống lâu hơn access token mới
+    private Duration longestTokenLifetime() {
+        return Duration.ofMinutes(config.getAccessTokenMinutes())
+                .compareTo(Duration.ofMillis(appConfig.getTokenExpirationMsec())) >= 0
+                ? Duration.ofMinutes(config.getAccessTokenMinutes())
+                : Duration.ofMillis(appConfig.getTokenExpirationMsec());
+    }
+}
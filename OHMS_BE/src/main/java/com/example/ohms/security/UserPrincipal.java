@@ -12,18 +12,26 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
+// id, email, quyền và trạng thái không đổi sau khi tạo nên có thể cache và dùng chung giữa các request
 public class UserPrincipal implements OAuth2User, UserDetails {
-    private String id;
-    private String email;
-    private String password;
-    private Collection<? extends GrantedAuthority> authorities;
+    private final String id;
+    private final String email;
+    private final String password;
+    private final boolean enabled;
+    private final Collection<? extends GrantedAuthority> authorities;
     private Map<String, Object> attributes;
 
     public UserPrincipal(String id, String email, String password, Collection<? extends GrantedAuthority> authorities) {
+        this(id, email, password, true, authorities);
+    }
+
+    public UserPrincipal(String id, String email, String password, boolean enabled,
+            Collection<? extends GrantedAuthority> authorities) {
         this.id = id;
         this.email = email;
         this.password = password;
-        this.authorities = authorities;
+        this.enabled = enabled;
+        this.authorities = List.copyOf(authorities);
     }
 
     public static UserPrincipal create(User user) {
@@ -34,6 +42,18 @@ public class UserPrincipal implements OAuth2User, UserDetails {
                 user.getId(),
                 user.getEmail(),
                 user.getPassword(),
+                !Boolean.FALSE.equals(user.getEnabled()),
+                authorities
+        );
+    }
+
+    // quyền lấy từ AuthorityRegistry theo role của user
+    public static UserPrincipal create(User user, Collection<? extends GrantedAuthority> authorities) {
+        return new UserPrincipal(
+                user.getId(),
+                user.getEmail(),
+                user.getPassword(),
+                !Boolean.FALSE.equals(user.getEnabled()),
                 authorities
         );
     }
@@ -79,7 +99,7 @@ public class UserPrincipal implements OAuth2User, UserDetails {
 
     @Override
     public boolean isEnabled() {
-        return true;
+        return enabled;
     }
 
     @Override
@@ -0,0 +1,50 @@
+package com.example.ohms.security.oauth2;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.oauth2.client.oidc.authentication.OidcIdTokenDecoderFactory;
+import org.springframework.security.oauth2.client.oidc.authentication.OidcIdTokenValidator;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtDecoderFactory;
+import org.springframework.security.oauth2.jwt.JwtTimestampValidator;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.stereotype.Component;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decoder ID token cho đăng nhập OIDC (Spring tự dùng bean này thay cho {@link OidcIdTokenDecoderFactory}).
+ * Khác bản mặc định (JWKS chỉ giữ 5 phút): JWKS nằm trong cache tới khi gặp kid lạ hoặc tới lần làm mới
+ * định kỳ, nên đăng nhập gần như không phải gọi Google để lấy khóa.
+ */
+@Slf4j
+@Component
+public class CachingOidcIdTokenDecoderFactory implements JwtDecoderFactory<ClientRegistration> {
+    private final Map<String, JwtDecoder> decoders = new ConcurrentHashMap<>();
+    private final Map<String, ConcurrentMapCache> jwkSets = new ConcurrentHashMap<>();
+
+    @Override
+    public JwtDecoder createDecoder(ClientRegistration clientRegistration) {
+        return decoders.computeIfAbsent(clientRegistration.getRegistrationId(), id -> {
+            String jwkSetUri = clientRegistration.getProviderDetails().getJwkSetUri();
+            ConcurrentMapCache cache = jwkSets.computeIfAbsent(id, k -> new ConcurrentMapCache("jwks-" + k));
+            NimbusJwtDecoder decoder = NimbusJwtDecoder.withJwkSetUri(jwkSetUri).cache(cache).build();
+            decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+                    new JwtTimestampValidator(), new OidcIdTokenValidator(clientRegistration)));
+            decoder.setClaimSetConverter(OidcIdTokenDecoderFactory.createDefaultClaimTypeConverter());
+            return decoder;
+        });
+    }
+
+    // khóa bị Google thu hồi thì cũng không nằm lại trong cache quá lâu
+    @Scheduled(fixedDelayString = "#{${app.oauth2.jwks-refresh-minutes:720} * 60000}")
+    public void refreshJwkSets() {
+        jwkSets.values().forEach(ConcurrentMapCache::clear);
+        log.debug("Cleared cached JWK sets for {} registrations", jwkSets.size());
+    }
+}
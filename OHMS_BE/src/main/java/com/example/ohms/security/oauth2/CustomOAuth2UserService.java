@@ -1,7 +1,6 @@
 package com.example.ohms.security.oauth2;
 
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
 
 import org.springframework.security.authentication.InternalAuthenticationServiceException;
 import org.springframework.security.core.AuthenticationException;
@@ -10,32 +9,19 @@ import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
 import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
 import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.stereotype.Service;
-import org.springframework.util.StringUtils;
 
-import com.example.ohms.entity.Role;
-import com.example.ohms.entity.User;
-import com.example.ohms.enums.AuthProvider;
-import com.example.ohms.exception.AppException;
-import com.example.ohms.exception.ErrorCode;
-import com.example.ohms.exception.Oauthexception.OAuth2AuthenticationProcessingException;
-import com.example.ohms.repository.RoleRepository;
-import com.example.ohms.repository.UserRepository;
 import com.example.ohms.security.UserPrincipal;
 import com.example.ohms.security.oauth2.user.OAuth2UserInfo;
 import com.example.ohms.security.oauth2.user.OAuth2UserInfoFactory;
 
-import jakarta.transaction.Transactional;
 
-import java.util.Optional;
-import java.util.Set;
-@Slf4j
+// đăng nhập OAuth2 không có scope openid, có openid thì đi qua CustomOidcUserService
 @Service
 @RequiredArgsConstructor
-@Transactional
 public class CustomOAuth2UserService extends DefaultOAuth2UserService {
 
-    private final UserRepository userRepository;
-    private final RoleRepository roleRepository;
+    private final OAuth2UserProvisioner oAuth2UserProvisioner;
+
     @Override
     public OAuth2User loadUser(OAuth2UserRequest oAuth2UserRequest) throws OAuth2AuthenticationException {
         OAuth2User oAuth2User = super.loadUser(oAuth2UserRequest);
@@ -51,56 +37,10 @@ public class CustomOAuth2UserService extends DefaultOAuth2UserService {
     }
 
     private OAuth2User processOAuth2User(OAuth2UserRequest oAuth2UserRequest, OAuth2User oAuth2User) {
-    OAuth2UserInfo oAuth2UserInfo = OAuth2UserInfoFactory.getOAuth2UserInfo(
-        oAuth2UserRequest.getClientRegistration().getRegistrationId(), oAuth2User.getAttributes());
-    if (StringUtils.isEmpty(oAuth2UserInfo.getEmail())) {
-        throw new OAuth2AuthenticationProcessingException("Email not found from OAuth2 provider");
-    }
-
-    Optional<User> userOptional = userRepository.findByEmail(oAuth2UserInfo.getEmail());
-    User user;
-    if (userOptional.isPresent()) {
-        user = userOptional.get();
-        AuthProvider currentProvider = AuthProvider.valueOf(oAuth2UserRequest.getClientRegistration().getRegistrationId());
-        
-        // SỬA: Null check cho provider
-        if (user.getProvider() == null) {
-            // Nếu null, update thành provider hiện tại (cho phép login với OAuth lần đầu)
-            user.setProvider(currentProvider);
-            log.info("Updated null provider for user {} to {}", user.getEmail(), currentProvider);
-            user = userRepository.save(user);  // Save ngay để persist
-        } else if (!user.getProvider().equals(currentProvider)) {
-            // Chỉ throw nếu provider khác và không null
-            throw new OAuth2AuthenticationProcessingException("Looks like you're signed up with " +
-                    user.getProvider() + " account. Please use your " + user.getProvider() +
-                    " account to login.");
-        }
-        
-        user = updateExistingUser(user, oAuth2UserInfo);
-    } else {
-        user = registerNewUser(oAuth2UserRequest, oAuth2UserInfo);
-    }
-
-    return UserPrincipal.create(user, oAuth2User.getAttributes());
-}
-// lỗi đây
-    private User registerNewUser(OAuth2UserRequest oAuth2UserRequest, OAuth2UserInfo oAuth2UserInfo) {
-        User user = new User();
-        Role patientsRole = roleRepository.findByName("PATIENT").orElseThrow(()-> new AppException(ErrorCode.ROLE_NOT_FOUND));
-        user.setProvider(AuthProvider.valueOf(oAuth2UserRequest.getClientRegistration().getRegistrationId()));
-        user.setProviderId(oAuth2UserInfo.getId());
-        user.setUsername(oAuth2UserInfo.getName());
-        user.setEmail(oAuth2UserInfo.getEmail());
-        user.setImageUrl(oAuth2UserInfo.getImageUrl());
-        user.setPassword("123456789");
-        user.setRoles(Set.of(patientsRole));
-        return userRepository.save(user);
+        String registrationId = oAuth2UserRequest.getClientRegistration().getRegistrationId();
+        OAuth2UserInfo oAuth2UserInfo = OAuth2UserInfoFactory.getOAuth2UserInfo(registrationId, oAuth2User.getAttributes());
+        UserPrincipal userPrincipal = oAuth2UserProvisioner.provision(registrationId, oAuth2UserInfo);
+        userPrincipal.setAttributes(oAuth2User.getAttributes());
+        return userPrincipal;
     }
-
-    private User updateExistingUser(User existingUser, OAuth2UserInfo oAuth2UserInfo) {
-        existingUser.setUsername(oAuth2UserInfo.getName());
-        existingUser.setImageUrl(oAuth2UserInfo.getImageUrl());
-        return userRepository.save(existingUser);
-    }
-
 }
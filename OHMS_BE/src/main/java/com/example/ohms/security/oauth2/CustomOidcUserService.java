@@ -0,0 +1,50 @@
+package com.example.ohms.security.oauth2;
+
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
+import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserService;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserService;
+import org.springframework.security.oauth2.core.OAuth2AuthenticationException;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.stereotype.Service;
+
+import com.example.ohms.configuration.OAuth2LoginConfig;
+import com.example.ohms.security.OidcUserPrincipal;
+import com.example.ohms.security.UserPrincipal;
+import com.example.ohms.security.oauth2.user.OAuth2UserInfoFactory;
+
+/**
+ * Đăng nhập Google có scope openid đi qua đây thay vì {@link CustomOAuth2UserService}.
+ * ID token (đã verify chữ ký) có sẵn email, name, picture nên mặc định không gọi userinfo endpoint,
+ * bớt 1 round trip tới Google mỗi lần đăng nhập.
+ */
+@Service
+public class CustomOidcUserService implements OAuth2UserService<OidcUserRequest, OidcUser> {
+    private final OidcUserService delegate = new OidcUserService();
+    private final OAuth2UserProvisioner provisioner;
+
+    public CustomOidcUserService(OAuth2UserProvisioner provisioner, OAuth2LoginConfig oAuth2LoginConfig) {
+        this.provisioner = provisioner;
+        this.delegate.setRetrieveUserInfo(request -> oAuth2LoginConfig.isFetchUserInfo()
+                || request.getIdToken().getEmail() == null);
+    }
+
+    @Override
+    public OidcUser loadUser(OidcUserRequest userRequest) throws OAuth2AuthenticationException {
+        OidcUser oidcUser = delegate.loadUser(userRequest);
+        try {
+            String registrationId = userRequest.getClientRegistration().getRegistrationId();
+            UserPrincipal user = provisioner.provision(registrationId,
+                    OAuth2UserInfoFactory.getOAuth2UserInfo(registrationId, oidcUser.getAttributes()));
+            OidcUserPrincipal principal = new OidcUserPrincipal(user, oidcUser.getIdToken(), oidcUser.getUserInfo());
+            principal.setAttributes(oidcUser.getAttributes());
+            return principal;
+        } catch (AuthenticationException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            // Throwing an instance of AuthenticationException will trigger the OAuth2AuthenticationFailureHandler
+            throw new InternalAuthenticationServiceException(ex.getMessage(), ex.getCause());
+        }
+    }
+}
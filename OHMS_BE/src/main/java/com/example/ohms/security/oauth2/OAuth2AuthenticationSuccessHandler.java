@@ -4,109 +4,54 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
-import org.springframework.security.oauth2.core.user.OAuth2User;
 import org.springframework.security.web.authentication.SimpleUrlAuthenticationSuccessHandler;
 import org.springframework.stereotype.Component;
-import org.springframework.web.util.UriComponentsBuilder;
 
-import com.example.ohms.configuration.AppConfig;
-import com.example.ohms.entity.User;
-import com.example.ohms.enums.AuthProvider;
-import com.example.ohms.exception.Oauthexception.BadRequestException;
-import com.example.ohms.repository.UserRepository;
-import com.example.ohms.security.TokenProvider;
+import com.example.ohms.dto.response.AuthenticationResponse;
+import com.example.ohms.security.UserPrincipal;
 import com.example.ohms.service.AuthenticationService;
-import com.example.ohms.utils.CookieUtils;
 
 import jakarta.servlet.ServletException;
-import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
-import java.net.URI;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.Optional;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class OAuth2AuthenticationSuccessHandler extends SimpleUrlAuthenticationSuccessHandler {
 
-    private final TokenProvider tokenProvider;
-
-    private final AppConfig appConfig;
     private final AuthenticationService authenticationService;
     private final HttpCookieOAuth2AuthorizationRequestRepository httpCookieOAuth2AuthorizationRequestRepository;
-    private final UserRepository userRepository;
+    private final OAuth2LoginCodeStore oAuth2LoginCodeStore;
      @Override
     public void onAuthenticationSuccess(HttpServletRequest request, HttpServletResponse response,
                                         Authentication authentication) throws IOException, ServletException {
 
-        // Lấy thông tin user từ Google
-        OAuth2User oAuth2User = (OAuth2User) authentication.getPrincipal();
-        String email = oAuth2User.getAttribute("email");
-
-        log.info("OAuth2 login success for {}", email);
+        // user đã được tạo/cập nhật trong CustomOidcUserService/CustomOAuth2UserService, principal có sẵn id và quyền
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
 
-        // Tìm hoặc tạo user
-        User user = userRepository.findByEmail(email).orElseGet(() -> {
-            User newUser = new User();
-            newUser.setEmail(email);
-            newUser.setUsername(oAuth2User.getAttribute("name"));
-            newUser.setProvider(AuthProvider.GOOGLE);
-            return userRepository.save(newUser);
-        });
+        log.info("OAuth2 login success for {}", principal.getEmail());
 
         // Tạo JWT token
-        String token = authenticationService.generateTokenFromOAuth2(user);
+        AuthenticationResponse tokens = authenticationService.loginOAuth2(principal);
         httpCookieOAuth2AuthorizationRequestRepository.removeAuthorizationRequestCookies(request, response);
-        // Redirect về FE kèm token
+        // Redirect về FE kèm access token (ngắn hạn) và mã một lần; refresh token chỉ lấy được qua /auth/oauth2/exchange
         String redirectUrl = "http://oachs-bucket.s3-website-ap-southeast-2.amazonaws.com/oauth2/redirect?token=" +
-                URLEncoder.encode(token, StandardCharsets.UTF_8);
-
-        log.info("Redirecting to frontend: {}", redirectUrl);
-        
-        getRedirectStrategy().sendRedirect(request, response, redirectUrl);
-    }
-
-    protected String determineTargetUrl(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
-        Optional<String> redirectUri = CookieUtils.getCookie(request, httpCookieOAuth2AuthorizationRequestRepository.REDIRECT_URI_PARAM_COOKIE_NAME)
-                .map(Cookie::getValue);
+                URLEncoder.encode(tokens.getToken(), StandardCharsets.UTF_8) +
+                "&code=" + URLEncoder.encode(oAuth2LoginCodeStore.issue(tokens), StandardCharsets.UTF_8);
 
-        if(redirectUri.isPresent() && !isAuthorizedRedirectUri(redirectUri.get())) {
-            throw new BadRequestException("Sorry! We've got an Unauthorized Redirect URI and can't proceed with the authentication");
-        }
+        // không log URL vì có token
+        log.info("Redirecting OAuth2 user {} to frontend", principal.getId());
 
-        String targetUrl = redirectUri.orElse(getDefaultTargetUrl());
-
-        String token = tokenProvider.createToken(authentication);
-
-        return UriComponentsBuilder.fromUriString(targetUrl)
-                .queryParam("token", token)
-                .build().toUriString();
+        getRedirectStrategy().sendRedirect(request, response, redirectUrl);
     }
 
     protected void clearAuthenticationAttributes(HttpServletRequest request, HttpServletResponse response) {
         super.clearAuthenticationAttributes(request);
         httpCookieOAuth2AuthorizationRequestRepository.removeAuthorizationRequestCookies(request, response);
     }
-
-    private boolean isAuthorizedRedirectUri(String uri) {
-        URI clientRedirectUri = URI.create(uri);
-
-        return appConfig.getAuthorizedRedirectUris()
-                .stream()
-                .anyMatch(authorizedRedirectUri -> {
-                    // Only validate host and port. Let the clients use different paths if they want to
-                    URI authorizedURI = URI.create(authorizedRedirectUri);
-                    if(authorizedURI.getHost().equalsIgnoreCase(clientRedirectUri.getHost())
-                            && authorizedURI.getPort() == clientRedirectUri.getPort()) {
-                        return true;
-                    }
-                    return false;
-                });
-    }
 }
@@ -0,0 +1,73 @@
+package com.example.ohms.security.oauth2;
+
+import java.security.SecureRandom;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.example.ohms.dto.response.AuthenticationResponse;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Mã dùng một lần cho đăng nhập OAuth2: redirect về FE chỉ mang mã ngẫu nhiên thay vì refresh token,
+ * FE đổi mã lấy cặp token qua POST /auth/oauth2/exchange. Mã sống ngắn, đổi xong là mất nên lộ qua
+ * history/log/Referer cũng không dùng lại được.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OAuth2LoginCodeStore {
+    static final Duration TTL = Duration.ofSeconds(60);
+    private static final SecureRandom random = new SecureRandom();
+
+    Clock clock;
+    Map<String, Pending> pending = new ConcurrentHashMap<>();
+
+    private record Pending(AuthenticationResponse tokens, Instant expiresAt) {
+    }
+
+    @Autowired
+    public OAuth2LoginCodeStore() {
+        this(Clock.systemUTC());
+    }
+
+    public OAuth2LoginCodeStore(Clock clock) {
+        this.clock = clock;
+    }
+
+    public String issue(AuthenticationResponse tokens) {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String code = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        pending.put(code, new Pending(tokens, clock.instant().plus(TTL)));
+        return code;
+    }
+
+    // remove trước rồi mới kiểm tra hạn: hai request cùng mã thì chỉ một request nhận được token
+    public Optional<AuthenticationResponse> redeem(String code) {
+        if (code == null) {
+            return Optional.empty();
+        }
+        Pending entry = pending.remove(code);
+        if (entry == null || !entry.expiresAt().isAfter(clock.instant())) {
+            return Optional.empty();
+        }
+        return Optional.of(entry.tokens());
+    }
+
+    // dọn mã không ai đổi (người dùng đóng tab giữa chừng)
+    @Scheduled(fixedDelay = 60_000)
+    public void purgeExpired() {
+        Instant now = clock.instant();
+        pending.values().removeIf(entry -> !entry.expiresAt().isAfter(now));
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.ohms.security.oauth2;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.example.ohms.entity.Role;
+import com.example.ohms.entity.User;
+import com.example.ohms.enums.AuthProvider;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+import com.example.ohms.exception.Oauthexception.OAuth2AuthenticationProcessingException;
+import com.example.ohms.repository.RoleRepository;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.repository.projection.OAuth2LoginView;
+import com.example.ohms.security.AuthorityRegistry;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.security.UserPrincipal;
+import com.example.ohms.security.oauth2.user.OAuth2UserInfo;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Tạo hoặc cập nhật user khi đăng nhập bằng OAuth2 và dựng principal luôn từ kết quả đó.
+ * User cũ: 1 query lấy user + tên role, chỉ ghi khi tên/provider đổi; quyền lấy từ {@link AuthorityRegistry}
+ * nên success handler phát token từ principal, không cần load lại user.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class OAuth2UserProvisioner {
+    static final String DEFAULT_ROLE = "PATIENT";
+
+    UserRepository userRepository;
+    RoleRepository roleRepository;
+    AuthorityRegistry authorityRegistry;
+    ApplicationEventPublisher eventPublisher;
+
+    public UserPrincipal provision(String registrationId, OAuth2UserInfo userInfo) {
+        if (!StringUtils.hasText(userInfo.getEmail())) {
+            throw new OAuth2AuthenticationProcessingException("Email not found from OAuth2 provider");
+        }
+        AuthProvider provider = AuthProvider.valueOf(registrationId);
+        List<OAuth2LoginView> rows = userRepository.findOAuth2LoginRows(userInfo.getEmail());
+        if (rows.isEmpty()) {
+            return register(provider, userInfo);
+        }
+        // email chưa unique trong DB, trùng thì lấy user có id nhỏ nhất
+        OAuth2LoginView user = rows.get(0);
+        if (user.getProvider() != null && !sameProvider(user.getProvider(), provider)) {
+            throw new OAuth2AuthenticationProcessingException("Looks like you're signed up with " +
+                    user.getProvider() + " account. Please use your " + user.getProvider() +
+                    " account to login.");
+        }
+        if (Boolean.FALSE.equals(user.getEnabled())) {
+            throw new OAuth2AuthenticationProcessingException("Account is disabled");
+        }
+        List<String> roles = rows.stream()
+                .filter(row -> row.getId().equals(user.getId()))
+                .map(OAuth2LoginView::getRole)
+                .filter(Objects::nonNull)
+                .toList();
+        // giữ avatar user tự upload, ảnh Google chỉ dùng khi chưa có
+        String imageUrl = user.getImageUrl() != null ? user.getImageUrl() : userInfo.getImageUrl();
+        if (user.getProvider() == null || !Objects.equals(user.getUsername(), userInfo.getName())
+                || !Objects.equals(user.getImageUrl(), imageUrl)) {
+            AuthProvider stored = user.getProvider() == null ? provider : user.getProvider();
+            userRepository.updateOAuth2Profile(user.getId(), userInfo.getName(), imageUrl, stored);
+            eventPublisher.publishEvent(PrincipalChangedEvent.user(user.getId()));
+        }
+        if (roles.isEmpty()) {
+            roles = assignDefaultRole(user.getId());
+        }
+        return principal(user.getId(), userInfo.getEmail(), roles);
+    }
+
+    private UserPrincipal register(AuthProvider provider, OAuth2UserInfo userInfo) {
+        Role patientRole = defaultRole();
+        User user = new User();
+        user.setProvider(provider);
+        user.setProviderId(userInfo.getId());
+        user.setUsername(userInfo.getName());
+        user.setEmail(userInfo.getEmail());
+        user.setImageUrl(userInfo.getImageUrl());
+        user.setPassword("123456789");
+        user.setRoles(Set.of(patientRole));
+        User saved = userRepository.save(user);
+        eventPublisher.publishEvent(PrincipalChangedEvent.user(saved.getId()));
+        log.info("Registered OAuth2 user {} via {}", saved.getEmail(), provider);
+        return principal(saved.getId(), saved.getEmail(), List.of(patientRole.getName()));
+    }
+
+    // user tạo bởi luồng OAuth2 cũ không được gán role, gán PATIENT như khi đăng ký mới
+    private List<String> assignDefaultRole(String userId) {
+        User user = userRepository.findById(userId).orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        Role patientRole = defaultRole();
+        user.setRoles(Set.of(patientRole));
+        userRepository.save(user);
+        eventPublisher.publishEvent(PrincipalChangedEvent.user(userId));
+        return List.of(patientRole.getName());
+    }
+
+    private Role defaultRole() {
+        return roleRepository.findByName(DEFAULT_ROLE).orElseThrow(() -> new AppException(ErrorCode.ROLE_NOT_FOUND));
+    }
+
+    private UserPrincipal principal(String id, String email, List<String> roles) {
+        return new UserPrincipal(id, email, null, authorityRegistry.grantedAuthorities(roles));
+    }
+
+    // luồng cũ lưu GOOGLE, registration id là "google"
+    private static boolean sameProvider(AuthProvider stored, AuthProvider current) {
+        return stored.name().equalsIgnoreCase(current.name());
+    }
+}
@@ -1,42 +1,49 @@
 package com.example.ohms.service;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.text.ParseException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.Base64;
 import java.util.Date;
+import java.util.HexFormat;
 import java.util.Set;
 import java.util.StringJoiner;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.util.CollectionUtils;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import com.example.ohms.configuration.AuthTokenConfig;
 import com.example.ohms.exception.AppException;
 import com.example.ohms.dto.request.AuthenticationRequest;
 import com.example.ohms.dto.request.IntroSpectRequest;
 import com.example.ohms.dto.response.AuthenticationResponse;
 import com.example.ohms.dto.response.IntroSpectResponse;
+import com.example.ohms.entity.Role;
 import com.example.ohms.entity.User;
 import com.example.ohms.enums.AuthProvider;
 import com.example.ohms.exception.ErrorCode;
 import com.example.ohms.repository.UserRepository;
-import com.nimbusds.jose.JOSEException;
-import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.JWSHeader;
-import com.nimbusds.jose.JWSObject;
-import com.nimbusds.jose.JWSVerifier;
-import com.nimbusds.jose.Payload;
-import com.nimbusds.jose.crypto.MACSigner;
-import com.nimbusds.jose.crypto.MACVerifier;
+import com.example.ohms.security.AuthorityRegistry;
+import com.example.ohms.security.JwtTokenService;
+import com.example.ohms.security.LoginThrottle;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.security.TokenRevocationService;
+import com.example.ohms.security.UserPrincipal;
 import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
-import lombok.experimental.NonFinal;
 import lombok.extern.slf4j.Slf4j;
 
 @Service
@@ -46,92 +53,204 @@ import lombok.extern.slf4j.Slf4j;
 public class AuthenticationService {
     UserRepository userRepository;
     PasswordEncoder passwordEncoder;
-    @NonFinal // đánh dấu nonfinal để nó không inject vào lombok ở trên
-    protected static final String SIGNAL_KEY = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9";
+    JwtTokenService jwtTokenService;
+    AuthTokenConfig authTokenConfig;
+    TokenRevocationService tokenRevocationService;
+    ApplicationEventPublisher eventPublisher;
+    AuthorityRegistry authorityRegistry;
+    LoginThrottle loginThrottle;
     private static final String CHARACTERS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789!@#$%^&*()";
     private static final int DEFAULT_LENGTH = 12; // độ dài password
     private static final SecureRandom random = new SecureRandom();
 
     public AuthenticationResponse loginUser(AuthenticationRequest authenticationRequest) {
+        return loginUser(authenticationRequest, null);
+    }
+
+    public AuthenticationResponse loginUser(AuthenticationRequest authenticationRequest, String clientIp) {
         // log.error("aaaaaaaaaaaaaaaaaaaaaaa{}", authenticationRequest);
+        // chặn theo IP/email trước khi tốn CPU cho BCrypt
+        loginThrottle.acquire(clientIp, authenticationRequest.getEmail());
         User user = userRepository.findByEmailWithRoles(authenticationRequest.getEmail()) // Sửa: Dùng fetch with roles
                 .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
         boolean results = passwordEncoder.matches(authenticationRequest.getPassword(), user.getPassword());
         if (!results) {
+            loginThrottle.recordBadCredentials();
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        // đổi work factor thì hash lại bằng mật khẩu vừa nhập đúng, lưu cùng refresh token bên dưới
+        if (passwordEncoder.upgradeEncoding(user.getPassword())) {
+            user.setPassword(passwordEncoder.encode(authenticationRequest.getPassword()));
+        }
+
+        return issueTokens(user);
+    }
+
+    // access token ngắn hạn + refresh token mới (thay refresh token cũ nếu có)
+    private AuthenticationResponse issueTokens(User user) {
+        String token = generateToken(user);
+        String refreshToken = newRefreshToken(user.getId());
+        user.setRefreshToken(hashRefreshToken(refreshToken));
+        userRepository.save(user);
+        return tokenResponse(token, refreshToken);
+    }
+
+    private AuthenticationResponse tokenResponse(String token, String refreshToken) {
+        return AuthenticationResponse.builder()
+                .authenticated(true)
+                .token(token)
+                .refreshToken(refreshToken)
+                .expiresIn(authTokenConfig.getAccessTokenMinutes() * 60)
+                .build();
+    }
+
+    /**
+     * Đổi refresh token lấy cặp token mới, refresh token cũ hết hiệu lực ngay.
+     * Mỗi user chỉ có một refresh token hợp lệ (cột User.refreshToken lưu SHA-256 của nó); nộp lại một token
+     * do server ký nhưng đã bị thay là dấu hiệu token bị lộ nên thu hồi mọi phiên của user.
+     * noRollbackFor: việc thu hồi/xóa refresh token trước khi ném AppException phải được commit, không bị rollback.
+     */
+    @Transactional(noRollbackFor = AppException.class)
+    public AuthenticationResponse refresh(String refreshToken) {
+        // dạng userId.hạn(epoch giây).chuỗi ngẫu nhiên.chữ ký HMAC; hash phủ cả chuỗi nên không sửa được userId/hạn
+        String[] parts = refreshToken == null ? new String[0] : refreshToken.split("\\.", -1);
+        if (parts.length != 4) {
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        // sai chữ ký là token tự chế (vd "<victimId>.1.x"), chỉ từ chối, không được coi là dùng lại mà revoke phiên của người khác
+        String payload = parts[0] + "." + parts[1] + "." + parts[2];
+        if (!MessageDigest.isEqual(jwtTokenService.refreshTokenMac(payload).getBytes(StandardCharsets.US_ASCII),
+                parts[3].getBytes(StandardCharsets.US_ASCII))) {
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        User user = userRepository.findByIdWithRoles(parts[0])
+                .orElseThrow(() -> new AppException(ErrorCode.UNAUTHENTICATED));
+        if (user.getRefreshToken() == null) {
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        if (!MessageDigest.isEqual(hashRefreshToken(refreshToken).getBytes(StandardCharsets.US_ASCII),
+                user.getRefreshToken().getBytes(StandardCharsets.US_ASCII))) {
+            log.warn("Refresh token reuse detected for user {}, revoking all sessions", user.getId());
+            revokeAllSessions(user);
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        if (Instant.now().getEpochSecond() > parseExpiry(parts[1])) {
+            user.setRefreshToken(null);
+            userRepository.save(user);
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        if (Boolean.FALSE.equals(user.getEnabled())) {
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        // đọc-so-ghi phải nguyên tử: 2 request cùng token chạy song song thì chỉ request đổi được hash mới nhận token,
+        // request thua bị từ chối (không coi là dùng lại, vì token của nó không bị lộ mà chỉ đến trễ)
+        String token = generateToken(user);
+        String newRefreshToken = newRefreshToken(user.getId());
+        if (userRepository.rotateRefreshToken(user.getId(), user.getRefreshToken(), hashRefreshToken(newRefreshToken)) != 1) {
+            log.info("Concurrent refresh for user {} lost the rotation race", user.getId());
+            throw new AppException(ErrorCode.UNAUTHENTICATED);
+        }
+        return tokenResponse(token, newRefreshToken);
+    }
+
+    // đăng xuất: thu hồi access token đang dùng và bỏ refresh token
+    @Transactional
+    public void logout(Jwt jwt) {
+        if (jwt.getId() != null) {
+            tokenRevocationService.revoke(jwt.getId(), jwt.getSubject(), jwt.getExpiresAt());
+        }
+        userRepository.findById(jwt.getSubject()).ifPresent(user -> {
+            user.setRefreshToken(null);
+            userRepository.save(user);
+        });
+    }
+
+    @Transactional
+    public void revokeAllSessions(String userId) {
+        User user = userRepository.findById(userId)
+                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
+        revokeAllSessions(user);
+    }
+
+    private void revokeAllSessions(User user) {
+        tokenRevocationService.revokeAllSessions(user.getId());
+        user.setRefreshToken(null);
+        userRepository.save(user);
+        eventPublisher.publishEvent(PrincipalChangedEvent.user(user.getId()));
+    }
+
+    private String newRefreshToken(String userId) {
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+        long expiresAt = Instant.now().plus(authTokenConfig.getRefreshTokenDays(), ChronoUnit.DAYS).getEpochSecond();
+        String payload = userId + "." + expiresAt + "." + Base64.getUrlEncoder().withoutPadding().encodeToString(secret);
+        return payload + "." + jwtTokenService.refreshTokenMac(payload);
+    }
+
+    private static long parseExpiry(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
             throw new AppException(ErrorCode.UNAUTHENTICATED);
         }
+    }
 
-        var token = generateToken(user);
-        return AuthenticationResponse.builder().authenticated(results).token(token).build();
+    private static String hashRefreshToken(String refreshToken) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(refreshToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
     @Transactional(readOnly = true) // Thêm: Mở session để lazy load nếu cần, nhưng ưu tiên eager
     private String generateToken(User user) {
-        JWSHeader header = new JWSHeader(JWSAlgorithm.HS256);
+        return generateToken(user.getId(), buildScope(user));
+    }
+
+    private String generateToken(String userId, String scope) {
         // claim 
         JWTClaimsSet jwtClaimsSet = new JWTClaimsSet.Builder()
                 // đại diện cho user đăng nhập 
-                .subject(user.getId())
+                .subject(userId)
                 //.issuer(name) //  xác định token được issuer từ ai, thông thường nó sẽ lấy từ domain service
+                // jti để thu hồi được từng token
+                .jwtID(UUID.randomUUID().toString())
                 .issueTime(new Date())
                 .expirationTime(new Date(
-                        Instant.now().plus(30, ChronoUnit.DAYS).toEpochMilli()
+                        Instant.now().plus(authTokenConfig.getAccessTokenMinutes(), ChronoUnit.MINUTES).toEpochMilli()
                 ))
-                .claim("scope", buildScope(user))
-                .claim("userId", user.getId()) // mã hóa cái thông tin mà người đăng nhập nhét vào
+                .claim("scope", scope)
+                .claim("userId", userId) // mã hóa cái thông tin mà người đăng nhập nhét vào
 
                 .build();
-        Payload payload = new Payload(jwtClaimsSet.toJSONObject());
-
-        JWSObject jwsObject = new JWSObject(header, payload);
-        try {
-            jwsObject.sign(new MACSigner(SIGNAL_KEY.getBytes()));
-            return jwsObject.serialize();
-        } catch (JOSEException args) {
-            throw new AppException(ErrorCode.SIGNAL_KEY_NOT_VAILID);
-        }
-        // kí khóa giải mã mã hóa, này dùng khóa đối xứng
+        // kí khóa giải mã mã hóa, này dùng khóa đối xứng (signer dựng sẵn trong JwtTokenService)
+        return jwtTokenService.sign(jwtClaimsSet);
     }
 
-    public String generateTokenFromOAuth2(User user) {
-        // Reload user với roles để đảm bảo eager fetch (nếu caller pass user chưa load roles)
-        User loadedUser = userRepository.findByEmailWithRoles(user.getEmail())
-                .orElseThrow(() -> new AppException(ErrorCode.USER_NOT_FOUND));
-        return generateToken(loadedUser);
+    // principal từ OAuth2UserProvisioner đã có id và quyền (AuthorityRegistry), chỉ còn ghi refresh token
+    public AuthenticationResponse loginOAuth2(UserPrincipal principal) {
+        String scope = principal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.joining(" "));
+        String token = generateToken(principal.getId(), scope);
+        String refreshToken = newRefreshToken(principal.getId());
+        userRepository.updateRefreshToken(principal.getId(), hashRefreshToken(refreshToken));
+        return tokenResponse(token, refreshToken);
     }
 
     public String buildScope(User user) { // ép
-        StringJoiner stringJoiner = new StringJoiner(" ");
-        if (!CollectionUtils.isEmpty(user.getRoles()))
-            user.getRoles().forEach(role -> {
-                stringJoiner.add("ROLE_" + role.getName()); // Thêm prefix ROLE_ chuẩn Spring
-                if (!CollectionUtils.isEmpty(role.getPermissions()))
-                    role.getPermissions().forEach(permission ->
-                            stringJoiner.add(permission.getName())  // 
-                    );
-            });
-        return stringJoiner.toString();
+        // quyền của từng role lấy từ bảng dựng sẵn, không lazy load permission
+        if (CollectionUtils.isEmpty(user.getRoles()))
+            return "";
+        return authorityRegistry.buildScope(user.getRoles().stream().map(Role::getName).toList());
     }
 
-    public IntroSpectResponse introspect(IntroSpectRequest request)
-            throws JOSEException, ParseException {
-        String token = request.getToken();
-
-        // Tạo verifier với secret key
-        JWSVerifier verifier = new MACVerifier(SIGNAL_KEY.getBytes());
-
-        // Parse token (Signed JWT)
-        SignedJWT signedJWT = SignedJWT.parse(token);
-
-        // Lấy thời gian hết hạn từ payload
-        Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
-
-        // Xác thực chữ ký
-        boolean verified = signedJWT.verify(verifier);
-
-        // Trả về kết quả introspection
+    public IntroSpectResponse introspect(IntroSpectRequest request) {
+        // verify chữ ký + hạn bằng verifier dựng sẵn, cùng đường với mọi request có token
         return IntroSpectResponse.builder()
-                .valid(verified && expiryTime.after(new Date()))
+                .valid(jwtTokenService.isValid(request.getToken()))
                 .build();
     }
 
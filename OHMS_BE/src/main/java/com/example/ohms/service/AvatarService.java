@@ -0,0 +1,265 @@
+package com.example.ohms.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.ohms.configuration.AvatarConfig;
+import com.example.ohms.dto.response.AvatarResponse;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.service.storage.ImageStorage;
+import com.example.ohms.utils.ImageResizer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pipeline avatar: request chỉ spool file ra disk ({@link #accept}) rồi lưu user ngay, việc resize, bỏ EXIF,
+ * upload lên {@link ImageStorage} và ghi imageUrl chạy trên worker pool riêng ({@link #submit}).
+ * Xong thì gửi {@link AvatarResponse} tới /user/queue/avatar của user đó. Upload mới hơn của cùng user
+ * làm job cũ bị bỏ, ảnh cũ chỉ bị xóa khi ảnh mới đã sẵn sàng.
+ */
+@Service
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AvatarService {
+    public static final String DESTINATION = "/queue/avatar";
+    static final String READY = "READY";
+    static final String FAILED = "FAILED";
+
+    ImageStorage imageStorage;
+    UserRepository userRepository;
+    SimpMessagingTemplate simpMessagingTemplate;
+    ApplicationEventPublisher eventPublisher;
+    AvatarConfig avatarConfig;
+    MeterRegistry meterRegistry;
+    ThreadPoolExecutor executor;
+    Path spoolDirectory;
+    // userId -> số thứ tự của upload mới nhất, job có số nhỏ hơn là đã bị thay
+    Map<String, Long> latest = new ConcurrentHashMap<>();
+    AtomicLong sequence = new AtomicLong();
+
+    /** File avatar đã spool ra disk, chờ {@link #submit}. */
+    public record PendingAvatar(Path file) {
+    }
+
+    public AvatarService(ImageStorage imageStorage, UserRepository userRepository,
+            SimpMessagingTemplate simpMessagingTemplate, ApplicationEventPublisher eventPublisher,
+            AvatarConfig avatarConfig, MeterRegistry meterRegistry) {
+        this.imageStorage = imageStorage;
+        this.userRepository = userRepository;
+        this.simpMessagingTemplate = simpMessagingTemplate;
+        this.eventPublisher = eventPublisher;
+        this.avatarConfig = avatarConfig;
+        this.meterRegistry = meterRegistry;
+        this.spoolDirectory = Path.of(avatarConfig.getSpoolDirectory());
+        AtomicInteger counter = new AtomicInteger();
+        int workers = Math.max(1, avatarConfig.getWorkers());
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, avatarConfig.getQueueCapacity())), r -> {
+                    Thread thread = new Thread(r, "avatar-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        meterRegistry.gauge("user.avatar.queue", executor.getQueue(), q -> q.size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public String placeholderUrl() {
+        String placeholder = avatarConfig.getPlaceholderUrl();
+        return placeholder == null || placeholder.isBlank() ? null : placeholder;
+    }
+
+    /**
+     * Kiểm tra và spool file upload ra disk, không đọc cả file lên heap. Trả null nếu không có file.
+     * Multipart bị xóa khi request kết thúc nên phải gọi trên thread request.
+     */
+    public PendingAvatar accept(MultipartFile avatar) throws IOException {
+        if (avatar == null || avatar.isEmpty()) {
+            return null;
+        }
+        String contentType = avatar.getContentType();
+        if ((contentType != null && !contentType.startsWith("image/")) || avatar.getSize() > avatarConfig.getMaxUploadBytes()) {
+            throw new AppException(ErrorCode.FILE_ERROR);
+        }
+        Files.createDirectories(spoolDirectory);
+        Path file = Files.createTempFile(spoolDirectory, "avatar-", ".upload");
+        try {
+            avatar.transferTo(file);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return new PendingAvatar(file);
+    }
+
+    /**
+     * Đưa avatar vào hàng đợi sau khi transaction lưu user commit (rollback thì bỏ file).
+     * Ảnh user đang dùng lúc ảnh mới được ghi (đọc lại từ DB, không phải lúc submit) bị xóa khỏi storage.
+     */
+    public void submit(String userId, PendingAvatar pending) {
+        if (pending == null) {
+            return;
+        }
+        long seq = sequence.incrementAndGet();
+        latest.put(userId, seq);
+        Runnable enqueue = () -> enqueue(userId, seq, pending.file());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        enqueue.run();
+                    } else {
+                        latest.remove(userId, seq);
+                        deleteSpool(pending.file());
+                    }
+                }
+            });
+        } else {
+            enqueue.run();
+        }
+    }
+
+    // hàng đợi đầy thì từ chối chứ không chạy trên thread gọi (thread request, trong afterCompletion):
+    // user giữ ảnh placeholder/ảnh cũ và client nhận FAILED để upload lại
+    private void enqueue(String userId, long seq, Path file) {
+        try {
+            executor.execute(() -> process(userId, seq, file));
+        } catch (RejectedExecutionException e) {
+            log.warn("Avatar queue full, dropping upload for user {}", userId);
+            meterRegistry.counter("user.avatar.process.rejected").increment();
+            latest.remove(userId, seq);
+            deleteSpool(file);
+            notify(userId, FAILED, null);
+        }
+    }
+
+    void process(String userId, long seq, Path file) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "ready";
+        try {
+            if (!isLatest(userId, seq)) {
+                outcome = "superseded";
+                return;
+            }
+            byte[] jpeg;
+            try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+                jpeg = ImageResizer.toJpeg(input, avatarConfig.getMaxSize());
+            }
+            if (jpeg == null) {
+                throw new IOException("Unsupported image format");
+            }
+            String url = imageStorage.store(avatarConfig.getFolder(), jpeg);
+            // ảnh đang dùng đọc ngay trước khi ghi: job trước đã xong thì đây là ảnh của job đó, không bị mồ côi.
+            // Ghi có điều kiện (imageUrl vẫn là ảnh vừa đọc) ngoài map, job mới hơn ghi trước thì job này thua
+            String replacedUrl = userRepository.findImageUrlById(userId).orElse(null);
+            if (!isLatest(userId, seq) || userRepository.replaceImageUrl(userId, replacedUrl, url) != 1) {
+                outcome = "superseded";
+                deleteQuietly(url);
+                return;
+            }
+            if (replacedUrl != null && !replacedUrl.isBlank() && !replacedUrl.equals(placeholderUrl())) {
+                deleteQuietly(replacedUrl);
+            }
+            eventPublisher.publishEvent(PrincipalChangedEvent.user(userId));
+            notify(userId, READY, url);
+        } catch (Exception e) {
+            outcome = "failed";
+            log.warn("Avatar processing failed for user {}: {}", userId, e.getMessage());
+            notify(userId, FAILED, null);
+        } finally {
+            latest.remove(userId, seq);
+            deleteSpool(file);
+            sample.stop(meterRegistry.timer("user.avatar.process", "outcome", outcome));
+        }
+    }
+
+    // file sót lại khi server tắt lúc job còn trong hàng đợi
+    @Scheduled(fixedDelayString = "${app.avatar.sweep-interval-ms:600000}")
+    public void sweepSpool() {
+        if (!Files.isDirectory(spoolDirectory)) {
+            return;
+        }
+        FileTime cutoff = FileTime.from(Instant.now().minus(Duration.ofMinutes(avatarConfig.getStaleMinutes())));
+        try (Stream<Path> files = Files.list(spoolDirectory)) {
+            files.filter(file -> {
+                try {
+                    return Files.getLastModifiedTime(file).compareTo(cutoff) < 0;
+                } catch (IOException e) {
+                    return false;
+                }
+            }).forEach(this::deleteSpool);
+        } catch (IOException e) {
+            log.warn("Avatar spool sweep failed: {}", e.getMessage());
+        }
+    }
+
+    private boolean isLatest(String userId, long seq) {
+        Long current = latest.get(userId);
+        return current != null && current == seq;
+    }
+
+    private void notify(String userId, String status, String imageUrl) {
+        try {
+            simpMessagingTemplate.convertAndSendToUser(userId, DESTINATION, AvatarResponse.builder()
+                    .status(status)
+                    .userId(userId)
+                    .imageUrl(imageUrl)
+                    .build());
+        } catch (RuntimeException e) {
+            // user chưa có session STOMP (vd vừa đăng ký) thì thấy avatar ở lần tải profile kế tiếp
+            log.debug("Avatar notification to {} dropped: {}", userId, e.getMessage());
+        }
+    }
+
+    private void deleteQuietly(String url) {
+        try {
+            imageStorage.delete(url);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to delete avatar {}: {}", url, e.getMessage());
+        }
+    }
+
+    private void deleteSpool(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete avatar spool file {}: {}", file, e.getMessage());
+        }
+    }
+}
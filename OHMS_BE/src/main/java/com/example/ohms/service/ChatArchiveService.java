@@ -0,0 +1,317 @@
+package com.example.ohms.service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.ohms.configuration.ChatArchiveConfig;
+import com.example.ohms.entity.Conversation;
+import com.example.ohms.entity.User;
+import com.example.ohms.repository.ConversationRepository;
+import com.example.ohms.repository.UserRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Cold store cho tin nhắn cũ: message quá {@code chat.archive.max-age-days} được ghi ra segment gzip NDJSON
+ * (mỗi room một thư mục, mỗi batch một file) rồi xóa khỏi DB bằng bulk delete.
+ * History API đọc segment và gộp với message còn trong DB nên client không thấy khác biệt.
+ * Segment không đổi sau khi ghi, nên bản đã decode được giữ trên RAM (LRU theo tổng số message)
+ * và chỉ decode lại khi danh sách segment của room thay đổi.
+ */
+@Service
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ChatArchiveService {
+    private static final String SEGMENT_SUFFIX = ".ndjson.gz";
+    private static final ZoneId ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    ConversationRepository conversationRepository;
+    UserRepository userRepository;
+    ChatArchiveConfig chatArchiveConfig;
+    ObjectMapper objectMapper;
+    TransactionTemplate transactionTemplate;
+    Path root;
+    // roomId -> segment đã decode, access-order để evict theo LRU, mọi truy cập đều trong synchronized(decoded)
+    LinkedHashMap<String, RoomArchive> decoded = new LinkedHashMap<>(16, 0.75f, true);
+    @NonFinal
+    int decodedMessages;
+
+    public ChatArchiveService(ConversationRepository conversationRepository, UserRepository userRepository,
+            ChatArchiveConfig chatArchiveConfig, ObjectMapper objectMapper, TransactionTemplate transactionTemplate) {
+        this.conversationRepository = conversationRepository;
+        this.userRepository = userRepository;
+        this.chatArchiveConfig = chatArchiveConfig;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.root = Path.of(chatArchiveConfig.getDirectory()).toAbsolutePath().normalize();
+    }
+
+    // một dòng trong segment, chỉ giữ id user, khi đọc lại mới resolve sang entity
+    public record ArchivedMessage(String id, String roomId, String userId, String message,
+            List<String> imageUrls, LocalDateTime createdAt) {
+    }
+
+    // nhận diện segment theo tên + mtime + size, segment ghi lại (crash rồi archive lại) sẽ khác key
+    private record SegmentKey(String name, FileTime modified, long size) {
+    }
+
+    private record RoomArchive(List<SegmentKey> segments, List<ArchivedMessage> rows) {
+    }
+
+    @Scheduled(cron = "${chat.archive.cron:0 30 3 * * *}", zone = "Asia/Ho_Chi_Minh")
+    public void scheduledArchive() {
+        if (!chatArchiveConfig.isEnabled()) {
+            return;
+        }
+        LocalDateTime cutoff = LocalDateTime.now(ZONE).minusDays(chatArchiveConfig.getMaxAgeDays());
+        int archived = archiveBefore(cutoff);
+        if (archived > 0) {
+            log.info("Archived {} chat messages older than {}", archived, cutoff);
+        }
+    }
+
+    // chuyển toàn bộ message cũ hơn cutoff xuống cold store, trả về số message đã chuyển
+    public int archiveBefore(LocalDateTime cutoff) {
+        int total = 0;
+        for (String roomId : conversationRepository.findRoomIdsWithMessagesBefore(cutoff)) {
+            try {
+                total += archiveRoom(roomId, cutoff);
+            } catch (RuntimeException e) {
+                // room lỗi thì bỏ qua, lần chạy sau thử lại
+                log.warn("Archive room {} failed: {}", roomId, e.getMessage());
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Mỗi vòng lấy batch cũ nhất, ghi segment rồi mới xóa trong cùng transaction.
+     * Nếu crash giữa chừng thì message có thể nằm ở cả segment và DB, lúc đọc sẽ dedupe theo id.
+     */
+    int archiveRoom(String roomId, LocalDateTime cutoff) {
+        int total = 0;
+        while (true) {
+            Integer moved = transactionTemplate.execute(status -> archiveBatch(roomId, cutoff));
+            if (moved == null || moved == 0) {
+                return total;
+            }
+            total += moved;
+        }
+    }
+
+    private int archiveBatch(String roomId, LocalDateTime cutoff) {
+        List<Conversation> batch = conversationRepository.findByRoomChatIdCreatedBefore(
+            roomId, cutoff, PageRequest.of(0, chatArchiveConfig.getBatchSize()));
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<String> ids = batch.stream().map(Conversation::getId).toList();
+        Map<String, List<String>> images = new HashMap<>();
+        for (Object[] row : conversationRepository.findImageUrlsByConversationIds(ids)) {
+            images.computeIfAbsent((String) row[0], k -> new ArrayList<>()).add((String) row[1]);
+        }
+        List<ArchivedMessage> rows = batch.stream()
+            .map(c -> new ArchivedMessage(c.getId(), roomId, c.getUser() == null ? null : c.getUser().getId(),
+                c.getMessage(), images.get(c.getId()), c.getCreatedAt()))
+            .toList();
+        writeSegment(roomId, rows);
+        conversationRepository.deleteImageUrlsByConversationIds(ids);
+        conversationRepository.deleteByIdIn(ids);
+        return batch.size();
+    }
+
+    private void writeSegment(String roomId, List<ArchivedMessage> rows) {
+        Path dir = roomDirectory(roomId);
+        ArchivedMessage first = rows.get(0);
+        String name = first.createdAt().toEpochSecond(ZoneOffset.UTC) + "-" + first.id() + SEGMENT_SUFFIX;
+        Path target = dir.resolve(name);
+        Path tmp = dir.resolve(name + ".tmp");
+        try {
+            Files.createDirectories(dir);
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new GZIPOutputStream(Files.newOutputStream(tmp)), StandardCharsets.UTF_8))) {
+                for (ArchivedMessage row : rows) {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.newLine();
+                }
+            }
+            // file chỉ xuất hiện khi đã ghi xong, reader không bao giờ thấy segment dở dang
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // đọc toàn bộ segment của room, trả về entity tạm (không managed) đã gắn user để map như message thường
+    public List<Conversation> readRoom(String roomId) {
+        Path dir = roomDirectory(roomId);
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        List<ArchivedMessage> rows = archivedRows(roomId, dir);
+        if (rows.isEmpty()) {
+            return List.of();
+        }
+        List<String> userIds = rows.stream().map(ArchivedMessage::userId).filter(Objects::nonNull).distinct().toList();
+        Map<String, User> users = userRepository.findAllById(userIds).stream()
+            .collect(Collectors.toMap(User::getId, Function.identity()));
+        return rows.stream()
+            .map(row -> {
+                Conversation conversation = new Conversation();
+                conversation.setId(row.id());
+                conversation.setMessage(row.message());
+                conversation.setUser(users.get(row.userId()));
+                conversation.setImageUrls(row.imageUrls());
+                conversation.setCreatedAt(row.createdAt());
+                return conversation;
+            })
+            .toList();
+    }
+
+    // chỉ list thư mục mỗi lần gọi, decode gzip khi room có segment mới hoặc chưa có trong cache
+    private List<ArchivedMessage> archivedRows(String roomId, Path dir) {
+        List<Path> files;
+        List<SegmentKey> segments = new ArrayList<>();
+        try (Stream<Path> listing = Files.list(dir)) {
+            files = listing.filter(f -> f.getFileName().toString().endsWith(SEGMENT_SUFFIX)).sorted().toList();
+            for (Path file : files) {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                segments.add(new SegmentKey(file.getFileName().toString(), attributes.lastModifiedTime(), attributes.size()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        synchronized (decoded) {
+            RoomArchive cached = decoded.get(roomId);
+            if (cached != null && cached.segments().equals(segments)) {
+                return cached.rows();
+            }
+        }
+        Map<String, ArchivedMessage> rows = new LinkedHashMap<>();
+        try {
+            for (Path file : files) {
+                readSegment(file).forEach(row -> rows.put(row.id(), row));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        List<ArchivedMessage> sorted = rows.values().stream()
+            .sorted(Comparator.comparing(ArchivedMessage::createdAt, Comparator.nullsFirst(Comparator.naturalOrder())))
+            .toList();
+        cache(roomId, new RoomArchive(List.copyOf(segments), sorted));
+        return sorted;
+    }
+
+    private void cache(String roomId, RoomArchive archive) {
+        int max = chatArchiveConfig.getCacheMaxMessages();
+        if (archive.rows().size() > max) {
+            return;
+        }
+        synchronized (decoded) {
+            RoomArchive previous = decoded.put(roomId, archive);
+            decodedMessages += archive.rows().size() - (previous == null ? 0 : previous.rows().size());
+            var eldest = decoded.entrySet().iterator();
+            while (decodedMessages > max && eldest.hasNext()) {
+                decodedMessages -= eldest.next().getValue().rows().size();
+                eldest.remove();
+            }
+        }
+    }
+
+    private void evict(String roomId) {
+        synchronized (decoded) {
+            RoomArchive removed = decoded.remove(roomId);
+            if (removed != null) {
+                decodedMessages -= removed.rows().size();
+            }
+        }
+    }
+
+    private List<ArchivedMessage> readSegment(Path file) throws IOException {
+        List<ArchivedMessage> rows = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    rows.add(objectMapper.readValue(line, ArchivedMessage.class));
+                }
+            }
+        }
+        return rows;
+    }
+
+    // xóa room thì xóa luôn cold store của room đó, đợi transaction commit để rollback không mất segment
+    public void deleteRoom(String roomId) {
+        Path dir = roomDirectory(roomId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    deleteDirectory(roomId, dir);
+                }
+            });
+        } else {
+            deleteDirectory(roomId, dir);
+        }
+    }
+
+    private void deleteDirectory(String roomId, Path dir) {
+        evict(roomId);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException e) {
+            log.warn("Could not delete archive of room {}: {}", roomId, e.getMessage());
+        }
+    }
+
+    private Path roomDirectory(String roomId) {
+        Path dir = root.resolve(roomId).normalize();
+        if (!dir.getParent().equals(root)) {
+            throw new IllegalArgumentException("Invalid room id: " + roomId);
+        }
+        return dir;
+    }
+}
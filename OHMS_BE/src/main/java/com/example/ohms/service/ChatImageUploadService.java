@@ -0,0 +1,126 @@
+package com.example.ohms.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import com.example.ohms.configuration.ChatUploadConfig;
+import com.example.ohms.dto.response.ChatImageResponse;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Upload ảnh chat song song trên virtual thread.
+ * Mỗi ảnh đi qua ChatMediaService (dedupe + thumbnail).
+ * Mỗi request chỉ chạy tối đa maxConcurrency upload cùng lúc, và mỗi upload chỉ được đọc
+ * maxInMemoryBytes / maxConcurrency byte lên heap, file lớn hơn sẽ spool ra disk rồi upload từ file.
+ */
+@Service
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class ChatImageUploadService {
+    ChatMediaService chatMediaService;
+    ChatUploadConfig chatUploadConfig;
+
+    public List<ChatImageResponse> upload(List<MultipartFile> files) {
+        List<MultipartFile> images = files == null ? List.of()
+                : files.stream().filter(file -> file != null && !file.isEmpty()).toList();
+        checkCount(images.size());
+        long inMemoryLimit = chatUploadConfig.getMaxInMemoryBytes() / concurrency();
+        List<Callable<ChatImageResponse>> tasks = new ArrayList<>(images.size());
+        for (MultipartFile image : images) {
+            tasks.add(() -> store(image, inMemoryLimit));
+        }
+        return runAll(tasks);
+    }
+
+    // cho endpoint base64 cũ, bytes đã nằm sẵn trên heap nên chỉ song song hoá phần upload
+    public List<ChatImageResponse> uploadBytes(List<byte[]> images) {
+        if (images == null) {
+            return List.of();
+        }
+        checkCount(images.size());
+        List<Callable<ChatImageResponse>> tasks = new ArrayList<>(images.size());
+        for (byte[] image : images) {
+            tasks.add(() -> chatMediaService.store(image));
+        }
+        return runAll(tasks);
+    }
+
+    private ChatImageResponse store(MultipartFile file, long inMemoryLimit) throws IOException {
+        if (file.getSize() <= inMemoryLimit) {
+            return chatMediaService.store(file.getBytes());
+        }
+        Path spooled = Files.createTempFile("chat-upload-", ".tmp");
+        try {
+            file.transferTo(spooled);
+            return chatMediaService.store(spooled);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    // giữ nguyên thứ tự url theo thứ tự file gửi lên
+    private <T> List<T> runAll(List<Callable<T>> tasks) {
+        if (tasks.isEmpty()) {
+            return List.of();
+        }
+        Semaphore permits = new Semaphore(concurrency());
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<T>> futures = new ArrayList<>(tasks.size());
+            for (Callable<T> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return task.call();
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<T> results = new ArrayList<>(futures.size());
+            try {
+                for (Future<T> future : futures) {
+                    results.add(future.get());
+                }
+            } catch (ExecutionException e) {
+                executor.shutdownNow();
+                log.error("Chat image upload failed: {}", e.getCause().getMessage(), e.getCause());
+                throw new AppException(ErrorCode.FILE_ERROR);
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                throw new AppException(ErrorCode.FILE_ERROR);
+            }
+            log.info("Uploaded {} chat images", results.size());
+            return results;
+        }
+    }
+
+    private void checkCount(int count) {
+        if (count > chatUploadConfig.getMaxFiles()) {
+            throw new AppException(ErrorCode.UPLOAD_LIMIT_EXCEEDED);
+        }
+    }
+
+    private int concurrency() {
+        return Math.max(1, chatUploadConfig.getMaxConcurrency());
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.ohms.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import com.example.ohms.configuration.ChatUploadConfig;
+import com.example.ohms.dto.response.ChatImageResponse;
+import com.example.ohms.entity.MediaAsset;
+import com.example.ohms.repository.MediaAssetRepository;
+import com.example.ohms.service.storage.ImageStorage;
+import com.example.ohms.utils.ImageResizer;
+
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pipeline ảnh chat: hash sha-256 để dedupe theo nội dung, upload bản gốc,
+ * và tạo thumbnail bằng ImageIO trên worker pool riêng.
+ */
+@Service
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ChatMediaService {
+    ImageStorage imageStorage;
+    MediaAssetRepository mediaAssetRepository;
+    ChatUploadConfig chatUploadConfig;
+    ExecutorService thumbnailExecutor;
+    // upload đang chạy theo hash, 2 request gửi cùng 1 file cùng lúc chỉ upload 1 lần
+    Map<String, CompletableFuture<MediaAsset>> inFlight = new ConcurrentHashMap<>();
+
+    public ChatMediaService(ImageStorage imageStorage, MediaAssetRepository mediaAssetRepository,
+            ChatUploadConfig chatUploadConfig) {
+        this.imageStorage = imageStorage;
+        this.mediaAssetRepository = mediaAssetRepository;
+        this.chatUploadConfig = chatUploadConfig;
+        AtomicInteger counter = new AtomicInteger();
+        this.thumbnailExecutor = Executors.newFixedThreadPool(Math.max(1, chatUploadConfig.getThumbnailWorkers()), r -> {
+            Thread thread = new Thread(r, "chat-thumbnail-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        thumbnailExecutor.shutdownNow();
+    }
+
+    public ChatImageResponse store(byte[] content) throws IOException {
+        if (content == null || content.length == 0) {
+            throw new IllegalArgumentException("Image bytes is null or empty");
+        }
+        return store(sha256(new ByteArrayInputStream(content)), content.length,
+                () -> imageStorage.store(chatUploadConfig.getFolder(), content),
+                () -> ImageIO.createImageInputStream(new ByteArrayInputStream(content)));
+    }
+
+    // file đã spool ra disk: hash và decode đều đọc stream, không load cả file lên heap
+    public ChatImageResponse store(Path file) throws IOException {
+        String hash;
+        try (InputStream in = Files.newInputStream(file)) {
+            hash = sha256(in);
+        }
+        return store(hash, Files.size(file),
+                () -> imageStorage.store(chatUploadConfig.getFolder(), file),
+                () -> ImageIO.createImageInputStream(file.toFile()));
+    }
+
+    // url gốc -> url thumbnail, 1 query cho cả danh sách
+    public Map<String, String> thumbnailsFor(Collection<String> originalUrls) {
+        if (originalUrls == null || originalUrls.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> thumbnails = new HashMap<>();
+        for (MediaAsset asset : mediaAssetRepository.findByOriginalUrlIn(originalUrls)) {
+            if (asset.getThumbnailUrl() != null) {
+                thumbnails.put(asset.getOriginalUrl(), asset.getThumbnailUrl());
+            }
+        }
+        return thumbnails;
+    }
+
+    public static List<String> thumbnailUrls(List<String> imageUrls, Map<String, String> thumbnails) {
+        if (imageUrls == null) {
+            return null;
+        }
+        return imageUrls.stream().map(url -> thumbnails.getOrDefault(url, url)).toList();
+    }
+
+    private ChatImageResponse store(String hash, long contentLength, Upload original, ImageSource source)
+            throws IOException {
+        MediaAsset known = mediaAssetRepository.findById(hash).orElse(null);
+        if (known != null) {
+            log.info("Reusing stored image {} for identical upload", known.getOriginalUrl());
+            return toResponse(known);
+        }
+        CompletableFuture<MediaAsset> mine = new CompletableFuture<>();
+        CompletableFuture<MediaAsset> running = inFlight.putIfAbsent(hash, mine);
+        if (running != null) {
+            return toResponse(awaitUpload(running));
+        }
+        Future<String> thumbnail = null;
+        try {
+            thumbnail = thumbnailExecutor.submit(() -> {
+                byte[] bytes = thumbnail(source);
+                return bytes == null ? null : imageStorage.store(chatUploadConfig.getThumbnailFolder(), bytes);
+            });
+            String originalUrl = original.upload();
+            MediaAsset asset = insertOrReuse(MediaAsset.builder()
+                    .id(hash)
+                    .originalUrl(originalUrl)
+                    .thumbnailUrl(awaitThumbnail(thumbnail))
+                    .contentLength(contentLength)
+                    .build());
+            mine.complete(asset);
+            return toResponse(asset);
+        } catch (IOException | RuntimeException e) {
+            if (thumbnail != null) {
+                thumbnail.cancel(true);
+            }
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(hash);
+        }
+    }
+
+    /**
+     * Insert index cho hash, không merge. Một request khác (hoặc node khác) có thể đã lưu cùng nội dung
+     * giữa lúc findById trả rỗng và lúc insert; khi đó dùng lại row đã có và xóa object vừa upload thừa.
+     */
+    private MediaAsset insertOrReuse(MediaAsset asset) {
+        try {
+            return mediaAssetRepository.saveAndFlush(asset);
+        } catch (DataIntegrityViolationException e) {
+            MediaAsset existing = mediaAssetRepository.findById(asset.getId()).orElseThrow(() -> e);
+            log.info("Image {} was stored concurrently, reusing {}", asset.getId(), existing.getOriginalUrl());
+            deleteQuietly(asset.getOriginalUrl());
+            deleteQuietly(asset.getThumbnailUrl());
+            return existing;
+        }
+    }
+
+    private void deleteQuietly(String url) {
+        if (url == null) {
+            return;
+        }
+        try {
+            imageStorage.delete(url);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to delete duplicate image {}: {}", url, e.getMessage());
+        }
+    }
+
+    // lỗi tạo thumbnail không làm hỏng upload, client sẽ dùng ảnh gốc
+    private String awaitThumbnail(Future<String> thumbnail) {
+        try {
+            return thumbnail.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            log.warn("Thumbnail generation failed: {}", e.getCause().getMessage());
+            return null;
+        }
+    }
+
+    private MediaAsset awaitUpload(CompletableFuture<MediaAsset> running) throws IOException {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw e;
+        }
+    }
+
+    private byte[] thumbnail(ImageSource source) throws IOException {
+        try (ImageInputStream input = source.open()) {
+            return ImageResizer.toJpeg(input, chatUploadConfig.getThumbnailMaxSize());
+        }
+    }
+
+    private ChatImageResponse toResponse(MediaAsset asset) {
+        return ChatImageResponse.builder()
+                .url(asset.getOriginalUrl())
+                .thumbnailUrl(asset.getThumbnailUrl() != null ? asset.getThumbnailUrl() : asset.getOriginalUrl())
+                .build();
+    }
+
+    private static String sha256(InputStream in) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Upload {
+        String upload() throws IOException;
+    }
+
+    @FunctionalInterface
+    private interface ImageSource {
+        ImageInputStream open() throws IOException;
+    }
+}
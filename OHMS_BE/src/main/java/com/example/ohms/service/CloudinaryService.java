@@ -60,13 +60,17 @@ public List<String> uploadMulti(List<byte[]> imageBytesList) throws IOException
 
 // Và method uploadFromBytes (update để bỏ fileName nếu không cần)
 public String uploadFromBytes(byte[] imageBytes) throws IOException {  // Bỏ param fileName
+    return uploadFromBytes(imageBytes, "chat_images");  // Folder mày đã set
+}
+
+public String uploadFromBytes(byte[] imageBytes, String folder) throws IOException {
     if (imageBytes == null || imageBytes.length == 0) {
         throw new IllegalArgumentException("Image bytes is null or empty");
     }
     log.info("Uploading image bytes to Cloudinary: size={}", imageBytes.length);
     Map<String, Object> params = ObjectUtils.asMap(
         "resource_type", "auto",
-        "folder", "chat_images"  // Folder mày đã set
+        "folder", folder
     );
     // Không set public_id, Cloudinary tự generate
     Map<String, Object> uploadResult = cloudinary.uploader().upload(imageBytes, params);
@@ -74,4 +78,20 @@ public String uploadFromBytes(byte[] imageBytes) throws IOException {  // Bỏ p
     log.info("Uploaded image URL: {}", secureUrl);
     return secureUrl;
 }
+
+// upload từ file đã spool ra disk, SDK stream file lên chứ không load vào heap
+public String uploadFromFile(java.io.File file, String folder) throws IOException {
+    if (file == null || !file.exists() || file.length() == 0) {
+        throw new IllegalArgumentException("File is null or empty");
+    }
+    log.info("Uploading image file to Cloudinary: size={}", file.length());
+    Map<String, Object> params = ObjectUtils.asMap(
+        "resource_type", "auto",
+        "folder", folder
+    );
+    Map<String, Object> uploadResult = cloudinary.uploader().upload(file, params);
+    String secureUrl = uploadResult.get("secure_url").toString();
+    log.info("Uploaded image URL: {}", secureUrl);
+    return secureUrl;
+}
 }
@@ -0,0 +1,156 @@
+package com.example.ohms.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.ohms.dto.response.DoctorSummary;
+import com.example.ohms.entity.User;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.security.PrincipalChangedEvent;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Danh bạ bác sĩ trong RAM: nạp một lần bằng query theo role DOCTOR, sau đó chỉ load lại đúng user vừa đổi
+ * khi có {@link PrincipalChangedEvent} (đổi role/permission thì nạp lại toàn bộ). Danh sách, tra theo chuyên khoa
+ * và context AI đọc từ bảng {@code EnumMap<MedicalSpecialty, List<DoctorSummary>>} dựng sẵn, không query DB.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class DoctorDirectoryService {
+    static final String DOCTOR_ROLE = "DOCTOR";
+    private static final Comparator<DoctorSummary> BY_NAME = Comparator
+            .comparing(DoctorSummary::getUsername, Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+            .thenComparing(DoctorSummary::getId);
+
+    UserRepository userRepository;
+    Map<String, DoctorSummary> doctorsById = new ConcurrentHashMap<>();
+    // tăng mỗi lần danh bạ đổi, AiContextSnapshotService so version để biết snapshot đã cũ
+    AtomicLong version = new AtomicLong();
+    @NonFinal
+    volatile Index index;
+
+    private record Index(List<DoctorSummary> all, Map<MedicalSpecialty, List<DoctorSummary>> bySpecialty) {
+    }
+
+    public List<DoctorSummary> getDoctors() {
+        return index().all();
+    }
+
+    public List<DoctorSummary> getDoctors(MedicalSpecialty specialty) {
+        return index().bySpecialty().getOrDefault(specialty, List.of());
+    }
+
+    public Map<MedicalSpecialty, List<DoctorSummary>> getDoctorsBySpecialty() {
+        return index().bySpecialty();
+    }
+
+    public Optional<DoctorSummary> findDoctor(String id) {
+        index();
+        return Optional.ofNullable(doctorsById.get(id));
+    }
+
+    // nạp trước khi đọc, nếu không lần nạp đầu sẽ làm version nhảy ngay sau khi người gọi đã đọc
+    public long version() {
+        index();
+        return version.get();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrincipalChanged(PrincipalChangedEvent event) {
+        if (index == null) {
+            return;
+        }
+        if (event.userId() == null) {
+            reload();
+        } else {
+            refreshDoctor(event.userId());
+        }
+    }
+
+    public synchronized void reload() {
+        List<User> doctors = userRepository.findByRoleName(DOCTOR_ROLE);
+        doctorsById.clear();
+        doctors.forEach(doctor -> doctorsById.put(doctor.getId(), toSummary(doctor)));
+        reindex();
+        log.info("Doctor directory loaded {} doctors", doctorsById.size());
+    }
+
+    // user không còn là bác sĩ (đổi role, bị xóa) thì bỏ khỏi danh bạ
+    synchronized void refreshDoctor(String userId) {
+        Optional<DoctorSummary> doctor = userRepository.findByIdWithRoles(userId)
+                .filter(DoctorDirectoryService::isDoctor)
+                .map(DoctorDirectoryService::toSummary);
+        if (doctor.isEmpty() && doctorsById.remove(userId) == null) {
+            return;
+        }
+        doctor.ifPresent(summary -> doctorsById.put(userId, summary));
+        reindex();
+    }
+
+    private Index index() {
+        Index current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    reload();
+                }
+                current = index;
+            }
+        }
+        return current;
+    }
+
+    private void reindex() {
+        List<DoctorSummary> all = new ArrayList<>(doctorsById.values());
+        all.sort(BY_NAME);
+        Map<MedicalSpecialty, List<DoctorSummary>> grouped = new EnumMap<>(MedicalSpecialty.class);
+        for (DoctorSummary doctor : all) {
+            if (doctor.getMedicleSpecially() != null) {
+                for (MedicalSpecialty specialty : doctor.getMedicleSpecially()) {
+                    grouped.computeIfAbsent(specialty, k -> new ArrayList<>()).add(doctor);
+                }
+            }
+        }
+        grouped.replaceAll((specialty, doctors) -> List.copyOf(doctors));
+        index = new Index(List.copyOf(all), Collections.unmodifiableMap(grouped));
+        version.incrementAndGet();
+    }
+
+    private static boolean isDoctor(User user) {
+        return user.getRoles() != null && user.getRoles().stream().anyMatch(role -> DOCTOR_ROLE.equals(role.getName()));
+    }
+
+    private static DoctorSummary toSummary(User user) {
+        return DoctorSummary.builder()
+                .id(user.getId())
+                .username(user.getUsername())
+                .imageUrl(user.getImageUrl())
+                .email(user.getEmail())
+                .gender(user.getGender())
+                .medicleSpecially(user.getMedicleSpecially() == null ? Set.of() : Set.copyOf(user.getMedicleSpecially()))
+                .education(user.getEducation())
+                .experience(user.getExperience())
+                .certifications(user.getCertifications())
+                .description(user.getDescription())
+                .build();
+    }
+}
@@ -1,33 +1,51 @@
 package com.example.ohms.service;
 
 import com.example.ohms.dto.request.DiagnosisRequest;
+import com.example.ohms.configuration.AiResilienceConfig;
 import com.example.ohms.dto.response.SpecialtyRecommendationResponse;
+import com.example.ohms.exception.AiUnavailableException;
+import com.example.ohms.exception.AppException;
 import com.example.ohms.entity.MedicalExamination;
 import com.example.ohms.entity.MedicalRecord;
 import com.example.ohms.entity.User;
 import com.example.ohms.entity.Appointment;
-import com.example.ohms.entity.Schedule;
 import com.example.ohms.enums.MedicalSpecialty;
 import com.example.ohms.repository.MedicleExaminatioRepository;
 import com.example.ohms.repository.MedicalRecordRepository;
 import com.example.ohms.repository.AppointmentRepository;
 import com.example.ohms.repository.UserRepository;
-import com.example.ohms.repository.ScheduleRepository;
+import com.example.ohms.service.ai.AiCallGuard;
+import com.example.ohms.service.ai.AiContextSnapshotService;
+import com.example.ohms.service.ai.BookingJsonParser;
+import com.example.ohms.service.ai.DiagnosisResponseCache;
+import com.example.ohms.service.ai.KeywordSpecialtyRecommender;
+import com.example.ohms.service.ai.PromptBuilder;
+import com.example.ohms.service.ai.SpecialtyClassifier;
+import com.example.ohms.service.ai.GeminiStreamClient;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
+import lombok.extern.slf4j.Slf4j;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.time.format.DateTimeFormatter;
-import java.util.stream.Collectors;
 
 @Service
+@Slf4j
 public class GeminiService {
 
     @Value("${gemini.api.key:}")
@@ -36,9 +54,16 @@ public class GeminiService {
     @Value("${gemini.model:gemini-2.5-flash}")
     private String model;
 
+    // trỏ sang server giả lập khi test tải / test tích hợp
+    @Value("${gemini.api.base-url:https://generativelanguage.googleapis.com}")
+    private String baseUrl;
+
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserRepository userRepository;
+
     @Autowired
     private MedicleExaminatioRepository medicalExaminationRepository;
     
@@ -49,50 +74,119 @@ public class GeminiService {
     private AppointmentRepository appointmentRepository;
     
     @Autowired
-    private UserRepository userRepository;
-    
+    private GeminiStreamClient geminiStreamClient;
+
     @Autowired
-    private ScheduleRepository scheduleRepository;
+    private DiagnosisResponseCache responseCache;
+
+    @Autowired
+    private AiCallGuard aiCallGuard;
+
+    @Autowired
+    private KeywordSpecialtyRecommender keywordRecommender;
+
+    @Autowired
+    private SpecialtyClassifier specialtyClassifier;
+
+    @Autowired
+    private PromptBuilder promptBuilder;
+
+    // câu trả lời dự phòng khi model không trả text hợp lệ, không được cache
+    private static final String BLOCKED_REPLY = "Xin lỗi, câu trả lời bị chặn do vi phạm chính sách an toàn. Vui lòng thử lại với nội dung khác.";
+    private static final String TOO_LONG_REPLY = "Câu trả lời quá dài. Vui lòng hỏi ngắn gọn hơn.";
+    private static final String EMPTY_REPLY = "Xin lỗi, tôi không thể tạo câu trả lời lúc này. Vui lòng thử lại.";
+    private static final Set<String> UNCACHEABLE_REPLIES = Set.of(BLOCKED_REPLY, TOO_LONG_REPLY, EMPTY_REPLY);
+
+    // phần hướng dẫn không phụ thuộc request, dựng một lần
+    private static final String INSTRUCTIONS = buildInstructions();
+    private static final String CHAT_SYSTEM_INSTRUCTION =
+            "Bạn là trợ lý y tế thông minh. Bạn có thể tư vấn y tế cho người bệnh dựa vào triệu chứng và có thể đặt lịch khám. " +
+           " Người dùng sẽ chat với bạn để đặt lịch khám từng bước tự nhiên, KHÔNG cần bấm nút. " +
+            "Luôn trả lời bằng tiếng Việt chuẩn y khoa, ngắn gọn, rõ ràng. " +
+            "Chat tự nhiên theo từng bước, hỏi rõ ràng, giải thích chi tiết. " +
+            "Nếu thông tin chưa đủ, hỏi lại thay vì đoán. " +
+            "KHÔNG sử dụng format ---START--- hay ---END---. " +
+            "Cuối cùng, tóm tắt đầy đủ trước khi hướng dẫn thanh toán.";
 
     private final RestTemplate restTemplate;
+    private final AiResilienceConfig resilienceConfig;
     private final ObjectMapper mapper = new ObjectMapper();
 
     @Autowired
-    public GeminiService(RestTemplate restTemplate, UserService userService, 
+    public GeminiService(AiResilienceConfig resilienceConfig, UserService userService, UserRepository userRepository,
                         MedicleExaminatioRepository medicalExaminationRepository,
                         MedicalRecordRepository medicalRecordRepository,
                         AppointmentRepository appointmentRepository,
-                        UserRepository userRepository,
-                        ScheduleRepository scheduleRepository) {
-        this.restTemplate = (restTemplate != null ? restTemplate : new RestTemplate());
+                        GeminiStreamClient geminiStreamClient,
+                        DiagnosisResponseCache responseCache,
+                        AiCallGuard aiCallGuard,
+                        KeywordSpecialtyRecommender keywordRecommender,
+                        SpecialtyClassifier specialtyClassifier,
+                        PromptBuilder promptBuilder) {
+        // RestTemplate riêng có timeout, để call bị cancel không treo socket mãi
+        SimpleClientHttpRequestFactory requestFactory = new SimpleClientHttpRequestFactory();
+        requestFactory.setConnectTimeout(resilienceConfig.getConnectTimeoutMs());
+        requestFactory.setReadTimeout(resilienceConfig.getReadTimeoutMs());
+        this.restTemplate = new RestTemplate(requestFactory);
+        this.resilienceConfig = resilienceConfig;
         this.userService = userService;
+        this.userRepository = userRepository;
         this.medicalExaminationRepository = medicalExaminationRepository;
         this.medicalRecordRepository = medicalRecordRepository;
         this.appointmentRepository = appointmentRepository;
-        this.userRepository = userRepository;
-        this.scheduleRepository = scheduleRepository;
+        this.geminiStreamClient = geminiStreamClient;
+        this.responseCache = responseCache;
+        this.aiCallGuard = aiCallGuard;
+        this.keywordRecommender = keywordRecommender;
+        this.specialtyClassifier = specialtyClassifier;
+        this.promptBuilder = promptBuilder;
     }
 
     public GeminiService() {
         this.restTemplate = new RestTemplate();
+        this.resilienceConfig = new AiResilienceConfig();
     }
 
     public String generateDiagnosisReply(DiagnosisRequest request) throws Exception {
         if (apiKey == null || apiKey.isEmpty())
             throw new IllegalStateException("Gemini API key chưa cấu hình");
 
-        String prompt = buildPrompt(request);
-        JsonNode payload = buildPayload(prompt, 4096);
+        Optional<String> cached = responseCache.get(request);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        String reply = complete(CHAT_SYSTEM_INSTRUCTION, buildPrompt(request), 4096);
+        if (!UNCACHEABLE_REPLIES.contains(reply)) {
+            responseCache.put(request, reply);
+        }
+        return reply;
+    }
+
+    /**
+     * Gọi generateContent với prompt cho sẵn (không qua cache), chạy trong bulkhead + circuit breaker + timeout tổng;
+     * lỗi gì cũng thành {@link AiUnavailableException}.
+     */
+    public String complete(String systemInstruction, String prompt, int maxOutputTokens) throws Exception {
+        if (apiKey == null || apiKey.isEmpty())
+            throw new IllegalStateException("Gemini API key chưa cấu hình");
 
-        String apiURL = "https://generativelanguage.googleapis.com/v1beta/models/"
+        JsonNode payload = buildPayload(systemInstruction, prompt, maxOutputTokens);
+        String apiURL = baseUrl + "/v1beta/models/"
                 + model + ":generateContent?key=" + apiKey;
 
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
         HttpEntity<String> httpEntity = new HttpEntity<>(mapper.writeValueAsString(payload), headers);
 
+        return aiCallGuard.call(() -> requestReply(apiURL, httpEntity));
+    }
+
+    private String requestReply(String apiURL, HttpEntity<String> httpEntity) throws Exception {
         // Retry logic for transient errors
-        int maxRetries = 2;
+        int maxRetries = resilienceConfig.getMaxRetries();
+        // cùng budget với AiCallGuard: không bắt đầu lần thử mà guard sẽ cắt trước khi xong
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(resilienceConfig.getCallTimeoutSeconds());
         Exception lastException = null;
         
         for (int attempt = 0; attempt <= maxRetries; attempt++) {
@@ -134,9 +228,14 @@ public class GeminiService {
                 
             } catch (Exception e) {
                 lastException = e;
-                if (attempt < maxRetries) {
+                long backoffMs = resilienceConfig.getRetryBackoffMs() * (attempt + 1); // Linear backoff
+                long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                if (attempt < maxRetries && remainingMs >= backoffMs + resilienceConfig.attemptBudgetMs()) {
                     System.err.println("⚠️ Attempt " + (attempt + 1) + " failed: " + e.getMessage() + ". Retrying...");
-                    Thread.sleep(1000 * (attempt + 1)); // Exponential backoff
+                    Thread.sleep(backoffMs);
+                } else if (attempt < maxRetries) {
+                    System.err.println("❌ Attempt " + (attempt + 1) + " failed and no time budget left for a retry.");
+                    break;
                 } else {
                     System.err.println("❌ All attempts failed. Throwing exception.");
                 }
@@ -146,16 +245,65 @@ public class GeminiService {
         throw lastException != null ? lastException : new RuntimeException("Failed to get response from Gemini after retries");
     }
 
+    /**
+     * Bản streaming của {@link #generateDiagnosisReply}: trả về từng đoạn text ngay khi Gemini sinh ra.
+     * Dựng prompt có query DB (lịch sử khám) nên chạy trên boundedElastic, phần gọi model hoàn toàn non-blocking.
+     */
+    public Flux<String> streamDiagnosisReply(DiagnosisRequest request) {
+        if (apiKey == null || apiKey.isEmpty())
+            return Flux.error(new IllegalStateException("Gemini API key chưa cấu hình"));
+
+        return Mono.fromCallable(() -> responseCache.get(request))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(cached -> {
+                    if (cached.isPresent()) {
+                        return Flux.just(cached.get());
+                    }
+                    if (!aiCallGuard.tryAcquirePermission()) {
+                        return Mono.fromCallable(() -> fallbackRecommendation(request).getDiagnosis())
+                                .subscribeOn(Schedulers.boundedElastic())
+                                .flux();
+                    }
+                    return streamAndCache(request)
+                            .doOnComplete(aiCallGuard::onSuccess)
+                            .doOnError(e -> {
+                                // bận do giới hạn stream không phải lỗi của Gemini
+                                if (e instanceof AppException) {
+                                    aiCallGuard.releasePermission();
+                                } else {
+                                    aiCallGuard.onFailure();
+                                }
+                            })
+                            .doOnCancel(aiCallGuard::releasePermission);
+                });
+    }
+
+    // chỉ cache khi stream chạy hết, bị cancel giữa chừng thì bỏ
+    private Flux<String> streamAndCache(DiagnosisRequest request) {
+        StringBuilder reply = new StringBuilder();
+        return Mono.fromCallable(() -> mapper.writeValueAsString(buildPayload(CHAT_SYSTEM_INSTRUCTION, buildPrompt(request), 4096)))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(payload -> geminiStreamClient.stream(model, apiKey, payload))
+                .doOnNext(reply::append)
+                .doOnComplete(() -> {
+                    String text = reply.toString().trim();
+                    if (!UNCACHEABLE_REPLIES.contains(text)) {
+                        // put có thể phải build lại snapshot (query DB), không chạy trên event loop
+                        Schedulers.boundedElastic().schedule(() -> responseCache.put(request, text));
+                    }
+                });
+    }
+
     private String extractText(JsonNode candidate) {
         // Check if response was blocked
         JsonNode finishReason = candidate.path("finishReason");
         if (!finishReason.isMissingNode()) {
             String reason = finishReason.asText();
             if ("SAFETY".equals(reason) || "BLOCKED".equals(reason)) {
-                return "Xin lỗi, câu trả lời bị chặn do vi phạm chính sách an toàn. Vui lòng thử lại với nội dung khác.";
+                return BLOCKED_REPLY;
             }
             if ("MAX_TOKENS".equals(reason)) {
-                return "Câu trả lời quá dài. Vui lòng hỏi ngắn gọn hơn.";
+                return TOO_LONG_REPLY;
             }
         }
         
@@ -184,21 +332,14 @@ public class GeminiService {
         
         // Log the candidate structure for debugging
         System.err.println("⚠️ Cannot extract text from candidate: " + candidate.toString());
-        return "Xin lỗi, tôi không thể tạo câu trả lời lúc này. Vui lòng thử lại.";
+        return EMPTY_REPLY;
     }
 
-    private JsonNode buildPayload(String prompt, int maxOutputTokens) {
+    private JsonNode buildPayload(String systemInstruction, String prompt, int maxOutputTokens) {
         var root = mapper.createObjectNode();
         var sys = mapper.createObjectNode();
         var sysParts = mapper.createArrayNode();
-        sysParts.add(mapper.createObjectNode().put("text",
-            "Bạn là trợ lý y tế thông minh. Bạn có thể tư vấn y tế cho người bệnh dựa vào triệu chứng và có thể đặt lịch khám. " +
-           " Người dùng sẽ chat với bạn để đặt lịch khám từng bước tự nhiên, KHÔNG cần bấm nút. " +
-            "Luôn trả lời bằng tiếng Việt chuẩn y khoa, ngắn gọn, rõ ràng. " +
-            "Chat tự nhiên theo từng bước, hỏi rõ ràng, giải thích chi tiết. " +
-            "Nếu thông tin chưa đủ, hỏi lại thay vì đoán. " +
-            "KHÔNG sử dụng format ---START--- hay ---END---. " +
-            "Cuối cùng, tóm tắt đầy đủ trước khi hướng dẫn thanh toán."));
+        sysParts.add(mapper.createObjectNode().put("text", systemInstruction));
         sys.set("parts", sysParts);
         root.set("systemInstruction", sys);
 
@@ -222,14 +363,15 @@ public class GeminiService {
     }
 
     private String buildPrompt(DiagnosisRequest request) {
-        String specialtiesInfo = buildSpecialtiesInfo();
         String medicalHistory = "";
         if (request.getPatientId() != null && !request.getPatientId().isEmpty()) {
             medicalHistory = buildMedicalHistoryInfo(request.getPatientId());
         }
-        String servicesInfo = buildServicesInfo();
-        String doctorsInfo = buildDoctorsInfo(request);
+        // phần dữ liệu (hội thoại, chuyên khoa, dịch vụ, bác sĩ) được chọn theo ngân sách token
+        return promptBuilder.build(INSTRUCTIONS, request, medicalHistory);
+    }
 
+    private static String buildInstructions() {
         StringJoiner sj = new StringJoiner("\n");
         
         sj.add("=== HƯỚNG DẪN TRỢ LÝ Y TẾ ===");
@@ -591,67 +733,10 @@ public class GeminiService {
         sj.add("- ⚠️ doctorId phải là ID THẬT từ database (24 ký tự hex)");
         sj.add("");
 
-        // Chỉ lấy 5 message gần nhất để giảm token
-        List<DiagnosisRequest.ChatTurn> recent = request.getRecentHistory(5);
-        if (recent != null && !recent.isEmpty()) {
-            sj.add("HỘI THOẠI GẦN ĐÂY:");
-            for (DiagnosisRequest.ChatTurn turn : recent) {
-                String role = "Người dùng";
-                if ("ai".equalsIgnoreCase(turn.getSender())) role = "AI";
-                String text = (turn.getText() == null ? "" : turn.getText()).trim();
-                // Chỉ hiển thị message có nội dung thực sự (> 2 ký tự)
-                if (!text.isEmpty() && text.length() > 2) {
-                    sj.add(role + ": " + text);
-                }
-            }
-            sj.add("");
-        }
-        
-        if (!medicalHistory.isEmpty()) {
-            sj.add("LỊCH SỬ KHÁM BỆNH CỦA NGƯỜI DÙNG:");
-            sj.add(medicalHistory);
-            sj.add("");
-        }
-
-        sj.add("DANH SÁCH CHUYÊN KHOA:");
-        sj.add(specialtiesInfo);
-        sj.add("");
-        
-        sj.add("DANH SÁCH DỊCH VỤ KHÁM BỆNH:");
-        sj.add(servicesInfo);
-        sj.add("");
-        
-        sj.add("DANH SÁCH BÁC SĨ:");
-        sj.add(doctorsInfo);
-        sj.add("");
-
-        sj.add("THÔNG TIN NGƯỜI DÙNG:");
-        if (request.getPatientInfo() != null && !request.getPatientInfo().isEmpty()) {
-            for (Map.Entry<String, String> e : request.getPatientInfo().entrySet()) {
-                sj.add("• " + e.getKey() + ": " + e.getValue());
-            }
-        } else {
-            sj.add("(Chưa có thông tin bổ sung)");
-        }
-        sj.add("");
-
-        sj.add("CÂU HỎI/YÊU CẦU HIỆN TẠI:");
-        sj.add(Objects.requireNonNullElse(request.getMessage(), "Không có thông tin"));
-
         return sj.toString();
     }
 
     
-    private String buildSpecialtiesInfo() {
-        Map<MedicalSpecialty, String> specialtyNames = buildSpecialtyMap();
-        StringJoiner sj = new StringJoiner("\n");
-        for (MedicalSpecialty specialty : MedicalSpecialty.values()) {
-            String vietnameseName = specialtyNames.get(specialty);
-            sj.add("- " + vietnameseName + " (" + specialty.name() + ")");
-        }
-        return sj.toString();
-    }
-    
     private String buildMedicalHistoryInfo(String patientId) {
         try {
             List<MedicalRecord> records = medicalRecordRepository.findByPatientId(patientId);
@@ -687,161 +772,80 @@ public class GeminiService {
         }
     }
     
-    private String buildServicesInfo() {
-        try {
-            List<MedicalExamination> allExams = medicalExaminationRepository.findAll();
-            if (allExams == null || allExams.isEmpty()) {
-                return "(Chưa có dịch vụ khám bệnh)";
-            }
-            
-            Map<MedicalSpecialty, List<MedicalExamination>> groupedExams = new HashMap<>();
-            for (MedicalExamination exam : allExams) {
-                groupedExams.computeIfAbsent(exam.getMedicalSpecialty(), k -> new ArrayList<>()).add(exam);
-            }
-            
-            StringJoiner sj = new StringJoiner("\n");
-            Map<MedicalSpecialty, String> specialtyNames = buildSpecialtyMap();
-            
-            for (Map.Entry<MedicalSpecialty, List<MedicalExamination>> entry : groupedExams.entrySet()) {
-                MedicalSpecialty specialty = entry.getKey();
-                List<MedicalExamination> exams = entry.getValue();
-                
-                sj.add("─────────────────────────────────");
-                sj.add("Chuyên khoa: " + specialtyNames.get(specialty));
-                
-                for (MedicalExamination exam : exams) {
-                    String price = exam.getPrice() > 0 ? String.format("%,d VNĐ", exam.getPrice()) : "Liên hệ";
-                    String duration = exam.getMinDuration() != null ? exam.getMinDuration() + " phút" : "";
-                    sj.add("  • " + exam.getName() + " (ID: " + exam.getId() + ") - " + price + (duration.isEmpty() ? "" : " (" + duration + ")"));
-                }
+    /**
+     * Gợi ý chuyên khoa cho /recommend: gọi Gemini, nếu AI không dùng được thì trả gợi ý offline (degraded = true).
+     */
+    public SpecialtyRecommendationResponse recommendSpecialty(DiagnosisRequest request) throws Exception {
+        // câu triage đầu hội thoại mà bộ phân loại cục bộ đủ chắc thì trả lời luôn, không tốn prompt Gemini
+        if (request.getHistory() == null || request.getHistory().isEmpty()) {
+            Optional<MedicalSpecialty> local = specialtyClassifier.tryLocal(request.getMessage());
+            if (local.isPresent()) {
+                return localRecommendation(local.get(),
+                        "Dựa trên triệu chứng bạn mô tả, bạn nên khám chuyên khoa " + getSpecialtyNameVi(local.get())
+                                + ". Vui lòng đặt lịch để bác sĩ khám và tư vấn cụ thể.",
+                        false);
             }
-            
-            return sj.toString();
-        } catch (Exception e) {
-            return "(Không thể lấy danh sách dịch vụ: " + e.getMessage() + ")";
+        }
+        try {
+            return parseAIResponse(generateDiagnosisReply(request), request);
+        } catch (AiUnavailableException e) {
+            return fallbackRecommendation(request);
         }
     }
 
-    private String buildDoctorsInfo(DiagnosisRequest request) {
+    // câu trả lời chat thường, AI không dùng được thì trả lời bằng gợi ý offline
+    public String diagnosisReplyOrFallback(DiagnosisRequest request) throws Exception {
         try {
-            List<User> allDoctors = userRepository.findAll().stream()
-                .filter(user -> user.getRoles() != null && 
-                               user.getRoles().stream().anyMatch(role -> "DOCTOR".equalsIgnoreCase(role.getName())))
-                .collect(Collectors.toList());
-            
-            if (allDoctors == null || allDoctors.isEmpty()) {
-                return "(Chưa có thông tin bác sĩ)";
-            }
-            
-            Map<MedicalSpecialty, List<User>> groupedDoctors = new HashMap<>();
-            for (User doctor : allDoctors) {
-                if (doctor.getMedicleSpecially() != null) {
-                    for (MedicalSpecialty specialty : doctor.getMedicleSpecially()) {
-                        groupedDoctors.computeIfAbsent(specialty, k -> new ArrayList<>()).add(doctor);
-                    }
-                }
-            }
-            
-            StringJoiner sj = new StringJoiner("\n");
-            Map<MedicalSpecialty, String> specialtyNames = buildSpecialtyMap();
-            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy (EEEE)", new java.util.Locale("vi", "VN"));
-            DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-            
-            java.time.LocalDate today = java.time.LocalDate.now();
-            java.time.DayOfWeek dayOfWeek = today.getDayOfWeek();
-            
-            java.time.LocalDate mondayThisWeek = today.minusDays(dayOfWeek.getValue() - 1);
-            java.time.LocalDate saturdayThisWeek = mondayThisWeek.plusDays(5);
-            java.time.LocalDate mondayNextWeek = mondayThisWeek.plusDays(7);
-            java.time.LocalDate saturdayNextWeek = mondayNextWeek.plusDays(5);
-            
-            for (Map.Entry<MedicalSpecialty, List<User>> entry : groupedDoctors.entrySet()) {
-                MedicalSpecialty specialty = entry.getKey();
-                List<User> doctors = entry.getValue();
-                
-                sj.add("┌─ " + specialtyNames.get(specialty).toUpperCase() + " ─────────────────────────────────────┐");
-                
-                for (User doctor : doctors) {
-                    sj.add("│");
-                    sj.add("│  👨‍⚕️  " + doctor.getUsername() + " (ID: " + doctor.getId() + ")");
-                    if (doctor.getExperience() != null && doctor.getExperience() > 0) {
-                        sj.add("│     Kinh nghiệm: " + doctor.getExperience() + " năm");
-                    }
-                    if (doctor.getDescription() != null && !doctor.getDescription().isEmpty()) {
-                        sj.add("│     " + doctor.getDescription());
-                    }
-                    
-                    try {
-                        List<Schedule> schedules = scheduleRepository.findByDoctor_Id(doctor.getId());
-                        
-                        if (schedules != null && !schedules.isEmpty()) {
-                            sj.add("│");
-                            sj.add("│  📅 LỊCH LÀM VIỆC (CHỈ HIỂN THỊ KHUNG GIỜ):");
-                            sj.add("│");
-                            sj.add("│  📅 TUẦN NÀY:");
-                            
-                            Map<java.time.LocalDate, List<Schedule>> schedulesByDate = schedules.stream()
-                                .filter(s -> s.getWorkDate() != null && 
-                                           !s.getWorkDate().isBefore(today) &&
-                                           !s.getWorkDate().isBefore(mondayThisWeek) && 
-                                           !s.getWorkDate().isAfter(saturdayThisWeek))
-                                .collect(Collectors.groupingBy(Schedule::getWorkDate));
-                            
-                            for (java.time.LocalDate date = mondayThisWeek; !date.isAfter(saturdayThisWeek); date = date.plusDays(1)) {
-                                if (date.isBefore(today)) continue; // Bỏ qua ngày đã qua
-                                
-                                if (schedulesByDate.containsKey(date)) {
-                                    sj.add("│    • " + date.format(dateFormatter));
-                                    List<Schedule> daySchedules = schedulesByDate.get(date);
-                                    
-                                    for (Schedule sch : daySchedules) {
-                                        String timeRange = sch.getStartTime().format(timeFormatter) + " - " + sch.getEndTime().format(timeFormatter);
-                                        // CHỈ hiển thị khung giờ, KHÔNG hiển thị trạng thái
-                                        sj.add("│      " + timeRange);
-                                    }
-                                }
-                            }
-                            
-                            sj.add("│");
-                            sj.add("│  📅 TUẦN SAU:");
-                            
-                            Map<java.time.LocalDate, List<Schedule>> schedulesByDateNext = schedules.stream()
-                                .filter(s -> s.getWorkDate() != null && 
-                                           !s.getWorkDate().isBefore(mondayNextWeek) && 
-                                           !s.getWorkDate().isAfter(saturdayNextWeek))
-                                .collect(Collectors.groupingBy(Schedule::getWorkDate));
-                            
-                            for (java.time.LocalDate date = mondayNextWeek; !date.isAfter(saturdayNextWeek); date = date.plusDays(1)) {
-                                if (schedulesByDateNext.containsKey(date)) {
-                                    sj.add("│    • " + date.format(dateFormatter));
-                                    List<Schedule> daySchedules = schedulesByDateNext.get(date);
-                                    
-                                    for (Schedule sch : daySchedules) {
-                                        String timeRange = sch.getStartTime().format(timeFormatter) + " - " + sch.getEndTime().format(timeFormatter);
-                                        // CHỈ hiển thị khung giờ, KHÔNG hiển thị trạng thái
-                                        sj.add("│      " + timeRange);
-                                    }
-                                }
-                            }
-                        } else {
-                            sj.add("│     Lịch: Chưa có lịch cố định");
-                        }
-                    } catch (Exception scheduleEx) {
-                        sj.add("│     Lịch: Không thể truy xuất");
-                    }
-                    sj.add("│");
-                }
-                
-                sj.add("└─────────────────────────────────────────────────────────────┘");
-                sj.add("");
-            }
-            
-            return sj.toString();
-        } catch (Exception e) {
-            return "(Không thể lấy danh sách bác sĩ: " + e.getMessage() + ")";
+            return generateDiagnosisReply(request);
+        } catch (AiUnavailableException e) {
+            return fallbackRecommendation(request).getDiagnosis();
         }
     }
 
+    public SpecialtyRecommendationResponse fallbackRecommendation(DiagnosisRequest request) {
+        return fallbackRecommendation(request, medicalExaminationRepository::findAllByMedicalSpecialty);
+    }
+
+    public SpecialtyRecommendationResponse fallbackRecommendation(DiagnosisRequest request,
+            Function<MedicalSpecialty, List<MedicalExamination>> examinations) {
+        Optional<KeywordSpecialtyRecommender.Match> match = keywordRecommender.recommend(request.getMessage());
+        String notice = "Trợ lý AI đang tạm thời gián đoạn, đây là gợi ý sơ bộ dựa trên triệu chứng bạn mô tả.";
+        if (match.isEmpty()) {
+            String question = "Bạn có thể mô tả rõ hơn triệu chứng (vị trí, thời gian, mức độ) để tôi gợi ý chuyên khoa phù hợp không?";
+            return SpecialtyRecommendationResponse.builder()
+                    .diagnosis(notice + "\n" + question)
+                    .needMoreInfo(true)
+                    .followUpQuestion(question)
+                    .degraded(true)
+                    .build();
+        }
+        MedicalSpecialty specialty = match.get().specialty();
+        return localRecommendation(specialty,
+                notice + "\nBạn nên khám chuyên khoa " + getSpecialtyNameVi(specialty) + ". Vui lòng đặt lịch để bác sĩ khám và tư vấn cụ thể.",
+                true, examinations);
+    }
+
+    // gợi ý không qua Gemini: chuyên khoa đã biết, kèm dịch vụ khám và link đặt lịch như câu trả lời của AI
+    public SpecialtyRecommendationResponse localRecommendation(MedicalSpecialty specialty, String diagnosis, boolean degraded) {
+        return localRecommendation(specialty, diagnosis, degraded, medicalExaminationRepository::findAllByMedicalSpecialty);
+    }
+
+    // examinations: cách tra dịch vụ khám theo chuyên khoa, batch triage truyền vào bản đã nhớ kết quả trong lượt
+    public SpecialtyRecommendationResponse localRecommendation(MedicalSpecialty specialty, String diagnosis, boolean degraded,
+            Function<MedicalSpecialty, List<MedicalExamination>> examinations) {
+        String nameVi = getSpecialtyNameVi(specialty);
+        return SpecialtyRecommendationResponse.builder()
+                .diagnosis(diagnosis)
+                .recommendedSpecialty(nameVi)
+                .specialtyEnum(specialty.name())
+                .specialtyNameVi(nameVi)
+                .suggestedExaminations(examinations.apply(specialty))
+                .bookingUrl(buildBookingUrl(specialty.name()))
+                .needMoreInfo(false)
+                .degraded(degraded)
+                .build();
+    }
+
     public List<MedicalExamination> suggestMedicalExaminations(String symptom, String specialty) throws Exception {
         try {
             MedicalSpecialty medicalSpecialty = MedicalSpecialty.valueOf(specialty.toUpperCase());
@@ -854,142 +858,82 @@ public class GeminiService {
     }
 
     public SpecialtyRecommendationResponse parseAIResponse(String aiResponse, DiagnosisRequest request) throws Exception {
-        SpecialtyRecommendationResponse response = SpecialtyRecommendationResponse.builder().build();
-        
-        System.out.println("=== AI Response ===");
-        System.out.println(aiResponse);
-        System.out.println("=== End AI Response ===");
-        
-        try {
-            int jsonStart = aiResponse.indexOf('{');
-            int jsonEnd = aiResponse.lastIndexOf('}');
-
-            if (jsonStart != -1 && jsonEnd != -1 && jsonEnd > jsonStart) {
-                String jsonStr = aiResponse.substring(jsonStart, jsonEnd + 1);
-                System.out.println("=== Extracted JSON ===");
-                System.out.println(jsonStr);
-                System.out.println("=== End JSON ===");
-
-                JsonNode bookingNode = mapper.readTree(jsonStr);
-
-                if (bookingNode.has("ready") && bookingNode.get("ready").asBoolean(false)) {
-                    response.setReady(true);
-                    response.setNeedMoreInfo(false);
-
-                    if (bookingNode.has("bookingType") && !bookingNode.get("bookingType").isNull()) {
-                        response.setBookingType(bookingNode.get("bookingType").asText());
-                    }
-
-                    if (bookingNode.has("doctorId") && !bookingNode.get("doctorId").isNull()) {
-                        response.setDoctorId(bookingNode.get("doctorId").asText());
-                    }
-                    if (bookingNode.has("doctorName") && !bookingNode.get("doctorName").isNull()) {
-                        response.setDoctorName(bookingNode.get("doctorName").asText());
-                    }
-
-                    if (bookingNode.has("workDate") && !bookingNode.get("workDate").isNull()) {
-                        response.setWorkDate(bookingNode.get("workDate").asText());
-                    }
-                    if (bookingNode.has("startTime") && !bookingNode.get("startTime").isNull()) {
-                        response.setStartTime(bookingNode.get("startTime").asText());
-                    }
-                    if (bookingNode.has("endTime") && !bookingNode.get("endTime").isNull()) {
-                        response.setEndTime(bookingNode.get("endTime").asText());
-                    }
-
-                    if (bookingNode.has("medicalExaminationIds") && bookingNode.get("medicalExaminationIds").isArray()) {
-                        List<String> examIds = new ArrayList<>();
-                        for (JsonNode n : bookingNode.get("medicalExaminationIds")) {
-                            if (!n.isNull()) examIds.add(n.asText());
-                        }
-                        response.setMedicalExaminationIds(examIds);
-                    }
-
-                    if (bookingNode.has("totalPrice") && bookingNode.get("totalPrice").isNumber()) {
-                        response.setTotalPrice(bookingNode.get("totalPrice").asDouble());
-                    }
-                    if (bookingNode.has("discountedPrice") && bookingNode.get("discountedPrice").isNumber()) {
-                        response.setDiscountedPrice(bookingNode.get("discountedPrice").asDouble());
-                    }
-                    
-                    // Support both "deposit" and "depositAmount"
-                    if (bookingNode.has("depositAmount") && bookingNode.get("depositAmount").isNumber()) {
-                        response.setDepositAmount(bookingNode.get("depositAmount").asDouble());
-                    } else if (bookingNode.has("deposit") && bookingNode.get("deposit").isNumber()) {
-                        response.setDepositAmount(bookingNode.get("deposit").asDouble());
-                    }
-                    
-                    if (bookingNode.has("discount") && bookingNode.get("discount").canConvertToInt()) {
-                        response.setDiscount(bookingNode.get("discount").asInt());
-                    }
-
-                    if (bookingNode.has("serviceSlots") && bookingNode.get("serviceSlots").isArray()) {
-                        List<SpecialtyRecommendationResponse.ServiceSlotDto> serviceSlots = new ArrayList<>();
-                        for (JsonNode s : bookingNode.get("serviceSlots")) {
-                            String serviceId = s.has("serviceId") && !s.get("serviceId").isNull() ? s.get("serviceId").asText() : null;
-                            String sStart = s.has("startTime") && !s.get("startTime").isNull() ? s.get("startTime").asText() : null;
-                            String sEnd = s.has("endTime") && !s.get("endTime").isNull() ? s.get("endTime").asText() : null;
-                            SpecialtyRecommendationResponse.ServiceSlotDto slot = SpecialtyRecommendationResponse.ServiceSlotDto.builder()
-                                    .serviceId(serviceId)
-                                    .startTime(sStart)
-                                    .endTime(sEnd)
-                                    .build();
-                            serviceSlots.add(slot);
-                        }
-                        response.setServiceSlots(serviceSlots);
-                    }
-
-                    if (bookingNode.has("consultationSlot") && bookingNode.get("consultationSlot").isObject()) {
-                        JsonNode cs = bookingNode.get("consultationSlot");
-                        String cStart = cs.has("startTime") && !cs.get("startTime").isNull() ? cs.get("startTime").asText() : null;
-                        String cEnd = cs.has("endTime") && !cs.get("endTime").isNull() ? cs.get("endTime").asText() : null;
-                        SpecialtyRecommendationResponse.TimeSlotDto consultation = SpecialtyRecommendationResponse.TimeSlotDto.builder()
-                                .startTime(cStart)
-                                .endTime(cEnd)
-                                .build();
-                        response.setConsultationSlot(consultation);
-                    }
-
-                    String diagnosis = aiResponse.substring(0, jsonStart).trim();
-                    response.setDiagnosis(cleanAIResponse(diagnosis));
-
-                    System.out.println("=== Parsed Booking Response ===");
-                    System.out.println("Ready: true");
-                    System.out.println("BookingType: " + response.getBookingType());
-                    System.out.println("DoctorId: " + response.getDoctorId());
-                    System.out.println("WorkDate: " + response.getWorkDate());
-                    System.out.println("=== End Parsed Booking ===");
-
-                    return response;
-                }
-            }
-        } catch (Exception e) {
-            System.out.println("Failed to parse JSON booking data: " + e.getMessage());
-            e.printStackTrace();
+        BookingJsonParser.Result parsed = BookingJsonParser.parse(aiResponse);
+        if (parsed.ready() && parsed.complete()) {
+            SpecialtyRecommendationResponse response = resolveBookingReferences(parsed.booking());
+            response.setReady(true);
+            response.setNeedMoreInfo(false);
+            response.setDiagnosis(cleanAIResponse(parsed.leadingText()));
+            return response;
         }
-        
-        // Fallback logic...
+
+        // Fallback: chưa đủ thông tin đặt lịch, cả câu trả lời là câu hỏi tiếp theo
+        SpecialtyRecommendationResponse response = SpecialtyRecommendationResponse.builder().build();
         response.setNeedMoreInfo(true);
         String cleanResponse = cleanAIResponse(aiResponse);
         response.setFollowUpQuestion(cleanResponse);
         response.setDiagnosis(cleanResponse);
-        
         return response;
     }
 
-    private String extractField(String response, String fieldName) {
-        String pattern = fieldName + ":";
-        int startIdx = response.indexOf(pattern);
-        if (startIdx == -1) return null;
-        
-        startIdx += pattern.length();
-        int endIdx = response.indexOf("\n", startIdx);
-        if (endIdx == -1) endIdx = response.indexOf("---", startIdx);
-        if (endIdx == -1) endIdx = response.length();
-        
-        return response.substring(startIdx, endIdx).trim();
+    /**
+     * JSON đặt lịch đọc được từ một câu trả lời đã stream xong, empty nếu AI chưa chốt lịch.
+     */
+    public Mono<SpecialtyRecommendationResponse> streamedBooking(BookingJsonParser parser) {
+        return Mono.fromCallable(() -> {
+                    BookingJsonParser.Result parsed = parser.result();
+                    if (!parsed.ready() || !parsed.complete()) {
+                        return null;
+                    }
+                    SpecialtyRecommendationResponse booking = resolveBookingReferences(parsed.booking());
+                    booking.setReady(true);
+                    booking.setNeedMoreInfo(false);
+                    return booking;
+                })
+                .subscribeOn(Schedulers.boundedElastic());
     }
-    
+
+    // kiểm tra các id AI đưa ra: 1 query cho mọi dịch vụ khám, 1 query cho bác sĩ; id không tồn tại bị bỏ
+    private SpecialtyRecommendationResponse resolveBookingReferences(SpecialtyRecommendationResponse booking) {
+        Set<String> examIds = new LinkedHashSet<>();
+        if (booking.getMedicalExaminationIds() != null) {
+            examIds.addAll(booking.getMedicalExaminationIds());
+        }
+        if (booking.getServiceSlots() != null) {
+            booking.getServiceSlots().stream()
+                    .map(SpecialtyRecommendationResponse.ServiceSlotDto::getServiceId)
+                    .filter(Objects::nonNull)
+                    .forEach(examIds::add);
+        }
+        if (!examIds.isEmpty()) {
+            Map<String, MedicalExamination> exams = new HashMap<>();
+            medicalExaminationRepository.findAllByIdIn(examIds).forEach(e -> exams.put(e.getId(), e));
+            if (booking.getMedicalExaminationIds() != null) {
+                List<String> known = booking.getMedicalExaminationIds().stream().filter(exams::containsKey).toList();
+                booking.setMedicalExaminationIds(new ArrayList<>(known));
+                booking.setSuggestedExaminations(known.stream().map(exams::get).toList());
+            }
+            if (booking.getServiceSlots() != null) {
+                booking.setServiceSlots(new ArrayList<>(booking.getServiceSlots().stream()
+                        .filter(slot -> slot.getServiceId() == null || exams.containsKey(slot.getServiceId()))
+                        .toList()));
+            }
+            if (exams.size() < examIds.size()) {
+                log.warn("AI booking referenced unknown examination ids: {}", examIds.stream().filter(id -> !exams.containsKey(id)).toList());
+            }
+        }
+        if (booking.getDoctorId() != null) {
+            Optional<User> doctor = userRepository.findById(booking.getDoctorId());
+            if (doctor.isEmpty()) {
+                log.warn("AI booking referenced unknown doctor id {}", booking.getDoctorId());
+                booking.setDoctorId(null);
+            } else if (booking.getDoctorName() == null || booking.getDoctorName().isBlank()) {
+                booking.setDoctorName(doctor.get().getUsername());
+            }
+        }
+        return booking;
+    }
+
     private String cleanAIResponse(String text) {
         if (text == null) return "";
         
@@ -1007,45 +951,7 @@ public class GeminiService {
     }
     
     private String getSpecialtyNameVi(MedicalSpecialty specialty) {
-        Map<MedicalSpecialty, String> specialtyNames = buildSpecialtyMap();
-        return specialtyNames.getOrDefault(specialty, specialty.name());
-    }
-    
-    private Map<MedicalSpecialty, String> buildSpecialtyMap() {
-        Map<MedicalSpecialty, String> map = new HashMap<>();
-        map.put(MedicalSpecialty.INTERNAL_MEDICINE, "Nội khoa");
-        map.put(MedicalSpecialty.SURGERY, "Ngoại khoa");
-        map.put(MedicalSpecialty.CARDIOLOGY, "Tim mạch");
-        map.put(MedicalSpecialty.PEDIATRICS, "Nhi khoa");
-        map.put(MedicalSpecialty.DERMATOLOGY, "Da liễu");
-        map.put(MedicalSpecialty.OBSTETRICS_GYNECOLOGY, "Sản phụ khoa");
-        map.put(MedicalSpecialty.GASTROENTEROLOGY, "Tiêu hóa");
-        map.put(MedicalSpecialty.ORTHOPEDICS, "Cơ xương khớp");
-        map.put(MedicalSpecialty.ALLERGY_IMMUNOLOGY, "Dị ứng - miễn dịch");
-        map.put(MedicalSpecialty.ANESTHESIOLOGY, "Gây mê hồi sức");
-        map.put(MedicalSpecialty.OTOLARYNGOLOGY, "Tai - mũi - họng");
-        map.put(MedicalSpecialty.ONCOLOGY, "Ung bướu");
-        map.put(MedicalSpecialty.GERIATRICS, "Lão khoa");
-        map.put(MedicalSpecialty.TRAUMA_ORTHOPEDICS, "Chấn thương chỉnh hình");
-        map.put(MedicalSpecialty.EMERGENCY_MEDICINE, "Hồi sức cấp cứu");
-        map.put(MedicalSpecialty.GENERAL_SURGERY, "Ngoại tổng quát");
-        map.put(MedicalSpecialty.PREVENTIVE_MEDICINE, "Y học dự phòng");
-        map.put(MedicalSpecialty.DENTISTRY, "Răng - Hàm - Mặt");
-        map.put(MedicalSpecialty.INFECTIOUS_DISEASE, "Truyền nhiễm");
-        map.put(MedicalSpecialty.NEPHROLOGY, "Nội thận");
-        map.put(MedicalSpecialty.ENDOCRINOLOGY, "Nội tiết");
-        map.put(MedicalSpecialty.PSYCHIATRY, "Tâm thần");
-        map.put(MedicalSpecialty.PULMONOLOGY, "Hô hấp");
-        map.put(MedicalSpecialty.LABORATORY_MEDICINE, "Xét nghiệm");
-        map.put(MedicalSpecialty.HEMATOLOGY, "Huyết học");
-        map.put(MedicalSpecialty.PSYCHOLOGY, "Tâm lý");
-        map.put(MedicalSpecialty.NEUROLOGY, "Nội thần kinh");
-        map.put(MedicalSpecialty.SPEECH_THERAPY, "Ngôn ngữ trị liệu");
-        map.put(MedicalSpecialty.PHYSICAL_THERAPY, "Phục hồi chức năng - Vật lý trị liệu");
-        map.put(MedicalSpecialty.REPRODUCTIVE_MEDICINE, "Vô sinh hiếm muộn");
-        map.put(MedicalSpecialty.TRADITIONAL_MEDICINE, "Y học cổ truyền");
-        map.put(MedicalSpecialty.TUBERCULOSIS, "Lao - bệnh phổi");
-        return map;
+        return AiContextSnapshotService.specialtyName(specialty);
     }
     
     private String buildBookingUrl(String enumName) {
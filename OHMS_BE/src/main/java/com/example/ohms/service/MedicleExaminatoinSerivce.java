@@ -2,6 +2,7 @@ package com.example.ohms.service;
 
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 
@@ -13,6 +14,7 @@ import com.example.ohms.exception.AppException;
 import com.example.ohms.exception.ErrorCode;
 import com.example.ohms.mapper.MedicalExaminationMappers;
 import com.example.ohms.repository.MedicleExaminatioRepository;
+import com.example.ohms.service.ai.AiContextChangedEvent;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -24,11 +26,13 @@ import lombok.experimental.FieldDefaults;
 public class MedicleExaminatoinSerivce{
    MedicleExaminatioRepository medicleExaminationRepository;
    MedicalExaminationMappers medicalExaminationMapper;
+   ApplicationEventPublisher eventPublisher;
 // tạo dịch vụ khám bệnh mới, này chắc để quyền admin
   @PreAuthorize("hasRole('ADMIN')")
    public MedicleExaminationResponse createMedicleExamination(MedicleExaminationRequest medicleExaminationRequest){
       MedicalExamination medicalExamination = medicalExaminationMapper.toMedicalExamination(medicleExaminationRequest);
       medicleExaminationRepository.save(medicalExamination);
+      eventPublisher.publishEvent(new AiContextChangedEvent(AiContextChangedEvent.EXAMINATION));
       return medicalExaminationMapper.toMedicleExaminationResponse(medicalExamination);
    }
 // lấy tất cả dịch vụ khám
@@ -39,6 +43,7 @@ public class MedicleExaminatoinSerivce{
 // tí nhớ check relation lại
    public Void deleteMedicleExamination(String id){
       medicleExaminationRepository.deleteById(id);
+      eventPublisher.publishEvent(new AiContextChangedEvent(AiContextChangedEvent.EXAMINATION));
       return null;
    }
 // get detail
@@ -58,6 +63,7 @@ public class MedicleExaminatoinSerivce{
          medicalExamination.setMinDuration(medicleExaminationRequest.getMinDuration());
       }
       medicleExaminationRepository.save(medicalExamination);
+      eventPublisher.publishEvent(new AiContextChangedEvent(AiContextChangedEvent.EXAMINATION));
       return medicalExaminationMapper.toMedicleExaminationResponse(medicalExamination);
    }
 
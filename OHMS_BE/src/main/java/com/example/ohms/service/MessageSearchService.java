@@ -0,0 +1,310 @@
+package com.example.ohms.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.PhraseQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.uhighlight.DefaultPassageFormatter;
+import org.apache.lucene.search.uhighlight.UnifiedHighlighter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.util.HtmlUtils;
+
+import com.example.ohms.configuration.ChatSearchConfig;
+import com.example.ohms.dto.response.MessageSearchResponse;
+import com.example.ohms.entity.Conversation;
+import com.example.ohms.repository.ConversationRepository;
+import com.example.ohms.repository.RoomChatRepository;
+import com.example.ohms.repository.projection.MessageIndexView;
+import com.example.ohms.service.search.VietnameseFoldingAnalyzer;
+
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Full-text search tin nhắn bằng Lucene index nhúng.
+ * Index được cập nhật theo từng message (sau khi transaction commit), search luôn lọc theo các room
+ * mà người gọi là thành viên.
+ */
+@Service
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class MessageSearchService {
+    private static final String ID = "id";
+    private static final String ROOM = "roomId";
+    private static final String USER = "userId";
+    private static final String MESSAGE = "message";
+    private static final String CREATED_AT = "createdAt";
+    private static final FieldType MESSAGE_TYPE = messageFieldType();
+
+    ConversationRepository conversationRepository;
+    RoomChatRepository roomChatRepository;
+    ChatSearchConfig chatSearchConfig;
+    Analyzer analyzer = new VietnameseFoldingAnalyzer();
+    Directory directory;
+    IndexWriter writer;
+    SearcherManager searcherManager;
+
+    public MessageSearchService(ConversationRepository conversationRepository, RoomChatRepository roomChatRepository,
+            ChatSearchConfig chatSearchConfig) throws IOException {
+        this.conversationRepository = conversationRepository;
+        this.roomChatRepository = roomChatRepository;
+        this.chatSearchConfig = chatSearchConfig;
+        String indexDirectory = chatSearchConfig.getIndexDirectory();
+        this.directory = indexDirectory == null || indexDirectory.isBlank()
+                ? new ByteBuffersDirectory()
+                : FSDirectory.open(Path.of(indexDirectory));
+        this.writer = new IndexWriter(directory, new IndexWriterConfig(analyzer)
+                .setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND));
+        this.searcherManager = new SearcherManager(writer, null);
+    }
+
+    public void index(Conversation conversation) {
+        if (conversation == null || conversation.getId() == null) {
+            return;
+        }
+        Document document = toDocument(conversation.getId(),
+                conversation.getRoomChat() != null ? conversation.getRoomChat().getId() : null,
+                conversation.getUser() != null ? conversation.getUser().getId() : null,
+                conversation.getMessage(),
+                conversation.getCreatedAt());
+        afterCommit(() -> writer.updateDocument(new Term(ID, conversation.getId()), document));
+    }
+
+    public void delete(String messageId) {
+        afterCommit(() -> writer.deleteDocuments(new Term(ID, messageId)));
+    }
+
+    public void deleteRoom(String roomId) {
+        afterCommit(() -> writer.deleteDocuments(new Term(ROOM, roomId)));
+    }
+
+    public List<MessageSearchResponse> search(String userId, String text, int limit) {
+        List<String> roomIds = roomChatRepository.findRoomIdsByUserId(userId);
+        List<String> terms = analyze(text);
+        if (roomIds.isEmpty() || terms.isEmpty()) {
+            return List.of();
+        }
+        int size = Math.max(1, Math.min(limit, chatSearchConfig.getMaxResults()));
+        List<BytesRef> rooms = roomIds.stream().map(BytesRef::new).toList();
+        Query query = new BooleanQuery.Builder()
+                .add(textQuery(terms), BooleanClause.Occur.MUST)
+                .add(new TermInSetQuery(ROOM, rooms), BooleanClause.Occur.FILTER)
+                .build();
+        try {
+            searcherManager.maybeRefresh();
+            IndexSearcher searcher = searcherManager.acquire();
+            try {
+                TopDocs topDocs = searcher.search(query, size);
+                // snippet được render như HTML: escape nội dung message, chỉ giữ thẻ <b> của highlighter
+                String[] snippets = UnifiedHighlighter.builder(searcher, analyzer)
+                        .withFormatter(new DefaultPassageFormatter("<b>", "</b>", "... ", true))
+                        .build()
+                        .highlight(MESSAGE, query, topDocs);
+                List<MessageSearchResponse> results = new ArrayList<>(topDocs.scoreDocs.length);
+                for (int i = 0; i < topDocs.scoreDocs.length; i++) {
+                    ScoreDoc hit = topDocs.scoreDocs[i];
+                    Document document = searcher.storedFields().document(hit.doc);
+                    results.add(MessageSearchResponse.builder()
+                            .messageId(document.get(ID))
+                            .roomId(document.get(ROOM))
+                            .userId(document.get(USER))
+                            .snippet(snippets[i] != null ? snippets[i] : HtmlUtils.htmlEscape(document.get(MESSAGE)))
+                            .score(hit.score)
+                            .createdAt(toLocalDateTime(document.getField(CREATED_AT)))
+                            .build());
+                }
+                return results;
+            } finally {
+                searcherManager.release(searcher);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // index trống (lần chạy đầu, hoặc mất thư mục index) thì build lại từ DB ở background
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        if (writer.getDocStats().numDocs > 0) {
+            return;
+        }
+        Thread.ofVirtual().name("chat-search-reindex").start(() -> {
+            try {
+                long count = reindex();
+                log.info("Chat search index rebuilt with {} messages", count);
+            } catch (Exception e) {
+                log.error("Chat search reindex failed: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    public long reindex() throws IOException {
+        writer.deleteAll();
+        String afterId = "";
+        long count = 0;
+        int batchSize = Math.max(1, chatSearchConfig.getReindexBatchSize());
+        while (true) {
+            List<MessageIndexView> rows = conversationRepository.findIndexRowsAfter(afterId, PageRequest.ofSize(batchSize));
+            for (MessageIndexView row : rows) {
+                writer.updateDocument(new Term(ID, row.getId()),
+                        toDocument(row.getId(), row.getRoomId(), row.getUserId(), row.getMessage(), row.getCreatedAt()));
+            }
+            count += rows.size();
+            if (rows.size() < batchSize) {
+                break;
+            }
+            afterId = rows.get(rows.size() - 1).getId();
+        }
+        writer.commit();
+        searcherManager.maybeRefresh();
+        return count;
+    }
+
+    // commit định kỳ thay vì mỗi message, search vẫn thấy thay đổi chưa commit nhờ near-real-time reader
+    @Scheduled(fixedDelayString = "${chat.search.commit-interval-ms:5000}")
+    public void commit() {
+        try {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        } catch (IOException e) {
+            log.warn("Chat search commit failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        searcherManager.close();
+        writer.close();
+        directory.close();
+    }
+
+    // tất cả từ phải có, trùng đúng cụm thì được cộng điểm
+    private Query textQuery(List<String> terms) {
+        BooleanQuery.Builder builder = new BooleanQuery.Builder();
+        for (String term : terms) {
+            builder.add(new TermQuery(new Term(MESSAGE, term)), BooleanClause.Occur.MUST);
+        }
+        if (terms.size() > 1) {
+            builder.add(new BoostQuery(new PhraseQuery(MESSAGE, terms.toArray(String[]::new)), 2f),
+                    BooleanClause.Occur.SHOULD);
+        }
+        return builder.build();
+    }
+
+    private List<String> analyze(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return terms;
+        }
+        try (TokenStream stream = analyzer.tokenStream(MESSAGE, text)) {
+            CharTermAttribute term = stream.addAttribute(CharTermAttribute.class);
+            stream.reset();
+            while (stream.incrementToken()) {
+                terms.add(term.toString());
+            }
+            stream.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return terms;
+    }
+
+    private Document toDocument(String id, String roomId, String userId, String message, LocalDateTime createdAt) {
+        Document document = new Document();
+        document.add(new StringField(ID, id, Field.Store.YES));
+        if (roomId != null) {
+            document.add(new StringField(ROOM, roomId, Field.Store.YES));
+        }
+        if (userId != null) {
+            document.add(new StoredField(USER, userId));
+        }
+        document.add(new Field(MESSAGE, message != null ? message : "", MESSAGE_TYPE));
+        if (createdAt != null) {
+            document.add(new StoredField(CREATED_AT, createdAt.toEpochSecond(ZoneOffset.UTC)));
+        }
+        return document;
+    }
+
+    private LocalDateTime toLocalDateTime(org.apache.lucene.index.IndexableField field) {
+        if (field == null || field.numericValue() == null) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(field.numericValue().longValue(), 0, ZoneOffset.UTC);
+    }
+
+    // lỗi index không được làm hỏng việc gửi tin nhắn
+    private void afterCommit(IndexOperation operation) {
+        Runnable run = () -> {
+            try {
+                operation.apply();
+            } catch (IOException | RuntimeException e) {
+                log.warn("Chat search index update failed: {}", e.getMessage());
+            }
+        };
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    run.run();
+                }
+            });
+        } else {
+            run.run();
+        }
+    }
+
+    // lưu offset để highlighter không phải analyze lại message
+    private static FieldType messageFieldType() {
+        FieldType type = new FieldType();
+        type.setTokenized(true);
+        type.setStored(true);
+        type.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        type.freeze();
+        return type;
+    }
+
+    @FunctionalInterface
+    private interface IndexOperation {
+        void apply() throws IOException;
+    }
+}
@@ -1,11 +1,18 @@
 package com.example.ohms.service;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.example.ohms.dto.request.ConversationRequest;
 import com.example.ohms.dto.response.ConversationResponse;
+import com.example.ohms.dto.response.MessageSearchResponse;
 import com.example.ohms.entity.Conversation;
 import com.example.ohms.entity.RoomChat;
 import com.example.ohms.entity.User;
@@ -31,6 +38,9 @@ public class MessageService {
    ConversationRepository conversationRepository;
    RoomChatRepository roomChatRepositoryl;
    UserRepository userRepository;
+   ChatMediaService chatMediaService;
+   MessageSearchService messageSearchService;
+   ChatArchiveService chatArchiveService;
    
    // @PreAuthorize("isAuthenticated()")
 @Transactional
@@ -52,13 +62,48 @@ public ConversationResponse createMessage(String roomId, ConversationRequest con
     }
     
     conversationRepository.save(conversation);
-    return conversationMapper.toConversationResponse(conversation);  // Mapper cần handle imageUrls trong response
+    messageSearchService.index(conversation);
+    return withThumbnails(List.of(conversation)).get(0);
 }
-   // lấy message trong roomchat
+   // search tin nhắn trong các room mà user tham gia
+   public List<MessageSearchResponse> search(String userId, String query, int limit){
+      return messageSearchService.search(userId, query, limit);
+   }
+   // lấy message trong roomchat, gộp cả message đã archive xuống cold store
    @Transactional(readOnly = true)
    public List<ConversationResponse> getMessage(String roomId){
-      List<Conversation> conversations = conversationRepository.findByRoomChatIdWithUserAndRoles(roomId);
-      return conversations.stream().map(conversationMapper :: toConversationResponse).toList();
+      List<Conversation> hot = conversationRepository.findByRoomChatIdWithUserAndRoles(roomId);
+      List<Conversation> archived = chatArchiveService.readRoom(roomId);
+      if (archived.isEmpty()) {
+         return withThumbnails(hot);
+      }
+      // job archive có thể crash sau khi ghi segment, bản trong DB được ưu tiên
+      Set<String> hotIds = new HashSet<>();
+      hot.forEach(c -> hotIds.add(c.getId()));
+      List<Conversation> conversations = new ArrayList<>(archived.size() + hot.size());
+      archived.stream().filter(c -> !hotIds.contains(c.getId())).forEach(conversations::add);
+      conversations.addAll(hot);
+      conversations.sort(Comparator.comparing(Conversation::getCreatedAt, Comparator.nullsFirst(Comparator.naturalOrder())));
+      return withThumbnails(conversations);
+   }
+   // map sang response và gắn thumbnail, chỉ 1 query media cho cả list
+   private List<ConversationResponse> withThumbnails(List<Conversation> conversations){
+      List<String> imageUrls = conversations.stream()
+         .map(Conversation::getImageUrls)
+         .filter(Objects::nonNull)
+         .flatMap(List::stream)
+         .distinct()
+         .toList();
+      Map<String, String> thumbnails = chatMediaService.thumbnailsFor(imageUrls);
+      return conversations.stream().map(conversation -> {
+         ConversationResponse response = conversationMapper.toConversationResponse(conversation);
+         if (response == null || response.getImageUrls() == null) {
+            return response;
+         }
+         return response.toBuilder()
+            .thumbnailUrls(ChatMediaService.thumbnailUrls(response.getImageUrls(), thumbnails))
+            .build();
+      }).toList();
    }
    // xóa message
    public Void deleteMessage(String messageId){
@@ -70,6 +115,7 @@ public ConversationResponse createMessage(String roomId, ConversationRequest con
       throw new AppException(ErrorCode.MESSAGE_CANNOT_DELETE);
    }
    conversationRepository.deleteById(messageId);
+   messageSearchService.delete(messageId);
      return null;
    }
 public ConversationResponse update(String messageId,ConversationRequest conversationRequest){
@@ -82,11 +128,17 @@ public ConversationResponse update(String messageId,ConversationRequest conversa
    }
    conversation.setCreatedAt(LocalDateTime.now(java.time.ZoneId.of("Asia/Ho_Chi_Minh")));
    conversation.setMessage(conversationRequest.getMessage());
-     return conversationMapper.toConversationResponse(conversationRepository.save(conversation));
+   Conversation saved = conversationRepository.save(conversation);
+   messageSearchService.index(saved);
+     return withThumbnails(List.of(saved)).get(0);
    }
-   // xóa message theo room
+   // xóa message theo room bằng 2 câu bulk delete (ảnh trước, message sau) thay vì load từng entity
+   @Transactional
    public Void deleteMessageByRoomId(String roomId){
+      conversationRepository.deleteImageUrlsByRoomChatId(roomId);
       conversationRepository.deleteByRoomChatId(roomId);
+      messageSearchService.deleteRoom(roomId);
+      chatArchiveService.deleteRoom(roomId);
       return null;
    }
 }
\ No newline at end of file
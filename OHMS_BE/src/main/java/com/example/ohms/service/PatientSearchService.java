@@ -0,0 +1,168 @@
+package com.example.ohms.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.example.ohms.configuration.PatientSearchConfig;
+import com.example.ohms.dto.response.PatientMatch;
+import com.example.ohms.entity.User;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.repository.projection.PatientIndexView;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.utils.PhoneNumbers;
+import com.example.ohms.utils.PrefixIndex;
+import com.example.ohms.utils.VietnameseText;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Typeahead tìm bệnh nhân ở quầy tiếp đón theo tiền tố số điện thoại, tên (bỏ dấu, khớp từ bất kỳ trong tên)
+ * hoặc số định danh. Index nằm trong RAM ({@link PrefixIndex}), dựng từ DB lúc khởi động và cập nhật từng
+ * bệnh nhân khi có {@link PrincipalChangedEvent} (tạo/sửa bệnh nhân offline, đăng ký, admin sửa user).
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PatientSearchService {
+    static final Set<String> PATIENT_ROLES = Set.of("PATIENT", "OFFLINE_PATIENT");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+
+    UserRepository userRepository;
+    PatientSearchConfig patientSearchConfig;
+    PrefixIndex<PatientMatch> index = new PrefixIndex<>(PatientMatch::getId, PatientSearchService::keysOf);
+
+    /**
+     * Tối đa {@code limit} bệnh nhân khớp tiền tố: số điện thoại trước (gõ "912", "0912" hay "+84 912" đều được),
+     * sau đó tới tên/số định danh.
+     */
+    @PreAuthorize("hasRole('ADMIN') or hasRole('RECEPTION') or hasRole('DOCTOR')")
+    public List<PatientMatch> search(String query, int limit) {
+        if (query == null || query.isBlank()) {
+            return List.of();
+        }
+        Set<String> prefixes = new LinkedHashSet<>();
+        String phone = PhoneNumbers.normalize(query);
+        if (phone != null) {
+            prefixes.add(phone);
+        }
+        prefixes.add(normalizeText(query));
+        return index.search(new ArrayList<>(prefixes), Math.max(1, Math.min(limit, patientSearchConfig.getMaxResults())));
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPrincipalChanged(PrincipalChangedEvent event) {
+        // đổi role/permission không đổi ai là bệnh nhân, gán role cho user đi qua event của từng user
+        if (event.userId() != null) {
+            refresh(event.userId());
+        }
+    }
+
+    void refresh(String userId) {
+        userRepository.findByIdWithRoles(userId)
+                .filter(PatientSearchService::isPatient)
+                .map(PatientSearchService::toMatch)
+                .ifPresentOrElse(index::put, () -> index.remove(userId));
+    }
+
+    // index dựng ở background, trong lúc đó search trả ít kết quả hơn chứ không chặn request
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildOnStartup() {
+        Thread.ofVirtual().name("patient-search-reindex").start(() -> {
+            try {
+                long started = System.nanoTime();
+                int count = reindex();
+                log.info("Patient search index built with {} patients in {} ms", count,
+                        (System.nanoTime() - started) / 1_000_000);
+            } catch (Exception e) {
+                log.error("Patient search reindex failed: {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    public int reindex() {
+        List<PatientMatch> patients = new ArrayList<>();
+        String afterId = "";
+        int batchSize = Math.max(1, patientSearchConfig.getReindexBatchSize());
+        while (true) {
+            List<PatientIndexView> rows = userRepository.findPatientIndexRowsAfter(afterId, PATIENT_ROLES,
+                    PageRequest.ofSize(batchSize));
+            for (PatientIndexView row : rows) {
+                patients.add(toMatch(row.getId(), row.getUsername(), row.getPhone(), row.getIdentification()));
+            }
+            if (rows.size() < batchSize) {
+                break;
+            }
+            afterId = rows.get(rows.size() - 1).getId();
+        }
+        index.load(patients);
+        return patients.size();
+    }
+
+    @Scheduled(fixedDelayString = "${patient.search.compact-interval-ms:30000}")
+    public void compact() {
+        int merged = index.compact();
+        if (merged > 0) {
+            log.debug("Patient search index merged {} changed patients", merged);
+        }
+    }
+
+    private static boolean isPatient(User user) {
+        return user.getRoles() != null && user.getRoles().stream().anyMatch(role -> PATIENT_ROLES.contains(role.getName()));
+    }
+
+    private static PatientMatch toMatch(User user) {
+        return toMatch(user.getId(), user.getUsername(), user.getPhone(), user.getIdentification());
+    }
+
+    private static PatientMatch toMatch(String id, String username, Integer phone, String identification) {
+        return PatientMatch.builder()
+                .id(id)
+                .username(username)
+                .phone(PhoneNumbers.normalize(phone))
+                .identification(identification)
+                .build();
+    }
+
+    // phone, số định danh, tên bỏ dấu và mỗi phần đuôi tên bắt đầu từ một từ ("nguyen van an", "van an", "an")
+    static Collection<String> keysOf(PatientMatch patient) {
+        List<String> keys = new ArrayList<>(5);
+        if (patient.getPhone() != null) {
+            keys.add(patient.getPhone());
+        }
+        if (patient.getIdentification() != null && !patient.getIdentification().isBlank()) {
+            keys.add(normalizeText(patient.getIdentification()));
+        }
+        String name = normalizeText(patient.getUsername());
+        if (!name.isEmpty()) {
+            keys.add(name);
+            for (int i = name.indexOf(' '); i >= 0; i = name.indexOf(' ', i + 1)) {
+                keys.add(name.substring(i + 1));
+            }
+        }
+        return keys;
+    }
+
+    static String normalizeText(String text) {
+        return SPACES.matcher(VietnameseText.fold(text)).replaceAll(" ").strip();
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.ohms.service;
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.example.ohms.dto.request.PermissionRequest;
@@ -12,6 +13,7 @@ import com.example.ohms.exception.ErrorCode;
 import com.example.ohms.mapper.PermissionMapper;
 import com.example.ohms.repository.PermissionRepository;
 import com.example.ohms.repository.RoleRepository;
+import com.example.ohms.security.PrincipalChangedEvent;
 
 import jakarta.transaction.Transactional;
 import lombok.AccessLevel;
@@ -26,6 +28,7 @@ public class PermissionService {
    PermissionRepository permissionRepository;
    PermissionMapper permissionMapper;
    RoleRepository roleRepository;
+   ApplicationEventPublisher eventPublisher;
    //  mình chưa biết nên để cái này theo 
    public PermissionResponse createPermission(PermissionRequest permissionRequest){
       Permission permission = permissionMapper.toPermission(permissionRequest);
@@ -41,6 +44,7 @@ public class PermissionService {
       }
       roleRepository.saveAll(roleRepository.findAll()); 
       permissionRepository.delete(permission);
+      eventPublisher.publishEvent(PrincipalChangedEvent.all());
    }
 
    public List<PermissionResponse> getAllPermission(){
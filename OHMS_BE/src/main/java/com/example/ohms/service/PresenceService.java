@@ -0,0 +1,249 @@
+package com.example.ohms.service;
+
+import java.security.Principal;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.messaging.SessionConnectEvent;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import com.example.ohms.configuration.ChatPresenceConfig;
+import com.example.ohms.dto.response.PresenceResponse;
+import com.example.ohms.repository.RoomChatRepository;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Presence và typing cho chat, giữ hoàn toàn trên RAM.
+ * User được tính là online trong 1 room khi có ít nhất 1 session đã đăng nhập đang subscribe /topic/room/{id}
+ * và user là thành viên room (kiểm tra DB 1 lần lúc subscribe). Typing chỉ nhận từ user đang online trong room
+ * nên không query lại DB. Event chỉ bắn qua broker, không lưu.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PresenceService {
+    private static final Pattern ROOM_TOPIC = Pattern.compile("^/topic/room/([^/]+)$");
+
+    SimpMessagingTemplate simpMessagingTemplate;
+    ChatPresenceConfig chatPresenceConfig;
+    RoomChatRepository roomChatRepository;
+
+    // userId -> các session đang mở
+    Map<String, Set<String>> sessionsByUser = new ConcurrentHashMap<>();
+    // sessionId -> user + các room session đó subscribe
+    Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+    // roomId -> userId -> số subscription của user trong room
+    Map<String, Map<String, Integer>> roomMembers = new ConcurrentHashMap<>();
+    // (room, user) -> lần cuối typing event được gửi đi
+    Map<TypingKey, TypingState> typingStates = new ConcurrentHashMap<>();
+
+    @EventListener
+    public void onConnect(SessionConnectEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        Principal user = event.getUser();
+        if (user != null) {
+            connect(accessor.getSessionId(), user.getName());
+        }
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        if (accessor.getDestination() == null) {
+            return;
+        }
+        Matcher matcher = ROOM_TOPIC.matcher(accessor.getDestination());
+        if (matcher.matches()) {
+            subscribe(accessor.getSessionId(), accessor.getSubscriptionId(), matcher.group(1));
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.wrap(event.getMessage());
+        unsubscribe(accessor.getSessionId(), accessor.getSubscriptionId());
+    }
+
+    // gồm cả đóng socket bình thường lẫn mất heartbeat
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        disconnect(event.getSessionId());
+    }
+
+    public void connect(String sessionId, String userId) {
+        sessions.putIfAbsent(sessionId, new SessionState(userId, new ConcurrentHashMap<>()));
+        sessionsByUser.computeIfAbsent(userId, key -> ConcurrentHashMap.newKeySet()).add(sessionId);
+    }
+
+    public void subscribe(String sessionId, String subscriptionId, String roomId) {
+        SessionState session = sessions.get(sessionId);
+        if (session == null || subscriptionId == null) {
+            return;
+        }
+        if (!roomChatRepository.existsByIdAndUser_Id(roomId, session.userId())) {
+            log.debug("Ignoring presence of {} in room {}: not a member", session.userId(), roomId);
+            return;
+        }
+        if (session.rooms().putIfAbsent(subscriptionId, roomId) == null) {
+            join(roomId, session.userId());
+        }
+    }
+
+    public void unsubscribe(String sessionId, String subscriptionId) {
+        SessionState session = sessions.get(sessionId);
+        if (session == null || subscriptionId == null) {
+            return;
+        }
+        String roomId = session.rooms().remove(subscriptionId);
+        if (roomId != null) {
+            leave(roomId, session.userId());
+        }
+    }
+
+    public void disconnect(String sessionId) {
+        SessionState session = sessions.remove(sessionId);
+        if (session == null) {
+            return;
+        }
+        session.rooms().values().forEach(roomId -> leave(roomId, session.userId()));
+        sessionsByUser.computeIfPresent(session.userId(), (userId, userSessions) -> {
+            userSessions.remove(sessionId);
+            return userSessions.isEmpty() ? null : userSessions;
+        });
+    }
+
+    public boolean isOnline(String userId) {
+        return sessionsByUser.containsKey(userId);
+    }
+
+    public List<String> onlineUsers(String roomId) {
+        Map<String, Integer> members = roomMembers.get(roomId);
+        return members == null ? List.of() : List.copyOf(members.keySet());
+    }
+
+    /**
+     * Gộp typing event: tối đa typingMaxPerSecond event/giây cho 1 user trong 1 room, kể cả khi đổi trạng thái.
+     * Trạng thái đổi trong cửa sổ được giữ lại và gửi bởi {@link #flushPendingTyping} khi hết cửa sổ,
+     * nên client gửi true/false xen kẽ cũng không fan-out từng frame mà dừng gõ vẫn tới được room.
+     * Chỉ nhận từ user đang online trong room. Trả về true nếu event được gửi đi ngay.
+     */
+    public boolean typing(String roomId, String userId, boolean typing) {
+        if (roomId == null || userId == null || !isMember(roomId, userId)) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        boolean[] send = new boolean[1];
+        typingStates.compute(new TypingKey(roomId, userId), (key, last) -> {
+            if (last == null || now - last.sentAt() >= typingIntervalMs()) {
+                send[0] = true;
+                return new TypingState(now, typing, null);
+            }
+            return new TypingState(last.sentAt(), last.typing(), last.typing() == typing ? null : typing);
+        });
+        if (send[0]) {
+            publish("TYPING", roomId, userId, typing);
+        }
+        return send[0];
+    }
+
+    // gửi trạng thái typing bị giữ lại trong cửa sổ gộp (thường là dừng gõ)
+    @Scheduled(fixedDelay = 250)
+    public void flushPendingTyping() {
+        long now = System.currentTimeMillis();
+        typingStates.forEach((key, state) -> {
+            if (state.pending() == null || now - state.sentAt() < typingIntervalMs()) {
+                return;
+            }
+            boolean[] send = new boolean[1];
+            TypingState flushed = typingStates.computeIfPresent(key, (k, current) -> {
+                if (current.pending() == null || now - current.sentAt() < typingIntervalMs()) {
+                    return current;
+                }
+                send[0] = true;
+                return new TypingState(now, current.pending(), null);
+            });
+            if (send[0]) {
+                publish("TYPING", key.roomId(), key.userId(), flushed.typing());
+            }
+        });
+    }
+
+    private boolean isMember(String roomId, String userId) {
+        Map<String, Integer> members = roomMembers.get(roomId);
+        return members != null && members.containsKey(userId);
+    }
+
+    private long typingIntervalMs() {
+        return 1000L / Math.max(1, chatPresenceConfig.getTypingMaxPerSecond());
+    }
+
+    // map con chỉ bị sửa trong compute của room nên đếm +/- là atomic theo từng room
+    private void join(String roomId, String userId) {
+        boolean[] first = new boolean[1];
+        roomMembers.compute(roomId, (key, members) -> {
+            Map<String, Integer> current = members != null ? members : new ConcurrentHashMap<>();
+            first[0] = current.merge(userId, 1, Integer::sum) == 1;
+            return current;
+        });
+        if (first[0]) {
+            publish("ONLINE", roomId, userId, false);
+        }
+    }
+
+    private void leave(String roomId, String userId) {
+        boolean[] last = new boolean[1];
+        roomMembers.computeIfPresent(roomId, (key, members) -> {
+            Integer count = members.get(userId);
+            if (count == null) {
+                return members;
+            }
+            if (count > 1) {
+                members.put(userId, count - 1);
+            } else {
+                members.remove(userId);
+                last[0] = true;
+            }
+            return members.isEmpty() ? null : members;
+        });
+        if (last[0]) {
+            typingStates.remove(new TypingKey(roomId, userId));
+            publish("OFFLINE", roomId, userId, false);
+        }
+    }
+
+    private void publish(String type, String roomId, String userId, boolean typing) {
+        simpMessagingTemplate.convertAndSend("/topic/room/" + roomId + "/presence", PresenceResponse.builder()
+                .type(type)
+                .roomId(roomId)
+                .userId(userId)
+                .typing(typing)
+                .timestamp(System.currentTimeMillis())
+                .build());
+    }
+
+    private record SessionState(String userId, Map<String, String> rooms) {
+    }
+
+    private record TypingKey(String roomId, String userId) {
+    }
+
+    // pending: trạng thái mới nhận trong cửa sổ gộp, chưa gửi
+    private record TypingState(long sentAt, boolean typing, Boolean pending) {
+    }
+}
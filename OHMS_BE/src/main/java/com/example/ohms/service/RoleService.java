@@ -3,6 +3,7 @@ package com.example.ohms.service;
 import java.util.HashSet;
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import com.example.ohms.dto.request.RoleRequest;
@@ -15,6 +16,7 @@ import com.example.ohms.mapper.RoleMapper;
 import com.example.ohms.repository.PermissionRepository;
 import com.example.ohms.repository.RoleRepository;
 import com.example.ohms.repository.UserRepository;
+import com.example.ohms.security.PrincipalChangedEvent;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +30,7 @@ public class RoleService {
    PermissionRepository permissionRepository;
    RoleMapper roleMapper;
    UserRepository userRepository;
+   ApplicationEventPublisher eventPublisher;
 // create
 // delete
    public RoleResponse createRole(RoleRequest roleRequest){
@@ -35,6 +38,7 @@ public class RoleService {
          var permission=  permissionRepository.findAllById(roleRequest.getPermissions());
          role.setPermissions(new HashSet<>(permission));
          role = roleRepository.save(role);
+         eventPublisher.publishEvent(PrincipalChangedEvent.all());
          return roleMapper.toRoleResponse(role);
    }
    public void deleteRole(String id){
@@ -43,6 +47,7 @@ public class RoleService {
         user.getRoles().remove(role);
       }
       roleRepository.delete(role);
+      eventPublisher.publishEvent(PrincipalChangedEvent.all());
    }
    public List<RoleResponse> getAllRole(){
       return roleRepository.findAll().stream().map(roleMapper :: toRoleResponse).toList();
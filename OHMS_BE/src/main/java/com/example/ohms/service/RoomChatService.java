@@ -6,6 +6,7 @@ import java.util.Set;
 
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.ohms.dto.request.RoomChatRequest;
 import com.example.ohms.dto.response.RoomChatResponse;
@@ -56,6 +57,7 @@ public class RoomChatService {
    }
    // xóa room chat thì xóa luôn cả message
    @PreAuthorize("isAuthenticated()")
+   @Transactional
    public Void deleteRoomChat(String roomId){
       messageService.deleteMessageByRoomId(roomId);
       roomChatRepository.deleteById(roomId);
@@ -6,6 +6,7 @@ import java.time.LocalTime;
 import java.time.temporal.TemporalAdjusters;
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 
@@ -18,6 +19,7 @@ import com.example.ohms.exception.ErrorCode;
 import com.example.ohms.mapper.ScheduleMapper;
 import com.example.ohms.repository.ScheduleRepository;
 import com.example.ohms.repository.UserRepository;
+import com.example.ohms.service.ai.AiContextChangedEvent;
 
 import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
@@ -31,6 +33,7 @@ public class ScheduleService {
    ScheduleMapper scheduleMapper;
    UserRepository userRepository;
    AppointmentService appointmentService; // Inject AppointmentService
+   ApplicationEventPublisher eventPublisher;
 // tạo lịch mới
 public ScheduleResponse createSchedule(ScheduleRequest scheduleRequest,String doctorId){
 if (scheduleRequest.getWorkDate().isBefore(LocalDate.now())) {
@@ -44,6 +47,7 @@ if (scheduleRequest.getWorkDate().isBefore(LocalDate.now())) {
    Schedule schedule =  scheduleMapper.toSchedule(scheduleRequest);
    schedule.setDoctor(user);
    scheduleRepository.save(schedule);
+   eventPublisher.publishEvent(new AiContextChangedEvent(AiContextChangedEvent.SCHEDULE));
    
    // Auto-assign appointments có doctorId = null vào schedule mới này
    int assignedCount = appointmentService.autoAssignAppointmentsOnScheduleCreate(
@@ -167,6 +171,7 @@ public ScheduleResponse updateSchedule(String scheduleId, ScheduleRequest schedu
    
    
    scheduleRepository.save(schedule);
+   eventPublisher.publishEvent(new AiContextChangedEvent(AiContextChangedEvent.SCHEDULE));
    return scheduleMapper.toScheduleResponse(schedule);
 }
 // tí quay lại check relation trong bảng
@@ -188,6 +193,7 @@ public Void deleteSchedule(String scheduleId){
     }
     
     scheduleRepository.deleteById(scheduleId);
+    eventPublisher.publishEvent(new AiContextChangedEvent(AiContextChangedEvent.SCHEDULE));
     return null;
 }
 
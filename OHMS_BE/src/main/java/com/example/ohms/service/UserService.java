@@ -1,14 +1,21 @@
 package com.example.ohms.service;
 
 import java.io.IOException;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.UUID;
 import java.util.stream.Collectors;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.crypto.password.PasswordEncoder;
@@ -19,17 +26,27 @@ import com.example.ohms.dto.request.OfflineUserRequest;
 import com.example.ohms.dto.request.ResetPasswordRequest;
 import com.example.ohms.dto.request.ChangePasswordRequest;
 import com.example.ohms.dto.request.UserRequest;
+import com.example.ohms.dto.request.UserSearchRequest;
+import com.example.ohms.dto.response.DoctorSummary;
 import com.example.ohms.dto.response.OfflineUserResponse;
+import com.example.ohms.dto.response.PageResponse;
+import com.example.ohms.dto.response.UserListItem;
 import com.example.ohms.dto.response.UserResponse;
 import com.example.ohms.entity.Role;
 import com.example.ohms.entity.User;
+import com.example.ohms.enums.MedicalSpecialty;
 import com.example.ohms.exception.AppException;
 import com.example.ohms.exception.ErrorCode;
 import com.example.ohms.exception.Oauthexception.ResourceNotFoundException;
 import com.example.ohms.mapper.UserMapper;
 import com.example.ohms.repository.RoleRepository;
 import com.example.ohms.repository.UserRepository;
+import com.example.ohms.repository.projection.UserListView;
+import com.example.ohms.security.AuthorityRegistry;
+import com.example.ohms.security.PrincipalChangedEvent;
 import com.example.ohms.security.UserPrincipal;
+import com.example.ohms.service.ai.AiContextChangedEvent;
+import com.example.ohms.utils.PhoneNumbers;
 
 import jakarta.mail.MessagingException;
 import lombok.AccessLevel;
@@ -37,7 +54,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 @Service
 @RequiredArgsConstructor
 @FieldDefaults(level =  AccessLevel.PRIVATE,makeFinal = true)
@@ -46,9 +62,16 @@ public class UserService {
    UserRepository userRepository;
    RoleRepository roleRepository;
    UserMapper userMapper;
-   CloudinaryService cloudinaryService;
+   AvatarService avatarService;
    PasswordEncoder passwordEncoder;
    MailService mailService;
+   ApplicationEventPublisher eventPublisher;
+   AuthorityRegistry authorityRegistry;
+   DoctorDirectoryService doctorDirectoryService;
+   private static final int MAX_PAGE_SIZE = 100;
+   // số thuê bao VN sau khi bỏ số 0 đầu (cột phone kiểu Integer)
+   private static final int PHONE_DIGITS = 9;
+   private static final Set<String> SEARCH_SORT_FIELDS = Set.of("username", "email", "phone", "id");
    @Autowired
    RoleService roleService;
    // @PreAuthorize("hasRole('ADMIN')")
@@ -60,9 +83,6 @@ public UserResponse createUser(UserRequest userRequestDto, MultipartFile avatar)
         throw new AppException(ErrorCode.USER_EXISTED);
     }
 
-    if (avatar != null && !avatar.isEmpty()) {
-        user.setImageUrl(cloudinaryService.uploadFile(avatar));
-    }
     user.setPassword(passwordEncoder.encode(userRequestDto.getPassword()));
 
     log.info("Roles from request: {}", userRequestDto.getRoles());
@@ -84,15 +104,20 @@ public UserResponse createUser(UserRequest userRequestDto, MultipartFile avatar)
         user.setMedicleSpecially(specialities);
     }
     user.setRoles(roles);
+    // avatar resize/upload chạy nền, user được lưu ngay với ảnh tạm
+    AvatarService.PendingAvatar pendingAvatar = avatarService.accept(avatar);
+    if (pendingAvatar != null) {
+        user.setImageUrl(avatarService.placeholderUrl());
+    }
     userRepository.save(user);
+    avatarService.submit(user.getId(), pendingAvatar);
+    eventPublisher.publishEvent(new AiContextChangedEvent(AiContextChangedEvent.USER));
+    eventPublisher.publishEvent(PrincipalChangedEvent.user(user.getId()));
     return userMapper.toUserResponseDto(user);
 }
 // đăng kí thì auto là client
    public UserResponse registerUser( UserRequest userRequestDto,MultipartFile avatar) throws IOException{
          User user = userMapper.toUser(userRequestDto);
-      if(avatar != null && !avatar.isEmpty()){
-         user.setImageUrl(cloudinaryService.uploadFile(avatar));
-      }
       if(userRepository.findByEmail(userRequestDto.getEmail()).isPresent()){
          throw new AppException(ErrorCode.USER_EXISTED);
       }
@@ -100,7 +125,13 @@ public UserResponse createUser(UserRequest userRequestDto, MultipartFile avatar)
       .orElseThrow(() -> new AppException(ErrorCode.ROLE_NOT_FOUND));
       user.setPassword(passwordEncoder.encode(userRequestDto.getPassword()));
       user.setRoles(Set.of(clientRole));
+      AvatarService.PendingAvatar pendingAvatar = avatarService.accept(avatar);
+      if(pendingAvatar != null){
+         user.setImageUrl(avatarService.placeholderUrl());
+      }
       userRepository.save(user);
+      avatarService.submit(user.getId(), pendingAvatar);
+      eventPublisher.publishEvent(PrincipalChangedEvent.user(user.getId()));
       return userMapper.toUserResponseDto(user);
    }
 
@@ -132,11 +163,8 @@ public UserResponse createUser(UserRequest userRequestDto, MultipartFile avatar)
          var specialities = new HashSet<>(userRequestDto.getMedicleSpecially());
          user.setMedicleSpecially(specialities);
       }
-      if(avatar != null && !avatar.isEmpty()){
-         log.info("Avatar received: name={}, size={}", avatar.getOriginalFilename(), avatar.getSize());
-    user.setImageUrl(cloudinaryService.uploadFile(avatar));
-    log.error("aaaaaaaaaa"); // Kiểm tra log này
-      }
+      // ảnh cũ giữ nguyên tới khi ảnh mới xử lý xong
+      AvatarService.PendingAvatar pendingAvatar = avatarService.accept(avatar);
 
       // lấy mảng role mới áp vào mảng cũ
       // check lại cái role
@@ -150,7 +178,11 @@ public UserResponse createUser(UserRequest userRequestDto, MultipartFile avatar)
         }
         user.setRoles(roles); // Cập nhật roles, kể cả khi rỗng
     }
-    return userMapper.toUserResponseDto(userRepository.save(user));
+    User saved = userRepository.save(user);
+    avatarService.submit(userId, pendingAvatar);
+    eventPublisher.publishEvent(new AiContextChangedEvent(AiContextChangedEvent.USER));
+    eventPublisher.publishEvent(PrincipalChangedEvent.user(userId));
+    return userMapper.toUserResponseDto(saved);
    }
    // user update user
 @PostAuthorize("returnObject.id == authentication.name")
@@ -172,27 +204,11 @@ public UserResponse userUpdateUser(String userId, UserRequest userRequestDto, Mu
     // Update password
     if (userRequestDto.getPassword() != null && !userRequestDto.getPassword().isEmpty()) {
         user.setPassword(passwordEncoder.encode(userRequestDto.getPassword()));
+        eventPublisher.publishEvent(PrincipalChangedEvent.user(userId));
     }
     
-    // Update avatar - XÓA ẢNH CŨ TRƯỚC KHI UPLOAD MỚI
-    if (avatar != null && !avatar.isEmpty()) {
-        // Xóa ảnh cũ trên Cloudinary nếu có
-        if (user.getImageUrl() != null && !user.getImageUrl().isEmpty()) {
-            try {
-                String publicId = extractPublicIdFromUrl(user.getImageUrl());
-                cloudinaryService.deleteFile(publicId);
-                log.info("Deleted old avatar: {}", publicId);
-            } catch (Exception e) {
-                log.warn("Failed to delete old avatar: {}", e.getMessage());
-                // Không throw exception, vẫn tiếp tục upload ảnh mới
-            }
-        }
-        
-        // Upload ảnh mới
-        String newImageUrl = cloudinaryService.uploadFile(avatar);
-        user.setImageUrl(newImageUrl);
-        log.info("Uploaded new avatar: {}", newImageUrl);
-    }
+    // Update avatar - chạy nền, ảnh cũ chỉ bị xóa khi ảnh mới đã sẵn sàng
+    AvatarService.PendingAvatar pendingAvatar = avatarService.accept(avatar);
     
     // Update phone
     if (userRequestDto.getPhone() != null) {
@@ -234,30 +250,12 @@ public UserResponse userUpdateUser(String userId, UserRequest userRequestDto, Mu
         user.setAddress(userRequestDto.getAddress());
     }
 
-    
-    return userMapper.toUserResponseDto(userRepository.save(user));
-}
-
-// Helper method để extract public_id từ Cloudinary URL
-private String extractPublicIdFromUrl(String cloudinaryUrl) {
-
-    try {
-        String[] parts = cloudinaryUrl.split("/upload/");
-        if (parts.length > 1) {
-            String pathWithVersion = parts[1];
-            // Bỏ version number (v1234567890/)
-            String path = pathWithVersion.substring(pathWithVersion.indexOf("/") + 1);
-            // Bỏ extension
-            int lastDot = path.lastIndexOf(".");
-            if (lastDot > 0) {
-                return path.substring(0, lastDot);
-            }
-            return path;
-        }
-    } catch (Exception e) {
-        log.error("Failed to extract public_id from URL: {}", cloudinaryUrl, e);
-    }
-    return null;
+    User saved = userRepository.save(user);
+    avatarService.submit(userId, pendingAvatar);
+    eventPublisher.publishEvent(new AiContextChangedEvent(AiContextChangedEvent.USER));
+    // hồ sơ bác sĩ nằm trong DoctorDirectoryService
+    eventPublisher.publishEvent(PrincipalChangedEvent.user(userId));
+    return userMapper.toUserResponseDto(saved);
 }
 
 // forgot password
@@ -281,6 +279,7 @@ private String extractPublicIdFromUrl(String cloudinaryUrl) {
       
       user.setPassword(passwordEncoder.encode(request.getNewPassword()));
       userRepository.save(user);
+      eventPublisher.publishEvent(PrincipalChangedEvent.user(user.getId()));
       return null;
  }
 
@@ -305,6 +304,7 @@ private String extractPublicIdFromUrl(String cloudinaryUrl) {
       // Cập nhật mật khẩu mới
       user.setPassword(passwordEncoder.encode(request.getNewPassword()));
       userRepository.save(user);
+      eventPublisher.publishEvent(PrincipalChangedEvent.user(id));
       
       return null;
  }
@@ -341,6 +341,7 @@ public UserResponse getDetailUser(Authentication authentication) {
     throw new AppException(ErrorCode.USER_NOT_FOUND);
 }
     //   @PreAuthorize("hasRole('admin')")
+    // load cả bảng, chỉ giữ cho các màn FE cũ; danh sách admin dùng searchUsers (phân trang)
       public List<UserResponse> getListhehe(){
          return userRepository.findAll().stream().map(userMapper :: toUserResponseDto).toList();
       }
@@ -349,24 +350,135 @@ public UserResponse getDetailUser(Authentication authentication) {
    public Void deleteUser(String id){
    // phần này từ từ
       userRepository.deleteById(id);
+      eventPublisher.publishEvent(new AiContextChangedEvent(AiContextChangedEvent.USER));
+      eventPublisher.publishEvent(PrincipalChangedEvent.user(id));
 
       return null;
    }
 // này sẽ lấy tất cả bác sĩ, xong filter chuyên ngành trong fe nha
+// giữ nguyên dạng UserResponse (roles, phone, dob, address...) vì FE đang dùng; 1 query theo role thay vì quét cả bảng
  public List<UserResponse> getListDoctor() {
-        return userRepository.findAll().stream()
-                .filter(user -> user.getRoles().stream()
-                        .anyMatch(role -> role.getName().equals("DOCTOR")))
+        return userRepository.findByRoleNameWithRoles("DOCTOR").stream()
                 .map(userMapper::toUserResponseDto)
                 .toList();
     }
 
- public UserDetails loadUserById(String id) {
-        User user = userRepository.findById(id).orElseThrow(
+// bản rút gọn cho danh sách/tìm theo chuyên khoa, đọc từ danh bạ trong RAM, không query DB
+ public List<DoctorSummary> getDoctorSummaries() {
+        return doctorDirectoryService.getDoctors();
+    }
+
+ public List<DoctorSummary> getDoctorsBySpecialty(MedicalSpecialty specialty) {
+        return doctorDirectoryService.getDoctors(specialty);
+    }
+
+    // danh sách user cho admin: 1 query projection (chỉ các cột hiển thị) + 1 query đếm + 1 query role của trang,
+    // chuyên khoa lấy từ DoctorDirectoryService
+    @PreAuthorize("hasRole('ADMIN')")
+    public PageResponse<UserListItem> searchUsers(UserSearchRequest filter, int page, int size) {
+        PageRequest pageable = PageRequest.of(Math.max(0, page), Math.min(Math.max(1, size), MAX_PAGE_SIZE),
+                searchSort(filter.getSort(), filter.getDirection()));
+        List<String> specialtyIds = List.of("");
+        if (filter.getSpecialty() != null) {
+            specialtyIds = doctorDirectoryService.getDoctors(filter.getSpecialty()).stream().map(DoctorSummary::getId).toList();
+            if (specialtyIds.isEmpty()) {
+                return PageResponse.of(Page.<UserListItem>empty(pageable));
+            }
+        }
+        String prefix = likePrefix(filter.getQ());
+        int[] phoneRange = prefix == null ? null : phoneRange(filter.getQ());
+        if (phoneRange != null && phoneRange.length == 0) {
+            return PageResponse.of(Page.<UserListItem>empty(pageable));
+        }
+        boolean email = phoneRange == null && prefix != null && prefix.contains("@");
+        Page<UserListView> rows = userRepository.search(
+                blankToNull(filter.getRole()),
+                filter.getProvider(),
+                filter.getEnabled(),
+                filter.getSpecialty() != null,
+                // IN () rỗng không hợp lệ trên MySQL nên khi không lọc chuyên khoa vẫn truyền 1 phần tử giữ chỗ
+                specialtyIds,
+                phoneRange == null && !email ? prefix : null,
+                email ? prefix : null,
+                phoneRange == null ? null : phoneRange[0],
+                phoneRange == null ? null : phoneRange[1],
+                pageable);
+        Map<String, Set<String>> roles = new HashMap<>();
+        if (!rows.isEmpty()) {
+            List<String> ids = rows.getContent().stream().map(UserListView::getId).toList();
+            for (Object[] row : userRepository.findRoleNamesByUserIds(ids)) {
+                roles.computeIfAbsent((String) row[0], k -> new TreeSet<>()).add((String) row[1]);
+            }
+        }
+        return PageResponse.of(rows.map(row -> toListItem(row, roles.getOrDefault(row.getId(), Set.of()))));
+    }
+
+    private static Sort searchSort(String field, String direction) {
+        String property = field == null || field.isBlank() ? "username" : field;
+        if (!SEARCH_SORT_FIELDS.contains(property)) {
+            throw new AppException(ErrorCode.INVALID_KEY);
+        }
+        Sort.Direction dir = "desc".equalsIgnoreCase(direction) ? Sort.Direction.DESC : Sort.Direction.ASC;
+        // id làm khóa phụ để thứ tự giữa các trang ổn định khi trùng tên
+        return "id".equals(property) ? Sort.by(dir, "id") : Sort.by(dir, property).and(Sort.by("id"));
+    }
+
+    // escape ký tự đại diện của LIKE bằng '!' (khớp ESCAPE trong query)
+    static String likePrefix(String q) {
+        if (q == null || q.isBlank()) {
+            return null;
+        }
+        return q.trim().replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+    }
+
+    // q là số điện thoại (kể cả đang gõ dở, "+84 912") -> khoảng [from, to] trên cột phone thay cho LIKE trên
+    // CAST(phone) không dùng được index. phone lưu kiểu Integer, mất số 0 đầu nên số VN 10 chữ số còn 9:
+    // "0912" -> [912000000, 912999999]. Dài hơn 9 chữ số thì so bằng; vượt Integer thì trả mảng rỗng (không khớp ai).
+    // Không phải số thì trả null để tìm theo username/email
+    static int[] phoneRange(String q) {
+        String phone = PhoneNumbers.normalize(q);
+        if (phone == null) {
+            return null;
+        }
+        String digits = phone.replaceFirst("^0+", "");
+        if (digits.length() >= PHONE_DIGITS) {
+            long exact = Long.parseLong(digits);
+            return exact > Integer.MAX_VALUE ? new int[0] : new int[]{(int) exact, (int) exact};
+        }
+        long scale = (long) Math.pow(10, PHONE_DIGITS - digits.length());
+        long from = digits.isEmpty() ? 0 : Long.parseLong(digits) * scale;
+        return new int[]{(int) from, (int) (from + scale - 1)};
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
+    }
+
+    private UserListItem toListItem(UserListView row, Set<String> roles) {
+        return UserListItem.builder()
+                .id(row.getId())
+                .username(row.getUsername())
+                .email(row.getEmail())
+                .phone(row.getPhone())
+                .imageUrl(row.getImageUrl())
+                .gender(row.getGender())
+                .provider(row.getProvider())
+                .enabled(row.getEnabled() == null || row.getEnabled())
+                .roles(roles)
+                .medicleSpecially(roles.contains(DoctorDirectoryService.DOCTOR_ROLE)
+                        ? doctorDirectoryService.findDoctor(row.getId()).map(DoctorSummary::getMedicleSpecially).orElse(Set.of())
+                        : Set.of())
+                .build();
+    }
+
+ public UserPrincipal loadUserById(String id) {
+        // một query kèm role, quyền của role lấy từ AuthorityRegistry
+        User user = userRepository.findByIdWithRoles(id).orElseThrow(
                 () -> new ResourceNotFoundException("User", "id", id)
         );
-
-        return UserPrincipal.create(user);
+        List<String> roleNames = user.getRoles() == null ? List.of()
+                : user.getRoles().stream().map(Role::getName).toList();
+        return UserPrincipal.create(user, authorityRegistry.grantedAuthorities(roleNames));
     }
 
 
@@ -404,13 +516,14 @@ public UserResponse getDetailUser(Authentication authentication) {
         }
         
         User savedUser = userRepository.save(user);
+        eventPublisher.publishEvent(PrincipalChangedEvent.user(savedUser.getId()));
         log.info("Offline user created successfully with id: {}", savedUser.getId());
         
         return userMapper.toOfflineUserResponse(savedUser);
     }
     
     /**
-     * Lấy thông tin offline user theo số điện thoại
+     * Lấy thông tin offline user theo số điện thoại (khớp đúng cả số), gõ dần thì dùng PatientSearchService
      */
     public OfflineUserResponse getOfflineUserByPhone(Integer phone) {
         log.info("Getting offline user by phone: {}", phone);
@@ -457,13 +570,14 @@ public UserResponse getDetailUser(Authentication authentication) {
         }
         
         User updatedUser = userRepository.save(user);
+        eventPublisher.publishEvent(PrincipalChangedEvent.user(id));
         log.info("Offline user updated successfully: {}", id);
         
         return userMapper.toOfflineUserResponse(updatedUser);
     }
     public List<User> getListUserHoho(){
-        List<User> users = userRepository.findAll();
-        return users.stream().filter(u-> u.getEmail() == null || u.getEmail().isEmpty()).toList();
+        // lọc user không có email ngay trong DB thay vì load cả bảng
+        return userRepository.findOfflineUsers();
     }
 }
 
@@ -0,0 +1,146 @@
+package com.example.ohms.service.ai;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.springframework.stereotype.Component;
+
+import com.example.ohms.configuration.AiResilienceConfig;
+import com.example.ohms.exception.AiUnavailableException;
+import com.example.ohms.utils.CircuitBreaker;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bọc mọi call tới Gemini: bulkhead giới hạn số call đồng thời, circuit breaker cắt khi API lỗi liên tục,
+ * timeout tổng cho mỗi call. Call chạy trên virtual thread nên request thread chỉ chờ tối đa callTimeout
+ * và không bao giờ giữ quá maxConcurrentCalls thread cho AI.
+ * Mọi trường hợp không có câu trả lời đều ném {@link AiUnavailableException} để caller dùng fallback.
+ */
+@Component
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AiCallGuard {
+    AiResilienceConfig config;
+    Semaphore bulkhead;
+    CircuitBreaker circuitBreaker;
+    ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    MeterRegistry meterRegistry;
+
+    public AiCallGuard(AiResilienceConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.meterRegistry = meterRegistry;
+        this.bulkhead = new Semaphore(config.getMaxConcurrentCalls());
+        this.circuitBreaker = new CircuitBreaker(config.getFailureThreshold(), TimeUnit.SECONDS.toMillis(config.getOpenSeconds()));
+        Gauge.builder("ai.circuit.state", circuitBreaker, cb -> cb.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half open")
+                .register(meterRegistry);
+        Gauge.builder("ai.bulkhead.active", bulkhead, b -> config.getMaxConcurrentCalls() - b.availablePermits())
+                .register(meterRegistry);
+        if (config.attemptBudgetMs() > TimeUnit.SECONDS.toMillis(config.getCallTimeoutSeconds())) {
+            log.warn("gemini.resilience.call-timeout-seconds={} is shorter than one attempt (connect + read = {} ms)",
+                    config.getCallTimeoutSeconds(), config.attemptBudgetMs());
+        }
+    }
+
+    public <T> T call(Callable<T> call) {
+        boolean entered;
+        try {
+            entered = bulkhead.tryAcquire(config.getMaxWaitMs(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw reject("interrupted", e);
+        }
+        if (!entered) {
+            throw reject("bulkhead_full", null);
+        }
+        try {
+            if (!circuitBreaker.tryAcquirePermission()) {
+                throw reject("circuit_open", null);
+            }
+            // call kết thúc mà không ghi nhận thành/bại (bị interrupt, submit lỗi) thì trả lượt thử HALF_OPEN,
+            // nếu không circuit kẹt ở trạng thái chặn mọi call tới khi restart
+            boolean recorded = false;
+            Future<T> future = null;
+            try {
+                future = executor.submit(call);
+                T result = future.get(config.getCallTimeoutSeconds(), TimeUnit.SECONDS);
+                recorded = true;
+                onSuccess();
+                return result;
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                recorded = true;
+                circuitBreaker.onFailure();
+                throw reject("timeout", e);
+            } catch (ExecutionException e) {
+                recorded = true;
+                circuitBreaker.onFailure();
+                log.warn("Gemini call failed: {}", e.getCause() == null ? e.getMessage() : e.getCause().getMessage());
+                throw reject("error", e.getCause());
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+                throw reject("interrupted", e);
+            } finally {
+                if (!recorded) {
+                    circuitBreaker.releasePermission();
+                }
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    // dùng cho stream: không chạy qua executor nhưng vẫn tôn trọng và cập nhật circuit
+    public boolean tryAcquirePermission() {
+        if (circuitBreaker.tryAcquirePermission()) {
+            return true;
+        }
+        count("circuit_open");
+        return false;
+    }
+
+    public void onSuccess() {
+        circuitBreaker.onSuccess();
+        count("success");
+    }
+
+    public void onFailure() {
+        circuitBreaker.onFailure();
+        count("error");
+    }
+
+    public void releasePermission() {
+        circuitBreaker.releasePermission();
+    }
+
+    public CircuitBreaker.State state() {
+        return circuitBreaker.getState();
+    }
+
+    private AiUnavailableException reject(String reason, Throwable cause) {
+        count(reason);
+        return new AiUnavailableException(reason, cause);
+    }
+
+    private void count(String outcome) {
+        meterRegistry.counter("ai.calls", "outcome", outcome).increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.ohms.service.ai;
+
+/**
+ * Bắn ra khi dữ liệu nằm trong prompt AI thay đổi (bác sĩ, lịch làm việc, dịch vụ khám).
+ * {@link AiContextSnapshotService} nghe event này để build lại snapshot.
+ */
+public record AiContextChangedEvent(String source) {
+    public static final String USER = "user";
+    public static final String SCHEDULE = "schedule";
+    public static final String EXAMINATION = "examination";
+}
@@ -0,0 +1,27 @@
+package com.example.ohms.service.ai;
+
+import java.time.LocalDate;
+import java.util.Map;
+
+import com.example.ohms.enums.MedicalSpecialty;
+
+/**
+ * Các block text dựng sẵn cho prompt, immutable nên đọc từ nhiều thread không cần lock.
+ * {@code version} tăng mỗi lần build, dùng làm một phần của cache key.
+ * Dịch vụ và bác sĩ có thêm bản tách theo chuyên khoa để prompt chỉ lấy các khoa liên quan.
+ */
+public record AiContextSnapshot(
+        long version,
+        long generation,
+        LocalDate day,
+        String specialtiesInfo,
+        String servicesInfo,
+        String doctorsInfo,
+        Map<MedicalSpecialty, String> servicesBySpecialty,
+        Map<MedicalSpecialty, String> doctorsBySpecialty) {
+
+    public AiContextSnapshot(long version, long generation, LocalDate day,
+            String specialtiesInfo, String servicesInfo, String doctorsInfo) {
+        this(version, generation, day, specialtiesInfo, servicesInfo, doctorsInfo, Map.of(), Map.of());
+    }
+}
@@ -0,0 +1,292 @@
+package com.example.ohms.service.ai;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.ohms.dto.response.DoctorSummary;
+import com.example.ohms.entity.MedicalExamination;
+import com.example.ohms.entity.Schedule;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.repository.MedicleExaminatioRepository;
+import com.example.ohms.repository.ScheduleRepository;
+import com.example.ohms.service.DoctorDirectoryService;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Giữ sẵn phần context "tĩnh" của prompt chatbot: chuyên khoa, dịch vụ, bác sĩ và lịch 2 tuần.
+ * Snapshot được build lại khi có {@link AiContextChangedEvent}, khi danh bạ bác sĩ đổi version hoặc khi sang ngày mới.
+ * Bác sĩ lấy từ {@link DoctorDirectoryService} trong RAM, build chỉ tốn 2 query (lịch, dịch vụ)
+ * và được swap nguyên khối qua AtomicReference.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AiContextSnapshotService {
+    private static final Map<MedicalSpecialty, String> SPECIALTY_NAMES = specialtyNames();
+
+    DoctorDirectoryService doctorDirectoryService;
+    ScheduleRepository scheduleRepository;
+    MedicleExaminatioRepository medicalExaminationRepository;
+    TransactionTemplate transactionTemplate;
+
+    AtomicReference<AiContextSnapshot> current = new AtomicReference<>();
+    // tăng mỗi lần dữ liệu nguồn thay đổi, snapshot build từ generation cũ coi như stale
+    AtomicLong generation = new AtomicLong();
+    AtomicLong versions = new AtomicLong();
+    ReentrantLock rebuildLock = new ReentrantLock();
+
+    public static String specialtyName(MedicalSpecialty specialty) {
+        return SPECIALTY_NAMES.getOrDefault(specialty, specialty.name());
+    }
+
+    public static Map<MedicalSpecialty, String> specialtyNameMap() {
+        return SPECIALTY_NAMES;
+    }
+
+    /**
+     * Snapshot hiện tại. Nếu đã stale thì một thread build lại, các thread khác tiếp tục
+     * dùng bản cũ thay vì chờ; chỉ lần đầu (chưa có bản nào) mới phải chờ build.
+     * Build lỗi (DB lỗi...) thì giữ bản cũ, vẫn stale nên request sau build lại; chưa có bản nào thì ném lỗi.
+     */
+    public AiContextSnapshot current() {
+        AiContextSnapshot snapshot = current.get();
+        if (snapshot != null && isFresh(snapshot)) {
+            return snapshot;
+        }
+        if (snapshot != null && !rebuildLock.tryLock()) {
+            return snapshot;
+        }
+        if (snapshot == null) {
+            rebuildLock.lock();
+        }
+        try {
+            snapshot = current.get();
+            if (snapshot != null && isFresh(snapshot)) {
+                return snapshot;
+            }
+            AiContextSnapshot rebuilt;
+            try {
+                // transaction riêng cho lần build: query lỗi chỉ rollback transaction này, không kéo theo caller
+                rebuilt = transactionTemplate.execute(status -> build());
+            } catch (RuntimeException e) {
+                if (snapshot == null) {
+                    throw e;
+                }
+                log.warn("AI context rebuild failed, keeping snapshot v{}: {}", snapshot.version(), e.getMessage());
+                return snapshot;
+            }
+            current.set(rebuilt);
+            return rebuilt;
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onContextChanged(AiContextChangedEvent event) {
+        generation.incrementAndGet();
+        log.debug("AI context invalidated by {}", event.source());
+    }
+
+    private boolean isFresh(AiContextSnapshot snapshot) {
+        return snapshot.generation() == currentGeneration() && snapshot.day().equals(LocalDate.now());
+    }
+
+    // cả hai bộ đếm chỉ tăng nên tổng không đổi nghĩa là không có gì thay đổi
+    private long currentGeneration() {
+        return generation.get() + doctorDirectoryService.version();
+    }
+
+    AiContextSnapshot build() {
+        // đọc generation trước khi query, event đến trong lúc build sẽ làm snapshot này stale ngay
+        long gen = currentGeneration();
+        LocalDate today = LocalDate.now();
+        Map<MedicalSpecialty, String> services = new EnumMap<>(MedicalSpecialty.class);
+        Map<MedicalSpecialty, String> doctors = new EnumMap<>(MedicalSpecialty.class);
+        String servicesInfo = buildServicesInfo(services);
+        String doctorsInfo = buildDoctorsInfo(today, doctors);
+        AiContextSnapshot snapshot = new AiContextSnapshot(
+                versions.incrementAndGet(),
+                gen,
+                today,
+                buildSpecialtiesInfo(),
+                servicesInfo,
+                doctorsInfo,
+                Collections.unmodifiableMap(services),
+                Collections.unmodifiableMap(doctors));
+        log.debug("AI context snapshot v{} built", snapshot.version());
+        return snapshot;
+    }
+
+    private String buildSpecialtiesInfo() {
+        StringJoiner sj = new StringJoiner("\n");
+        for (MedicalSpecialty specialty : MedicalSpecialty.values()) {
+            sj.add("- " + specialtyName(specialty) + " (" + specialty.name() + ")");
+        }
+        return sj.toString();
+    }
+
+    // blocks: nhận block text của từng chuyên khoa, kết quả trả về là các block nối lại
+    private String buildServicesInfo(Map<MedicalSpecialty, String> blocks) {
+        List<MedicalExamination> allExams = medicalExaminationRepository.findAll();
+        if (allExams == null || allExams.isEmpty()) {
+            return "(Chưa có dịch vụ khám bệnh)";
+        }
+
+        Map<MedicalSpecialty, List<MedicalExamination>> groupedExams = new EnumMap<>(MedicalSpecialty.class);
+        for (MedicalExamination exam : allExams) {
+            if (exam.getMedicalSpecialty() != null) {
+                groupedExams.computeIfAbsent(exam.getMedicalSpecialty(), k -> new ArrayList<>()).add(exam);
+            }
+        }
+
+        for (Map.Entry<MedicalSpecialty, List<MedicalExamination>> entry : groupedExams.entrySet()) {
+            StringJoiner sj = new StringJoiner("\n");
+            sj.add("─────────────────────────────────");
+            sj.add("Chuyên khoa: " + specialtyName(entry.getKey()));
+
+            for (MedicalExamination exam : entry.getValue()) {
+                String price = exam.getPrice() > 0 ? String.format("%,d VNĐ", exam.getPrice()) : "Liên hệ";
+                String duration = exam.getMinDuration() != null ? exam.getMinDuration() + " phút" : "";
+                sj.add("  • " + exam.getName() + " (ID: " + exam.getId() + ") - " + price + (duration.isEmpty() ? "" : " (" + duration + ")"));
+            }
+            blocks.put(entry.getKey(), sj.toString());
+        }
+        return String.join("\n", blocks.values());
+    }
+
+    private String buildDoctorsInfo(LocalDate today, Map<MedicalSpecialty, String> blocks) {
+        if (doctorDirectoryService.getDoctors().isEmpty()) {
+            return "(Chưa có thông tin bác sĩ)";
+        }
+        // đã nhóm sẵn theo chuyên khoa trong danh bạ
+        Map<MedicalSpecialty, List<DoctorSummary>> groupedDoctors = doctorDirectoryService.getDoctorsBySpecialty();
+
+        DayOfWeek dayOfWeek = today.getDayOfWeek();
+        LocalDate mondayThisWeek = today.minusDays(dayOfWeek.getValue() - 1);
+        LocalDate saturdayThisWeek = mondayThisWeek.plusDays(5);
+        LocalDate mondayNextWeek = mondayThisWeek.plusDays(7);
+        LocalDate saturdayNextWeek = mondayNextWeek.plusDays(5);
+
+        // một query cho lịch của tất cả bác sĩ trong 2 tuần, thay vì query theo từng bác sĩ
+        Map<String, List<Schedule>> schedulesByDoctor = scheduleRepository
+                .findByWorkDateBetween(today, saturdayNextWeek).stream()
+                .filter(s -> s.getDoctor() != null)
+                .collect(Collectors.groupingBy(s -> s.getDoctor().getId()));
+
+        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy (EEEE)", Locale.of("vi", "VN"));
+        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+
+        for (Map.Entry<MedicalSpecialty, List<DoctorSummary>> entry : groupedDoctors.entrySet()) {
+            StringJoiner sj = new StringJoiner("\n");
+            sj.add("┌─ " + specialtyName(entry.getKey()).toUpperCase() + " ─────────────────────────────────────┐");
+
+            for (DoctorSummary doctor : entry.getValue()) {
+                sj.add("│");
+                sj.add("│  👨‍⚕️  " + doctor.getUsername() + " (ID: " + doctor.getId() + ")");
+                if (doctor.getExperience() != null && doctor.getExperience() > 0) {
+                    sj.add("│     Kinh nghiệm: " + doctor.getExperience() + " năm");
+                }
+                if (doctor.getDescription() != null && !doctor.getDescription().isEmpty()) {
+                    sj.add("│     " + doctor.getDescription());
+                }
+
+                List<Schedule> schedules = schedulesByDoctor.getOrDefault(doctor.getId(), Collections.emptyList());
+                if (!schedules.isEmpty()) {
+                    sj.add("│");
+                    sj.add("│  📅 LỊCH LÀM VIỆC (CHỈ HIỂN THỊ KHUNG GIỜ):");
+                    sj.add("│");
+                    sj.add("│  📅 TUẦN NÀY:");
+                    addWeek(sj, schedules, today, saturdayThisWeek, dateFormatter, timeFormatter);
+                    sj.add("│");
+                    sj.add("│  📅 TUẦN SAU:");
+                    addWeek(sj, schedules, mondayNextWeek, saturdayNextWeek, dateFormatter, timeFormatter);
+                } else {
+                    sj.add("│     Lịch: Chưa có lịch cố định");
+                }
+                sj.add("│");
+            }
+
+            sj.add("└─────────────────────────────────────────────────────────────┘");
+            sj.add("");
+            blocks.put(entry.getKey(), sj.toString());
+        }
+        return String.join("\n", blocks.values());
+    }
+
+    // CHỈ hiển thị khung giờ, KHÔNG hiển thị trạng thái
+    private void addWeek(StringJoiner sj, List<Schedule> schedules, LocalDate from, LocalDate to,
+            DateTimeFormatter dateFormatter, DateTimeFormatter timeFormatter) {
+        Map<LocalDate, List<Schedule>> byDate = schedules.stream()
+                .filter(s -> s.getWorkDate() != null && !s.getWorkDate().isBefore(from) && !s.getWorkDate().isAfter(to))
+                .collect(Collectors.groupingBy(Schedule::getWorkDate));
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            List<Schedule> daySchedules = byDate.get(date);
+            if (daySchedules == null) {
+                continue;
+            }
+            sj.add("│    • " + date.format(dateFormatter));
+            for (Schedule sch : daySchedules) {
+                sj.add("│      " + sch.getStartTime().format(timeFormatter) + " - " + sch.getEndTime().format(timeFormatter));
+            }
+        }
+    }
+
+    private static Map<MedicalSpecialty, String> specialtyNames() {
+        Map<MedicalSpecialty, String> map = new EnumMap<>(MedicalSpecialty.class);
+        map.put(MedicalSpecialty.INTERNAL_MEDICINE, "Nội khoa");
+        map.put(MedicalSpecialty.SURGERY, "Ngoại khoa");
+        map.put(MedicalSpecialty.CARDIOLOGY, "Tim mạch");
+        map.put(MedicalSpecialty.PEDIATRICS, "Nhi khoa");
+        map.put(MedicalSpecialty.DERMATOLOGY, "Da liễu");
+        map.put(MedicalSpecialty.OBSTETRICS_GYNECOLOGY, "Sản phụ khoa");
+        map.put(MedicalSpecialty.GASTROENTEROLOGY, "Tiêu hóa");
+        map.put(MedicalSpecialty.ORTHOPEDICS, "Cơ xương khớp");
+        map.put(MedicalSpecialty.ALLERGY_IMMUNOLOGY, "Dị ứng - miễn dịch");
+        map.put(MedicalSpecialty.ANESTHESIOLOGY, "Gây mê hồi sức");
+        map.put(MedicalSpecialty.OTOLARYNGOLOGY, "Tai - mũi - họng");
+        map.put(MedicalSpecialty.ONCOLOGY, "Ung bướu");
+        map.put(MedicalSpecialty.GERIATRICS, "Lão khoa");
+        map.put(MedicalSpecialty.TRAUMA_ORTHOPEDICS, "Chấn thương chỉnh hình");
+        map.put(MedicalSpecialty.EMERGENCY_MEDICINE, "Hồi sức cấp cứu");
+        map.put(MedicalSpecialty.GENERAL_SURGERY, "Ngoại tổng quát");
+        map.put(MedicalSpecialty.PREVENTIVE_MEDICINE, "Y học dự phòng");
+        map.put(MedicalSpecialty.DENTISTRY, "Răng - Hàm - Mặt");
+        map.put(MedicalSpecialty.INFECTIOUS_DISEASE, "Truyền nhiễm");
+        map.put(MedicalSpecialty.NEPHROLOGY, "Nội thận");
+        map.put(MedicalSpecialty.ENDOCRINOLOGY, "Nội tiết");
+        map.put(MedicalSpecialty.PSYCHIATRY, "Tâm thần");
+        map.put(MedicalSpecialty.PULMONOLOGY, "Hô hấp");
+        map.put(MedicalSpecialty.LABORATORY_MEDICINE, "Xét nghiệm");
+        map.put(MedicalSpecialty.HEMATOLOGY, "Huyết học");
+        map.put(MedicalSpecialty.PSYCHOLOGY, "Tâm lý");
+        map.put(MedicalSpecialty.NEUROLOGY, "Nội thần kinh");
+        map.put(MedicalSpecialty.SPEECH_THERAPY, "Ngôn ngữ trị liệu");
+        map.put(MedicalSpecialty.PHYSICAL_THERAPY, "Phục hồi chức năng - Vật lý trị liệu");
+        map.put(MedicalSpecialty.REPRODUCTIVE_MEDICINE, "Vô sinh hiếm muộn");
+        map.put(MedicalSpecialty.TRADITIONAL_MEDICINE, "Y học cổ truyền");
+        map.put(MedicalSpecialty.TUBERCULOSIS, "Lao - bệnh phổi");
+        return Collections.unmodifiableMap(map);
+    }
+}
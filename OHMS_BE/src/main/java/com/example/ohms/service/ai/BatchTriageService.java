@@ -0,0 +1,330 @@
+package com.example.ohms.service.ai;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+
+import org.springframework.stereotype.Service;
+
+import com.example.ohms.configuration.BatchTriageConfig;
+import com.example.ohms.dto.request.BatchTriageRequest;
+import com.example.ohms.dto.request.DiagnosisRequest;
+import com.example.ohms.dto.response.BatchTriageResponse;
+import com.example.ohms.dto.response.BatchTriageResponse.Status;
+import com.example.ohms.dto.response.SpecialtyRecommendationResponse;
+import com.example.ohms.entity.MedicalExamination;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.exception.AiUnavailableException;
+import com.example.ohms.repository.MedicleExaminatioRepository;
+import com.example.ohms.service.GeminiService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Phân loại chuyên khoa cho nhiều phiếu tiếp nhận (bệnh nhân vãng lai) một lượt.
+ * Phiếu nào bộ phân loại cục bộ đủ chắc thì trả lời luôn; phần còn lại gộp thành nhóm {@code groupSize} phiếu,
+ * mỗi nhóm là một lần gọi Gemini dùng chung một block danh sách chuyên khoa và trả về một mảng JSON.
+ * Các nhóm chạy song song (tối đa {@code maxConcurrentGroups}) và vẫn đi qua bulkhead/circuit breaker của {@link AiCallGuard}.
+ * Nhóm lỗi hoặc thiếu kết quả cho phiếu nào thì phiếu đó dùng gợi ý theo từ khóa, không làm hỏng cả lượt.
+ * Dịch vụ khám gợi ý kèm mỗi phiếu được tra một lần cho mỗi chuyên khoa trong lượt, không phải một query mỗi phiếu.
+ */
+@Service
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class BatchTriageService {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final Set<String> URGENCY_LEVELS = Set.of("LOW", "MEDIUM", "HIGH");
+    private static final int MAX_MESSAGE_CHARS = 1000;
+
+    private static final String SYSTEM_INSTRUCTION =
+            "Bạn là điều dưỡng tiếp nhận của phòng khám. Với mỗi phiếu triệu chứng, chọn MỘT chuyên khoa phù hợp nhất " +
+            "trong danh sách được cho và nhận định ngắn gọn bằng tiếng Việt. Chỉ trả về JSON, không thêm lời dẫn.";
+
+    BatchTriageConfig config;
+    GeminiService geminiService;
+    SpecialtyClassifier specialtyClassifier;
+    AiContextSnapshotService contextSnapshotService;
+    MedicleExaminatioRepository medicalExaminationRepository;
+    Map<Status, Counter> itemCounters = new EnumMap<>(Status.class);
+    Counter groupCalls;
+
+    public BatchTriageService(BatchTriageConfig config, GeminiService geminiService,
+            SpecialtyClassifier specialtyClassifier, AiContextSnapshotService contextSnapshotService,
+            MedicleExaminatioRepository medicalExaminationRepository, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.geminiService = geminiService;
+        this.specialtyClassifier = specialtyClassifier;
+        this.contextSnapshotService = contextSnapshotService;
+        this.medicalExaminationRepository = medicalExaminationRepository;
+        for (Status status : Status.values()) {
+            itemCounters.put(status, meterRegistry.counter("ai.batch.items", "status", status.name()));
+        }
+        this.groupCalls = meterRegistry.counter("ai.batch.calls");
+    }
+
+    public BatchTriageResponse triage(BatchTriageRequest request) {
+        List<BatchTriageRequest.Item> items = request.getItems();
+        BatchTriageResponse.Item[] results = new BatchTriageResponse.Item[items.size()];
+        List<Integer> pending = new ArrayList<>();
+        Function<MedicalSpecialty, List<MedicalExamination>> examinations = examinationLookup();
+
+        for (int i = 0; i < items.size(); i++) {
+            BatchTriageRequest.Item item = items.get(i);
+            String message = item == null ? null : item.getMessage();
+            if (message == null || message.isBlank()) {
+                results[i] = result(i, item, Status.FAILED, null, "Thiếu mô tả triệu chứng");
+                continue;
+            }
+            Optional<MedicalSpecialty> local = specialtyClassifier.tryLocal(message);
+            if (local.isPresent()) {
+                results[i] = result(i, item, Status.LOCAL, geminiService.localRecommendation(local.get(),
+                        "Dựa trên triệu chứng mô tả, bệnh nhân nên khám chuyên khoa "
+                                + AiContextSnapshotService.specialtyName(local.get()) + ".", false, examinations), null);
+            } else {
+                pending.add(i);
+            }
+        }
+
+        List<List<Integer>> groups = new ArrayList<>();
+        int groupSize = Math.max(1, config.getGroupSize());
+        for (int from = 0; from < pending.size(); from += groupSize) {
+            groups.add(pending.subList(from, Math.min(from + groupSize, pending.size())));
+        }
+        if (!groups.isEmpty()) {
+            String specialtiesInfo = contextSnapshotService.current().specialtiesInfo();
+            for (List<BatchTriageResponse.Item> groupResults : runGroups(groups, items, specialtiesInfo, examinations)) {
+                for (BatchTriageResponse.Item item : groupResults) {
+                    results[item.getIndex()] = item;
+                }
+            }
+        }
+
+        BatchTriageResponse response = BatchTriageResponse.builder()
+                .total(results.length)
+                .items(List.of(results))
+                .build();
+        for (BatchTriageResponse.Item item : results) {
+            itemCounters.get(item.getStatus()).increment();
+            switch (item.getStatus()) {
+                case OK, LOCAL -> response.setSucceeded(response.getSucceeded() + 1);
+                case FALLBACK -> response.setFallback(response.getFallback() + 1);
+                case FAILED -> response.setFailed(response.getFailed() + 1);
+            }
+        }
+        return response;
+    }
+
+    // nhớ kết quả tra dịch vụ khám theo chuyên khoa trong một lượt; các nhóm chạy song song nên dùng map concurrent,
+    // query nằm ngoài map (không dùng computeIfAbsent) để không giữ lock của map trong lúc gọi DB
+    private Function<MedicalSpecialty, List<MedicalExamination>> examinationLookup() {
+        Map<MedicalSpecialty, List<MedicalExamination>> cache = new ConcurrentHashMap<>();
+        return specialty -> {
+            List<MedicalExamination> found = cache.get(specialty);
+            if (found == null) {
+                found = medicalExaminationRepository.findAllByMedicalSpecialty(specialty);
+                List<MedicalExamination> raced = cache.putIfAbsent(specialty, found);
+                if (raced != null) {
+                    found = raced;
+                }
+            }
+            return found;
+        };
+    }
+
+    // một nhóm thì chạy luôn trên thread hiện tại, nhiều nhóm thì mỗi nhóm một virtual thread, tối đa maxConcurrentGroups cùng lúc
+    private List<List<BatchTriageResponse.Item>> runGroups(List<List<Integer>> groups,
+            List<BatchTriageRequest.Item> items, String specialtiesInfo,
+            Function<MedicalSpecialty, List<MedicalExamination>> examinations) {
+        if (groups.size() == 1) {
+            return List.of(runGroup(groups.get(0), items, specialtiesInfo, examinations));
+        }
+        Semaphore permits = new Semaphore(Math.max(1, config.getMaxConcurrentGroups()));
+        List<Future<List<BatchTriageResponse.Item>>> futures = new ArrayList<>();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (List<Integer> group : groups) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return runGroup(group, items, specialtiesInfo, examinations);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<List<BatchTriageResponse.Item>> results = new ArrayList<>();
+            for (int g = 0; g < futures.size(); g++) {
+                try {
+                    results.add(futures.get(g).get());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    results.add(fallbackGroup(groups.get(g), items, "Bị hủy", examinations));
+                } catch (ExecutionException e) {
+                    log.warn("Batch triage group failed", e.getCause());
+                    results.add(fallbackGroup(groups.get(g), items, "Lỗi xử lý: " + e.getCause().getMessage(),
+                            examinations));
+                }
+            }
+            return results;
+        }
+    }
+
+    private List<BatchTriageResponse.Item> runGroup(List<Integer> group, List<BatchTriageRequest.Item> items,
+            String specialtiesInfo, Function<MedicalSpecialty, List<MedicalExamination>> examinations) {
+        String reply;
+        try {
+            groupCalls.increment();
+            reply = geminiService.complete(SYSTEM_INSTRUCTION, buildGroupPrompt(group, items, specialtiesInfo),
+                    config.getOutputTokensPerItem() * group.size());
+        } catch (AiUnavailableException e) {
+            return fallbackGroup(group, items, "AI không khả dụng: " + e.getReason(), examinations);
+        } catch (Exception e) {
+            log.warn("Batch triage call failed", e);
+            return fallbackGroup(group, items, "Lỗi gọi AI: " + e.getMessage(), examinations);
+        }
+
+        Map<Integer, JsonNode> answers = parseAnswers(reply);
+        List<BatchTriageResponse.Item> results = new ArrayList<>(group.size());
+        for (int k = 0; k < group.size(); k++) {
+            int index = group.get(k);
+            Optional<SpecialtyRecommendationResponse> recommendation = toRecommendation(answers.get(k + 1), examinations);
+            results.add(recommendation.isPresent()
+                    ? result(index, items.get(index), Status.OK, recommendation.get(), null)
+                    : fallback(index, items.get(index), "AI không trả kết quả hợp lệ cho phiếu này", examinations));
+        }
+        return results;
+    }
+
+    // phiếu đánh số từ 1 trong nhóm, model trả lại đúng số đó trong trường "index"
+    static String buildGroupPrompt(List<Integer> group, List<BatchTriageRequest.Item> items, String specialtiesInfo) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("DANH SÁCH CHUYÊN KHOA (tên - mã):\n").append(specialtiesInfo).append("\n\n");
+        sb.append("CÁC PHIẾU TIẾP NHẬN:\n");
+        for (int k = 0; k < group.size(); k++) {
+            BatchTriageRequest.Item item = items.get(group.get(k));
+            sb.append(k + 1).append(". ");
+            String patient = patientInfo(item.getPatientInfo());
+            if (!patient.isEmpty()) {
+                sb.append('[').append(patient).append("] ");
+            }
+            sb.append(singleLine(item.getMessage())).append('\n');
+        }
+        sb.append("\nTrả về DUY NHẤT một mảng JSON, mỗi phiếu đúng một phần tử, theo mẫu:\n");
+        sb.append("[{\"index\": 1, \"specialty\": \"<MÃ CHUYÊN KHOA>\", \"diagnosis\": \"<nhận định ngắn>\", ");
+        sb.append("\"urgencyLevel\": \"LOW|MEDIUM|HIGH\"}]");
+        return sb.toString();
+    }
+
+    // lấy mảng JSON đầu tiên trong câu trả lời (bỏ qua code fence, lời dẫn), key là số thứ tự phiếu
+    static Map<Integer, JsonNode> parseAnswers(String reply) {
+        Map<Integer, JsonNode> answers = new HashMap<>();
+        if (reply == null) {
+            return answers;
+        }
+        int start = reply.indexOf('[');
+        int end = reply.lastIndexOf(']');
+        if (start < 0 || end <= start) {
+            return answers;
+        }
+        try {
+            JsonNode array = MAPPER.readTree(reply.substring(start, end + 1));
+            for (JsonNode node : array) {
+                if (node.path("index").canConvertToInt()) {
+                    answers.putIfAbsent(node.path("index").asInt(), node);
+                }
+            }
+        } catch (Exception e) {
+            log.debug("Batch triage reply is not a JSON array: {}", e.getMessage());
+        }
+        return answers;
+    }
+
+    private Optional<SpecialtyRecommendationResponse> toRecommendation(JsonNode answer,
+            Function<MedicalSpecialty, List<MedicalExamination>> examinations) {
+        if (answer == null) {
+            return Optional.empty();
+        }
+        MedicalSpecialty specialty;
+        try {
+            specialty = KeywordSpecialtyRecommender.baseSpecialty(
+                    MedicalSpecialty.valueOf(answer.path("specialty").asText("").trim().toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        String diagnosis = answer.path("diagnosis").asText("").trim();
+        if (diagnosis.isEmpty()) {
+            diagnosis = "Bệnh nhân nên khám chuyên khoa " + AiContextSnapshotService.specialtyName(specialty) + ".";
+        }
+        SpecialtyRecommendationResponse recommendation = geminiService.localRecommendation(specialty, diagnosis, false,
+                examinations);
+        String urgency = answer.path("urgencyLevel").asText("").trim().toUpperCase();
+        if (URGENCY_LEVELS.contains(urgency)) {
+            recommendation.setUrgencyLevel(urgency);
+        }
+        return Optional.of(recommendation);
+    }
+
+    private List<BatchTriageResponse.Item> fallbackGroup(List<Integer> group, List<BatchTriageRequest.Item> items, String reason,
+            Function<MedicalSpecialty, List<MedicalExamination>> examinations) {
+        List<BatchTriageResponse.Item> results = new ArrayList<>(group.size());
+        for (int index : group) {
+            results.add(fallback(index, items.get(index), reason, examinations));
+        }
+        return results;
+    }
+
+    private BatchTriageResponse.Item fallback(int index, BatchTriageRequest.Item item, String reason,
+            Function<MedicalSpecialty, List<MedicalExamination>> examinations) {
+        DiagnosisRequest request = new DiagnosisRequest();
+        request.setMessage(item.getMessage());
+        request.setPatientInfo(item.getPatientInfo());
+        return result(index, item, Status.FALLBACK, geminiService.fallbackRecommendation(request, examinations), reason);
+    }
+
+    private static BatchTriageResponse.Item result(int index, BatchTriageRequest.Item item, Status status,
+            SpecialtyRecommendationResponse recommendation, String error) {
+        return BatchTriageResponse.Item.builder()
+                .index(index)
+                .reference(item == null ? null : item.getReference())
+                .status(status)
+                .recommendation(recommendation)
+                .error(error)
+                .build();
+    }
+
+    private static String patientInfo(Map<String, String> info) {
+        if (info == null || info.isEmpty()) {
+            return "";
+        }
+        StringJoiner sj = new StringJoiner(", ");
+        info.forEach((key, value) -> {
+            if (value != null && !value.isBlank()) {
+                sj.add(singleLine(key) + ": " + singleLine(value));
+            }
+        });
+        return sj.toString();
+    }
+
+    // xuống dòng trong phiếu sẽ phá cách đánh số, gom về một dòng và cắt bớt phiếu quá dài
+    private static String singleLine(String text) {
+        String line = text.replaceAll("\\s+", " ").trim();
+        return line.length() > MAX_MESSAGE_CHARS ? line.substring(0, MAX_MESSAGE_CHARS) : line;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.ohms.service.ai;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.example.ohms.dto.response.SpecialtyRecommendationResponse;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+/**
+ * Đọc JSON đặt lịch trong câu trả lời của AI bằng parser streaming (non-blocking) của Jackson, một lượt duy nhất.
+ * Có thể {@link #feed} từng chunk khi stream về, hoặc dùng {@link #parse} cho cả câu trả lời.
+ * Phần text trước JSON (kể cả mở code fence ```json) là lời giải thích; text sau JSON bị bỏ qua.
+ * Nếu một dấu '{' trong phần text không mở JSON hợp lệ thì thử lại từ dấu '{' tiếp theo.
+ * Không thread-safe, mỗi câu trả lời một instance.
+ */
+public class BookingJsonParser {
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final StringBuilder text = new StringBuilder();
+    private JsonParser parser;
+    private ByteArrayFeeder feeder;
+    // vị trí '{' mở JSON hiện tại trong text, -1 khi chưa thấy
+    private int jsonStart = -1;
+    // đã feed tới đâu của text
+    private int fed;
+    private boolean complete;
+
+    private Fields fields;
+    private int depth;
+    private String rootField;
+    private String innerField;
+    private SpecialtyRecommendationResponse.ServiceSlotDto slot;
+    private Double deposit;
+
+    /**
+     * Kết quả: {@code booking} chỉ có các field đặt lịch; {@code complete} = đã đọc hết object gốc;
+     * {@code leadingText} = phần text trước JSON (hoặc cả câu trả lời nếu không có JSON).
+     */
+    public record Result(SpecialtyRecommendationResponse booking, boolean ready, boolean complete, String leadingText) {
+    }
+
+    private static final class Fields {
+        final SpecialtyRecommendationResponse booking = SpecialtyRecommendationResponse.builder().build();
+        boolean ready;
+    }
+
+    public static Result parse(String aiResponse) {
+        BookingJsonParser parser = new BookingJsonParser();
+        parser.feed(aiResponse);
+        return parser.result();
+    }
+
+    public void feed(String chunk) {
+        if (chunk == null || chunk.isEmpty() || complete) {
+            return;
+        }
+        text.append(chunk);
+        advance();
+    }
+
+    public Result result() {
+        boolean found = jsonStart >= 0 && fields != null;
+        String leading = found ? stripFence(text.substring(0, jsonStart)) : text.toString().trim();
+        if (!found) {
+            return new Result(SpecialtyRecommendationResponse.builder().build(), false, false, leading);
+        }
+        SpecialtyRecommendationResponse booking = fields.booking;
+        if (booking.getDepositAmount() == null && deposit != null) {
+            booking.setDepositAmount(deposit);
+        }
+        return new Result(booking, fields.ready, complete, leading);
+    }
+
+    private void advance() {
+        while (!complete) {
+            if (parser == null && !openAtNextBrace()) {
+                return;
+            }
+            try {
+                byte[] bytes = text.substring(fed).getBytes(StandardCharsets.UTF_8);
+                fed = text.length();
+                feeder.feedInput(bytes, 0, bytes.length);
+                readAvailable();
+                return;
+            } catch (IOException e) {
+                // '{' này không mở JSON hợp lệ (VD: "{tên}" trong lời giải thích), thử từ '{' sau nó
+                restartAfter(jsonStart);
+            }
+        }
+    }
+
+    private boolean openAtNextBrace() {
+        int from = jsonStart < 0 ? 0 : jsonStart + 1;
+        int brace = text.indexOf("{", from);
+        if (brace < 0) {
+            return false;
+        }
+        try {
+            parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        jsonStart = brace;
+        fed = brace;
+        fields = new Fields();
+        depth = 0;
+        rootField = null;
+        innerField = null;
+        slot = null;
+        deposit = null;
+        return true;
+    }
+
+    private void restartAfter(int start) {
+        closeQuietly();
+        parser = null;
+        fields = null;
+        jsonStart = start;
+    }
+
+    private void readAvailable() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            switch (token) {
+                case START_OBJECT, START_ARRAY -> {
+                    depth++;
+                    if (depth == 3 && "serviceSlots".equals(rootField) && token == JsonToken.START_OBJECT) {
+                        slot = SpecialtyRecommendationResponse.ServiceSlotDto.builder().build();
+                    }
+                    if (depth == 2 && "consultationSlot".equals(rootField) && token == JsonToken.START_OBJECT) {
+                        fields.booking.setConsultationSlot(SpecialtyRecommendationResponse.TimeSlotDto.builder().build());
+                    }
+                    if (depth == 2 && token == JsonToken.START_ARRAY) {
+                        startArray();
+                    }
+                }
+                case END_OBJECT, END_ARRAY -> {
+                    if (depth == 3 && slot != null) {
+                        fields.booking.getServiceSlots().add(slot);
+                        slot = null;
+                    }
+                    depth--;
+                    if (depth == 1) {
+                        rootField = null;
+                    }
+                    if (depth == 0) {
+                        complete = true;
+                        closeQuietly();
+                        return;
+                    }
+                }
+                case FIELD_NAME -> {
+                    if (depth == 1) {
+                        rootField = parser.currentName();
+                    } else {
+                        innerField = parser.currentName();
+                    }
+                }
+                default -> value(token);
+            }
+            if (depth == 1 && token.isScalarValue()) {
+                rootField = null;
+            }
+        }
+    }
+
+    private void startArray() {
+        if ("medicalExaminationIds".equals(rootField)) {
+            fields.booking.setMedicalExaminationIds(new ArrayList<>());
+        } else if ("serviceSlots".equals(rootField)) {
+            fields.booking.setServiceSlots(new ArrayList<>());
+        }
+    }
+
+    private void value(JsonToken token) throws IOException {
+        if (token == JsonToken.VALUE_NULL) {
+            return;
+        }
+        SpecialtyRecommendationResponse booking = fields.booking;
+        if (depth == 1 && rootField != null) {
+            switch (rootField) {
+                case "ready" -> fields.ready = token == JsonToken.VALUE_TRUE;
+                case "bookingType" -> booking.setBookingType(parser.getText());
+                case "doctorId" -> booking.setDoctorId(parser.getText());
+                case "doctorName" -> booking.setDoctorName(parser.getText());
+                case "workDate" -> booking.setWorkDate(parser.getText());
+                case "startTime" -> booking.setStartTime(parser.getText());
+                case "endTime" -> booking.setEndTime(parser.getText());
+                case "totalPrice" -> booking.setTotalPrice(number(token));
+                case "discountedPrice" -> booking.setDiscountedPrice(number(token));
+                // hỗ trợ cả "deposit" và "depositAmount", ưu tiên depositAmount
+                case "depositAmount" -> booking.setDepositAmount(number(token));
+                case "deposit" -> deposit = number(token);
+                case "discount" -> {
+                    if (token.isNumeric()) {
+                        booking.setDiscount(parser.getValueAsInt());
+                    }
+                }
+                default -> {
+                }
+            }
+        } else if (depth == 2 && "medicalExaminationIds".equals(rootField) && booking.getMedicalExaminationIds() != null) {
+            booking.getMedicalExaminationIds().add(parser.getText());
+        } else if (depth == 2 && "consultationSlot".equals(rootField) && booking.getConsultationSlot() != null) {
+            if ("startTime".equals(innerField)) {
+                booking.getConsultationSlot().setStartTime(parser.getText());
+            } else if ("endTime".equals(innerField)) {
+                booking.getConsultationSlot().setEndTime(parser.getText());
+            }
+        } else if (depth == 3 && slot != null && innerField != null) {
+            switch (innerField) {
+                case "serviceId" -> slot.setServiceId(parser.getText());
+                case "startTime" -> slot.setStartTime(parser.getText());
+                case "endTime" -> slot.setEndTime(parser.getText());
+                default -> {
+                }
+            }
+        }
+    }
+
+    private Double number(JsonToken token) throws IOException {
+        return token.isNumeric() ? parser.getDoubleValue() : null;
+    }
+
+    private static String stripFence(String leading) {
+        return leading.replaceAll("```(?:json)?\\s*$", "").trim();
+    }
+
+    private void closeQuietly() {
+        try {
+            parser.close();
+        } catch (IOException ignored) {
+            // parser chỉ đọc buffer trong bộ nhớ
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.ohms.service.ai;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.example.ohms.configuration.AiCacheConfig;
+import com.example.ohms.dto.request.DiagnosisRequest;
+import com.example.ohms.utils.VietnameseText;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Cache câu trả lời chatbot cho các câu hỏi chung chung lặp lại giữa nhiều bệnh nhân.
+ * Key là câu hỏi đã chuẩn hóa (chữ thường, bỏ dấu, bỏ trợ từ) cộng với version của context snapshot,
+ * nên khi danh sách bác sĩ/lịch/dịch vụ đổi thì toàn bộ entry cũ tự mất hiệu lực.
+ * Request có patientId, history hoặc patientInfo đi thẳng tới model vì câu trả lời phụ thuộc bệnh nhân.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class DiagnosisResponseCache {
+    // chỉ bỏ trợ từ/từ đệm không mang nghĩa; phủ định ("khong", "chua"), "co", "bi", "nen", "can"... phải giữ
+    // vì "sốt không ho" và "sốt ho" là 2 câu hỏi khác nhau
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "ah", "ak", "ha", "nhe", "nha", "oi", "vay", "thi", "xin", "toi");
+    // từ phủ định: near-match chỉ so giữa các câu có cùng phủ định, vì thêm/bớt 1 từ vẫn có thể đủ giống về shingle
+    private static final Set<String> NEGATIONS = Set.of(
+            "khong", "ko", "k", "kg", "khg", "chua", "chang", "cha", "dung");
+    private static final int SHINGLE = 3;
+
+    AiCacheConfig config;
+    AiContextSnapshotService snapshotService;
+    Clock clock;
+    // access-order để evict theo LRU, mọi truy cập đều trong synchronized(entries)
+    LinkedHashMap<String, Entry> entries;
+    Counter hits;
+    Counter similarHits;
+    Counter misses;
+    Counter bypasses;
+
+    private record Entry(String reply, long version, Set<String> shingles, List<String> negations, Instant expiresAt) {
+    }
+
+    @Autowired
+    public DiagnosisResponseCache(AiCacheConfig config, AiContextSnapshotService snapshotService, MeterRegistry meterRegistry) {
+        this(config, snapshotService, meterRegistry, Clock.systemUTC());
+    }
+
+    public DiagnosisResponseCache(AiCacheConfig config, AiContextSnapshotService snapshotService,
+            MeterRegistry meterRegistry, Clock clock) {
+        this.config = config;
+        this.snapshotService = snapshotService;
+        this.clock = clock;
+        int maxEntries = config.getMaxEntries();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+        this.hits = counter(meterRegistry, "hit");
+        this.similarHits = counter(meterRegistry, "similar_hit");
+        this.misses = counter(meterRegistry, "miss");
+        this.bypasses = counter(meterRegistry, "bypass");
+        Gauge.builder("ai.cache.size", entries, m -> {
+            synchronized (m) {
+                return m.size();
+            }
+        }).register(meterRegistry);
+    }
+
+    private static Counter counter(MeterRegistry registry, String result) {
+        return Counter.builder("ai.cache.requests").tag("result", result).register(registry);
+    }
+
+    public Optional<String> get(DiagnosisRequest request) {
+        if (!isCacheable(request)) {
+            bypasses.increment();
+            return Optional.empty();
+        }
+        String key = normalize(request.getMessage());
+        if (key.isEmpty()) {
+            misses.increment();
+            return Optional.empty();
+        }
+        long version = snapshotService.current().version();
+        Instant now = clock.instant();
+        synchronized (entries) {
+            Entry exact = entries.get(key);
+            if (exact != null && isLive(exact, version, now)) {
+                hits.increment();
+                return Optional.of(exact.reply());
+            }
+            if (config.getSimilarityThreshold() < 1.0) {
+                Entry similar = findSimilar(shingles(key), negations(key), version, now);
+                if (similar != null) {
+                    similarHits.increment();
+                    return Optional.of(similar.reply());
+                }
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void put(DiagnosisRequest request, String reply) {
+        if (!isCacheable(request) || reply == null || reply.isBlank()) {
+            return;
+        }
+        String key = normalize(request.getMessage());
+        if (key.isEmpty()) {
+            return;
+        }
+        long version = snapshotService.current().version();
+        Instant expiresAt = clock.instant().plusSeconds(config.getTtlMinutes() * 60);
+        synchronized (entries) {
+            entries.put(key, new Entry(reply, version, shingles(key), negations(key), expiresAt));
+        }
+    }
+
+    public boolean isCacheable(DiagnosisRequest request) {
+        return config.isEnabled()
+                && request != null
+                && request.getMessage() != null
+                && (request.getPatientId() == null || request.getPatientId().isBlank())
+                && (request.getHistory() == null || request.getHistory().isEmpty())
+                && (request.getPatientInfo() == null || request.getPatientInfo().isEmpty());
+    }
+
+    // "Đau đầu thì nên khám khoa nào ạ?" -> "dau dau nen kham khoa nao"
+    public static String normalize(String message) {
+        String folded = VietnameseText.fold(message).replaceAll("[^a-z0-9\\s]", " ");
+        List<String> tokens = new ArrayList<>();
+        for (String token : folded.split("\\s+")) {
+            if (!token.isEmpty() && !STOP_WORDS.contains(token)) {
+                tokens.add(token);
+            }
+        }
+        return String.join(" ", tokens);
+    }
+
+    private boolean isLive(Entry entry, long version, Instant now) {
+        return entry.version() == version && entry.expiresAt().isAfter(now);
+    }
+
+    // quét tuyến tính, cache bị giới hạn vài trăm entry nên vẫn rẻ hơn nhiều so với 1 lần gọi model
+    private Entry findSimilar(Set<String> shingles, List<String> negations, long version, Instant now) {
+        Entry best = null;
+        double bestScore = config.getSimilarityThreshold();
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            if (!isLive(entry, version, now)) {
+                it.remove();
+                continue;
+            }
+            if (!entry.negations().equals(negations)) {
+                continue;
+            }
+            double score = jaccard(shingles, entry.shingles());
+            if (score >= bestScore) {
+                best = entry;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    private static List<String> negations(String key) {
+        return Arrays.stream(key.split(" ")).filter(NEGATIONS::contains).toList();
+    }
+
+    private static Set<String> shingles(String key) {
+        Set<String> out = new HashSet<>();
+        String padded = " " + key + " ";
+        for (int i = 0; i + SHINGLE <= padded.length(); i++) {
+            out.add(padded.substring(i, i + SHINGLE));
+        }
+        return out;
+    }
+
+    private static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() || b.isEmpty()) {
+            return 0;
+        }
+        int intersection = 0;
+        for (String s : a) {
+            if (b.contains(s)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.ohms.service.ai;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.example.ohms.configuration.GeminiStreamConfig;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.util.retry.Retry;
+
+/**
+ * Client non-blocking cho endpoint {@code streamGenerateContent?alt=sse} của Gemini.
+ * Mỗi chunk SSE được parse và phát ra phần text ngay, không giữ thread nào trong lúc chờ model.
+ * Số stream đồng thời bị giới hạn bởi semaphore; permit được trả khi stream xong, lỗi hoặc bị cancel
+ * (client đóng kết nối thì Spring cancel subscription, WebClient hủy luôn request tới Gemini).
+ */
+@Component
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class GeminiStreamClient {
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE = new ParameterizedTypeReference<>() {
+    };
+
+    WebClient webClient;
+    GeminiStreamConfig config;
+    ObjectMapper mapper = new ObjectMapper();
+    Semaphore permits;
+
+    public GeminiStreamClient(WebClient.Builder webClientBuilder, GeminiStreamConfig config, MeterRegistry meterRegistry) {
+        this.webClient = webClientBuilder.baseUrl(config.getBaseUrl()).build();
+        this.config = config;
+        this.permits = new Semaphore(config.getMaxConcurrentStreams());
+        Gauge.builder("ai.stream.active", permits, p -> config.getMaxConcurrentStreams() - p.availablePermits())
+                .description("Gemini streams currently open")
+                .register(meterRegistry);
+    }
+
+    public Flux<String> stream(String model, String apiKey, String payloadJson) {
+        return Flux.defer(() -> {
+            if (!permits.tryAcquire()) {
+                return Flux.error(new AppException(ErrorCode.AI_BUSY));
+            }
+            return request(model, apiKey, payloadJson).doFinally(signal -> permits.release());
+        });
+    }
+
+    private Flux<String> request(String model, String apiKey, String payloadJson) {
+        return webClient.post()
+                .uri(uri -> uri.path("/v1beta/models/{model}:streamGenerateContent")
+                        .queryParam("alt", "sse")
+                        .queryParam("key", apiKey)
+                        .build(model))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(payloadJson)
+                .retrieve()
+                .bodyToFlux(SSE_TYPE)
+                // lỗi HTTP/kết nối luôn xảy ra trước chunk đầu tiên nên retry không làm lặp token đã gửi
+                .retryWhen(Retry.backoff(config.getMaxRetries(), Duration.ofMillis(500)).filter(GeminiStreamClient::isTransient))
+                .timeout(Duration.ofSeconds(config.getIdleTimeoutSeconds()))
+                .mapNotNull(ServerSentEvent::data)
+                .concatMapIterable(this::extractText);
+    }
+
+    private static boolean isTransient(Throwable error) {
+        if (error instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError() || response.getStatusCode().value() == 429;
+        }
+        return error instanceof WebClientRequestException;
+    }
+
+    // mỗi chunk là một GenerateContentResponse, text nằm trong candidates[0].content.parts[*].text
+    private Iterable<String> extractText(String chunk) {
+        try {
+            JsonNode root = mapper.readTree(chunk);
+            if (root.has("error")) {
+                throw new IllegalStateException("Gemini API error: " + root.path("error").path("message").asText());
+            }
+            JsonNode candidate = root.path("candidates").path(0);
+            String finishReason = candidate.path("finishReason").asText("");
+            if ("SAFETY".equals(finishReason) || "BLOCKED".equals(finishReason)) {
+                return List.of("Xin lỗi, câu trả lời bị chặn do vi phạm chính sách an toàn. Vui lòng thử lại với nội dung khác.");
+            }
+            List<String> texts = new ArrayList<>();
+            for (JsonNode part : candidate.path("content").path("parts")) {
+                String text = part.path("text").asText("");
+                if (!text.isEmpty()) {
+                    texts.add(text);
+                }
+            }
+            return texts;
+        } catch (IOException e) {
+            log.warn("Skip malformed Gemini chunk: {}", e.getMessage());
+            return List.of();
+        }
+    }
+}
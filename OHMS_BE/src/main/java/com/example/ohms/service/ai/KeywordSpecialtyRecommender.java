@@ -0,0 +1,198 @@
+package com.example.ohms.service.ai;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import com.example.ohms.entity.MedicalExamination;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.repository.MedicleExaminatioRepository;
+import com.example.ohms.utils.VietnameseText;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Gợi ý chuyên khoa offline bằng TF-IDF khi không gọi được Gemini.
+ * Mỗi chuyên khoa là một "document" gồm từ vựng triệu chứng ({@code ai/specialty-keywords.txt}),
+ * tên tiếng Việt của chuyên khoa và tên các dịch vụ khám thuộc khoa đó; term là âm tiết và cặp âm tiết không dấu.
+ * Index build lại khi version của context snapshot đổi (dịch vụ khám thêm/sửa/xóa).
+ */
+@Component
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class KeywordSpecialtyRecommender {
+    private static final String KEYWORDS_RESOURCE = "ai/specialty-keywords.txt";
+    private static final String KHAM_SUFFIX = "_KHAM";
+    // điểm cosine tối thiểu để tin vào kết quả
+    private static final double MIN_SCORE = 0.05;
+
+    MedicleExaminatioRepository medicalExaminationRepository;
+    AiContextSnapshotService snapshotService;
+    Map<MedicalSpecialty, List<String>> keywords;
+    AtomicReference<Index> index = new AtomicReference<>();
+
+    public record Match(MedicalSpecialty specialty, double score) {
+    }
+
+    private record Index(long version, Map<MedicalSpecialty, Map<String, Double>> vectors, Map<String, Double> idf) {
+    }
+
+    public KeywordSpecialtyRecommender(MedicleExaminatioRepository medicalExaminationRepository,
+            AiContextSnapshotService snapshotService) {
+        this.medicalExaminationRepository = medicalExaminationRepository;
+        this.snapshotService = snapshotService;
+        this.keywords = loadKeywords();
+    }
+
+    public Optional<Match> recommend(String message) {
+        List<String> terms = terms(message);
+        if (terms.isEmpty()) {
+            return Optional.empty();
+        }
+        Index current = currentIndex();
+        Map<String, Double> query = new HashMap<>();
+        for (String term : terms) {
+            Double idf = current.idf().get(term);
+            if (idf != null) {
+                query.merge(term, idf, Double::sum);
+            }
+        }
+        if (query.isEmpty()) {
+            return Optional.empty();
+        }
+        normalize(query);
+
+        Match best = null;
+        for (Map.Entry<MedicalSpecialty, Map<String, Double>> doc : current.vectors().entrySet()) {
+            double score = 0;
+            for (Map.Entry<String, Double> q : query.entrySet()) {
+                score += q.getValue() * doc.getValue().getOrDefault(q.getKey(), 0d);
+            }
+            if (score >= MIN_SCORE && (best == null || score > best.score())) {
+                best = new Match(doc.getKey(), score);
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    // chuyên khoa "_KHAM" (dịch vụ khám) gộp về chuyên khoa gốc
+    public static MedicalSpecialty baseSpecialty(MedicalSpecialty specialty) {
+        String name = specialty.name();
+        return name.endsWith(KHAM_SUFFIX)
+                ? MedicalSpecialty.valueOf(name.substring(0, name.length() - KHAM_SUFFIX.length()))
+                : specialty;
+    }
+
+    // âm tiết + cặp âm tiết liền nhau, vì từ tiếng Việt thường gồm 2 âm tiết ("dau rang", "tieu chay")
+    public static List<String> terms(String text) {
+        String[] syllables = VietnameseText.fold(text).replaceAll("[^a-z0-9\\s]", " ").trim().split("\\s+");
+        List<String> terms = new ArrayList<>();
+        for (int i = 0; i < syllables.length; i++) {
+            if (syllables[i].isEmpty()) {
+                continue;
+            }
+            terms.add(syllables[i]);
+            if (i + 1 < syllables.length) {
+                terms.add(syllables[i] + " " + syllables[i + 1]);
+            }
+        }
+        return terms;
+    }
+
+    private Index currentIndex() {
+        long version = snapshotService.current().version();
+        Index current = index.get();
+        if (current == null || current.version() != version) {
+            current = build(version);
+            index.set(current);
+        }
+        return current;
+    }
+
+    private Index build(long version) {
+        Map<MedicalSpecialty, Map<String, Double>> tf = new EnumMap<>(MedicalSpecialty.class);
+        keywords.forEach((specialty, phrases) -> phrases.forEach(p -> addTerms(tf, specialty, p)));
+        for (MedicalSpecialty specialty : MedicalSpecialty.values()) {
+            if (baseSpecialty(specialty) == specialty) {
+                addTerms(tf, specialty, AiContextSnapshotService.specialtyName(specialty));
+            }
+        }
+        for (MedicalExamination exam : medicalExaminationRepository.findAll()) {
+            if (exam.getMedicalSpecialty() != null && exam.getName() != null) {
+                addTerms(tf, baseSpecialty(exam.getMedicalSpecialty()), exam.getName());
+            }
+        }
+
+        Map<String, Integer> df = new HashMap<>();
+        tf.values().forEach(doc -> doc.keySet().forEach(term -> df.merge(term, 1, Integer::sum)));
+        int n = tf.size();
+        Map<String, Double> idf = new HashMap<>();
+        df.forEach((term, count) -> idf.put(term, Math.log((double) (n + 1) / (count + 1)) + 1));
+
+        Map<MedicalSpecialty, Map<String, Double>> vectors = new EnumMap<>(MedicalSpecialty.class);
+        tf.forEach((specialty, doc) -> {
+            Map<String, Double> vector = new HashMap<>();
+            doc.forEach((term, count) -> vector.put(term, (1 + Math.log(count)) * idf.get(term)));
+            normalize(vector);
+            vectors.put(specialty, vector);
+        });
+        return new Index(version, vectors, idf);
+    }
+
+    private static void addTerms(Map<MedicalSpecialty, Map<String, Double>> tf, MedicalSpecialty specialty, String text) {
+        Map<String, Double> doc = tf.computeIfAbsent(specialty, k -> new HashMap<>());
+        for (String term : terms(text)) {
+            doc.merge(term, 1d, Double::sum);
+        }
+    }
+
+    private static void normalize(Map<String, Double> vector) {
+        double norm = Math.sqrt(vector.values().stream().mapToDouble(v -> v * v).sum());
+        if (norm > 0) {
+            vector.replaceAll((k, v) -> v / norm);
+        }
+    }
+
+    // cụm từ theo chuyên khoa trong ai/specialty-keywords.txt, SpecialtyClassifier cũng dùng làm mẫu train
+    public static Map<MedicalSpecialty, List<String>> loadKeywords() {
+        Map<MedicalSpecialty, List<String>> out = new EnumMap<>(MedicalSpecialty.class);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(KEYWORDS_RESOURCE).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                int colon = line.indexOf(':');
+                if (line.isEmpty() || line.startsWith("#") || colon < 0) {
+                    continue;
+                }
+                try {
+                    MedicalSpecialty specialty = MedicalSpecialty.valueOf(line.substring(0, colon).trim());
+                    for (String phrase : line.substring(colon + 1).split(",")) {
+                        if (!phrase.isBlank()) {
+                            out.computeIfAbsent(specialty, k -> new ArrayList<>()).add(phrase.trim());
+                        }
+                    }
+                } catch (IllegalArgumentException e) {
+                    log.warn("Unknown specialty in {}: {}", KEYWORDS_RESOURCE, line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out;
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.ohms.service.ai;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+
+import org.springframework.stereotype.Component;
+
+import com.example.ohms.configuration.PromptBudgetConfig;
+import com.example.ohms.dto.request.DiagnosisRequest;
+import com.example.ohms.enums.MedicalSpecialty;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+
+/**
+ * Ghép prompt chatbot trong ngân sách token.
+ * Phần bắt buộc (hướng dẫn, danh sách chuyên khoa, thông tin người dùng, câu hỏi) luôn có; phần còn lại xếp theo
+ * độ liên quan: hội thoại gần đây (bớt lượt cũ nếu dài), lịch sử khám, dịch vụ và bác sĩ của các chuyên khoa
+ * mà {@link SpecialtyClassifier} đoán từ câu hỏi, rồi mới tới các khoa khác nếu còn chỗ.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PromptBuilder {
+    private static final int MIN_TURN_CHARS = 2;
+
+    PromptBudgetConfig config;
+    AiContextSnapshotService snapshotService;
+    SpecialtyClassifier classifier;
+    MeterRegistry meterRegistry;
+    DistributionSummary promptTokens;
+
+    public PromptBuilder(PromptBudgetConfig config, AiContextSnapshotService snapshotService,
+            SpecialtyClassifier classifier, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.snapshotService = snapshotService;
+        this.classifier = classifier;
+        this.meterRegistry = meterRegistry;
+        this.promptTokens = DistributionSummary.builder("ai.prompt.tokens")
+                .description("Estimated input tokens per Gemini prompt")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+    }
+
+    public String build(String instructions, DiagnosisRequest request, String medicalHistory) {
+        AiContextSnapshot snapshot = snapshotService.current();
+
+        String specialties = section("DANH SÁCH CHUYÊN KHOA:", snapshot.specialtiesInfo());
+        String patient = patientSection(request);
+        String question = "CÂU HỎI/YÊU CẦU HIỆN TẠI:\n" + Objects.requireNonNullElse(request.getMessage(), "Không có thông tin");
+        int remaining = config.getMaxInputTokens()
+                - estimate(instructions) - estimate(specialties) - estimate(patient) - estimate(question);
+
+        String history = historySection(request, (int) Math.max(0, remaining * config.getHistoryShare()));
+        remaining -= estimate(history);
+
+        String records = "";
+        if (medicalHistory != null && !medicalHistory.isEmpty()) {
+            records = section("LỊCH SỬ KHÁM BỆNH CỦA NGƯỜI DÙNG:", medicalHistory);
+            if (estimate(records) > remaining) {
+                trimmed("medical_history");
+                records = "";
+            }
+            remaining -= estimate(records);
+        }
+
+        List<MedicalSpecialty> order = specialtyOrder(request);
+        Set<MedicalSpecialty> top = new LinkedHashSet<>(order.subList(0, Math.min(config.getTopSpecialties(), order.size())));
+        List<String> services = new ArrayList<>();
+        List<String> doctors = new ArrayList<>();
+        // khoa liên quan: dịch vụ rồi bác sĩ; sau đó các khoa còn lại theo thứ tự xếp hạng
+        remaining = fill(services, snapshot.servicesBySpecialty(), top, remaining);
+        remaining = fill(doctors, snapshot.doctorsBySpecialty(), top, remaining);
+        Set<MedicalSpecialty> rest = new LinkedHashSet<>(order);
+        rest.removeAll(top);
+        remaining = fill(services, snapshot.servicesBySpecialty(), rest, remaining);
+        fill(doctors, snapshot.doctorsBySpecialty(), rest, remaining);
+
+        String servicesText = catalog(services, snapshot.servicesBySpecialty(), snapshot.servicesInfo(), "services");
+        String doctorsText = catalog(doctors, snapshot.doctorsBySpecialty(), snapshot.doctorsInfo(), "doctors");
+
+        StringJoiner sj = new StringJoiner("\n");
+        sj.add(instructions);
+        if (!history.isEmpty()) {
+            sj.add(history);
+        }
+        if (!records.isEmpty()) {
+            sj.add(records);
+        }
+        sj.add(specialties);
+        sj.add(section("DANH SÁCH DỊCH VỤ KHÁM BỆNH:", servicesText));
+        sj.add(section("DANH SÁCH BÁC SĨ:", doctorsText));
+        sj.add(patient);
+        sj.add(question);
+        String prompt = sj.toString();
+
+        record("instructions", instructions);
+        record("history", history);
+        record("medical_history", records);
+        record("services", servicesText);
+        record("doctors", doctorsText);
+        promptTokens.record(estimate(prompt));
+        return prompt;
+    }
+
+    public int estimate(String text) {
+        return text == null || text.isEmpty() ? 0 : (int) Math.ceil(text.length() / config.getCharsPerToken());
+    }
+
+    // lượt gần nhất quan trọng nhất: lấy từ cuối lên tới khi hết maxHistoryTurns hoặc hết ngân sách
+    private String historySection(DiagnosisRequest request, int budget) {
+        List<DiagnosisRequest.ChatTurn> recent = request.getRecentHistory(config.getMaxHistoryTurns());
+        List<String> lines = new ArrayList<>();
+        int used = estimate("HỘI THOẠI GẦN ĐÂY:\n\n");
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            DiagnosisRequest.ChatTurn turn = recent.get(i);
+            String text = (turn.getText() == null ? "" : turn.getText()).trim();
+            // Chỉ hiển thị message có nội dung thực sự (> 2 ký tự)
+            if (text.length() <= MIN_TURN_CHARS) {
+                continue;
+            }
+            String line = ("ai".equalsIgnoreCase(turn.getSender()) ? "AI" : "Người dùng") + ": " + text;
+            if (used + estimate(line) > budget) {
+                trimmed("history");
+                break;
+            }
+            used += estimate(line);
+            lines.add(0, line);
+        }
+        if (lines.isEmpty()) {
+            return "";
+        }
+        return "HỘI THOẠI GẦN ĐÂY:\n" + String.join("\n", lines) + "\n";
+    }
+
+    // thứ tự chuyên khoa gốc theo độ liên quan với câu hỏi + các câu người dùng nói gần đây
+    private List<MedicalSpecialty> specialtyOrder(DiagnosisRequest request) {
+        StringJoiner text = new StringJoiner(" ");
+        request.getRecentHistory(config.getMaxHistoryTurns()).stream()
+                .filter(t -> !"ai".equalsIgnoreCase(t.getSender()) && t.getText() != null)
+                .forEach(t -> text.add(t.getText()));
+        text.add(Objects.requireNonNullElse(request.getMessage(), ""));
+        List<MedicalSpecialty> order = classifier.rank(text.toString()).stream()
+                .map(SpecialtyClassifier.Prediction::specialty)
+                .collect(Collectors.toCollection(ArrayList::new));
+        for (MedicalSpecialty specialty : MedicalSpecialty.values()) {
+            MedicalSpecialty base = KeywordSpecialtyRecommender.baseSpecialty(specialty);
+            if (!order.contains(base)) {
+                order.add(base);
+            }
+        }
+        return order;
+    }
+
+    private int fill(List<String> out, Map<MedicalSpecialty, String> blocks, Set<MedicalSpecialty> wanted, int remaining) {
+        for (Map.Entry<MedicalSpecialty, String> block : blocks.entrySet()) {
+            if (!wanted.contains(KeywordSpecialtyRecommender.baseSpecialty(block.getKey()))) {
+                continue;
+            }
+            int cost = estimate(block.getValue());
+            if (cost <= remaining) {
+                out.add(block.getValue());
+                remaining -= cost;
+            }
+        }
+        return remaining;
+    }
+
+    private String catalog(List<String> included, Map<MedicalSpecialty, String> blocks, String fullText, String name) {
+        if (blocks.isEmpty()) {
+            // snapshot không tách theo khoa (chưa có dữ liệu / lỗi): dùng nguyên văn placeholder
+            return fullText;
+        }
+        int dropped = blocks.size() - included.size();
+        if (dropped == 0) {
+            return String.join("\n", included);
+        }
+        trimmed(name);
+        List<String> lines = new ArrayList<>(included);
+        lines.add("(Đã lược bớt " + dropped + " chuyên khoa ít liên quan; nếu người dùng hỏi khoa khác, hãy đề nghị họ nêu rõ tên khoa)");
+        return String.join("\n", lines);
+    }
+
+    private static String patientSection(DiagnosisRequest request) {
+        StringJoiner sj = new StringJoiner("\n");
+        sj.add("THÔNG TIN NGƯỜI DÙNG:");
+        if (request.getPatientInfo() != null && !request.getPatientInfo().isEmpty()) {
+            for (Map.Entry<String, String> e : request.getPatientInfo().entrySet()) {
+                sj.add("• " + e.getKey() + ": " + e.getValue());
+            }
+        } else {
+            sj.add("(Chưa có thông tin bổ sung)");
+        }
+        sj.add("");
+        return sj.toString();
+    }
+
+    private static String section(String title, String body) {
+        return title + "\n" + body + "\n";
+    }
+
+    private void record(String section, String text) {
+        meterRegistry.summary("ai.prompt.section.tokens", "section", section).record(estimate(text));
+    }
+
+    private void trimmed(String section) {
+        meterRegistry.counter("ai.prompt.trimmed", "section", section).increment();
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.ohms.service.ai;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+import com.example.ohms.configuration.AiFastPathConfig;
+import com.example.ohms.enums.MedicalSpecialty;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Phân loại chuyên khoa cục bộ (naive Bayes trên n-gram ký tự của câu đã bỏ dấu) để trả lời các câu triage
+ * đơn giản mà không cần gọi Gemini. Train một lần lúc khởi động từ {@code ai/specialty-corpus.tsv}
+ * và cụm từ trong {@code ai/specialty-keywords.txt}.
+ * Câu có quá ít n-gram đã gặp lúc train thì coi như không phân loại được.
+ */
+@Component
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class SpecialtyClassifier {
+    private static final String CORPUS_RESOURCE = "ai/specialty-corpus.tsv";
+    private static final int MIN_GRAM = 2;
+    private static final int MAX_GRAM = 4;
+    // từ không giúp phân biệt chuyên khoa, bỏ thêm sau normalize() của cache (cache giữ lại vì đổi nghĩa câu hỏi)
+    private static final Set<String> NOISE_WORDS = Set.of(
+            "the", "la", "va", "voi", "minh", "em", "anh", "chi", "ban", "cho", "hoi", "duoc", "khong", "ko",
+            "co", "bi", "nen", "can", "phai", "hay", "gi", "nao", "sao", "dang", "roi", "ma", "lam");
+    // Laplace smoothing
+    private static final double ALPHA = 0.1;
+    // tỉ lệ n-gram của câu phải có trong từ điển
+    private static final double MIN_COVERAGE = 0.6;
+    // NB cộng log của mọi n-gram nên xác suất rất "cứng", chia theo số n-gram để confidence dùng được làm ngưỡng
+    private static final double SHARPNESS = 5.0;
+
+    AiFastPathConfig config;
+    Model model;
+    Timer latency;
+    DistributionSummary confidence;
+    Counter local;
+    Counter llm;
+
+    public record Prediction(MedicalSpecialty specialty, double confidence) {
+    }
+
+    private record Model(MedicalSpecialty[] labels, double[] logPrior, Map<String, double[]> logLikelihood) {
+    }
+
+    public SpecialtyClassifier(AiFastPathConfig config, MeterRegistry meterRegistry) {
+        this.config = config;
+        this.model = train(loadSamples());
+        this.latency = Timer.builder("ai.fastpath.latency")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        this.confidence = DistributionSummary.builder("ai.fastpath.confidence")
+                .serviceLevelObjectives(0.5, 0.8, 0.9, 0.95)
+                .register(meterRegistry);
+        this.local = meterRegistry.counter("ai.fastpath.requests", "route", "local");
+        this.llm = meterRegistry.counter("ai.fastpath.requests", "route", "llm");
+    }
+
+    /**
+     * Chuyên khoa nếu đủ tự tin để trả lời cục bộ, empty nghĩa là nên hỏi Gemini. Có ghi metric.
+     */
+    public Optional<MedicalSpecialty> tryLocal(String message) {
+        if (!config.isEnabled()) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        Optional<Prediction> prediction = classify(message);
+        latency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        prediction.ifPresent(p -> confidence.record(p.confidence()));
+
+        if (prediction.isPresent() && prediction.get().confidence() >= config.getMinConfidence()) {
+            local.increment();
+            return Optional.of(prediction.get().specialty());
+        }
+        llm.increment();
+        return Optional.empty();
+    }
+
+    public Optional<Prediction> classify(String message) {
+        double[] posterior = posterior(message);
+        if (posterior == null) {
+            return Optional.empty();
+        }
+        int best = 0;
+        for (int c = 1; c < posterior.length; c++) {
+            if (posterior[c] > posterior[best]) {
+                best = c;
+            }
+        }
+        return Optional.of(new Prediction(model.labels()[best], posterior[best]));
+    }
+
+    /**
+     * Mọi chuyên khoa xếp theo xác suất giảm dần, empty nếu câu không đủ tín hiệu.
+     */
+    public List<Prediction> rank(String message) {
+        double[] posterior = posterior(message);
+        if (posterior == null) {
+            return List.of();
+        }
+        List<Prediction> ranked = new ArrayList<>(posterior.length);
+        for (int c = 0; c < posterior.length; c++) {
+            ranked.add(new Prediction(model.labels()[c], posterior[c]));
+        }
+        ranked.sort(Comparator.comparingDouble(Prediction::confidence).reversed());
+        return ranked;
+    }
+
+    private double[] posterior(String message) {
+        List<String> features = features(message);
+        if (features.isEmpty()) {
+            return null;
+        }
+        int known = 0;
+        int k = model.labels().length;
+        double[] scores = model.logPrior().clone();
+        for (String feature : features) {
+            double[] likelihood = model.logLikelihood().get(feature);
+            if (likelihood == null) {
+                continue;
+            }
+            known++;
+            for (int c = 0; c < k; c++) {
+                scores[c] += likelihood[c];
+            }
+        }
+        if (known < MIN_COVERAGE * features.size()) {
+            return null;
+        }
+
+        double max = Arrays.stream(scores).max().getAsDouble();
+        // softmax trên điểm đã chia theo số n-gram
+        double sum = 0;
+        for (int c = 0; c < k; c++) {
+            scores[c] = Math.exp((scores[c] - max) * SHARPNESS / known);
+            sum += scores[c];
+        }
+        for (int c = 0; c < k; c++) {
+            scores[c] /= sum;
+        }
+        return scores;
+    }
+
+    // n-gram ký tự trên câu bỏ dấu và bỏ từ đệm ("tôi", "bị", "cho"...), có khoảng trắng bao ngoài để đánh dấu đầu/cuối từ
+    public static List<String> features(String text) {
+        String folded = Arrays.stream(DiagnosisResponseCache.normalize(text).split(" "))
+                .filter(token -> !NOISE_WORDS.contains(token))
+                .collect(Collectors.joining(" "));
+        List<String> out = new ArrayList<>();
+        if (folded.isEmpty()) {
+            return out;
+        }
+        String padded = " " + folded + " ";
+        for (int n = MIN_GRAM; n <= MAX_GRAM; n++) {
+            for (int i = 0; i + n <= padded.length(); i++) {
+                String gram = padded.substring(i, i + n);
+                if (!gram.isBlank()) {
+                    out.add(gram);
+                }
+            }
+        }
+        return out;
+    }
+
+    private static Model train(List<Map.Entry<MedicalSpecialty, String>> samples) {
+        List<MedicalSpecialty> labels = samples.stream().map(Map.Entry::getKey).distinct().toList();
+        Map<MedicalSpecialty, Integer> labelIndex = new HashMap<>();
+        for (int i = 0; i < labels.size(); i++) {
+            labelIndex.put(labels.get(i), i);
+        }
+        int k = labels.size();
+        double[] docCount = new double[k];
+        double[] featureTotal = new double[k];
+        Map<String, double[]> counts = new HashMap<>();
+        for (Map.Entry<MedicalSpecialty, String> sample : samples) {
+            int c = labelIndex.get(sample.getKey());
+            docCount[c]++;
+            for (String feature : features(sample.getValue())) {
+                counts.computeIfAbsent(feature, f -> new double[k])[c]++;
+                featureTotal[c]++;
+            }
+        }
+
+        int vocabulary = counts.size();
+        double[] logPrior = new double[k];
+        for (int c = 0; c < k; c++) {
+            logPrior[c] = Math.log(docCount[c] / samples.size());
+        }
+        Map<String, double[]> logLikelihood = new HashMap<>();
+        counts.forEach((feature, perClass) -> {
+            double[] ll = new double[k];
+            for (int c = 0; c < k; c++) {
+                ll[c] = Math.log((perClass[c] + ALPHA) / (featureTotal[c] + ALPHA * vocabulary));
+            }
+            logLikelihood.put(feature, ll);
+        });
+        log.info("Specialty classifier trained: {} samples, {} classes, {} features", samples.size(), k, vocabulary);
+        return new Model(labels.toArray(MedicalSpecialty[]::new), logPrior, logLikelihood);
+    }
+
+    private static List<Map.Entry<MedicalSpecialty, String>> loadSamples() {
+        List<Map.Entry<MedicalSpecialty, String>> samples = new ArrayList<>();
+        KeywordSpecialtyRecommender.loadKeywords().forEach((specialty, phrases) ->
+                phrases.forEach(p -> samples.add(new AbstractMap.SimpleEntry<>(specialty, p))));
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ClassPathResource(CORPUS_RESOURCE).getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (line.isBlank() || line.startsWith("#") || tab < 0) {
+                    continue;
+                }
+                try {
+                    samples.add(new AbstractMap.SimpleEntry<>(
+                            MedicalSpecialty.valueOf(line.substring(0, tab).trim()), line.substring(tab + 1).trim()));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Unknown specialty in {}: {}", CORPUS_RESOURCE, line);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.ohms.service.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.example.ohms.service.CloudinaryService;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class CloudinaryImageStorage implements ImageStorage {
+    CloudinaryService cloudinaryService;
+
+    @Override
+    public String store(String folder, byte[] content) throws IOException {
+        return cloudinaryService.uploadFromBytes(content, folder);
+    }
+
+    @Override
+    public String store(String folder, Path file) throws IOException {
+        return cloudinaryService.uploadFromFile(file.toFile(), folder);
+    }
+
+    @Override
+    public void delete(String url) throws IOException {
+        String publicId = publicId(url);
+        if (publicId != null) {
+            cloudinaryService.deleteFile(publicId);
+        }
+    }
+
+    // https://res.cloudinary.com/<cloud>/image/upload/v123/folder/name.jpg -> folder/name
+    static String publicId(String url) {
+        if (url == null) {
+            return null;
+        }
+        int upload = url.indexOf("/upload/");
+        if (upload < 0) {
+            return null;
+        }
+        String path = url.substring(upload + "/upload/".length());
+        if (path.matches("v\\d+/.*")) {
+            path = path.substring(path.indexOf('/') + 1);
+        }
+        int dot = path.lastIndexOf('.');
+        return dot > 0 ? path.substring(0, dot) : path;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.ohms.service.storage;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Nơi lưu ảnh (Cloudinary ở production, filesystem ở test).
+ * Mỗi method trả về URL public của object vừa lưu.
+ */
+public interface ImageStorage {
+
+    String store(String folder, byte[] content) throws IOException;
+
+    // upload thẳng từ file đã spool ra disk, không đọc cả file lên heap
+    String store(String folder, Path file) throws IOException;
+
+    // xóa object theo URL đã trả về từ store (vd avatar cũ bị thay), storage không hỗ trợ thì bỏ qua
+    default void delete(String url) throws IOException {
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.ohms.service.storage;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+
+// lưu ảnh xuống disk, dùng cho test và chạy local không cần Cloudinary
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class LocalImageStorage implements ImageStorage {
+    Path root;
+
+    public LocalImageStorage(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public String store(String folder, byte[] content) throws IOException {
+        if (content == null || content.length == 0) {
+            throw new IllegalArgumentException("Image bytes is null or empty");
+        }
+        Path target = newTarget(folder);
+        Files.write(target, content);
+        log.info("Stored image locally: {} ({} bytes)", target, content.length);
+        return target.toUri().toString();
+    }
+
+    @Override
+    public String store(String folder, Path file) throws IOException {
+        Path target = newTarget(folder);
+        Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+        log.info("Stored image locally: {} ({} bytes)", target, Files.size(target));
+        return target.toUri().toString();
+    }
+
+    // chỉ xóa file nằm trong root, URL khác (Cloudinary cũ, placeholder) thì bỏ qua
+    @Override
+    public void delete(String url) throws IOException {
+        if (url == null || !url.startsWith("file:")) {
+            return;
+        }
+        Path target = Path.of(URI.create(url)).normalize();
+        if (target.startsWith(root)) {
+            Files.deleteIfExists(target);
+        }
+    }
+
+    private Path newTarget(String folder) throws IOException {
+        Path dir = root.resolve(folder).normalize();
+        if (!dir.startsWith(root)) {
+            throw new IllegalArgumentException("Invalid folder: " + folder);
+        }
+        Files.createDirectories(dir);
+        return dir.resolve(UUID.randomUUID().toString());
+    }
+}
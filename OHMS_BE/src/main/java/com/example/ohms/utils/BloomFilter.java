@@ -0,0 +1,73 @@
+package com.example.ohms.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter cho chuỗi: mightContain false thì chắc chắn chưa add, true thì có thể là dương tính giả.
+ * Không xóa được phần tử, muốn bỏ thì dựng filter mới. Add/đọc không cần lock (bit set bằng CAS).
+ * Số bit và số hàm hash tính từ số phần tử dự kiến và tỉ lệ dương tính giả mong muốn.
+ */
+public class BloomFilter {
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    public BloomFilter(int expectedEntries, double falsePositiveRate) {
+        int n = Math.max(1, expectedEntries);
+        double p = Math.min(Math.max(falsePositiveRate, 1e-9), 0.5);
+        long bits = (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2)));
+        this.bitCount = Math.max(64, bits);
+        this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        this.words = new AtomicLongArray((int) ((bitCount + 63) / 64));
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            while (((word = words.get(index)) & mask) == 0) {
+                if (words.compareAndSet(index, word, word | mask)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = Math.floorMod(h1 + (long) i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    // FNV-1a 64 bit trên UTF-8 rồi trộn kiểu splitmix64 để hai nửa 32 bit đủ độc lập cho double hashing
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.ohms.utils;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Circuit breaker theo số lỗi liên tiếp.
+ * CLOSED: cho qua hết; đủ failureThreshold lỗi liên tiếp thì OPEN và chặn mọi call trong openDuration;
+ * hết thời gian thì HALF_OPEN, cho đúng 1 call thử: thành công thì CLOSED, lỗi thì OPEN lại.
+ */
+public class CircuitBreaker {
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    public CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, System::nanoTime);
+    }
+
+    public CircuitBreaker(int failureThreshold, long openMillis, LongSupplier nanoClock) {
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (state == State.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        trialInFlight = false;
+        state = State.CLOSED;
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN || ++consecutiveFailures >= failureThreshold) {
+            state = State.OPEN;
+            openedAt = nanoClock.getAsLong();
+            consecutiveFailures = 0;
+            trialInFlight = false;
+        }
+    }
+
+    // call được cho qua nhưng kết thúc mà không biết thành/bại (bị hủy), trả lại lượt thử
+    public synchronized void releasePermission() {
+        trialInFlight = false;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,180 @@
+package com.example.ohms.utils;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Thu nhỏ ảnh và encode lại thành jpeg. Encode lại chỉ ghi pixel nên EXIF (GPS, tên máy...) của file gốc bị bỏ;
+ * riêng Orientation được đọc trước và áp thẳng vào pixel, nếu không ảnh chụp dọc từ điện thoại sẽ bị nằm ngang.
+ */
+public final class ImageResizer {
+
+    private ImageResizer() {
+    }
+
+    /**
+     * Decode với subsampling để ảnh 12MP không bung ra ~48MB trên heap,
+     * sau đó scale về maxSize và encode jpeg. Trả null nếu không phải ảnh ImageIO đọc được.
+     */
+    public static byte[] toJpeg(ImageInputStream input, int maxSize) throws IOException {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        int orientation = exifOrientation(input);
+        ImageReader reader = readers.next();
+        try {
+            reader.setInput(input, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            ImageReadParam param = reader.getDefaultReadParam();
+            int step = Math.max(1, Math.max(width, height) / (maxSize * 2));
+            param.setSourceSubsampling(step, step, 0, 0);
+            BufferedImage decoded = reader.read(0, param);
+
+            double scale = Math.min(1.0, (double) maxSize / Math.max(decoded.getWidth(), decoded.getHeight()));
+            int targetWidth = Math.max(1, (int) Math.round(decoded.getWidth() * scale));
+            int targetHeight = Math.max(1, (int) Math.round(decoded.getHeight() * scale));
+            BufferedImage scaled = new BufferedImage(targetWidth, targetHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = scaled.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setColor(Color.WHITE);
+                graphics.fillRect(0, 0, targetWidth, targetHeight);
+                graphics.drawImage(decoded, 0, 0, targetWidth, targetHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ImageIO.write(orient(scaled, orientation), "jpg", out);
+            return out.toByteArray();
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Đọc tag Orientation (0x0112) trong IFD0 của segment APP1 Exif, chỉ với jpeg. Trả 1 (không xoay)
+     * nếu không có hoặc không đọc được. Stream được trả về vị trí ban đầu.
+     */
+    static int exifOrientation(ImageInputStream input) throws IOException {
+        input.mark();
+        try {
+            if (input.read() != 0xFF || input.read() != 0xD8) {
+                return 1;
+            }
+            while (true) {
+                int b = input.read();
+                if (b != 0xFF) {
+                    return 1;
+                }
+                int marker = input.read();
+                while (marker == 0xFF) {
+                    marker = input.read();
+                }
+                // SOS/EOI: hết phần header, không có Exif
+                if (marker < 0 || marker == 0xDA || marker == 0xD9) {
+                    return 1;
+                }
+                int length = input.readUnsignedShort() - 2;
+                if (length < 0) {
+                    return 1;
+                }
+                if (marker == 0xE1) {
+                    byte[] segment = new byte[length];
+                    input.readFully(segment);
+                    int orientation = orientationFromExif(segment);
+                    if (orientation > 0) {
+                        return orientation;
+                    }
+                } else {
+                    input.skipBytes(length);
+                }
+            }
+        } catch (EOFException e) {
+            return 1;
+        } finally {
+            input.reset();
+        }
+    }
+
+    // segment = "Exif\0\0" + header TIFF; trả 0 nếu không phải Exif (vd APP1 chứa XMP)
+    private static int orientationFromExif(byte[] segment) {
+        if (segment.length < 14 || segment[0] != 'E' || segment[1] != 'x' || segment[2] != 'i' || segment[3] != 'f') {
+            return 0;
+        }
+        int tiff = 6;
+        boolean littleEndian = segment[tiff] == 'I' && segment[tiff + 1] == 'I';
+        long ifd = readInt(segment, tiff + 4, littleEndian);
+        if (ifd < 8 || tiff + ifd + 2 > segment.length) {
+            return 1;
+        }
+        int start = tiff + (int) ifd;
+        int entries = readShort(segment, start, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = start + 2 + i * 12;
+            if (entry + 12 > segment.length) {
+                break;
+            }
+            if (readShort(segment, entry, littleEndian) == 0x0112) {
+                int value = readShort(segment, entry + 8, littleEndian);
+                return value >= 1 && value <= 8 ? value : 1;
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] data, int offset, boolean littleEndian) {
+        int b0 = data[offset] & 0xFF;
+        int b1 = data[offset + 1] & 0xFF;
+        return littleEndian ? b1 << 8 | b0 : b0 << 8 | b1;
+    }
+
+    private static long readInt(byte[] data, int offset, boolean littleEndian) {
+        long high = readShort(data, offset + (littleEndian ? 2 : 0), littleEndian);
+        long low = readShort(data, offset + (littleEndian ? 0 : 2), littleEndian);
+        return high << 16 | low;
+    }
+
+    // xoay/lật theo Orientation 2..8, làm sau khi đã thu nhỏ nên rẻ
+    static BufferedImage orient(BufferedImage image, int orientation) {
+        if (orientation < 2 || orientation > 8) {
+            return image;
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        AffineTransform transform = switch (orientation) {
+            case 2 -> new AffineTransform(-1, 0, 0, 1, w, 0);   // lật ngang
+            case 3 -> new AffineTransform(-1, 0, 0, -1, w, h);  // xoay 180
+            case 4 -> new AffineTransform(1, 0, 0, -1, 0, h);   // lật dọc
+            case 5 -> new AffineTransform(0, 1, 1, 0, 0, 0);    // chuyển vị
+            case 6 -> new AffineTransform(0, 1, -1, 0, h, 0);   // xoay 90 theo chiều kim đồng hồ
+            case 7 -> new AffineTransform(0, -1, -1, 0, h, w);  // chuyển vị ngược
+            default -> new AffineTransform(0, -1, 1, 0, 0, w);  // 8: xoay 90 ngược chiều kim đồng hồ
+        };
+        boolean swap = orientation >= 5;
+        BufferedImage rotated = new BufferedImage(swap ? h : w, swap ? w : h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = rotated.createGraphics();
+        try {
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rotated;
+    }
+}
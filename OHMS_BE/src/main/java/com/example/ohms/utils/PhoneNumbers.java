@@ -0,0 +1,43 @@
+package com.example.ohms.utils;
+
+// số điện thoại VN dạng chuỗi "0xxxxxxxxx": cột phone kiểu Integer làm mất số 0 đầu, người dùng lại hay gõ +84
+public final class PhoneNumbers {
+
+    private PhoneNumbers() {
+    }
+
+    public static String normalize(Integer phone) {
+        return phone == null ? null : normalize(phone.toString());
+    }
+
+    /**
+     * Bỏ khoảng trắng, dấu chấm, gạch; "+84"/"84" đầu số (khi đủ dài để là mã quốc gia) đổi thành "0";
+     * thiếu số 0 đầu thì thêm. Không phải số điện thoại thì trả null. Dùng được cho cả tiền tố đang gõ.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.strip();
+        boolean international = trimmed.startsWith("+");
+        StringBuilder digits = new StringBuilder(trimmed.length());
+        for (int i = international ? 1 : 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (c != ' ' && c != '.' && c != '-' && c != '(' && c != ')') {
+                return null;
+            }
+        }
+        if (digits.isEmpty()) {
+            return null;
+        }
+        if (digits.length() > 2 && digits.charAt(0) == '8' && digits.charAt(1) == '4' && (international || digits.length() >= 11)) {
+            digits.delete(0, 2);
+        }
+        if (digits.charAt(0) != '0') {
+            digits.insert(0, '0');
+        }
+        return digits.toString();
+    }
+}
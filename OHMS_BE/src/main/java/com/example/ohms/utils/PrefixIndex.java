@@ -0,0 +1,210 @@
+package com.example.ohms.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Index tìm theo tiền tố cho typeahead: mọi khóa của mọi giá trị nằm trong một mảng đã sắp xếp,
+ * tìm bằng binary search tới khóa đầu tiên >= tiền tố rồi đọc tiếp tới khi đủ {@code limit} (O(log n + limit)).
+ * Mảng sắp xếp là một trie nén: các khóa cùng tiền tố nằm liền nhau, nhưng chỉ tốn 2 tham chiếu mỗi khóa.
+ * <p>
+ * Ghi ({@link #put}/{@link #remove}) không đụng vào mảng mà đánh dấu id là "dirty"; lúc đọc, giá trị dirty
+ * được so trực tiếp còn bản cũ của nó trong mảng bị bỏ qua. {@link #compact()} trộn tuyến tính phần dirty
+ * vào mảng mới (không sort lại cả mảng), nên ghi luôn rẻ và đọc luôn thấy dữ liệu mới nhất.
+ */
+public final class PrefixIndex<V> {
+    private final Function<V, String> idOf;
+    private final Function<V, Collection<String>> keysOf;
+    private final Map<String, V> values = new ConcurrentHashMap<>();
+    // id -> stamp của lần ghi cuối, compact chỉ xóa dirty nếu stamp chưa đổi trong lúc nó chạy
+    private final Map<String, Long> dirty = new ConcurrentHashMap<>();
+    private final AtomicLong stamps = new AtomicLong();
+    private volatile Snapshot<V> snapshot = new Snapshot<>(new String[0], new Object[0]);
+
+    private record Snapshot<V>(String[] keys, Object[] owners) {
+        @SuppressWarnings("unchecked")
+        V owner(int i) {
+            return (V) owners[i];
+        }
+    }
+
+    private record Entry<V>(String key, V owner) {
+    }
+
+    public PrefixIndex(Function<V, String> idOf, Function<V, Collection<String>> keysOf) {
+        this.idOf = idOf;
+        this.keysOf = keysOf;
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public int pending() {
+        return dirty.size();
+    }
+
+    public V get(String id) {
+        return values.get(id);
+    }
+
+    // ghi values trước rồi mới đánh dấu dirty, compact đọc dirty trước rồi mới đọc values
+    public void put(V value) {
+        String id = idOf.apply(value);
+        values.put(id, value);
+        dirty.put(id, stamps.incrementAndGet());
+    }
+
+    public void remove(String id) {
+        if (values.remove(id) != null) {
+            dirty.put(id, stamps.incrementAndGet());
+        }
+    }
+
+    /**
+     * Tối đa {@code limit} giá trị khác nhau có ít nhất một khóa bắt đầu bằng một trong các tiền tố,
+     * theo thứ tự tiền tố rồi thứ tự khóa (khớp đúng đứng trước khớp dài hơn).
+     */
+    public List<V> search(List<String> prefixes, int limit) {
+        // đọc dirty trước snapshot: compact công bố snapshot mới rồi mới xóa dirty nên không lỡ bản cập nhật nào
+        Set<String> dirtyIds = new HashSet<>(dirty.keySet());
+        Snapshot<V> current = snapshot;
+        Map<String, V> results = new LinkedHashMap<>();
+        for (String prefix : prefixes) {
+            if (prefix == null || prefix.isEmpty()) {
+                continue;
+            }
+            List<Entry<V>> fresh = new ArrayList<>();
+            for (String id : dirtyIds) {
+                V value = values.get(id);
+                if (value != null) {
+                    for (String key : keysOf.apply(value)) {
+                        if (key.startsWith(prefix)) {
+                            fresh.add(new Entry<>(key, value));
+                        }
+                    }
+                }
+            }
+            fresh.sort(Comparator.comparing(Entry::key));
+            int f = 0;
+            for (int i = firstAtLeast(current.keys(), prefix);
+                 results.size() < limit && i < current.keys().length && current.keys()[i].startsWith(prefix); i++) {
+                // giữ thứ tự khóa khi xen các giá trị dirty vào giữa
+                while (f < fresh.size() && fresh.get(f).key().compareTo(current.keys()[i]) <= 0 && results.size() < limit) {
+                    V value = fresh.get(f++).owner();
+                    results.putIfAbsent(idOf.apply(value), value);
+                }
+                V owner = current.owner(i);
+                String id = idOf.apply(owner);
+                if (results.size() < limit && !dirtyIds.contains(id)) {
+                    results.putIfAbsent(id, owner);
+                }
+            }
+            while (f < fresh.size() && results.size() < limit) {
+                V value = fresh.get(f++).owner();
+                results.putIfAbsent(idOf.apply(value), value);
+            }
+            if (results.size() >= limit) {
+                break;
+            }
+        }
+        return List.copyOf(results.values());
+    }
+
+    /**
+     * Nạp dữ liệu đọc từ DB lúc khởi động rồi dựng lại mảng (sort một lần). Giá trị đã được {@link #put}
+     * trong lúc đang đọc DB thì mới hơn nên được giữ lại.
+     */
+    public synchronized void load(Collection<V> loaded) {
+        for (V value : loaded) {
+            values.putIfAbsent(idOf.apply(value), value);
+        }
+        Map<String, Long> merged = new HashMap<>(dirty);
+        List<Entry<V>> entries = new ArrayList<>();
+        for (V value : values.values()) {
+            for (String key : keysOf.apply(value)) {
+                entries.add(new Entry<>(key, value));
+            }
+        }
+        entries.sort(Comparator.comparing(Entry::key));
+        snapshot = toSnapshot(entries);
+        merged.forEach(dirty::remove);
+    }
+
+    /** Trộn các giá trị dirty vào mảng. Trả số id đã trộn. */
+    public synchronized int compact() {
+        if (dirty.isEmpty()) {
+            return 0;
+        }
+        Map<String, Long> merging = new HashMap<>(dirty);
+        List<Entry<V>> fresh = new ArrayList<>();
+        for (String id : merging.keySet()) {
+            V value = values.get(id);
+            if (value != null) {
+                for (String key : keysOf.apply(value)) {
+                    fresh.add(new Entry<>(key, value));
+                }
+            }
+        }
+        fresh.sort(Comparator.comparing(Entry::key));
+        Snapshot<V> current = snapshot;
+        String[] keys = new String[current.keys().length + fresh.size()];
+        Object[] owners = new Object[keys.length];
+        int n = 0;
+        int f = 0;
+        for (int i = 0; i < current.keys().length; i++) {
+            V owner = current.owner(i);
+            if (merging.containsKey(idOf.apply(owner))) {
+                continue;
+            }
+            while (f < fresh.size() && fresh.get(f).key().compareTo(current.keys()[i]) <= 0) {
+                keys[n] = fresh.get(f).key();
+                owners[n++] = fresh.get(f++).owner();
+            }
+            keys[n] = current.keys()[i];
+            owners[n++] = owner;
+        }
+        for (; f < fresh.size(); f++) {
+            keys[n] = fresh.get(f).key();
+            owners[n++] = fresh.get(f).owner();
+        }
+        snapshot = new Snapshot<>(Arrays.copyOf(keys, n), Arrays.copyOf(owners, n));
+        merging.forEach(dirty::remove);
+        return merging.size();
+    }
+
+    private Snapshot<V> toSnapshot(List<Entry<V>> entries) {
+        String[] keys = new String[entries.size()];
+        Object[] owners = new Object[entries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = entries.get(i).key();
+            owners[i] = entries.get(i).owner();
+        }
+        return new Snapshot<>(keys, owners);
+    }
+
+    private static int firstAtLeast(String[] keys, String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
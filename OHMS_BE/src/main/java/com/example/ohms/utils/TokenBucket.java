@@ -0,0 +1,40 @@
+package com.example.ohms.utils;
+
+/**
+ * Token bucket đơn giản: tối đa capacity token, nạp lại refillPerSecond token/giây.
+ * Dùng để giới hạn tần suất theo session/room/ip.
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double refillPerNano;
+    private double tokens;
+    private long lastRefill;
+
+    public TokenBucket(double capacity, double refillPerSecond) {
+        this.capacity = capacity;
+        this.refillPerNano = refillPerSecond / 1_000_000_000d;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    public synchronized boolean tryConsume() {
+        refill();
+        if (tokens >= 1) {
+            tokens -= 1;
+            return true;
+        }
+        return false;
+    }
+
+    // bucket đầy lại rồi thì coi như không còn hoạt động, có thể bỏ khỏi map
+    public synchronized boolean isIdle() {
+        refill();
+        return tokens >= capacity;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * refillPerNano);
+        lastRefill = now;
+    }
+}
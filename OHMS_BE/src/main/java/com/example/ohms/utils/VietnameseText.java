@@ -0,0 +1,24 @@
+package com.example.ohms.utils;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// bỏ dấu tiếng Việt để so khớp "dị ứng" với "di ung"
+public final class VietnameseText {
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private VietnameseText() {
+    }
+
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return COMBINING_MARKS.matcher(decomposed).replaceAll("")
+                .replace('đ', 'd')
+                .replace('Đ', 'D')
+                .toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,252 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AiResilienceConfig;
+import com.example.ohms.exception.AiUnavailableException;
+import com.example.ohms.service.ai.AiCallGuard;
+import com.example.ohms.utils.CircuitBreaker;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test Suite for AiCallGuard / CircuitBreaker
+ *
+ * Test Coverage:
+ * 1. CircuitBreaker - CLOSED -> OPEN -> HALF_OPEN -> CLOSED/OPEN
+ * 2. call() - success, error, timeout, circuit open
+ * 3. bulkhead - từ chối khi hết chỗ
+ */
+@DisplayName("AiCallGuard Test Suite")
+class AiCallGuardTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AiResilienceConfig config;
+    private AiCallGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        config = new AiResilienceConfig();
+        config.setMaxConcurrentCalls(1);
+        config.setMaxWaitMs(50);
+        config.setCallTimeoutSeconds(1);
+        config.setFailureThreshold(2);
+        config.setOpenSeconds(60);
+        guard = new AiCallGuard(config, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        guard.shutdown();
+    }
+
+    private double outcome(String outcome) {
+        var counter = meterRegistry.find("ai.calls").tag("outcome", outcome).counter();
+        return counter == null ? 0 : counter.count();
+    }
+
+    // ==================== 1. CIRCUIT BREAKER TESTS ====================
+
+    @Nested
+    @DisplayName("CircuitBreaker Tests")
+    class CircuitBreakerTests {
+
+        private final AtomicLong now = new AtomicLong();
+        private final CircuitBreaker breaker = new CircuitBreaker(2, 1000, now::get);
+
+        @Test
+        @DisplayName("Mở circuit sau đủ số lỗi liên tiếp")
+        void shouldOpen_AfterConsecutiveFailures() {
+            // When
+            breaker.onFailure();
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+            breaker.onFailure();
+
+            // Then
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+            assertFalse(breaker.tryAcquirePermission());
+        }
+
+        @Test
+        @DisplayName("Thành công ở giữa reset bộ đếm lỗi")
+        void shouldResetCount_OnSuccess() {
+            // When
+            breaker.onFailure();
+            breaker.onSuccess();
+            breaker.onFailure();
+
+            // Then
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        }
+
+        @Test
+        @DisplayName("Hết thời gian mở chỉ cho 1 call thử, thành công thì đóng")
+        void shouldAllowSingleTrial_WhenHalfOpen() {
+            // Given
+            breaker.onFailure();
+            breaker.onFailure();
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+
+            // When / Then
+            assertTrue(breaker.tryAcquirePermission());
+            assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+            assertFalse(breaker.tryAcquirePermission());
+            breaker.onSuccess();
+            assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        }
+
+        @Test
+        @DisplayName("Call thử lỗi thì mở lại ngay")
+        void shouldReopen_WhenTrialFails() {
+            // Given
+            breaker.onFailure();
+            breaker.onFailure();
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+            assertTrue(breaker.tryAcquirePermission());
+
+            // When
+            breaker.onFailure();
+
+            // Then
+            assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+            assertFalse(breaker.tryAcquirePermission());
+        }
+
+        @Test
+        @DisplayName("Call thử bị hủy trả lại lượt thử")
+        void shouldReleaseTrial_WhenCancelled() {
+            // Given
+            breaker.onFailure();
+            breaker.onFailure();
+            now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+            assertTrue(breaker.tryAcquirePermission());
+
+            // When
+            breaker.releasePermission();
+
+            // Then
+            assertTrue(breaker.tryAcquirePermission());
+        }
+    }
+
+    // ==================== 2. CALL TESTS ====================
+
+    @Nested
+    @DisplayName("call() Tests")
+    class CallTests {
+
+        @Test
+        @DisplayName("Trả kết quả khi call thành công")
+        void shouldReturnResult_WhenCallSucceeds() {
+            // When
+            String result = guard.call(() -> "ok");
+
+            // Then
+            assertEquals("ok", result);
+            assertEquals(1, outcome("success"));
+        }
+
+        @Test
+        @DisplayName("Lỗi được bọc thành AiUnavailableException")
+        void shouldWrapError() {
+            // When
+            AiUnavailableException ex = assertThrows(AiUnavailableException.class,
+                    () -> guard.call(() -> { throw new IllegalStateException("boom"); }));
+
+            // Then
+            assertEquals("error", ex.getReason());
+            assertInstanceOf(IllegalStateException.class, ex.getCause());
+        }
+
+        @Test
+        @DisplayName("Call quá timeout bị hủy")
+        void shouldTimeout_WhenCallTooSlow() {
+            // When
+            AiUnavailableException ex = assertThrows(AiUnavailableException.class,
+                    () -> guard.call(() -> { Thread.sleep(5000); return "late"; }));
+
+            // Then
+            assertEquals("timeout", ex.getReason());
+        }
+
+        @Test
+        @DisplayName("Call thử HALF_OPEN bị interrupt thì trả lại lượt thử, circuit không kẹt")
+        void shouldReleaseTrial_WhenInterrupted() throws Exception {
+            // Given - circuit mở rồi hết thời gian mở
+            config.setOpenSeconds(0);
+            guard = new AiCallGuard(config, meterRegistry);
+            for (int i = 0; i < config.getFailureThreshold(); i++) {
+                assertThrows(AiUnavailableException.class, () -> guard.call(() -> { throw new RuntimeException(); }));
+            }
+            CountDownLatch started = new CountDownLatch(1);
+            Thread caller = Thread.ofVirtual().start(() -> assertThrows(AiUnavailableException.class,
+                    () -> guard.call(() -> { started.countDown(); Thread.sleep(5000); return "late"; })));
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+            assertEquals(CircuitBreaker.State.HALF_OPEN, guard.state());
+
+            // When
+            caller.interrupt();
+            caller.join(1000);
+
+            // Then - call kế tiếp vẫn được thử
+            assertEquals("ok", guard.call(() -> "ok"));
+            assertEquals(CircuitBreaker.State.CLOSED, guard.state());
+        }
+
+        @Test
+        @DisplayName("Circuit mở thì không gọi tới API")
+        void shouldShortCircuit_WhenOpen() {
+            // Given
+            for (int i = 0; i < config.getFailureThreshold(); i++) {
+                assertThrows(AiUnavailableException.class, () -> guard.call(() -> { throw new RuntimeException(); }));
+            }
+            assertEquals(CircuitBreaker.State.OPEN, guard.state());
+
+            // When
+            AiUnavailableException ex = assertThrows(AiUnavailableException.class, () -> guard.call(() -> "never"));
+
+            // Then
+            assertEquals("circuit_open", ex.getReason());
+            assertEquals(1, outcome("circuit_open"));
+        }
+    }
+
+    // ==================== 3. BULKHEAD TESTS ====================
+
+    @Nested
+    @DisplayName("Bulkhead Tests")
+    class BulkheadTests {
+
+        @Test
+        @DisplayName("Từ chối khi bulkhead đầy")
+        void shouldReject_WhenBulkheadFull() throws Exception {
+            // Given - 1 call đang giữ chỗ duy nhất
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Thread holder = Thread.ofVirtual().start(() -> guard.call(() -> {
+                started.countDown();
+                release.await();
+                return "held";
+            }));
+            assertTrue(started.await(1, TimeUnit.SECONDS));
+
+            // When
+            AiUnavailableException ex = assertThrows(AiUnavailableException.class, () -> guard.call(() -> "second"));
+
+            // Then
+            assertEquals("bulkhead_full", ex.getReason());
+            release.countDown();
+            holder.join(1000);
+            assertEquals("ok", guard.call(() -> "ok"));
+        }
+    }
+}
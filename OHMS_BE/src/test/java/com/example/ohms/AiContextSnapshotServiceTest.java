@@ -0,0 +1,218 @@
+package com.example.ohms;
+
+import com.example.ohms.entity.MedicalExamination;
+import com.example.ohms.entity.Role;
+import com.example.ohms.entity.Schedule;
+import com.example.ohms.entity.User;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.repository.MedicleExaminatioRepository;
+import com.example.ohms.repository.ScheduleRepository;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.service.DoctorDirectoryService;
+import com.example.ohms.service.ai.AiContextChangedEvent;
+import com.example.ohms.service.ai.AiContextSnapshot;
+import com.example.ohms.service.ai.AiContextSnapshotService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for AiContextSnapshotService
+ *
+ * Test Coverage:
+ * 1. current() - build một lần, dùng lại snapshot
+ * 2. onContextChanged() - invalidate và build lại, kể cả khi danh bạ bác sĩ đổi
+ * 3. build failures - giữ snapshot cũ, không đưa lỗi vào prompt, thử lại ở request sau
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AiContextSnapshotService Test Suite")
+class AiContextSnapshotServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private ScheduleRepository scheduleRepository;
+
+    @Mock
+    private MedicleExaminatioRepository medicalExaminationRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DoctorDirectoryService doctorDirectoryService;
+
+    private AiContextSnapshotService aiContextSnapshotService;
+
+    private User doctor;
+
+    @BeforeEach
+    void setUp() {
+        doctorDirectoryService = new DoctorDirectoryService(userRepository);
+        aiContextSnapshotService = new AiContextSnapshotService(
+                doctorDirectoryService, scheduleRepository, medicalExaminationRepository,
+                new TransactionTemplate(transactionManager));
+        doctor = User.builder()
+                .id("D001")
+                .username("BS. Nguyễn Văn Minh")
+                .experience(10)
+                .medicleSpecially(Set.of(MedicalSpecialty.PEDIATRICS))
+                .roles(Set.of(Role.builder().name("DOCTOR").build()))
+                .build();
+        Schedule schedule = Schedule.builder()
+                .doctor(doctor)
+                .workDate(LocalDate.now())
+                .startTime(LocalTime.of(8, 0))
+                .endTime(LocalTime.of(12, 0))
+                .build();
+        MedicalExamination exam = MedicalExamination.builder()
+                .id("E001")
+                .name("Khám nhi tổng quát")
+                .price(150000)
+                .minDuration(15)
+                .medicalSpecialty(MedicalSpecialty.PEDIATRICS)
+                .build();
+
+        lenient().when(userRepository.findByRoleName("DOCTOR")).thenReturn(List.of(doctor));
+        lenient().when(scheduleRepository.findByWorkDateBetween(any(), any())).thenReturn(List.of(schedule));
+        lenient().when(medicalExaminationRepository.findAll()).thenReturn(List.of(exam));
+    }
+
+    // ==================== 1. CURRENT TESTS ====================
+
+    @Nested
+    @DisplayName("1. current()")
+    class CurrentTests {
+
+        @Test
+        @DisplayName("Should build doctor, schedule and service blocks with one query each")
+        void shouldBuildSnapshot_WithBatchQueries() {
+            // When
+            AiContextSnapshot snapshot = aiContextSnapshotService.current();
+
+            // Then
+            assertTrue(snapshot.doctorsInfo().contains("BS. Nguyễn Văn Minh (ID: D001)"));
+            assertTrue(snapshot.doctorsInfo().contains("08:00 - 12:00"));
+            assertTrue(snapshot.servicesInfo().contains("Khám nhi tổng quát (ID: E001)"));
+            assertTrue(snapshot.specialtiesInfo().contains("- Nhi khoa (PEDIATRICS)"));
+            verify(scheduleRepository, never()).findByDoctor_Id(anyString());
+            verify(userRepository, never()).findAll();
+        }
+
+        @Test
+        @DisplayName("Should reuse the snapshot while nothing changed")
+        void shouldReuseSnapshot_WhenNothingChanged() {
+            // When
+            AiContextSnapshot first = aiContextSnapshotService.current();
+            AiContextSnapshot second = aiContextSnapshotService.current();
+
+            // Then
+            assertSame(first, second);
+            verify(userRepository, times(1)).findByRoleName("DOCTOR");
+            verify(medicalExaminationRepository, times(1)).findAll();
+        }
+    }
+
+    // ==================== 2. INVALIDATION TESTS ====================
+
+    @Nested
+    @DisplayName("2. onContextChanged()")
+    class InvalidationTests {
+
+        @Test
+        @DisplayName("Should rebuild with a new version after a change event")
+        void shouldRebuild_AfterChangeEvent() {
+            // Given
+            AiContextSnapshot first = aiContextSnapshotService.current();
+            when(scheduleRepository.findByWorkDateBetween(any(), any())).thenReturn(List.of());
+
+            // When
+            aiContextSnapshotService.onContextChanged(new AiContextChangedEvent(AiContextChangedEvent.SCHEDULE));
+            AiContextSnapshot second = aiContextSnapshotService.current();
+
+            // Then
+            assertTrue(second.version() > first.version());
+            assertTrue(second.doctorsInfo().contains("Chưa có lịch cố định"));
+        }
+
+        @Test
+        @DisplayName("Should rebuild when the doctor directory changes")
+        void shouldRebuild_AfterDirectoryChange() {
+            // Given
+            AiContextSnapshot first = aiContextSnapshotService.current();
+            when(userRepository.findByIdWithRoles("D001")).thenReturn(Optional.empty());
+
+            // When
+            doctorDirectoryService.onPrincipalChanged(PrincipalChangedEvent.user("D001"));
+            AiContextSnapshot second = aiContextSnapshotService.current();
+
+            // Then
+            assertTrue(second.version() > first.version());
+            assertEquals("(Chưa có thông tin bác sĩ)", second.doctorsInfo());
+        }
+
+        @Test
+        @DisplayName("Should fall back to the enum name for specialties without a Vietnamese label")
+        void shouldExposeSpecialtyNames() {
+            assertEquals("Nhi khoa", AiContextSnapshotService.specialtyName(MedicalSpecialty.PEDIATRICS));
+            assertFalse(aiContextSnapshotService.current().specialtiesInfo().contains("null"));
+        }
+    }
+
+    // ==================== 3. BUILD FAILURE TESTS ====================
+
+    @Nested
+    @DisplayName("3. build failures")
+    class BuildFailureTests {
+
+        @Test
+        @DisplayName("Should keep the previous snapshot and retry on the next request when a query fails")
+        void shouldKeepPrevious_WhenRebuildFails() {
+            // Given
+            AiContextSnapshot first = aiContextSnapshotService.current();
+            when(medicalExaminationRepository.findAll())
+                    .thenThrow(new DataAccessResourceFailureException("Communications link failure"))
+                    .thenReturn(List.of());
+            aiContextSnapshotService.onContextChanged(new AiContextChangedEvent(AiContextChangedEvent.SCHEDULE));
+
+            // When
+            AiContextSnapshot duringOutage = aiContextSnapshotService.current();
+            AiContextSnapshot recovered = aiContextSnapshotService.current();
+
+            // Then
+            assertSame(first, duringOutage);
+            assertTrue(recovered.version() > first.version());
+            assertEquals("(Chưa có dịch vụ khám bệnh)", recovered.servicesInfo());
+        }
+
+        @Test
+        @DisplayName("Should fail instead of caching error text when there is no snapshot yet")
+        void shouldThrow_WhenFirstBuildFails() {
+            // Given
+            when(scheduleRepository.findByWorkDateBetween(any(), any()))
+                    .thenThrow(new DataAccessResourceFailureException("Communications link failure"));
+
+            // When & Then
+            assertThrows(DataAccessResourceFailureException.class, () -> aiContextSnapshotService.current());
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.ohms;
 
+import com.example.ohms.configuration.AppConfig;
+import com.example.ohms.configuration.AuthTokenConfig;
 import com.example.ohms.dto.request.AuthenticationRequest;
 import com.example.ohms.dto.response.AuthenticationResponse;
 import com.example.ohms.entity.Role;
@@ -7,6 +9,12 @@ import com.example.ohms.entity.User;
 import com.example.ohms.exception.AppException;
 import com.example.ohms.exception.ErrorCode;
 import com.example.ohms.repository.UserRepository;
+import com.example.ohms.security.AuthorityRegistry;
+import com.example.ohms.security.JwtTokenService;
+import com.example.ohms.security.LoginThrottle;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.security.TokenRevocationService;
+import com.example.ohms.security.UserPrincipal;
 import com.example.ohms.service.AuthenticationService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -14,11 +22,19 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.oauth2.jwt.Jwt;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -31,7 +47,9 @@ import static org.mockito.Mockito.*;
  * 
  * Test Coverage:
  * 1. loginUser()
- * 2. generateTokenFromOAuth2()
+ * 2. loginOAuth2() - token từ UserPrincipal, chỉ ghi hash refresh token
+ * 3. refresh() - xoay vòng refresh token, phát hiện dùng lại, revoke-all, token giả
+ * 4. login hardening - throttle trước khi hash, hash lại khi đổi work factor
  */
 @ExtendWith(MockitoExtension.class)
 @DisplayName("AuthenticationService Test Suite")
@@ -43,6 +61,24 @@ class AuthenticationServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Spy
+    private JwtTokenService jwtTokenService = new JwtTokenService(new AppConfig());
+
+    @Spy
+    private AuthTokenConfig authTokenConfig = new AuthTokenConfig();
+
+    @Mock
+    private TokenRevocationService tokenRevocationService;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Spy
+    private AuthorityRegistry authorityRegistry = new AuthorityRegistry(null);
+
+    @Mock
+    private LoginThrottle loginThrottle;
+
     @InjectMocks
     private AuthenticationService authenticationService;
 
@@ -185,76 +221,246 @@ class AuthenticationServiceTest {
         }
     }
 
-    // ==================== 2. GENERATE TOKEN FROM OAUTH2 TESTS ====================
+    // ==================== 2. LOGIN OAUTH2 TESTS ====================
 
     @Nested
-    @DisplayName("2. generateTokenFromOAuth2()")
-    class GenerateTokenFromOAuth2Tests {
+    @DisplayName("2. loginOAuth2()")
+    class LoginOAuth2Tests {
+
+        private UserPrincipal principal(String... authorities) {
+            return new UserPrincipal("U001", "john@test.com", null,
+                    Arrays.stream(authorities).map(SimpleGrantedAuthority::new).toList());
+        }
 
         @Test
-        @DisplayName("Should generate token from OAuth2 user successfully")
-        void shouldGenerateToken_FromOAuth2User() {
-            // Given
-            when(userRepository.findByEmailWithRoles("john@test.com"))
-                    .thenReturn(Optional.of(user));
+        @DisplayName("Should store only the hash of the issued refresh token")
+        void shouldStoreRefreshTokenHash() {
+            // When
+            AuthenticationResponse response = authenticationService.loginOAuth2(principal("ROLE_PATIENT"));
+
+            // Then
+            ArgumentCaptor<String> hash = ArgumentCaptor.forClass(String.class);
+            verify(userRepository).updateRefreshToken(eq("U001"), hash.capture());
+            assertNotNull(hash.getValue());
+            assertNotEquals(response.getRefreshToken(), hash.getValue());
+        }
 
+        @Test
+        @DisplayName("Should issue an empty scope when the principal has no authorities")
+        void shouldIssueEmptyScope_WhenNoAuthorities() {
             // When
-            String token = authenticationService.generateTokenFromOAuth2(user);
+            AuthenticationResponse response = authenticationService.loginOAuth2(principal());
 
             // Then
-            assertNotNull(token);
-            assertTrue(token.length() > 0);
-            verify(userRepository).findByEmailWithRoles("john@test.com");
+            Jwt jwt = jwtTokenService.decode(response.getToken());
+            assertEquals("", jwt.getClaimAsString("scope"));
+            verify(userRepository).updateRefreshToken(eq("U001"), anyString());
+        }
+
+        @Test
+        @DisplayName("Should generate valid JWT token structure")
+        void shouldGenerateValidJWTStructure() {
+            // When
+            String token = authenticationService.loginOAuth2(principal("ROLE_PATIENT")).getToken();
+
+            // Then
+            String[] parts = token.split("\\.");
+            assertEquals(3, parts.length, "JWT should have header, payload, and signature");
         }
 
         @Test
-        @DisplayName("Should throw exception when OAuth2 user not found in database")
-        void shouldThrowException_WhenOAuth2UserNotFound() {
+        @DisplayName("Should issue tokens from the OAuth2 principal without reloading the user")
+        void shouldLoginOAuth2_FromPrincipal() {
             // Given
-            when(userRepository.findByEmailWithRoles("john@test.com"))
-                    .thenReturn(Optional.empty());
+            UserPrincipal principal = new UserPrincipal("U001", "john@test.com", null,
+                    List.of(new SimpleGrantedAuthority("ROLE_PATIENT"), new SimpleGrantedAuthority("VIEW_APPOINTMENT")));
 
-            // When & Then
-            AppException exception = assertThrows(AppException.class, () -> {
-                authenticationService.generateTokenFromOAuth2(user);
+            // When
+            AuthenticationResponse response = authenticationService.loginOAuth2(principal);
+
+            // Then
+            Jwt jwt = jwtTokenService.decode(response.getToken());
+            assertEquals("U001", jwt.getSubject());
+            assertEquals("ROLE_PATIENT VIEW_APPOINTMENT", jwt.getClaimAsString("scope"));
+            assertTrue(response.getRefreshToken().startsWith("U001."));
+            verify(userRepository).updateRefreshToken(eq("U001"), anyString());
+            verifyNoMoreInteractions(userRepository);
+        }
+    }
+
+    // ==================== 3. REFRESH TESTS ====================
+
+    @Nested
+    @DisplayName("3. refresh()")
+    class RefreshTests {
+
+        private AuthenticationResponse login() {
+            when(userRepository.findByEmailWithRoles("john@test.com")).thenReturn(Optional.of(user));
+            when(passwordEncoder.matches("password123", user.getPassword())).thenReturn(true);
+            // UPDATE ... WHERE refreshToken = :oldHash giả lập trên entity
+            lenient().when(userRepository.rotateRefreshToken(eq("U001"), anyString(), anyString())).thenAnswer(invocation -> {
+                if (!invocation.getArgument(1).equals(user.getRefreshToken())) {
+                    return 0;
+                }
+                user.setRefreshToken(invocation.getArgument(2));
+                return 1;
             });
+            return authenticationService.loginUser(authenticationRequest);
+        }
 
-            assertEquals(ErrorCode.USER_NOT_FOUND, exception.getErrorCode());
+        @Test
+        @DisplayName("Should issue a short-lived access token and store only the refresh token hash")
+        void shouldIssueTokenPair() {
+            // When
+            AuthenticationResponse response = login();
+            Jwt jwt = jwtTokenService.decode(response.getToken());
+
+            // Then
+            assertTrue(response.getRefreshToken().startsWith("U001."));
+            assertNotNull(user.getRefreshToken());
+            assertNotEquals(response.getRefreshToken(), user.getRefreshToken());
+            assertNotNull(jwt.getId());
+            assertEquals(900, response.getExpiresIn());
+            assertEquals(Duration.ofMinutes(15), Duration.between(jwt.getIssuedAt(), jwt.getExpiresAt()));
         }
 
         @Test
-        @DisplayName("Should reload user with roles from database")
-        void shouldReloadUser_WithRoles() {
+        @DisplayName("Should rotate the refresh token on use")
+        void shouldRotateRefreshToken() {
             // Given
-            User userWithoutRoles = User.builder()
-                    .id("U001")
-                    .email("john@test.com")
-                    .build();
+            String first = login().getRefreshToken();
+            when(userRepository.findByIdWithRoles("U001")).thenReturn(Optional.of(user));
 
-            when(userRepository.findByEmailWithRoles("john@test.com"))
-                    .thenReturn(Optional.of(user));
+            // When
+            AuthenticationResponse rotated = authenticationService.refresh(first);
+
+            // Then
+            assertNotNull(rotated.getToken());
+            assertNotEquals(first, rotated.getRefreshToken());
+            AppException exception = assertThrows(AppException.class, () -> authenticationService.refresh(first));
+            assertEquals(ErrorCode.UNAUTHENTICATED, exception.getErrorCode());
+        }
+
+        @Test
+        @DisplayName("Should revoke every session when a rotated refresh token is reused")
+        void shouldRevokeAllOnReuse() {
+            // Given
+            String stolen = login().getRefreshToken();
+            when(userRepository.findByIdWithRoles("U001")).thenReturn(Optional.of(user));
+            String current = authenticationService.refresh(stolen).getRefreshToken();
 
             // When
-            String token = authenticationService.generateTokenFromOAuth2(userWithoutRoles);
+            assertThrows(AppException.class, () -> authenticationService.refresh(stolen));
 
             // Then
-            assertNotNull(token);
-            verify(userRepository).findByEmailWithRoles("john@test.com");
+            verify(tokenRevocationService).revokeAllSessions("U001");
+            verify(eventPublisher).publishEvent(PrincipalChangedEvent.user("U001"));
+            assertNull(user.getRefreshToken());
+            assertThrows(AppException.class, () -> authenticationService.refresh(current));
         }
 
         @Test
-        @DisplayName("Should generate valid JWT token structure")
-        void shouldGenerateValidJWTStructure() {
+        @DisplayName("Should reject without revoking when a concurrent refresh already rotated the token")
+        void shouldReject_WhenRotationRaceLost() {
+            // Given - request song song đã đổi hash giữa lúc đọc user và lúc ghi
+            String token = login().getRefreshToken();
+            when(userRepository.findByIdWithRoles("U001")).thenReturn(Optional.of(user));
+            when(userRepository.rotateRefreshToken(eq("U001"), anyString(), anyString())).thenReturn(0);
+
+            // When
+            AppException exception = assertThrows(AppException.class, () -> authenticationService.refresh(token));
+
+            // Then
+            assertEquals(ErrorCode.UNAUTHENTICATED, exception.getErrorCode());
+            verify(tokenRevocationService, never()).revokeAllSessions(any());
+        }
+
+        @Test
+        @DisplayName("Should reject a forged refresh token without revoking the victim's sessions")
+        void shouldRejectForgedToken_WithoutRevoking() {
+            // Given - victim đang có refresh token hợp lệ, kẻ tấn công chỉ biết userId
+            String current = login().getRefreshToken();
+            String forged = "U001.9999999999.x." + "A".repeat(43);
+
+            // When
+            AppException exception = assertThrows(AppException.class, () -> authenticationService.refresh(forged));
+
+            // Then
+            assertEquals(ErrorCode.UNAUTHENTICATED, exception.getErrorCode());
+            verify(userRepository, never()).findByIdWithRoles(any());
+            verify(tokenRevocationService, never()).revokeAllSessions(any());
+            assertNotNull(user.getRefreshToken());
+            when(userRepository.findByIdWithRoles("U001")).thenReturn(Optional.of(user));
+            assertNotNull(authenticationService.refresh(current).getToken());
+        }
+
+        @Test
+        @DisplayName("Should reject malformed and expired refresh tokens")
+        void shouldRejectMalformedAndExpired() {
             // Given
-            when(userRepository.findByEmailWithRoles("john@test.com"))
-                    .thenReturn(Optional.of(user));
+            authTokenConfig.setRefreshTokenDays(-1);
+            String expired = login().getRefreshToken();
+            when(userRepository.findByIdWithRoles("U001")).thenReturn(Optional.of(user));
+
+            // When & Then
+            assertThrows(AppException.class, () -> authenticationService.refresh("garbage"));
+            assertThrows(AppException.class, () -> authenticationService.refresh(expired));
+            verify(tokenRevocationService, never()).revokeAllSessions(any());
+            assertNull(user.getRefreshToken());
+        }
+    }
+
+    // ==================== 4. LOGIN HARDENING TESTS ====================
+
+    @Nested
+    @DisplayName("4. login hardening")
+    class LoginHardeningTests {
+
+        @Test
+        @DisplayName("Should reject a throttled login before looking up the user or hashing")
+        void shouldRejectThrottledLogin() {
+            // Given
+            doThrow(new AppException(ErrorCode.TOO_MANY_LOGIN_ATTEMPTS))
+                    .when(loginThrottle).acquire("10.0.0.1", "john@test.com");
 
             // When
-            String token = authenticationService.generateTokenFromOAuth2(user);
+            AppException exception = assertThrows(AppException.class,
+                    () -> authenticationService.loginUser(authenticationRequest, "10.0.0.1"));
 
             // Then
-            String[] parts = token.split("\\.");
-            assertEquals(3, parts.length, "JWT should have header, payload, and signature");
+            assertEquals(ErrorCode.TOO_MANY_LOGIN_ATTEMPTS, exception.getErrorCode());
+            verifyNoInteractions(userRepository, passwordEncoder);
+        }
+
+        @Test
+        @DisplayName("Should record a bad-credentials rejection")
+        void shouldRecordBadCredentials() {
+            // Given
+            when(userRepository.findByEmailWithRoles("john@test.com")).thenReturn(Optional.of(user));
+            when(passwordEncoder.matches("password123", user.getPassword())).thenReturn(false);
+
+            // When
+            assertThrows(AppException.class, () -> authenticationService.loginUser(authenticationRequest, "10.0.0.1"));
+
+            // Then
+            verify(loginThrottle).recordBadCredentials();
+        }
+
+        @Test
+        @DisplayName("Should rehash the password when the work factor changed")
+        void shouldRehashOnLogin() {
+            // Given
+            when(userRepository.findByEmailWithRoles("john@test.com")).thenReturn(Optional.of(user));
+            when(passwordEncoder.matches("password123", "$2a$10$encodedPassword")).thenReturn(true);
+            when(passwordEncoder.upgradeEncoding("$2a$10$encodedPassword")).thenReturn(true);
+            when(passwordEncoder.encode("password123")).thenReturn("$2a$12$rehashed");
+
+            // When
+            authenticationService.loginUser(authenticationRequest, "10.0.0.1");
+
+            // Then
+            assertEquals("$2a$12$rehashed", user.getPassword());
+            verify(userRepository).save(user);
         }
     }
 }
@@ -0,0 +1,118 @@
+package com.example.ohms;
+
+import com.example.ohms.entity.Permission;
+import com.example.ohms.entity.Role;
+import com.example.ohms.repository.RoleRepository;
+import com.example.ohms.security.AuthorityRegistry;
+import com.example.ohms.security.PrincipalChangedEvent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.core.authority.AuthorityUtils;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for AuthorityRegistry
+ *
+ * Test Coverage:
+ * 1. expand() - role → ROLE_xxx + permission, bỏ trùng, role chưa biết
+ * 2. refresh - nạp lại khi role/permission đổi, bỏ qua event của từng user
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AuthorityRegistry Test Suite")
+class AuthorityRegistryTest {
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    private AuthorityRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registry = new AuthorityRegistry(roleRepository);
+    }
+
+    private Role role(String name, String... permissions) {
+        Set<Permission> granted = new HashSet<>();
+        for (String permission : permissions) {
+            granted.add(new Permission(permission, permission));
+        }
+        return Role.builder().name(name).permissions(granted).build();
+    }
+
+    // ==================== 1. EXPAND TESTS ====================
+
+    @Nested
+    @DisplayName("Expand Tests")
+    class ExpandTests {
+
+        @Test
+        @DisplayName("Should expand roles into the role authority followed by its permissions")
+        void shouldExpandRoles() {
+            // Given
+            registry.load(List.of(role("DOCTOR", "WRITE_PRESCRIPTION", "READ_BILL"), role("PATIENT", "READ_BILL")));
+
+            // When
+            List<String> authorities = registry.expand(List.of("DOCTOR", "PATIENT"));
+
+            // Then
+            assertEquals(List.of("ROLE_DOCTOR", "READ_BILL", "WRITE_PRESCRIPTION", "ROLE_PATIENT"), authorities);
+            assertEquals("ROLE_DOCTOR READ_BILL WRITE_PRESCRIPTION ROLE_PATIENT",
+                    registry.buildScope(List.of("DOCTOR", "PATIENT")));
+        }
+
+        @Test
+        @DisplayName("Should fall back to the bare role authority for unknown roles")
+        void shouldHandleUnknownRole() {
+            // When & Then
+            assertEquals(Set.of("ROLE_NURSE"),
+                    AuthorityUtils.authorityListToSet(registry.grantedAuthorities(List.of("NURSE"))));
+            assertEquals("", registry.buildScope(List.of()));
+        }
+    }
+
+    // ==================== 2. REFRESH TESTS ====================
+
+    @Nested
+    @DisplayName("Refresh Tests")
+    class RefreshTests {
+
+        @Test
+        @DisplayName("Should reload from the database when roles or permissions change")
+        void shouldReloadOnGlobalChange() {
+            // Given
+            when(roleRepository.findAllWithPermissions())
+                    .thenReturn(List.of(role("ADMIN")))
+                    .thenReturn(List.of(role("ADMIN", "MANAGE_USERS")));
+            registry.refresh();
+
+            // When
+            registry.onPrincipalChanged(PrincipalChangedEvent.all());
+
+            // Then
+            assertEquals(List.of("ROLE_ADMIN", "MANAGE_USERS"), registry.expand(List.of("ADMIN")));
+            verify(roleRepository, times(2)).findAllWithPermissions();
+        }
+
+        @Test
+        @DisplayName("Should ignore changes that concern a single user")
+        void shouldIgnoreUserChange() {
+            // When
+            registry.onPrincipalChanged(PrincipalChangedEvent.user("U001"));
+
+            // Then
+            verifyNoInteractions(roleRepository);
+        }
+    }
+}
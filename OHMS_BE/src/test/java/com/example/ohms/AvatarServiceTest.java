@@ -0,0 +1,372 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AvatarConfig;
+import com.example.ohms.dto.response.AvatarResponse;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.service.AvatarService;
+import com.example.ohms.service.storage.LocalImageStorage;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for AvatarService
+ *
+ * Test Coverage:
+ * 1. accept() - kiểm tra file, spool ra disk
+ * 2. submit() - resize, xoay theo EXIF, upload, ghi imageUrl, xóa ảnh cũ, gửi kết quả, từ chối khi hàng đợi đầy
+ * 3. transaction / supersede - chỉ xử lý sau commit, upload cũ bị bỏ khi có upload mới, ảnh cũ đọc lúc ghi
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("AvatarService Test Suite")
+class AvatarServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private SimpMessagingTemplate simpMessagingTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private AvatarService avatarService;
+    private LocalImageStorage storage;
+    private Path spoolDir;
+    // cột imageUrl giả lập cho findImageUrlById/replaceImageUrl
+    private final Map<String, String> imageUrls = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        spoolDir = tempDir.resolve("spool");
+        storage = new LocalImageStorage(tempDir.resolve("storage"));
+        AvatarConfig config = new AvatarConfig();
+        config.setMaxSize(64);
+        config.setWorkers(1);
+        config.setSpoolDirectory(spoolDir.toString());
+        avatarService = new AvatarService(storage, userRepository, simpMessagingTemplate, eventPublisher, config,
+                new SimpleMeterRegistry());
+        lenient().when(userRepository.findImageUrlById(anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(imageUrls.get(inv.<String>getArgument(0))));
+        lenient().when(userRepository.replaceImageUrl(anyString(), any(), anyString())).thenAnswer(inv -> {
+            String id = inv.getArgument(0);
+            synchronized (imageUrls) {
+                if (!Objects.equals(imageUrls.get(id), inv.getArgument(1))) {
+                    return 0;
+                }
+                imageUrls.put(id, inv.getArgument(2));
+                return 1;
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        avatarService.shutdown();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private MockMultipartFile png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return new MockMultipartFile("avatar", "avatar.png", "image/png", out.toByteArray());
+    }
+
+    // jpeg kèm segment APP1 Exif chỉ có tag Orientation (big-endian)
+    private MockMultipartFile jpegWithOrientation(int width, int height, int orientation) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", encoded);
+        byte[] jpeg = encoded.toByteArray();
+        ByteBuffer app1 = ByteBuffer.allocate(36)
+                .put((byte) 0xFF).put((byte) 0xE1).putShort((short) 34)
+                .put("Exif\0\0MM".getBytes(StandardCharsets.US_ASCII)).putShort((short) 0x2A).putInt(8)
+                .putShort((short) 1)
+                .putShort((short) 0x0112).putShort((short) 3).putInt(1).putShort((short) orientation).putShort((short) 0)
+                .putInt(0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(jpeg, 0, 2);
+        out.write(app1.array());
+        out.write(jpeg, 2, jpeg.length - 2);
+        return new MockMultipartFile("avatar", "avatar.jpg", "image/jpeg", out.toByteArray());
+    }
+
+    private AvatarResponse awaitResult(String userId) {
+        ArgumentCaptor<AvatarResponse> captor = ArgumentCaptor.forClass(AvatarResponse.class);
+        verify(simpMessagingTemplate, timeout(5000)).convertAndSendToUser(eq(userId), eq(AvatarService.DESTINATION),
+                captor.capture());
+        return captor.getValue();
+    }
+
+    private long spooledFiles() throws IOException {
+        try (Stream<Path> files = Files.list(spoolDir)) {
+            return files.count();
+        }
+    }
+
+    // ==================== 1. ACCEPT TESTS ====================
+
+    @Nested
+    @DisplayName("1. accept()")
+    class AcceptTests {
+
+        @Test
+        @DisplayName("Should return null when no file was uploaded")
+        void shouldIgnoreMissingFile() throws IOException {
+            assertNull(avatarService.accept(null));
+            assertNull(avatarService.accept(new MockMultipartFile("avatar", new byte[0])));
+        }
+
+        @Test
+        @DisplayName("Should reject files that are not images")
+        void shouldRejectNonImage() {
+            MockMultipartFile file = new MockMultipartFile("avatar", "cv.pdf", "application/pdf", new byte[] {1, 2, 3});
+
+            assertThrows(AppException.class, () -> avatarService.accept(file));
+        }
+
+        @Test
+        @DisplayName("Should spool the upload to disk")
+        void shouldSpoolUpload() throws IOException {
+            // Given
+            MockMultipartFile file = png(100, 50);
+
+            // When
+            AvatarService.PendingAvatar pending = avatarService.accept(file);
+
+            // Then
+            assertTrue(pending.file().startsWith(spoolDir));
+            assertArrayEquals(file.getBytes(), Files.readAllBytes(pending.file()));
+        }
+    }
+
+    // ==================== 2. SUBMIT TESTS ====================
+
+    @Nested
+    @DisplayName("2. submit()")
+    class SubmitTests {
+
+        @Test
+        @DisplayName("Should resize, store, patch the user, delete the old avatar and notify the client")
+        void shouldProcessAvatar() throws IOException {
+            // Given
+            String oldUrl = storage.store("avatars", new byte[] {1});
+            imageUrls.put("U001", oldUrl);
+            AvatarService.PendingAvatar pending = avatarService.accept(png(400, 200));
+
+            // When
+            avatarService.submit("U001", pending);
+
+            // Then
+            AvatarResponse result = awaitResult("U001");
+            assertEquals("READY", result.getStatus());
+            verify(userRepository).replaceImageUrl("U001", oldUrl, result.getImageUrl());
+            verify(eventPublisher).publishEvent(PrincipalChangedEvent.user("U001"));
+            BufferedImage stored = ImageIO.read(new ByteArrayInputStream(
+                    Files.readAllBytes(Path.of(URI.create(result.getImageUrl())))));
+            assertEquals(64, stored.getWidth());
+            assertEquals(32, stored.getHeight());
+            assertFalse(Files.exists(Path.of(URI.create(oldUrl))));
+            assertEquals(0, spooledFiles());
+        }
+
+        @Test
+        @DisplayName("Should report failure and keep the user untouched when the file is not a readable image")
+        void shouldFailOnUnreadableImage() throws IOException {
+            // Given
+            AvatarService.PendingAvatar pending = avatarService.accept(
+                    new MockMultipartFile("avatar", "broken.png", "image/png", new byte[] {1, 2, 3}));
+
+            // When
+            imageUrls.put("U001", "http://cloudinary.com/old.jpg");
+            avatarService.submit("U001", pending);
+
+            // Then
+            assertEquals("FAILED", awaitResult("U001").getStatus());
+            verify(userRepository, never()).replaceImageUrl(anyString(), any(), anyString());
+            assertEquals(0, spooledFiles());
+        }
+
+        @Test
+        @DisplayName("Should apply the EXIF orientation before stripping metadata")
+        void shouldApplyExifOrientation() throws IOException {
+            // Given - ảnh 400x200 với Orientation=6 (xoay 90 độ mới đúng chiều)
+            AvatarService.PendingAvatar pending = avatarService.accept(jpegWithOrientation(400, 200, 6));
+
+            // When
+            avatarService.submit("U001", pending);
+
+            // Then
+            AvatarResponse result = awaitResult("U001");
+            assertEquals("READY", result.getStatus());
+            BufferedImage stored = ImageIO.read(Path.of(URI.create(result.getImageUrl())).toFile());
+            assertEquals(32, stored.getWidth());
+            assertEquals(64, stored.getHeight());
+        }
+
+        @Test
+        @DisplayName("Should reject and report FAILED instead of processing on the caller when the queue is full")
+        void shouldRejectWhenQueueFull() throws Exception {
+            // Given - 1 worker bị giữ, hàng đợi 1 chỗ đã có job
+            AvatarConfig config = new AvatarConfig();
+            config.setMaxSize(64);
+            config.setWorkers(1);
+            config.setQueueCapacity(1);
+            config.setSpoolDirectory(spoolDir.toString());
+            avatarService.shutdown();
+            avatarService = new AvatarService(storage, userRepository, simpMessagingTemplate, eventPublisher, config,
+                    new SimpleMeterRegistry());
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            doAnswer(invocation -> {
+                started.countDown();
+                release.await(5, TimeUnit.SECONDS);
+                return 1;
+            }).when(userRepository).replaceImageUrl(eq("U001"), any(), anyString());
+            avatarService.submit("U001", avatarService.accept(png(100, 100)));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            avatarService.submit("U002", avatarService.accept(png(100, 100)));
+            AvatarService.PendingAvatar rejected = avatarService.accept(png(100, 100));
+
+            // When
+            avatarService.submit("U003", rejected);
+
+            // Then - thread gọi không xử lý ảnh, chỉ báo FAILED và dọn file
+            assertEquals("FAILED", awaitResult("U003").getStatus());
+            verify(userRepository, never()).replaceImageUrl(eq("U003"), any(), anyString());
+            assertFalse(Files.exists(rejected.file()));
+            release.countDown();
+            assertEquals("READY", awaitResult("U002").getStatus());
+        }
+    }
+
+    // ==================== 3. TRANSACTION / SUPERSEDE TESTS ====================
+
+    @Nested
+    @DisplayName("3. transaction and supersede")
+    class TransactionTests {
+
+        @Test
+        @DisplayName("Should only apply the newest upload when several arrive before processing")
+        void shouldDropSupersededUpload() throws IOException {
+            // Given - 2 request trong transaction, commit cùng lúc
+            TransactionSynchronizationManager.initSynchronization();
+            avatarService.submit("U001", avatarService.accept(png(100, 100)));
+            avatarService.submit("U001", avatarService.accept(png(200, 100)));
+            verifyNoInteractions(userRepository);
+
+            // When
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+
+            // Then
+            AvatarResponse result = awaitResult("U001");
+            verify(userRepository).replaceImageUrl("U001", null, result.getImageUrl());
+            BufferedImage stored = ImageIO.read(Path.of(URI.create(result.getImageUrl())).toFile());
+            assertEquals(32, stored.getHeight());
+            verify(simpMessagingTemplate, after(200).times(1)).convertAndSendToUser(anyString(), anyString(), any());
+            assertEquals(0, spooledFiles());
+        }
+
+        @Test
+        @DisplayName("Should delete the previous job's image when a later upload replaces it")
+        void shouldDeleteImageOfEarlierJob() throws IOException {
+            // Given - upload 1 xong rồi mới có upload 2, ảnh cũ lúc submit upload 2 là ảnh của upload 1
+            avatarService.submit("U001", avatarService.accept(png(100, 100)));
+            String firstUrl = awaitResult("U001").getImageUrl();
+
+            // When
+            avatarService.submit("U001", avatarService.accept(png(200, 100)));
+
+            // Then
+            ArgumentCaptor<AvatarResponse> captor = ArgumentCaptor.forClass(AvatarResponse.class);
+            verify(simpMessagingTemplate, timeout(5000).times(2)).convertAndSendToUser(eq("U001"),
+                    eq(AvatarService.DESTINATION), captor.capture());
+            String secondUrl = captor.getValue().getImageUrl();
+            assertEquals(secondUrl, imageUrls.get("U001"));
+            assertFalse(Files.exists(Path.of(URI.create(firstUrl))));
+            assertTrue(Files.exists(Path.of(URI.create(secondUrl))));
+        }
+
+        @Test
+        @DisplayName("Should drop its own image when the avatar changed between read and write")
+        void shouldDropImageWhenConditionalWriteLoses() throws IOException {
+            // Given - job khác đã ghi ảnh sau lúc đọc, UPDATE có điều kiện không khớp dòng nào
+            String otherUrl = storage.store("avatars", new byte[] {1});
+            imageUrls.put("U001", otherUrl);
+            when(userRepository.replaceImageUrl(eq("U001"), any(), anyString())).thenReturn(0);
+            AvatarService.PendingAvatar pending = avatarService.accept(png(100, 100));
+
+            // When
+            avatarService.submit("U001", pending);
+
+            // Then - ảnh vừa upload bị xóa, ảnh của job thắng giữ nguyên, không báo READY
+            ArgumentCaptor<String> stored = ArgumentCaptor.forClass(String.class);
+            verify(userRepository, timeout(5000)).replaceImageUrl(eq("U001"), eq(otherUrl), stored.capture());
+            verify(simpMessagingTemplate, after(200).never()).convertAndSendToUser(anyString(), anyString(), any());
+            assertFalse(Files.exists(Path.of(URI.create(stored.getValue()))));
+            assertTrue(Files.exists(Path.of(URI.create(otherUrl))));
+        }
+
+        @Test
+        @DisplayName("Should discard the upload when the transaction rolls back")
+        void shouldDiscardOnRollback() throws IOException {
+            // Given
+            TransactionSynchronizationManager.initSynchronization();
+            AvatarService.PendingAvatar pending = avatarService.accept(png(100, 100));
+            avatarService.submit("U001", pending);
+
+            // When
+            TransactionSynchronizationManager.getSynchronizations()
+                    .forEach(sync -> sync.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+            // Then
+            assertFalse(Files.exists(pending.file()));
+            verifyNoInteractions(userRepository, simpMessagingTemplate);
+        }
+    }
+}
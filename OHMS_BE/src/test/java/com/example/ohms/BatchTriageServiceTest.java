@@ -0,0 +1,319 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.BatchTriageConfig;
+import com.example.ohms.dto.request.BatchTriageRequest;
+import com.example.ohms.dto.response.BatchTriageResponse;
+import com.example.ohms.dto.response.BatchTriageResponse.Status;
+import com.example.ohms.dto.response.SpecialtyRecommendationResponse;
+import com.example.ohms.entity.MedicalExamination;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.exception.AiUnavailableException;
+import com.example.ohms.repository.MedicleExaminatioRepository;
+import com.example.ohms.service.GeminiService;
+import com.example.ohms.service.ai.AiContextSnapshot;
+import com.example.ohms.service.ai.AiContextSnapshotService;
+import com.example.ohms.service.ai.BatchTriageService;
+import com.example.ohms.service.ai.SpecialtyClassifier;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.StringJoiner;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for BatchTriageService
+ *
+ * Test Coverage:
+ * 1. grouping - gộp phiếu thành nhóm, mỗi nhóm một lần gọi AI
+ * 2. local fast path - phiếu phân loại cục bộ được không gọi AI, dịch vụ khám tra một lần mỗi chuyên khoa
+ * 3. partial failure - nhóm lỗi, phiếu thiếu/sai kết quả, phiếu rỗng
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BatchTriageService Test Suite")
+class BatchTriageServiceTest {
+
+    private static final Pattern ITEM_LINE = Pattern.compile("(?m)^(\\d+)\\. (.*)$");
+
+    @Mock
+    private GeminiService geminiService;
+
+    @Mock
+    private SpecialtyClassifier specialtyClassifier;
+
+    @Mock
+    private AiContextSnapshotService snapshotService;
+
+    @Mock
+    private MedicleExaminatioRepository medicalExaminationRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private BatchTriageConfig config;
+    private BatchTriageService service;
+
+    @BeforeEach
+    void setUp() {
+        config = new BatchTriageConfig();
+        config.setGroupSize(3);
+        service = new BatchTriageService(config, geminiService, specialtyClassifier, snapshotService,
+                medicalExaminationRepository, meterRegistry);
+
+        lenient().when(snapshotService.current()).thenReturn(new AiContextSnapshot(1, 0, LocalDate.now(),
+                "- Tim mạch (CARDIOLOGY)", "", ""));
+        lenient().when(specialtyClassifier.tryLocal(anyString())).thenReturn(Optional.empty());
+        // như GeminiService thật: tra dịch vụ khám qua hàm batch truyền vào
+        lenient().when(geminiService.localRecommendation(any(), anyString(), anyBoolean(), any())).thenAnswer(inv ->
+                SpecialtyRecommendationResponse.builder()
+                        .specialtyEnum(inv.<MedicalSpecialty>getArgument(0).name())
+                        .diagnosis(inv.getArgument(1))
+                        .degraded(inv.getArgument(2))
+                        .suggestedExaminations(inv.<Function<MedicalSpecialty, List<MedicalExamination>>>getArgument(3)
+                                .apply(inv.getArgument(0)))
+                        .build());
+        lenient().when(geminiService.fallbackRecommendation(any(), any())).thenAnswer(inv ->
+                SpecialtyRecommendationResponse.builder().degraded(true).build());
+    }
+
+    private static BatchTriageRequest request(String... messages) {
+        List<BatchTriageRequest.Item> items = new ArrayList<>();
+        for (int i = 0; i < messages.length; i++) {
+            items.add(BatchTriageRequest.Item.builder().reference("P" + i).message(messages[i]).build());
+        }
+        return BatchTriageRequest.builder().items(items).build();
+    }
+
+    // trả lời CARDIOLOGY cho mọi phiếu trong prompt
+    private static String answerAll(String prompt) {
+        StringJoiner array = new StringJoiner(",", "```json\n[", "]\n```");
+        Matcher m = ITEM_LINE.matcher(prompt);
+        while (m.find()) {
+            array.add("{\"index\": " + m.group(1) + ", \"specialty\": \"CARDIOLOGY\", "
+                    + "\"diagnosis\": \"Đau ngực\", \"urgencyLevel\": \"high\"}");
+        }
+        return array.toString();
+    }
+
+    // ==================== 1. GROUPING TESTS ====================
+
+    @Nested
+    @DisplayName("Grouping Tests")
+    class GroupingTests {
+
+        @Test
+        @DisplayName("Should send one model call per group of groupSize items")
+        void shouldCallModelOncePerGroup() throws Exception {
+            // Given
+            when(geminiService.complete(anyString(), anyString(), anyInt()))
+                    .thenAnswer(inv -> answerAll(inv.getArgument(1)));
+
+            // When
+            BatchTriageResponse response = service.triage(request("a", "b", "c", "d", "e", "f", "g"));
+
+            // Then
+            verify(geminiService, times(3)).complete(anyString(), anyString(), anyInt());
+            assertEquals(7, response.getTotal());
+            assertEquals(7, response.getSucceeded());
+            for (int i = 0; i < 7; i++) {
+                BatchTriageResponse.Item item = response.getItems().get(i);
+                assertEquals(i, item.getIndex());
+                assertEquals("P" + i, item.getReference());
+                assertEquals(Status.OK, item.getStatus());
+                assertEquals("CARDIOLOGY", item.getRecommendation().getSpecialtyEnum());
+                assertEquals("HIGH", item.getRecommendation().getUrgencyLevel());
+            }
+            assertEquals(3.0, meterRegistry.counter("ai.batch.calls").count());
+        }
+
+        @Test
+        @DisplayName("Should share one specialty block and number items within each group")
+        void shouldShareContextBlockInGroupPrompt() throws Exception {
+            // Given
+            List<String> prompts = new ArrayList<>();
+            when(geminiService.complete(anyString(), anyString(), anyInt())).thenAnswer(inv -> {
+                synchronized (prompts) {
+                    prompts.add(inv.getArgument(1));
+                }
+                return answerAll(inv.getArgument(1));
+            });
+
+            // When
+            service.triage(request("đau ngực\nkhó thở", "b", "c", "d"));
+
+            // Then
+            assertEquals(2, prompts.size());
+            for (String prompt : prompts) {
+                assertEquals(1, countOccurrences(prompt, "- Tim mạch (CARDIOLOGY)"));
+                assertTrue(prompt.contains("\n1. "));
+            }
+            assertTrue(prompts.stream().anyMatch(p -> p.contains("1. đau ngực khó thở")));
+        }
+
+        @Test
+        @DisplayName("Should cap concurrent group calls at maxConcurrentGroups")
+        void shouldLimitConcurrentGroups() throws Exception {
+            // Given
+            config.setGroupSize(1);
+            config.setMaxConcurrentGroups(2);
+            AtomicInteger active = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            when(geminiService.complete(anyString(), anyString(), anyInt())).thenAnswer(inv -> {
+                peak.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(30);
+                active.decrementAndGet();
+                return answerAll(inv.getArgument(1));
+            });
+
+            // When
+            BatchTriageResponse response = service.triage(request("a", "b", "c", "d", "e", "f"));
+
+            // Then
+            assertEquals(6, response.getSucceeded());
+            assertTrue(peak.get() <= 2, "peak concurrency " + peak.get());
+        }
+
+        private int countOccurrences(String text, String token) {
+            return text.split(Pattern.quote(token), -1).length - 1;
+        }
+    }
+
+    // ==================== 2. LOCAL FAST PATH TESTS ====================
+
+    @Nested
+    @DisplayName("Local Fast Path Tests")
+    class LocalFastPathTests {
+
+        @Test
+        @DisplayName("Should answer confident items locally without calling the model")
+        void shouldSkipModelForLocalItems() throws Exception {
+            // Given
+            when(specialtyClassifier.tryLocal("đau răng")).thenReturn(Optional.of(MedicalSpecialty.DENTISTRY));
+
+            // When
+            BatchTriageResponse response = service.triage(request("đau răng"));
+
+            // Then
+            verify(geminiService, never()).complete(anyString(), anyString(), anyInt());
+            assertEquals(Status.LOCAL, response.getItems().get(0).getStatus());
+            assertEquals("DENTISTRY", response.getItems().get(0).getRecommendation().getSpecialtyEnum());
+            assertEquals(1, response.getSucceeded());
+        }
+
+        @Test
+        @DisplayName("Should look up examinations once per specialty for the whole batch")
+        void shouldLookUpExaminationsOncePerSpecialty() throws Exception {
+            // Given - 2 phiếu cục bộ nha khoa + 3 phiếu model trả tim mạch
+            when(specialtyClassifier.tryLocal("đau răng")).thenReturn(Optional.of(MedicalSpecialty.DENTISTRY));
+            when(geminiService.complete(anyString(), anyString(), anyInt()))
+                    .thenAnswer(inv -> answerAll(inv.getArgument(1)));
+
+            // When
+            BatchTriageResponse response = service.triage(request("đau răng", "đau ngực", "đau răng", "khó thở", "hồi hộp"));
+
+            // Then
+            assertEquals(5, response.getSucceeded());
+            verify(medicalExaminationRepository, times(1)).findAllByMedicalSpecialty(MedicalSpecialty.DENTISTRY);
+            verify(medicalExaminationRepository, times(1)).findAllByMedicalSpecialty(MedicalSpecialty.CARDIOLOGY);
+        }
+    }
+
+    // ==================== 3. PARTIAL FAILURE TESTS ====================
+
+    @Nested
+    @DisplayName("Partial Failure Tests")
+    class PartialFailureTests {
+
+        @Test
+        @DisplayName("Should fall back for the items of a failed group only")
+        void shouldFallbackForFailedGroup() throws Exception {
+            // Given
+            when(geminiService.complete(anyString(), anyString(), anyInt())).thenAnswer(inv -> {
+                String prompt = inv.getArgument(1);
+                if (prompt.contains("boom")) {
+                    throw new AiUnavailableException("busy", null);
+                }
+                return answerAll(prompt);
+            });
+
+            // When
+            BatchTriageResponse response = service.triage(request("a", "b", "c", "boom", "e"));
+
+            // Then
+            assertEquals(3, response.getSucceeded());
+            assertEquals(2, response.getFallback());
+            BatchTriageResponse.Item failed = response.getItems().get(3);
+            assertEquals(Status.FALLBACK, failed.getStatus());
+            assertTrue(failed.getRecommendation().getDegraded());
+            assertTrue(failed.getError().contains("busy"));
+            assertEquals(2.0, meterRegistry.counter("ai.batch.items", "status", "FALLBACK").count());
+        }
+
+        @Test
+        @DisplayName("Should fall back for items missing or invalid in the model answer")
+        void shouldFallbackForMissingItems() throws Exception {
+            // Given
+            when(geminiService.complete(anyString(), anyString(), anyInt())).thenReturn(
+                    "Kết quả: [{\"index\": 1, \"specialty\": \"CARDIOLOGY\", \"diagnosis\": \"\"},"
+                            + " {\"index\": 3, \"specialty\": \"UNKNOWN\"}]");
+
+            // When
+            BatchTriageResponse response = service.triage(request("a", "b", "c"));
+
+            // Then
+            assertEquals(Status.OK, response.getItems().get(0).getStatus());
+            assertTrue(response.getItems().get(0).getRecommendation().getDiagnosis().contains("Tim mạch"));
+            assertEquals(Status.FALLBACK, response.getItems().get(1).getStatus());
+            assertEquals(Status.FALLBACK, response.getItems().get(2).getStatus());
+            assertNotNull(response.getItems().get(2).getError());
+        }
+
+        @Test
+        @DisplayName("Should mark blank items as failed without calling the model for them")
+        void shouldFailBlankItems() throws Exception {
+            // Given
+            when(geminiService.complete(anyString(), anyString(), anyInt()))
+                    .thenAnswer(inv -> answerAll(inv.getArgument(1)));
+
+            // When
+            BatchTriageResponse response = service.triage(request("đau đầu", "  "));
+
+            // Then
+            assertEquals(Status.OK, response.getItems().get(0).getStatus());
+            BatchTriageResponse.Item blank = response.getItems().get(1);
+            assertEquals(Status.FAILED, blank.getStatus());
+            assertNull(blank.getRecommendation());
+            assertEquals(1, response.getFailed());
+            verify(geminiService, times(1)).complete(anyString(), anyString(), anyInt());
+        }
+
+        @Test
+        @DisplayName("Should fall back when the model reply is not JSON")
+        void shouldFallbackOnUnparseableReply() throws Exception {
+            // Given
+            when(geminiService.complete(anyString(), anyString(), anyInt())).thenReturn("Xin lỗi, tôi không thể trả lời.");
+
+            // When
+            BatchTriageResponse response = service.triage(request("a", "b"));
+
+            // Then
+            assertEquals(2, response.getFallback());
+            assertEquals(0, response.getSucceeded());
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.ohms;
+
+import com.example.ohms.dto.response.SpecialtyRecommendationResponse;
+import com.example.ohms.service.ai.BookingJsonParser;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test Suite for BookingJsonParser
+ *
+ * Test Coverage:
+ * 1. parse() - đủ các field đặt lịch, code fence, text trước/sau JSON
+ * 2. tolerance - '{' trong lời giải thích, JSON bị cắt, không có JSON
+ * 3. feed() - parse từng chunk khi stream
+ */
+@DisplayName("BookingJsonParser Test Suite")
+class BookingJsonParserTest {
+
+    private static final String BOOKING_JSON = """
+            {
+              "ready": true,
+              "bookingType": "SERVICE_AND_CONSULTATION",
+              "doctorId": "doc-1",
+              "doctorName": "BS An",
+              "workDate": "2025-11-12",
+              "medicalExaminationIds": ["exam-1", null],
+              "serviceSlots": [
+                {"serviceId": "exam-2", "startTime": "08:00:00", "endTime": "08:30:00", "extra": {"x": [1, 2]}}
+              ],
+              "consultationSlot": {"startTime": "08:30:00", "endTime": "08:50:00"},
+              "notes": {"nested": ["ignored"]},
+              "totalPrice": 300000,
+              "discountedPrice": 270000.5,
+              "deposit": 100000,
+              "depositAmount": 135000,
+              "discount": 10
+            }""";
+
+    // ==================== 1. PARSE TESTS ====================
+
+    @Nested
+    @DisplayName("parse() Tests")
+    class ParseTests {
+
+        @Test
+        @DisplayName("Đọc đủ các field đặt lịch trong một lượt")
+        void shouldReadAllBookingFields() {
+            // When
+            BookingJsonParser.Result result = BookingJsonParser.parse("Dạ, tôi đã đặt lịch cho bạn.\n" + BOOKING_JSON);
+
+            // Then
+            SpecialtyRecommendationResponse booking = result.booking();
+            assertTrue(result.ready());
+            assertTrue(result.complete());
+            assertEquals("Dạ, tôi đã đặt lịch cho bạn.", result.leadingText());
+            assertEquals("SERVICE_AND_CONSULTATION", booking.getBookingType());
+            assertEquals("doc-1", booking.getDoctorId());
+            assertEquals("BS An", booking.getDoctorName());
+            assertEquals("2025-11-12", booking.getWorkDate());
+            assertEquals(List.of("exam-1"), booking.getMedicalExaminationIds());
+            assertEquals(1, booking.getServiceSlots().size());
+            assertEquals("exam-2", booking.getServiceSlots().get(0).getServiceId());
+            assertEquals("08:30:00", booking.getServiceSlots().get(0).getEndTime());
+            assertEquals("08:30:00", booking.getConsultationSlot().getStartTime());
+            assertEquals(300000.0, booking.getTotalPrice());
+            assertEquals(270000.5, booking.getDiscountedPrice());
+            assertEquals(135000.0, booking.getDepositAmount());
+            assertEquals(10, booking.getDiscount());
+        }
+
+        @Test
+        @DisplayName("Bỏ code fence và text sau JSON")
+        void shouldStripCodeFence() {
+            // When
+            BookingJsonParser.Result result = BookingJsonParser.parse(
+                    "Xác nhận lịch:\n```json\n{\"ready\": true, \"deposit\": 50000}\n```\nCảm ơn bạn!");
+
+            // Then
+            assertTrue(result.complete());
+            assertEquals("Xác nhận lịch:", result.leadingText());
+            assertEquals(50000.0, result.booking().getDepositAmount());
+        }
+
+        @Test
+        @DisplayName("ready = false thì không coi là đặt lịch")
+        void shouldNotBeReady_WhenReadyFalse() {
+            // When
+            BookingJsonParser.Result result = BookingJsonParser.parse("{\"ready\": false, \"bookingType\": \"CONSULTATION_ONLY\"}");
+
+            // Then
+            assertFalse(result.ready());
+            assertTrue(result.complete());
+        }
+    }
+
+    // ==================== 2. TOLERANCE TESTS ====================
+
+    @Nested
+    @DisplayName("Tolerance Tests")
+    class ToleranceTests {
+
+        @Test
+        @DisplayName("Bỏ qua '{' không mở JSON trong lời giải thích")
+        void shouldSkipBraceInProse() {
+            // When
+            BookingJsonParser.Result result = BookingJsonParser.parse(
+                    "Bạn chọn {bác sĩ} nào? Đây là lịch: {\"ready\": true, \"doctorId\": \"doc-9\"}");
+
+            // Then
+            assertTrue(result.ready());
+            assertEquals("doc-9", result.booking().getDoctorId());
+            assertEquals("Bạn chọn {bác sĩ} nào? Đây là lịch:", result.leadingText());
+        }
+
+        @Test
+        @DisplayName("JSON bị cắt giữa chừng thì giữ phần đã đọc, complete = false")
+        void shouldReportIncomplete_WhenTruncated() {
+            // When
+            BookingJsonParser.Result result = BookingJsonParser.parse("OK {\"ready\": true, \"doctorId\": \"doc-1\", \"workDa");
+
+            // Then
+            assertTrue(result.ready());
+            assertFalse(result.complete());
+            assertEquals("doc-1", result.booking().getDoctorId());
+        }
+
+        @Test
+        @DisplayName("Không có JSON thì leadingText là cả câu trả lời")
+        void shouldReturnWholeText_WhenNoJson() {
+            // When
+            BookingJsonParser.Result result = BookingJsonParser.parse("  Bạn bị đau bao lâu rồi?  ");
+
+            // Then
+            assertFalse(result.ready());
+            assertFalse(result.complete());
+            assertEquals("Bạn bị đau bao lâu rồi?", result.leadingText());
+        }
+    }
+
+    // ==================== 3. FEED TESTS ====================
+
+    @Nested
+    @DisplayName("feed() Tests")
+    class FeedTests {
+
+        @Test
+        @DisplayName("Chia câu trả lời thành chunk nhỏ vẫn cho cùng kết quả")
+        void shouldParseChunkByChunk() {
+            // Given
+            String response = "Dạ, lịch của bạn:\n```json\n" + BOOKING_JSON + "\n```";
+            BookingJsonParser parser = new BookingJsonParser();
+
+            // When - chunk 7 ký tự, cắt ngang chuỗi, số và ký tự có dấu
+            for (int i = 0; i < response.length(); i += 7) {
+                parser.feed(response.substring(i, Math.min(response.length(), i + 7)));
+            }
+            BookingJsonParser.Result result = parser.result();
+
+            // Then
+            assertTrue(result.ready());
+            assertTrue(result.complete());
+            assertEquals("Dạ, lịch của bạn:", result.leadingText());
+            assertEquals("doc-1", result.booking().getDoctorId());
+            assertEquals(List.of("exam-1"), result.booking().getMedicalExaminationIds());
+            assertEquals(135000.0, result.booking().getDepositAmount());
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.ChatArchiveConfig;
+import com.example.ohms.entity.Conversation;
+import com.example.ohms.entity.User;
+import com.example.ohms.repository.ConversationRepository;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.service.ChatArchiveService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for ChatArchiveService
+ *
+ * Test Coverage:
+ * 1. archiveBefore() - ghi segment gzip NDJSON rồi bulk delete
+ * 2. readRoom() / deleteRoom()
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ChatArchiveService Test Suite")
+class ChatArchiveServiceTest {
+
+    @TempDir
+    Path archiveDir;
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ChatArchiveService chatArchiveService;
+
+    private final LocalDateTime cutoff = LocalDateTime.of(2025, 1, 1, 0, 0);
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        ChatArchiveConfig config = new ChatArchiveConfig();
+        config.setDirectory(archiveDir.toString());
+        config.setBatchSize(2);
+        chatArchiveService = new ChatArchiveService(conversationRepository, userRepository, config,
+                new ObjectMapper().findAndRegisterModules(), new TransactionTemplate(transactionManager));
+
+        user = User.builder().id("U001").username("John Doe").build();
+    }
+
+    private Conversation conversation(String id, String message, LocalDateTime createdAt) {
+        Conversation conversation = new Conversation();
+        conversation.setId(id);
+        conversation.setMessage(message);
+        conversation.setUser(user);
+        conversation.setCreatedAt(createdAt);
+        return conversation;
+    }
+
+    private void archiveTwoMessages() {
+        Conversation first = conversation("C001", "Xin chào bác sĩ", cutoff.minusDays(10));
+        Conversation second = conversation("C002", "Ảnh xét nghiệm", cutoff.minusDays(5));
+        when(conversationRepository.findRoomIdsWithMessagesBefore(cutoff)).thenReturn(List.of("RC001"));
+        when(conversationRepository.findByRoomChatIdCreatedBefore(eq("RC001"), eq(cutoff), any()))
+                .thenReturn(List.of(first, second))
+                .thenReturn(List.of());
+        when(conversationRepository.findImageUrlsByConversationIds(List.of("C001", "C002")))
+                .thenReturn(List.<Object[]>of(new Object[]{"C002", "https://img/a.jpg"}));
+
+        assertEquals(2, chatArchiveService.archiveBefore(cutoff));
+    }
+
+    // ==================== 1. ARCHIVE TESTS ====================
+
+    @Nested
+    @DisplayName("1. archiveBefore()")
+    class ArchiveTests {
+
+        @Test
+        @DisplayName("Should write a gzip segment then bulk delete the archived rows")
+        void shouldWriteSegment_ThenBulkDelete() throws Exception {
+            // When
+            archiveTwoMessages();
+
+            // Then
+            try (var files = Files.list(archiveDir.resolve("RC001"))) {
+                List<Path> segments = files.toList();
+                assertEquals(1, segments.size());
+                assertTrue(segments.get(0).getFileName().toString().endsWith(".ndjson.gz"));
+            }
+            verify(conversationRepository).deleteImageUrlsByConversationIds(List.of("C001", "C002"));
+            verify(conversationRepository).deleteByIdIn(List.of("C001", "C002"));
+        }
+
+        @Test
+        @DisplayName("Should archive nothing when no message is older than cutoff")
+        void shouldArchiveNothing_WhenNothingIsOld() {
+            // Given
+            when(conversationRepository.findRoomIdsWithMessagesBefore(cutoff)).thenReturn(List.of());
+
+            // When
+            int archived = chatArchiveService.archiveBefore(cutoff);
+
+            // Then
+            assertEquals(0, archived);
+            verify(conversationRepository, never()).deleteByIdIn(anyCollection());
+        }
+    }
+
+    // ==================== 2. READ / DELETE TESTS ====================
+
+    @Nested
+    @DisplayName("2. readRoom() / deleteRoom()")
+    class ReadTests {
+
+        @Test
+        @DisplayName("Should read archived messages back with users and images resolved")
+        void shouldReadArchivedMessages() {
+            // Given
+            archiveTwoMessages();
+            when(userRepository.findAllById(List.of("U001"))).thenReturn(List.of(user));
+
+            // When
+            List<Conversation> messages = chatArchiveService.readRoom("RC001");
+
+            // Then
+            assertEquals(List.of("C001", "C002"), messages.stream().map(Conversation::getId).toList());
+            assertEquals("Xin chào bác sĩ", messages.get(0).getMessage());
+            assertSame(user, messages.get(0).getUser());
+            assertEquals(List.of("https://img/a.jpg"), messages.get(1).getImageUrls());
+            assertEquals(cutoff.minusDays(5), messages.get(1).getCreatedAt());
+        }
+
+        @Test
+        @DisplayName("Should decode segments once and re-read only when the room's segments change")
+        void shouldCacheDecodedSegments() throws IOException {
+            // Given
+            archiveTwoMessages();
+            when(userRepository.findAllById(List.of("U001"))).thenReturn(List.of(user));
+            assertEquals(2, chatArchiveService.readRoom("RC001").size());
+            Path segment;
+            try (Stream<Path> files = Files.list(archiveDir.resolve("RC001"))) {
+                segment = files.findFirst().orElseThrow();
+            }
+            // ghi đè nội dung, giữ nguyên size + mtime: chỉ cache mới đọc được
+            FileTime modified = Files.getLastModifiedTime(segment);
+            Files.write(segment, new byte[(int) Files.size(segment)]);
+            Files.setLastModifiedTime(segment, modified);
+
+            // When & Then
+            assertEquals(List.of("C001", "C002"),
+                    chatArchiveService.readRoom("RC001").stream().map(Conversation::getId).toList());
+            Files.setLastModifiedTime(segment, FileTime.fromMillis(modified.toMillis() + 1000));
+            assertThrows(UncheckedIOException.class, () -> chatArchiveService.readRoom("RC001"));
+        }
+
+        @Test
+        @DisplayName("Should return empty list for room without archive")
+        void shouldReturnEmpty_WhenRoomHasNoArchive() {
+            assertTrue(chatArchiveService.readRoom("RC404").isEmpty());
+            verifyNoInteractions(userRepository);
+        }
+
+        @Test
+        @DisplayName("Should delete the archive directory of a room")
+        void shouldDeleteRoomArchive() {
+            // Given
+            archiveTwoMessages();
+
+            // When
+            chatArchiveService.deleteRoom("RC001");
+
+            // Then
+            assertFalse(Files.exists(archiveDir.resolve("RC001")));
+            assertTrue(chatArchiveService.readRoom("RC001").isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should reject room ids escaping the archive directory")
+        void shouldRejectPathTraversal() {
+            assertThrows(IllegalArgumentException.class, () -> chatArchiveService.readRoom("../etc"));
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.ChatUploadConfig;
+import com.example.ohms.dto.response.ChatImageResponse;
+import com.example.ohms.entity.MediaAsset;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+import com.example.ohms.repository.MediaAssetRepository;
+import com.example.ohms.service.ChatImageUploadService;
+import com.example.ohms.service.ChatMediaService;
+import com.example.ohms.service.storage.ImageStorage;
+import com.example.ohms.service.storage.LocalImageStorage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for ChatImageUploadService
+ *
+ * Test Coverage:
+ * 1. upload() - multipart upload, spool to disk, concurrency limit
+ * 2. uploadBytes() - legacy base64 path
+ */
+@DisplayName("ChatImageUploadService Test Suite")
+class ChatImageUploadServiceTest {
+
+    @TempDir
+    Path storageDir;
+
+    private ChatUploadConfig config;
+    private MediaAssetRepository mediaAssetRepository;
+    private ChatImageUploadService uploadService;
+
+    @BeforeEach
+    void setUp() {
+        config = new ChatUploadConfig();
+        config.setMaxConcurrency(2);
+        config.setMaxInMemoryBytes(16);
+        config.setMaxFiles(5);
+        mediaAssetRepository = mock(MediaAssetRepository.class);
+        when(mediaAssetRepository.saveAndFlush(any(MediaAsset.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        uploadService = uploadService(new LocalImageStorage(storageDir));
+    }
+
+    private ChatImageUploadService uploadService(ImageStorage storage) {
+        return new ChatImageUploadService(new ChatMediaService(storage, mediaAssetRepository, config), config);
+    }
+
+    private List<String> urls(List<ChatImageResponse> images) {
+        return images.stream().map(ChatImageResponse::getUrl).toList();
+    }
+
+    private MultipartFile image(String name, int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) (i % 127);
+        }
+        return new MockMultipartFile("files", name, "image/png", content);
+    }
+
+    // ==================== 1. UPLOAD TESTS ====================
+
+    @Nested
+    @DisplayName("1. upload()")
+    class UploadTests {
+
+        @Test
+        @DisplayName("Should store small and spooled files and keep request order")
+        void shouldStoreFiles_InRequestOrder() throws IOException {
+            // Given - 4 bytes fits in memory slot (16 / 2), 64 bytes must be spooled
+            List<MultipartFile> files = List.of(image("a.png", 4), image("b.png", 64), image("c.png", 8));
+
+            // When
+            List<String> urls = urls(uploadService.upload(files));
+
+            // Then
+            assertEquals(3, urls.size());
+            assertEquals(4, Files.size(Path.of(URI.create(urls.get(0)))));
+            assertEquals(64, Files.size(Path.of(URI.create(urls.get(1)))));
+            assertEquals(8, Files.size(Path.of(URI.create(urls.get(2)))));
+            assertTrue(Path.of(URI.create(urls.get(1))).startsWith(storageDir.resolve("chat_images")));
+        }
+
+        @Test
+        @DisplayName("Should skip empty parts")
+        void shouldSkipEmptyParts() {
+            // Given
+            List<MultipartFile> files = List.of(image("a.png", 4), new MockMultipartFile("files", new byte[0]));
+
+            // When
+            List<String> urls = urls(uploadService.upload(files));
+
+            // Then
+            assertEquals(1, urls.size());
+        }
+
+        @Test
+        @DisplayName("Should reject request with too many files")
+        void shouldThrowException_WhenTooManyFiles() {
+            // Given
+            List<MultipartFile> files = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                files.add(image("img" + i + ".png", 4));
+            }
+
+            // When & Then
+            AppException exception = assertThrows(AppException.class, () -> uploadService.upload(files));
+            assertEquals(ErrorCode.UPLOAD_LIMIT_EXCEEDED, exception.getErrorCode());
+        }
+
+        @Test
+        @DisplayName("Should never run more uploads than maxConcurrency")
+        void shouldRespectConcurrencyLimit() {
+            // Given
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            ImageStorage slowStorage = new ImageStorage() {
+                @Override
+                public String store(String folder, byte[] content) {
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    try {
+                        Thread.sleep(30);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    running.decrementAndGet();
+                    return "mem://" + content.length;
+                }
+
+                @Override
+                public String store(String folder, Path file) throws IOException {
+                    return store(folder, Files.readAllBytes(file));
+                }
+            };
+            ChatImageUploadService service = uploadService(slowStorage);
+
+            // When
+            List<String> urls = urls(service.upload(List.of(image("a", 1), image("b", 2), image("c", 3), image("d", 4), image("e", 5))));
+
+            // Then
+            assertEquals(List.of("mem://1", "mem://2", "mem://3", "mem://4", "mem://5"), urls);
+            assertTrue(peak.get() <= 2);
+        }
+
+        @Test
+        @DisplayName("Should throw FILE_ERROR when storage fails")
+        void shouldThrowException_WhenStorageFails() {
+            // Given
+            ImageStorage brokenStorage = new ImageStorage() {
+                @Override
+                public String store(String folder, byte[] content) throws IOException {
+                    throw new IOException("boom");
+                }
+
+                @Override
+                public String store(String folder, Path file) throws IOException {
+                    throw new IOException("boom");
+                }
+            };
+            ChatImageUploadService service = uploadService(brokenStorage);
+
+            // When & Then
+            AppException exception = assertThrows(AppException.class, () -> service.upload(List.of(image("a", 4))));
+            assertEquals(ErrorCode.FILE_ERROR, exception.getErrorCode());
+        }
+    }
+
+    // ==================== 2. UPLOAD BYTES TESTS ====================
+
+    @Nested
+    @DisplayName("2. uploadBytes()")
+    class UploadBytesTests {
+
+        @Test
+        @DisplayName("Should upload decoded images")
+        void shouldUploadBytes() {
+            // When
+            List<ChatImageResponse> urls = uploadService.uploadBytes(List.of(new byte[] {1, 2}, new byte[] {3}));
+
+            // Then
+            assertEquals(2, urls.size());
+        }
+
+        @Test
+        @DisplayName("Should return empty list when input is null")
+        void shouldReturnEmpty_WhenNull() {
+            assertTrue(uploadService.uploadBytes(null).isEmpty());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.ChatUploadConfig;
+import com.example.ohms.dto.response.ChatImageResponse;
+import com.example.ohms.entity.MediaAsset;
+import com.example.ohms.repository.MediaAssetRepository;
+import com.example.ohms.service.ChatMediaService;
+import com.example.ohms.service.storage.LocalImageStorage;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for ChatMediaService
+ *
+ * Test Coverage:
+ * 1. store() - dedupe by sha-256, thumbnail generation
+ * 2. thumbnailsFor() / thumbnailUrls()
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("ChatMediaService Test Suite")
+class ChatMediaServiceTest {
+
+    @TempDir
+    Path storageDir;
+
+    @Mock
+    private MediaAssetRepository mediaAssetRepository;
+
+    private ChatMediaService chatMediaService;
+
+    // giả lập bảng media_asset
+    private final Map<String, MediaAsset> assets = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        ChatUploadConfig config = new ChatUploadConfig();
+        config.setThumbnailMaxSize(64);
+        chatMediaService = new ChatMediaService(new LocalImageStorage(storageDir), mediaAssetRepository, config);
+    }
+
+    @AfterEach
+    void tearDown() {
+        chatMediaService.shutdown();
+    }
+
+    private void useInMemoryIndex() {
+        when(mediaAssetRepository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(assets.get(invocation.<String>getArgument(0))));
+        when(mediaAssetRepository.saveAndFlush(any(MediaAsset.class))).thenAnswer(invocation -> {
+            MediaAsset asset = invocation.getArgument(0);
+            if (assets.putIfAbsent(asset.getId(), asset) != null) {
+                throw new DataIntegrityViolationException("Duplicate entry for key 'PRIMARY'");
+            }
+            return asset;
+        });
+    }
+
+    private byte[] png(int width, int height) throws IOException {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    // ==================== 1. STORE TESTS ====================
+
+    @Nested
+    @DisplayName("1. store()")
+    class StoreTests {
+
+        @Test
+        @DisplayName("Should generate bounded thumbnail for image upload")
+        void shouldGenerateThumbnail() throws IOException {
+            // Given
+            useInMemoryIndex();
+
+            // When
+            ChatImageResponse response = chatMediaService.store(png(800, 400));
+
+            // Then
+            assertNotEquals(response.getUrl(), response.getThumbnailUrl());
+            BufferedImage thumbnail = ImageIO.read(Path.of(URI.create(response.getThumbnailUrl())).toFile());
+            assertEquals(64, thumbnail.getWidth());
+            assertEquals(32, thumbnail.getHeight());
+        }
+
+        @Test
+        @DisplayName("Should reuse stored object when same content is uploaded again")
+        void shouldDedupe_WhenSameContent() throws IOException {
+            // Given
+            useInMemoryIndex();
+            byte[] image = png(100, 100);
+
+            // When
+            ChatImageResponse first = chatMediaService.store(image);
+            Path spooled = Files.write(storageDir.resolve("spooled.tmp"), image);
+            ChatImageResponse second = chatMediaService.store(spooled);
+
+            // Then
+            assertEquals(first.getUrl(), second.getUrl());
+            assertEquals(first.getThumbnailUrl(), second.getThumbnailUrl());
+            verify(mediaAssetRepository, times(1)).saveAndFlush(any(MediaAsset.class));
+        }
+
+        @Test
+        @DisplayName("Should keep the first stored object when the same content was indexed concurrently")
+        void shouldReuseRow_WhenInsertRaces() throws IOException {
+            // Given - request khác đã insert cùng hash sau lúc findById trả rỗng
+            byte[] image = png(100, 100);
+            MediaAsset stored = MediaAsset.builder().id("ignored").originalUrl("http://cdn/first.png")
+                    .thumbnailUrl("http://cdn/first_thumb.jpg").build();
+            when(mediaAssetRepository.findById(anyString())).thenReturn(Optional.empty(), Optional.of(stored));
+            when(mediaAssetRepository.saveAndFlush(any(MediaAsset.class)))
+                    .thenThrow(new DataIntegrityViolationException("Duplicate entry for key 'PRIMARY'"));
+
+            // When
+            ChatImageResponse response = chatMediaService.store(image);
+
+            // Then - dùng row đã có, object vừa upload thừa bị xóa
+            assertEquals("http://cdn/first.png", response.getUrl());
+            assertEquals("http://cdn/first_thumb.jpg", response.getThumbnailUrl());
+            try (var files = Files.walk(storageDir)) {
+                assertEquals(0, files.filter(Files::isRegularFile).count());
+            }
+        }
+
+        @Test
+        @DisplayName("Should fall back to original url when content is not an image")
+        void shouldUseOriginal_WhenNotAnImage() throws IOException {
+            // Given
+            useInMemoryIndex();
+
+            // When
+            ChatImageResponse response = chatMediaService.store(new byte[] {1, 2, 3});
+
+            // Then
+            assertEquals(response.getUrl(), response.getThumbnailUrl());
+            assertNull(assets.values().iterator().next().getThumbnailUrl());
+        }
+
+        @Test
+        @DisplayName("Should reject empty content")
+        void shouldThrowException_WhenEmpty() {
+            assertThrows(IllegalArgumentException.class, () -> chatMediaService.store(new byte[0]));
+        }
+    }
+
+    // ==================== 2. THUMBNAIL LOOKUP TESTS ====================
+
+    @Nested
+    @DisplayName("2. thumbnailsFor()")
+    class ThumbnailLookupTests {
+
+        @Test
+        @DisplayName("Should map original urls to thumbnails and keep order")
+        void shouldMapThumbnails() {
+            // Given
+            when(mediaAssetRepository.findByOriginalUrlIn(List.of("a", "b"))).thenReturn(List.of(
+                    MediaAsset.builder().id("h1").originalUrl("a").thumbnailUrl("a_thumb").build(),
+                    MediaAsset.builder().id("h2").originalUrl("b").build()));
+
+            // When
+            Map<String, String> thumbnails = chatMediaService.thumbnailsFor(List.of("a", "b"));
+
+            // Then
+            assertEquals(List.of("a_thumb", "b", "c"), ChatMediaService.thumbnailUrls(List.of("a", "b", "c"), thumbnails));
+        }
+
+        @Test
+        @DisplayName("Should not query when there is no image")
+        void shouldSkipQuery_WhenEmpty() {
+            assertTrue(chatMediaService.thumbnailsFor(List.of()).isEmpty());
+            verifyNoInteractions(mediaAssetRepository);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AiResilienceConfig;
+import com.example.ohms.configuration.BatchTriageConfig;
+import com.example.ohms.configuration.GeminiStreamConfig;
+import com.example.ohms.controller.DiagnosisController;
+import com.example.ohms.dto.request.DiagnosisRequest;
+import com.example.ohms.dto.response.DiagnosisResponse;
+import com.example.ohms.repository.AppointmentRepository;
+import com.example.ohms.repository.MedicalRecordRepository;
+import com.example.ohms.repository.MedicleExaminatioRepository;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.service.GeminiService;
+import com.example.ohms.service.UserService;
+import com.example.ohms.service.ai.AiCallGuard;
+import com.example.ohms.service.ai.BatchTriageService;
+import com.example.ohms.service.ai.DiagnosisResponseCache;
+import com.example.ohms.service.ai.GeminiStreamClient;
+import com.example.ohms.service.ai.KeywordSpecialtyRecommender;
+import com.example.ohms.service.ai.PromptBuilder;
+import com.example.ohms.service.ai.SpecialtyClassifier;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Load test cho đường chatbot /api/diagnose, không chạy trong build thường: {@code mvn test -Pload-test}.
+ *
+ * Mặc định gọi thẳng DiagnosisController qua một pool 200 thread (giống Tomcat worker), GeminiService trỏ vào
+ * {@link GeminiStubServer} có độ trễ và lỗi giả lập. Đặt {@code -Dload.target=http://host:port} để bắn HTTP
+ * vào app đang chạy (app trỏ GEMINI_BASE_URL vào stub chạy bằng {@code GeminiStubServer.main}).
+ * Mỗi mức concurrency in ra p50/p99, số thread bận/queue lớn nhất, tỉ lệ lỗi và tỉ lệ trả lời dự phòng.
+ */
+@Tag("load")
+@DisplayName("/api/diagnose Load Test")
+class DiagnosisLoadTest {
+
+    private static final int[] CONCURRENCY = {1, 8, 32, 128};
+    private static final int REQUESTS_PER_WORKER = 4;
+    private static final int WORKER_THREADS = 200;
+    private static final String FALLBACK_MARKER = "tạm thời gián đoạn";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final String target = System.getProperty("load.target");
+    private GeminiStubServer stub;
+    private AiCallGuard aiCallGuard;
+    private DiagnosisController controller;
+    private HttpClient httpClient;
+
+    private record Result(long latencyNanos, int status, boolean fallback) {
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        if (target != null) {
+            httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+            return;
+        }
+        stub = new GeminiStubServer()
+                .latencyMs(Long.getLong("load.stubLatencyMs", 300))
+                .failureRate(Double.parseDouble(System.getProperty("load.stubFailureRate", "0.05")));
+
+        AiResilienceConfig resilienceConfig = new AiResilienceConfig();
+        resilienceConfig.setRetryBackoffMs(50);
+        aiCallGuard = new AiCallGuard(resilienceConfig, meterRegistry);
+        GeminiStreamConfig streamConfig = new GeminiStreamConfig();
+        streamConfig.setBaseUrl(stub.baseUrl());
+
+        PromptBuilder promptBuilder = mock(PromptBuilder.class);
+        when(promptBuilder.build(anyString(), any(), anyString())).thenReturn("PROMPT ".repeat(2000));
+        KeywordSpecialtyRecommender keywordRecommender = mock(KeywordSpecialtyRecommender.class);
+        when(keywordRecommender.recommend(anyString())).thenReturn(Optional.empty());
+
+        GeminiService geminiService = new GeminiService(resilienceConfig, mock(UserService.class), mock(UserRepository.class),
+                mock(MedicleExaminatioRepository.class), mock(MedicalRecordRepository.class),
+                mock(AppointmentRepository.class),
+                new GeminiStreamClient(WebClient.builder(), streamConfig, meterRegistry),
+                mock(DiagnosisResponseCache.class), aiCallGuard, keywordRecommender,
+                mock(SpecialtyClassifier.class), promptBuilder);
+        ReflectionTestUtils.setField(geminiService, "apiKey", "load-test");
+        ReflectionTestUtils.setField(geminiService, "model", "gemini-stub");
+        ReflectionTestUtils.setField(geminiService, "baseUrl", stub.baseUrl());
+        controller = new DiagnosisController(geminiService, mock(BatchTriageService.class), new BatchTriageConfig());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (stub != null) {
+            stub.close();
+            aiCallGuard.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Tăng dần concurrency và in latency / saturation / error rate")
+    void shouldReportLatencyAtIncreasingConcurrency() throws Exception {
+        System.out.printf("%n%-6s %8s %9s %9s %8s %8s %8s %9s%n",
+                "conc", "requests", "p50(ms)", "p99(ms)", "busy", "queued", "errors", "fallback");
+        for (int concurrency : CONCURRENCY) {
+            List<Result> results = run(concurrency);
+
+            // chỉ lỗi hạ tầng mới là lỗi: quá tải / Gemini lỗi phải ra câu trả lời dự phòng với HTTP 200
+            long errors = results.stream().filter(r -> r.status() != 200).count();
+            assertEquals(0, errors, "concurrency " + concurrency);
+            assertEquals(concurrency * REQUESTS_PER_WORKER, results.size());
+        }
+        if (stub != null) {
+            System.out.printf("ai.calls: %s | stub requests: %d%n", outcomes(), stub.requestCount());
+        }
+    }
+
+    private List<Result> run(int concurrency) throws Exception {
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(WORKER_THREADS, WORKER_THREADS, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>());
+        AtomicInteger maxActive = new AtomicInteger();
+        AtomicInteger maxQueued = new AtomicInteger();
+        Thread sampler = Thread.ofVirtual().start(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                maxActive.accumulateAndGet(workers.getActiveCount(), Math::max);
+                maxQueued.accumulateAndGet(workers.getQueue().size(), Math::max);
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        });
+
+        // concurrency "user" ảo, mỗi user gửi tuần tự REQUESTS_PER_WORKER request
+        List<Future<List<Result>>> users = new ArrayList<>();
+        try (var clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int u = 0; u < concurrency; u++) {
+                users.add(clients.submit(() -> {
+                    List<Result> out = new ArrayList<>();
+                    for (int i = 0; i < REQUESTS_PER_WORKER; i++) {
+                        out.add(target != null ? callHttp() : workers.submit(this::callInProcess).get());
+                    }
+                    return out;
+                }));
+            }
+        }
+        sampler.interrupt();
+        workers.shutdown();
+
+        List<Result> results = new ArrayList<>();
+        for (Future<List<Result>> user : users) {
+            results.addAll(user.get());
+        }
+        List<Long> latencies = new ArrayList<>(results.stream().map(Result::latencyNanos).toList());
+        Collections.sort(latencies);
+        long errors = results.stream().filter(r -> r.status() != 200).count();
+        long fallbacks = results.stream().filter(Result::fallback).count();
+        System.out.printf("%-6d %8d %9.1f %9.1f %8s %8s %7.1f%% %8.1f%%%n",
+                concurrency, results.size(), millis(percentile(latencies, 0.5)), millis(percentile(latencies, 0.99)),
+                target != null ? "n/a" : maxActive.get() + "/" + WORKER_THREADS,
+                target != null ? "n/a" : String.valueOf(maxQueued.get()),
+                100.0 * errors / results.size(), 100.0 * fallbacks / results.size());
+        return results;
+    }
+
+    private Result callInProcess() {
+        DiagnosisRequest request = new DiagnosisRequest();
+        request.setMessage("Tôi bị đau răng mấy hôm nay");
+        long start = System.nanoTime();
+        ResponseEntity<?> response = controller.diagnose(request);
+        long elapsed = System.nanoTime() - start;
+        boolean fallback = response.getBody() instanceof DiagnosisResponse body
+                && body.getReply() != null && body.getReply().contains(FALLBACK_MARKER);
+        return new Result(elapsed, response.getStatusCode().value(), fallback);
+    }
+
+    private Result callHttp() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/api/diagnose"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString("{\"message\":\"Tôi bị đau răng mấy hôm nay\"}"))
+                .build();
+        long start = System.nanoTime();
+        HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        return new Result(System.nanoTime() - start, response.statusCode(), response.body().contains(FALLBACK_MARKER));
+    }
+
+    private String outcomes() {
+        StringBuilder sb = new StringBuilder();
+        for (Counter counter : meterRegistry.find("ai.calls").counters()) {
+            sb.append(counter.getId().getTag("outcome")).append('=').append((long) counter.count()).append(' ');
+        }
+        return sb.toString().trim();
+    }
+
+    private static long percentile(List<Long> sorted, double p) {
+        return sorted.isEmpty() ? 0 : sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(p * sorted.size()) - 1));
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
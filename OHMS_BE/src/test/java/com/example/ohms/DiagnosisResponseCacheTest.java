@@ -0,0 +1,246 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AiCacheConfig;
+import com.example.ohms.dto.request.DiagnosisRequest;
+import com.example.ohms.service.ai.AiContextSnapshot;
+import com.example.ohms.service.ai.AiContextSnapshotService;
+import com.example.ohms.service.ai.DiagnosisResponseCache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for DiagnosisResponseCache
+ *
+ * Test Coverage:
+ * 1. normalize() - bỏ dấu, chỉ bỏ trợ từ, giữ phủ định
+ * 2. get()/put() - exact hit, similar hit, bypass bệnh nhân cụ thể
+ * 3. invalidation - snapshot version, TTL, LRU
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DiagnosisResponseCache Test Suite")
+class DiagnosisResponseCacheTest {
+
+    @Mock
+    private AiContextSnapshotService snapshotService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MutableClock clock = new MutableClock();
+    private AiCacheConfig config;
+    private DiagnosisResponseCache cache;
+
+    // clock chỉnh được để test TTL
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-11-10T00:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        config = new AiCacheConfig();
+        config.setMaxEntries(2);
+        cache = new DiagnosisResponseCache(config, snapshotService, meterRegistry, clock);
+        lenient().when(snapshotService.current()).thenReturn(snapshot(1));
+    }
+
+    private static AiContextSnapshot snapshot(long version) {
+        return new AiContextSnapshot(version, 0, LocalDate.now(), "", "", "");
+    }
+
+    private static DiagnosisRequest request(String message) {
+        DiagnosisRequest request = new DiagnosisRequest();
+        request.setMessage(message);
+        return request;
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("ai.cache.requests").tag("result", result).counter().count();
+    }
+
+    // ==================== 1. NORMALIZE TESTS ====================
+
+    @Nested
+    @DisplayName("1. normalize()")
+    class NormalizeTests {
+
+        @Test
+        @DisplayName("Should fold diacritics, lowercase and strip filler particles")
+        void shouldNormalizeMessage() {
+            assertEquals("dau dau nen kham khoa nao", DiagnosisResponseCache.normalize("Đau đầu thì nên khám khoa nào ạ?"));
+            assertEquals(DiagnosisResponseCache.normalize("đau đầu nên khám khoa nào"),
+                    DiagnosisResponseCache.normalize("ĐAU ĐẦU, nên khám khoa nào nhé?"));
+        }
+
+        @Test
+        @DisplayName("Should keep negation and meaning-bearing words in the key")
+        void shouldKeepNegation() {
+            assertNotEquals(DiagnosisResponseCache.normalize("sốt không ho"), DiagnosisResponseCache.normalize("sốt ho"));
+            assertNotEquals(DiagnosisResponseCache.normalize("có nên uống thuốc hạ sốt"),
+                    DiagnosisResponseCache.normalize("uống thuốc hạ sốt"));
+            assertNotEquals(DiagnosisResponseCache.normalize("bị dị ứng"), DiagnosisResponseCache.normalize("dị ứng"));
+        }
+    }
+
+    // ==================== 2. GET / PUT TESTS ====================
+
+    @Nested
+    @DisplayName("2. get()/put()")
+    class GetPutTests {
+
+        @Test
+        @DisplayName("Should hit for the same question written differently")
+        void shouldHit_ForEquivalentQuestion() {
+            // Given
+            cache.put(request("Đau đầu nên khám khoa nào"), "Nội thần kinh");
+
+            // When
+            Optional<String> reply = cache.get(request("đau đầu thì nên khám khoa nào ạ"));
+
+            // Then
+            assertEquals(Optional.of("Nội thần kinh"), reply);
+            assertEquals(1.0, count("hit"));
+        }
+
+        @Test
+        @DisplayName("Should hit a near-duplicate question through shingle similarity")
+        void shouldHit_ForSimilarQuestion() {
+            // Given
+            config.setSimilarityThreshold(0.6);
+            cache.put(request("đau đầu chóng mặt nên khám khoa nào"), "Nội thần kinh");
+
+            // When
+            Optional<String> reply = cache.get(request("đau đầu chóng mặt nhiều nên khám khoa nào"));
+
+            // Then
+            assertEquals(Optional.of("Nội thần kinh"), reply);
+            assertEquals(1.0, count("similar_hit"));
+        }
+
+        @Test
+        @DisplayName("Should not near-match questions that differ by a negation")
+        void shouldMiss_WhenNegationDiffers() {
+            // Given
+            config.setSimilarityThreshold(0.5);
+            cache.put(request("đau đầu chóng mặt buồn nôn nên khám khoa nào"), "Nội thần kinh");
+
+            // When / Then
+            assertTrue(cache.get(request("đau đầu chóng mặt không buồn nôn nên khám khoa nào")).isEmpty());
+            assertEquals(1.0, count("miss"));
+        }
+
+        @Test
+        @DisplayName("Should miss for a different question")
+        void shouldMiss_ForDifferentQuestion() {
+            // Given
+            cache.put(request("đau đầu nên khám khoa nào"), "Nội thần kinh");
+
+            // When / Then
+            assertTrue(cache.get(request("đau răng nên khám khoa nào")).isEmpty());
+            assertEquals(1.0, count("miss"));
+        }
+
+        @Test
+        @DisplayName("Should bypass requests carrying patient data or history")
+        void shouldBypass_PatientSpecificRequests() {
+            // Given
+            DiagnosisRequest withPatient = request("đau đầu nên khám khoa nào");
+            withPatient.setPatientId("P001");
+            DiagnosisRequest withHistory = request("đau đầu nên khám khoa nào");
+            withHistory.setHistory(List.of(new DiagnosisRequest.ChatTurn("user", "chào bạn")));
+            DiagnosisRequest withInfo = request("đau đầu nên khám khoa nào");
+            withInfo.setPatientInfo(Map.of("tuổi", "30"));
+
+            // When
+            cache.put(withPatient, "riêng cho P001");
+
+            // Then
+            assertTrue(cache.get(withPatient).isEmpty());
+            assertTrue(cache.get(withHistory).isEmpty());
+            assertTrue(cache.get(withInfo).isEmpty());
+            assertTrue(cache.get(request("đau đầu nên khám khoa nào")).isEmpty());
+            assertEquals(3.0, count("bypass"));
+        }
+    }
+
+    // ==================== 3. INVALIDATION TESTS ====================
+
+    @Nested
+    @DisplayName("3. invalidation")
+    class InvalidationTests {
+
+        @Test
+        @DisplayName("Should miss after the context snapshot version changes")
+        void shouldMiss_AfterSnapshotChange() {
+            // Given
+            cache.put(request("đau đầu nên khám khoa nào"), "Nội thần kinh");
+            when(snapshotService.current()).thenReturn(snapshot(2));
+
+            // When / Then
+            assertTrue(cache.get(request("đau đầu nên khám khoa nào")).isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should expire entries after the TTL")
+        void shouldExpire_AfterTtl() {
+            // Given
+            cache.put(request("đau đầu nên khám khoa nào"), "Nội thần kinh");
+
+            // When
+            clock.now = clock.now.plus(Duration.ofMinutes(config.getTtlMinutes() + 1));
+
+            // Then
+            assertTrue(cache.get(request("đau đầu nên khám khoa nào")).isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should evict the least recently used entry when full")
+        void shouldEvictLeastRecentlyUsed() {
+            // Given
+            config.setSimilarityThreshold(1.0);
+            cache.put(request("đau đầu"), "A");
+            cache.put(request("đau răng"), "B");
+            cache.get(request("đau đầu"));
+
+            // When
+            cache.put(request("mẩn ngứa"), "C");
+
+            // Then
+            assertTrue(cache.get(request("đau đầu")).isPresent());
+            assertTrue(cache.get(request("đau răng")).isEmpty());
+            assertEquals(2.0, meterRegistry.get("ai.cache.size").gauge().value());
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.ohms;
+
+import com.example.ohms.dto.response.DoctorSummary;
+import com.example.ohms.entity.Role;
+import com.example.ohms.entity.User;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.service.DoctorDirectoryService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for DoctorDirectoryService
+ *
+ * Test Coverage:
+ * 1. lookups - nạp một lần, danh sách theo tên, nhóm theo chuyên khoa
+ * 2. incremental updates - đổi hồ sơ, mất role bác sĩ, đổi role toàn cục
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("DoctorDirectoryService Test Suite")
+class DoctorDirectoryServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private DoctorDirectoryService directory;
+    private final Role doctorRole = Role.builder().name("DOCTOR").build();
+    private final Role patientRole = Role.builder().name("PATIENT").build();
+
+    @BeforeEach
+    void setUp() {
+        directory = new DoctorDirectoryService(userRepository);
+    }
+
+    private User doctor(String id, String name, MedicalSpecialty... specialties) {
+        return User.builder()
+                .id(id)
+                .username(name)
+                .roles(Set.of(doctorRole))
+                .medicleSpecially(Set.of(specialties))
+                .build();
+    }
+
+    // ==================== 1. LOOKUP TESTS ====================
+
+    @Nested
+    @DisplayName("Lookup Tests")
+    class LookupTests {
+
+        @Test
+        @DisplayName("Should load doctors once by role and serve lookups from memory")
+        void shouldServeFromMemory() {
+            // Given
+            when(userRepository.findByRoleName("DOCTOR")).thenReturn(List.of(
+                    doctor("D2", "Trần B", MedicalSpecialty.CARDIOLOGY, MedicalSpecialty.PEDIATRICS),
+                    doctor("D1", "Nguyễn A", MedicalSpecialty.CARDIOLOGY)));
+
+            // When
+            List<DoctorSummary> all = directory.getDoctors();
+            List<DoctorSummary> cardiology = directory.getDoctors(MedicalSpecialty.CARDIOLOGY);
+            List<DoctorSummary> pediatrics = directory.getDoctors(MedicalSpecialty.PEDIATRICS);
+
+            // Then
+            assertEquals(List.of("D1", "D2"), all.stream().map(DoctorSummary::getId).toList());
+            assertEquals(List.of("D1", "D2"), cardiology.stream().map(DoctorSummary::getId).toList());
+            assertEquals(List.of("D2"), pediatrics.stream().map(DoctorSummary::getId).toList());
+            assertTrue(directory.getDoctors(MedicalSpecialty.DERMATOLOGY).isEmpty());
+            assertEquals(Set.of(MedicalSpecialty.CARDIOLOGY, MedicalSpecialty.PEDIATRICS),
+                    directory.getDoctorsBySpecialty().keySet());
+            verify(userRepository, times(1)).findByRoleName("DOCTOR");
+            verify(userRepository, never()).findAll();
+        }
+
+        @Test
+        @DisplayName("Should expose read-only lists")
+        void shouldBeReadOnly() {
+            // Given
+            when(userRepository.findByRoleName("DOCTOR")).thenReturn(List.of(doctor("D1", "A", MedicalSpecialty.CARDIOLOGY)));
+
+            // When & Then
+            assertThrows(UnsupportedOperationException.class, () -> directory.getDoctors().clear());
+            assertThrows(UnsupportedOperationException.class,
+                    () -> directory.getDoctorsBySpecialty().remove(MedicalSpecialty.CARDIOLOGY));
+        }
+    }
+
+    // ==================== 2. INCREMENTAL UPDATE TESTS ====================
+
+    @Nested
+    @DisplayName("Incremental Update Tests")
+    class UpdateTests {
+
+        @BeforeEach
+        void load() {
+            when(userRepository.findByRoleName("DOCTOR")).thenReturn(List.of(
+                    doctor("D1", "Nguyễn A", MedicalSpecialty.CARDIOLOGY)));
+            directory.getDoctors();
+        }
+
+        @Test
+        @DisplayName("Should reload only the changed doctor")
+        void shouldRefreshSingleDoctor() {
+            // Given
+            long version = directory.version();
+            when(userRepository.findByIdWithRoles("D1"))
+                    .thenReturn(Optional.of(doctor("D1", "Nguyễn A", MedicalSpecialty.NEUROLOGY)));
+
+            // When
+            directory.onPrincipalChanged(PrincipalChangedEvent.user("D1"));
+
+            // Then
+            assertTrue(directory.getDoctors(MedicalSpecialty.CARDIOLOGY).isEmpty());
+            assertEquals(1, directory.getDoctors(MedicalSpecialty.NEUROLOGY).size());
+            assertTrue(directory.version() > version);
+            verify(userRepository, times(1)).findByRoleName("DOCTOR");
+        }
+
+        @Test
+        @DisplayName("Should drop a user who is no longer a doctor and ignore unrelated users")
+        void shouldDropNonDoctor() {
+            // Given
+            User demoted = doctor("D1", "Nguyễn A", MedicalSpecialty.CARDIOLOGY);
+            demoted.setRoles(Set.of(patientRole));
+            when(userRepository.findByIdWithRoles("D1")).thenReturn(Optional.of(demoted));
+            when(userRepository.findByIdWithRoles("P1")).thenReturn(Optional.empty());
+
+            // When
+            directory.onPrincipalChanged(PrincipalChangedEvent.user("D1"));
+            long version = directory.version();
+            directory.onPrincipalChanged(PrincipalChangedEvent.user("P1"));
+
+            // Then
+            assertTrue(directory.getDoctors().isEmpty());
+            assertTrue(directory.findDoctor("D1").isEmpty());
+            assertEquals(version, directory.version());
+        }
+
+        @Test
+        @DisplayName("Should reload everything when roles change")
+        void shouldReloadOnRoleChange() {
+            // When
+            directory.onPrincipalChanged(PrincipalChangedEvent.all());
+
+            // Then
+            verify(userRepository, times(2)).findByRoleName("DOCTOR");
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AiResilienceConfig;
+import com.example.ohms.configuration.GeminiStreamConfig;
+import com.example.ohms.dto.request.DiagnosisRequest;
+import com.example.ohms.dto.response.SpecialtyRecommendationResponse;
+import com.example.ohms.entity.MedicalExamination;
+import com.example.ohms.entity.User;
+import com.example.ohms.exception.AiUnavailableException;
+import com.example.ohms.repository.AppointmentRepository;
+import com.example.ohms.repository.MedicalRecordRepository;
+import com.example.ohms.repository.MedicleExaminatioRepository;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.service.GeminiService;
+import com.example.ohms.service.UserService;
+import com.example.ohms.service.ai.AiCallGuard;
+import com.example.ohms.service.ai.DiagnosisResponseCache;
+import com.example.ohms.service.ai.GeminiStreamClient;
+import com.example.ohms.service.ai.KeywordSpecialtyRecommender;
+import com.example.ohms.service.ai.PromptBuilder;
+import com.example.ohms.service.ai.SpecialtyClassifier;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for GeminiService (HTTP) - chạy với {@link GeminiStubServer} thay cho Gemini thật
+ *
+ * Test Coverage:
+ * 1. generateDiagnosisReply() - parse candidates, request đúng endpoint
+ * 2. retry / lỗi - 503 rồi thành công, error JSON, không có candidates, timeout
+ * 3. câu trả lời đặc biệt - bị chặn, quá dài
+ * 4. streamDiagnosisReply() - ghép chunk SSE
+ * 5. parseAIResponse() - kiểm tra id dịch vụ/bác sĩ theo lô
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GeminiService HTTP Test Suite")
+class GeminiServiceHttpTest {
+
+    @Mock
+    private UserService userService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private MedicleExaminatioRepository medicalExaminationRepository;
+
+    @Mock
+    private MedicalRecordRepository medicalRecordRepository;
+
+    @Mock
+    private AppointmentRepository appointmentRepository;
+
+    @Mock
+    private DiagnosisResponseCache responseCache;
+
+    @Mock
+    private KeywordSpecialtyRecommender keywordRecommender;
+
+    @Mock
+    private SpecialtyClassifier specialtyClassifier;
+
+    @Mock
+    private PromptBuilder promptBuilder;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private GeminiStubServer stub;
+    private AiResilienceConfig resilienceConfig;
+    private AiCallGuard aiCallGuard;
+    private GeminiService geminiService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new GeminiStubServer();
+        resilienceConfig = new AiResilienceConfig();
+        resilienceConfig.setRetryBackoffMs(10);
+        resilienceConfig.setReadTimeoutMs(500);
+        resilienceConfig.setCallTimeoutSeconds(5);
+        aiCallGuard = new AiCallGuard(resilienceConfig, meterRegistry);
+
+        GeminiStreamConfig streamConfig = new GeminiStreamConfig();
+        streamConfig.setBaseUrl(stub.baseUrl());
+        GeminiStreamClient streamClient = new GeminiStreamClient(WebClient.builder(), streamConfig, meterRegistry);
+
+        geminiService = new GeminiService(resilienceConfig, userService, userRepository, medicalExaminationRepository,
+                medicalRecordRepository, appointmentRepository, streamClient, responseCache, aiCallGuard,
+                keywordRecommender, specialtyClassifier, promptBuilder);
+        ReflectionTestUtils.setField(geminiService, "apiKey", "test-key");
+        ReflectionTestUtils.setField(geminiService, "model", "gemini-test");
+        ReflectionTestUtils.setField(geminiService, "baseUrl", stub.baseUrl());
+        lenient().when(promptBuilder.build(anyString(), any(), anyString())).thenReturn("PROMPT");
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+        aiCallGuard.shutdown();
+    }
+
+    private static DiagnosisRequest request(String message) {
+        DiagnosisRequest request = new DiagnosisRequest();
+        request.setMessage(message);
+        return request;
+    }
+
+    // ==================== 1. GENERATE TESTS ====================
+
+    @Nested
+    @DisplayName("generateDiagnosisReply() Tests")
+    class GenerateTests {
+
+        @Test
+        @DisplayName("Trả text của candidate đầu tiên và cache lại")
+        void shouldReturnCandidateText() throws Exception {
+            // Given
+            stub.replyText("Bạn nên khám Răng - Hàm - Mặt.");
+            DiagnosisRequest request = request("đau răng");
+
+            // When
+            String reply = geminiService.generateDiagnosisReply(request);
+
+            // Then
+            assertEquals("Bạn nên khám Răng - Hàm - Mặt.", reply);
+            assertEquals(1, stub.requestCount());
+            assertTrue(stub.lastRequestBody().contains("PROMPT"));
+            verify(responseCache).put(request, reply);
+        }
+    }
+
+    // ==================== 2. RETRY / ERROR TESTS ====================
+
+    @Nested
+    @DisplayName("Retry / Error Tests")
+    class RetryTests {
+
+        @Test
+        @DisplayName("503 thì retry rồi thành công")
+        void shouldRetry_On503() throws Exception {
+            // Given
+            stub.failFirst(2);
+
+            // When
+            String reply = geminiService.generateDiagnosisReply(request("đau răng"));
+
+            // Then
+            assertFalse(reply.isBlank());
+            assertEquals(3, stub.requestCount());
+        }
+
+        @Test
+        @DisplayName("Lỗi hết số lần retry thì ném AiUnavailableException, endpoint chat trả gợi ý dự phòng")
+        void shouldFallback_WhenAllAttemptsFail() throws Exception {
+            // Given
+            stub.failureRate(1.0);
+            when(keywordRecommender.recommend(anyString())).thenReturn(Optional.empty());
+
+            // When
+            AiUnavailableException ex = assertThrows(AiUnavailableException.class,
+                    () -> geminiService.generateDiagnosisReply(request("đau răng")));
+            String fallback = geminiService.diagnosisReplyOrFallback(request("đau răng"));
+
+            // Then
+            assertEquals("error", ex.getReason());
+            assertEquals(6, stub.requestCount());
+            assertTrue(fallback.contains("tạm thời gián đoạn"));
+        }
+
+        @Test
+        @DisplayName("Body là error JSON thì coi như lỗi")
+        void shouldFail_OnErrorJson() {
+            // Given
+            stub.mode(GeminiStubServer.Mode.ERROR_JSON);
+
+            // When / Then
+            assertThrows(AiUnavailableException.class, () -> geminiService.generateDiagnosisReply(request("đau răng")));
+            verify(responseCache, never()).put(any(), anyString());
+        }
+
+        @Test
+        @DisplayName("Không có candidates thì retry rồi báo lỗi")
+        void shouldFail_WhenNoCandidates() {
+            // Given
+            stub.mode(GeminiStubServer.Mode.NO_CANDIDATES);
+
+            // When / Then
+            assertThrows(AiUnavailableException.class, () -> geminiService.generateDiagnosisReply(request("đau răng")));
+            assertEquals(resilienceConfig.getMaxRetries() + 1, stub.requestCount());
+        }
+
+        @Test
+        @DisplayName("Không retry khi budget còn lại không đủ cho 1 lần thử nữa")
+        void shouldStopRetrying_WhenBudgetExhausted() {
+            // Given - 1 lần thử tối đa 1.5s + backoff 0.5s, guard cho 2s: chỉ đủ cho lần đầu
+            stub.failureRate(1.0);
+            resilienceConfig.setConnectTimeoutMs(1000);
+            resilienceConfig.setRetryBackoffMs(500);
+            resilienceConfig.setCallTimeoutSeconds(2);
+
+            // When
+            AiUnavailableException ex = assertThrows(AiUnavailableException.class,
+                    () -> geminiService.generateDiagnosisReply(request("đau răng")));
+
+            // Then - lỗi thật của API, không phải timeout do guard cắt giữa lần retry
+            assertEquals("error", ex.getReason());
+            assertEquals(1, stub.requestCount());
+        }
+
+        @Test
+        @DisplayName("Server chậm hơn read timeout thì không treo request")
+        void shouldTimeout_WhenServerTooSlow() {
+            // Given
+            stub.latencyMs(1000);
+            resilienceConfig.setMaxRetries(0);
+
+            // When
+            long start = System.nanoTime();
+            assertThrows(AiUnavailableException.class, () -> geminiService.generateDiagnosisReply(request("đau răng")));
+
+            // Then
+            assertTrue(Duration.ofNanos(System.nanoTime() - start).toMillis() < 1000);
+        }
+    }
+
+    // ==================== 3. SPECIAL REPLY TESTS ====================
+
+    @Nested
+    @DisplayName("Special Reply Tests")
+    class SpecialReplyTests {
+
+        @Test
+        @DisplayName("Bị chặn an toàn thì trả câu xin lỗi và không cache")
+        void shouldReturnBlockedReply() throws Exception {
+            // Given
+            stub.mode(GeminiStubServer.Mode.BLOCKED);
+
+            // When
+            String reply = geminiService.generateDiagnosisReply(request("đau răng"));
+
+            // Then
+            assertTrue(reply.contains("bị chặn"));
+            verify(responseCache, never()).put(any(), anyString());
+        }
+
+        @Test
+        @DisplayName("Candidate không có text thì trả câu mặc định")
+        void shouldReturnEmptyReply_WhenCandidateHasNoText() throws Exception {
+            // Given
+            stub.mode(GeminiStubServer.Mode.EMPTY_CANDIDATE);
+
+            // When
+            String reply = geminiService.generateDiagnosisReply(request("đau răng"));
+
+            // Then
+            assertTrue(reply.contains("không thể tạo câu trả lời"));
+        }
+
+        @Test
+        @DisplayName("MAX_TOKENS thì báo câu trả lời quá dài")
+        void shouldReturnTooLongReply() throws Exception {
+            // Given
+            stub.mode(GeminiStubServer.Mode.MAX_TOKENS);
+
+            // When / Then
+            assertTrue(geminiService.generateDiagnosisReply(request("đau răng")).contains("quá dài"));
+        }
+    }
+
+    // ==================== 4. STREAM TESTS ====================
+
+    @Nested
+    @DisplayName("streamDiagnosisReply() Tests")
+    class StreamTests {
+
+        @Test
+        @DisplayName("Ghép các chunk SSE thành câu trả lời đầy đủ")
+        void shouldStreamChunks() {
+            // Given
+            stub.replyText("Bạn nên khám chuyên khoa Da liễu.");
+
+            // When
+            String reply = String.join("", geminiService.streamDiagnosisReply(request("mẩn ngứa"))
+                    .collectList()
+                    .block(Duration.ofSeconds(5)));
+
+            // Then
+            assertEquals("Bạn nên khám chuyên khoa Da liễu.", reply);
+            assertEquals(1, stub.requestCount());
+        }
+    }
+
+    // ==================== 5. PARSE RESPONSE TESTS ====================
+
+    @Nested
+    @DisplayName("parseAIResponse() Tests")
+    class ParseResponseTests {
+
+        @Test
+        @DisplayName("Resolve id dịch vụ bằng 1 query, bỏ id không tồn tại")
+        void shouldResolveExaminationsInOneQuery() throws Exception {
+            // Given
+            MedicalExamination exam = MedicalExamination.builder().id("exam-1").name("Khám răng").build();
+            MedicalExamination slotExam = MedicalExamination.builder().id("exam-2").name("Chụp X-quang").build();
+            when(medicalExaminationRepository.findAllByIdIn(Set.of("exam-1", "ghost", "exam-2")))
+                    .thenReturn(List.of(exam, slotExam));
+            User doctor = new User();
+            doctor.setId("doc-1");
+            doctor.setUsername("BS An");
+            when(userRepository.findById("doc-1")).thenReturn(Optional.of(doctor));
+            String ai = "Dạ, đã xong.\n{\"ready\": true, \"doctorId\": \"doc-1\", "
+                    + "\"medicalExaminationIds\": [\"exam-1\", \"ghost\"], "
+                    + "\"serviceSlots\": [{\"serviceId\": \"exam-2\"}, {\"serviceId\": \"ghost\"}]}";
+
+            // When
+            SpecialtyRecommendationResponse response = geminiService.parseAIResponse(ai, request("đặt lịch"));
+
+            // Then
+            assertTrue(response.getReady());
+            assertFalse(response.isNeedMoreInfo());
+            assertEquals("Dạ, đã xong.", response.getDiagnosis());
+            assertEquals(List.of("exam-1"), response.getMedicalExaminationIds());
+            assertEquals(List.of(exam), response.getSuggestedExaminations());
+            assertEquals(1, response.getServiceSlots().size());
+            assertEquals("BS An", response.getDoctorName());
+            verify(medicalExaminationRepository, times(1)).findAllByIdIn(any());
+        }
+
+        @Test
+        @DisplayName("Bác sĩ không tồn tại thì bỏ doctorId")
+        void shouldDropUnknownDoctor() throws Exception {
+            // Given
+            when(userRepository.findById("ghost")).thenReturn(Optional.empty());
+
+            // When
+            SpecialtyRecommendationResponse response = geminiService.parseAIResponse(
+                    "{\"ready\": true, \"doctorId\": \"ghost\"}", request("đặt lịch"));
+
+            // Then
+            assertNull(response.getDoctorId());
+            verifyNoInteractions(medicalExaminationRepository);
+        }
+
+        @Test
+        @DisplayName("Chưa chốt lịch thì trả câu hỏi tiếp theo")
+        void shouldAskFollowUp_WhenNotReady() throws Exception {
+            // When
+            SpecialtyRecommendationResponse response = geminiService.parseAIResponse(
+                    "Bạn muốn khám ngày nào?", request("đặt lịch"));
+
+            // Then
+            assertTrue(response.isNeedMoreInfo());
+            assertEquals("Bạn muốn khám ngày nào?", response.getFollowUpQuestion());
+            verifyNoInteractions(userRepository, medicalExaminationRepository);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.GeminiStreamConfig;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+import com.example.ohms.service.ai.GeminiStreamClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test Suite for GeminiStreamClient
+ *
+ * Test Coverage:
+ * 1. stream() - parse chunk SSE thành text, request đúng endpoint
+ * 2. concurrency / cancellation - giới hạn stream, trả permit khi cancel
+ * 3. retry - lỗi 5xx trước chunk đầu được retry
+ */
+@DisplayName("GeminiStreamClient Test Suite")
+class GeminiStreamClientTest {
+
+    private static final String SSE_BODY = """
+            data: {"candidates":[{"content":{"parts":[{"text":"Xin "}]}}]}
+
+            data: {"candidates":[{"content":{"parts":[{"text":"chào"}]},"finishReason":"STOP"}]}
+
+            """;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private GeminiStreamClient client(ExchangeFunction exchange, int maxConcurrent) {
+        GeminiStreamConfig config = new GeminiStreamConfig();
+        config.setBaseUrl("http://gemini.test");
+        config.setMaxConcurrentStreams(maxConcurrent);
+        return new GeminiStreamClient(WebClient.builder().exchangeFunction(exchange), config, meterRegistry);
+    }
+
+    private static Mono<ClientResponse> sse(String body) {
+        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+                .body(body)
+                .build());
+    }
+
+    // ==================== 1. STREAM TESTS ====================
+
+    @Nested
+    @DisplayName("1. stream()")
+    class StreamTests {
+
+        @Test
+        @DisplayName("Should emit text of each SSE chunk in order")
+        void shouldEmitChunkText() {
+            // Given
+            AtomicReference<ClientRequest> captured = new AtomicReference<>();
+            GeminiStreamClient client = client(request -> {
+                captured.set(request);
+                return sse(SSE_BODY);
+            }, 2);
+
+            // When
+            List<String> tokens = client.stream("gemini-2.5-flash", "k", "{}").collectList().block(Duration.ofSeconds(5));
+
+            // Then
+            assertEquals(List.of("Xin ", "chào"), tokens);
+            String url = captured.get().url().toString();
+            assertTrue(url.startsWith("http://gemini.test/v1beta/models/gemini-2.5-flash:streamGenerateContent"));
+            assertTrue(url.contains("alt=sse"));
+        }
+    }
+
+    // ==================== 2. CONCURRENCY TESTS ====================
+
+    @Nested
+    @DisplayName("2. concurrency / cancellation")
+    class ConcurrencyTests {
+
+        @Test
+        @DisplayName("Should reject streams over the limit and release the permit on cancel")
+        void shouldRejectOverLimit_AndReleaseOnCancel() {
+            // Given: response không bao giờ kết thúc cho tới khi bị cancel
+            Sinks.Many<String> never = Sinks.many().unicast().onBackpressureBuffer();
+            GeminiStreamClient client = client(request -> Mono.just(ClientResponse.create(HttpStatus.OK)
+                    .header(HttpHeaders.CONTENT_TYPE, MediaType.TEXT_EVENT_STREAM_VALUE)
+                    .body(never.asFlux().map(s -> new DefaultDataBufferFactory().wrap(s.getBytes())))
+                    .build()), 1);
+            Disposable first = client.stream("m", "k", "{}").subscribe();
+
+            // When
+            List<Throwable> errors = new ArrayList<>();
+            client.stream("m", "k", "{}").subscribe(t -> { }, errors::add);
+
+            // Then
+            assertEquals(1, errors.size());
+            assertEquals(ErrorCode.AI_BUSY, ((AppException) errors.get(0)).getErrorCode());
+            assertEquals(1.0, meterRegistry.get("ai.stream.active").gauge().value());
+
+            // When: client ngắt kết nối
+            first.dispose();
+
+            // Then
+            assertEquals(0.0, meterRegistry.get("ai.stream.active").gauge().value());
+        }
+    }
+
+    // ==================== 3. RETRY TESTS ====================
+
+    @Nested
+    @DisplayName("3. retry")
+    class RetryTests {
+
+        @Test
+        @DisplayName("Should retry a 503 before the first chunk")
+        void shouldRetryServerError() {
+            // Given
+            AtomicInteger calls = new AtomicInteger();
+            GeminiStreamClient client = client(request -> calls.getAndIncrement() == 0
+                    ? Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build())
+                    : sse(SSE_BODY), 2);
+
+            // When
+            List<String> tokens = client.stream("m", "k", "{}").collectList().block(Duration.ofSeconds(5));
+
+            // Then
+            assertEquals(List.of("Xin ", "chào"), tokens);
+            assertEquals(2, calls.get());
+        }
+
+        @Test
+        @DisplayName("Should not retry a 400")
+        void shouldNotRetryClientError() {
+            // Given
+            AtomicInteger calls = new AtomicInteger();
+            GeminiStreamClient client = client(request -> {
+                calls.incrementAndGet();
+                return Mono.just(ClientResponse.create(HttpStatus.BAD_REQUEST).build());
+            }, 2);
+
+            // When / Then
+            assertThrows(RuntimeException.class, () -> client.stream("m", "k", "{}").blockLast(Duration.ofSeconds(5)));
+            assertEquals(1, calls.get());
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.ohms;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Server giả lập Gemini API chạy trong JVM test (JDK HttpServer), trỏ {@code gemini.api.base-url} /
+ * {@code gemini.stream.base-url} vào {@link #baseUrl()}.
+ * Hỗ trợ {@code :generateContent} (JSON) và {@code :streamGenerateContent?alt=sse} (SSE),
+ * chỉnh được độ trễ, tỉ lệ lỗi 503, số request đầu bị lỗi và kiểu câu trả lời (bình thường, bị chặn, rỗng...).
+ * Chạy độc lập: {@code main [port]} để test tải bản app đang chạy mà không tốn quota.
+ */
+public class GeminiStubServer implements AutoCloseable {
+
+    public enum Mode {
+        // câu trả lời bình thường
+        TEXT,
+        // finishReason = SAFETY
+        BLOCKED,
+        // finishReason = MAX_TOKENS
+        MAX_TOKENS,
+        // không có candidates
+        NO_CANDIDATES,
+        // candidate không có text
+        EMPTY_CANDIDATE,
+        // HTTP 200 nhưng body là {"error": ...}
+        ERROR_JSON
+    }
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger failFirst = new AtomicInteger();
+    private final AtomicReference<String> lastBody = new AtomicReference<>();
+    private volatile long latencyMs;
+    private volatile double failureRate;
+    private volatile Mode mode = Mode.TEXT;
+    private volatile String replyText = "Bạn nên khám chuyên khoa Răng - Hàm - Mặt.";
+
+    public GeminiStubServer() throws IOException {
+        this(0);
+    }
+
+    public GeminiStubServer(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 512);
+        server.createContext("/v1beta/models/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public GeminiStubServer latencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+        return this;
+    }
+
+    // xác suất mỗi request bị trả 503
+    public GeminiStubServer failureRate(double failureRate) {
+        this.failureRate = failureRate;
+        return this;
+    }
+
+    // n request tiếp theo chắc chắn bị trả 503
+    public GeminiStubServer failFirst(int n) {
+        this.failFirst.set(n);
+        return this;
+    }
+
+    public GeminiStubServer mode(Mode mode) {
+        this.mode = mode;
+        return this;
+    }
+
+    public GeminiStubServer replyText(String replyText) {
+        this.replyText = replyText;
+        return this;
+    }
+
+    public int requestCount() {
+        return requests.get();
+    }
+
+    public String lastRequestBody() {
+        return lastBody.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.incrementAndGet();
+            lastBody.set(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            if (latencyMs > 0) {
+                Thread.sleep(latencyMs);
+            }
+            if (failFirst.getAndUpdate(n -> Math.max(0, n - 1)) > 0
+                    || ThreadLocalRandom.current().nextDouble() < failureRate) {
+                send(exchange, 503, "application/json", error(503, "The model is overloaded. Please try again later."));
+                return;
+            }
+            if (exchange.getRequestURI().getPath().endsWith(":streamGenerateContent")) {
+                StringBuilder sse = new StringBuilder();
+                for (String chunk : chunks()) {
+                    sse.append("data: ").append(chunk).append("\n\n");
+                }
+                send(exchange, 200, "text/event-stream", sse.toString());
+            } else {
+                send(exchange, 200, "application/json", response(replyText, finishReason()));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private List<String> chunks() {
+        if (mode != Mode.TEXT) {
+            return List.of(response(replyText, finishReason()));
+        }
+        // tách đôi câu trả lời để client phải ghép chunk
+        int mid = replyText.length() / 2;
+        return List.of(response(replyText.substring(0, mid), null), response(replyText.substring(mid), "STOP"));
+    }
+
+    private String finishReason() {
+        return switch (mode) {
+            case BLOCKED -> "SAFETY";
+            case MAX_TOKENS -> "MAX_TOKENS";
+            default -> "STOP";
+        };
+    }
+
+    private String response(String text, String finishReason) {
+        if (mode == Mode.ERROR_JSON) {
+            return error(500, "Internal error encountered.");
+        }
+        ObjectNode root = MAPPER.createObjectNode();
+        ArrayNode candidates = root.putArray("candidates");
+        if (mode == Mode.NO_CANDIDATES) {
+            root.putObject("promptFeedback").put("blockReason", "OTHER");
+            return root.toString();
+        }
+        ObjectNode candidate = candidates.addObject();
+        ObjectNode content = candidate.putObject("content");
+        content.put("role", "model");
+        ArrayNode parts = content.putArray("parts");
+        if (mode == Mode.TEXT) {
+            parts.addObject().put("text", text);
+        }
+        if (finishReason != null) {
+            candidate.put("finishReason", finishReason);
+        }
+        return root.toString();
+    }
+
+    private static String error(int code, String message) {
+        ObjectNode root = MAPPER.createObjectNode();
+        root.putObject("error").put("code", code).put("message", message).put("status", "UNAVAILABLE");
+        return root.toString();
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8089;
+        GeminiStubServer stub = new GeminiStubServer(port)
+                .latencyMs(Long.getLong("stub.latencyMs", 800))
+                .failureRate(Double.parseDouble(System.getProperty("stub.failureRate", "0.02")));
+        System.out.println("Gemini stub listening on " + stub.baseUrl() + " (set GEMINI_BASE_URL to this)");
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AppConfig;
+import com.example.ohms.configuration.PrincipalCacheConfig;
+import com.example.ohms.security.JwtTokenService;
+import com.example.ohms.security.PrincipalCache;
+import com.example.ohms.security.TokenAuthenticationConverter;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.crypto.MACVerifier;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.Jwts;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark chi phí xác thực mỗi request có token HS256 (token đăng nhập thường).
+ * before*: chuỗi cũ - TokenAuthenticationFilter thử parse bằng jjwt/HS512 (luôn lỗi chữ ký) rồi NimbusJwtDecoder
+ * decode lại; introspect dựng MACVerifier mới mỗi lần.
+ * after*: JwtTokenService verify một lần với verifier dựng sẵn.
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtAuthBenchmark {
+
+    private static final String SIGNAL_KEY = "eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9";
+    private static final String LEGACY_SECRET = Base64.getEncoder().encodeToString("x".repeat(64).getBytes());
+
+    private String token;
+    private JwtDecoder nimbusDecoder;
+    private JwtAuthenticationConverter scopeConverter;
+    private JwtTokenService jwtTokenService;
+    private TokenAuthenticationConverter tokenAuthenticationConverter;
+
+    @Setup
+    public void setUp() {
+        AppConfig appConfig = new AppConfig();
+        appConfig.setTokenSecret(LEGACY_SECRET);
+        jwtTokenService = new JwtTokenService(appConfig);
+        tokenAuthenticationConverter = new TokenAuthenticationConverter(
+                new PrincipalCache(new PrincipalCacheConfig(), new SimpleMeterRegistry()), null);
+
+        token = jwtTokenService.sign(new JWTClaimsSet.Builder()
+                .subject("U001")
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plus(30, ChronoUnit.DAYS)))
+                .claim("scope", "ROLE_PATIENT BOOK_APPOINTMENT")
+                .claim("userId", "U001")
+                .build());
+
+        nimbusDecoder = NimbusJwtDecoder.withSecretKey(new SecretKeySpec(SIGNAL_KEY.getBytes(), "HmacSHA256"))
+                .macAlgorithm(MacAlgorithm.HS256)
+                .build();
+        JwtGrantedAuthoritiesConverter authorities = new JwtGrantedAuthoritiesConverter();
+        authorities.setAuthorityPrefix("");
+        scopeConverter = new JwtAuthenticationConverter();
+        scopeConverter.setJwtGrantedAuthoritiesConverter(authorities);
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken beforeRequest() {
+        try {
+            Jwts.parser().setSigningKey(LEGACY_SECRET).parseClaimsJws(token);
+        } catch (JwtException | IllegalArgumentException e) {
+            // token HS256 luôn trượt ở filter cũ
+        }
+        Jwt jwt = nimbusDecoder.decode(token);
+        return scopeConverter.convert(jwt);
+    }
+
+    @Benchmark
+    public AbstractAuthenticationToken afterRequest() {
+        return tokenAuthenticationConverter.convert(jwtTokenService.decode(token));
+    }
+
+    @Benchmark
+    public boolean beforeIntrospect() throws Exception {
+        JWSVerifier verifier = new MACVerifier(SIGNAL_KEY.getBytes());
+        SignedJWT signedJWT = SignedJWT.parse(token);
+        Date expiryTime = signedJWT.getJWTClaimsSet().getExpirationTime();
+        return signedJWT.verify(verifier) && expiryTime.after(new Date());
+    }
+
+    @Benchmark
+    public boolean afterIntrospect() {
+        return jwtTokenService.isValid(token);
+    }
+}
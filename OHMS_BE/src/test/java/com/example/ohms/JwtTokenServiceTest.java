@@ -0,0 +1,187 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AppConfig;
+import com.example.ohms.security.JwtTokenService;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test Suite for JwtTokenService
+ *
+ * Test Coverage:
+ * 1. HS256 - token ký bởi sign() decode ra Jwt với claims đúng kiểu
+ * 2. legacy HS512 - token kiểu cũ (HS512, secret base64) verify bằng cùng service
+ * 3. rejection - sai chữ ký, hết hạn, thuật toán lạ, token hỏng
+ */
+@DisplayName("JwtTokenService Test Suite")
+class JwtTokenServiceTest {
+
+    // 64 byte sau khi decode, đủ cho HS512
+    private static final String LEGACY_SECRET = Base64.getEncoder().encodeToString("x".repeat(64).getBytes());
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    private AppConfig appConfig;
+    private JwtTokenService service;
+
+    @BeforeEach
+    void setUp() {
+        appConfig = new AppConfig();
+        appConfig.setTokenSecret(LEGACY_SECRET);
+        appConfig.setTokenExpirationMsec(3_600_000);
+        service = new JwtTokenService(appConfig, Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private JWTClaimsSet claims(Instant expiresAt) {
+        return new JWTClaimsSet.Builder()
+                .subject("U001")
+                .issueTime(Date.from(expiresAt.minus(1, ChronoUnit.HOURS)))
+                .expirationTime(Date.from(expiresAt))
+                .claim("scope", "ROLE_PATIENT")
+                .claim("userId", "U001")
+                .build();
+    }
+
+    // ==================== 1. HS256 TESTS ====================
+
+    @Nested
+    @DisplayName("HS256 Tests")
+    class Hs256Tests {
+
+        @Test
+        @DisplayName("Should decode a token it signed into a Spring Jwt")
+        void shouldRoundTrip() {
+            // Given
+            String token = service.sign(claims(NOW.plus(1, ChronoUnit.DAYS)));
+
+            // When
+            Jwt jwt = service.decode(token);
+
+            // Then
+            assertEquals("U001", jwt.getSubject());
+            assertEquals("ROLE_PATIENT", jwt.getClaimAsString("scope"));
+            assertEquals(NOW.plus(1, ChronoUnit.DAYS), jwt.getExpiresAt());
+            assertEquals("HS256", jwt.getHeaders().get("alg"));
+            assertTrue(service.isValid(token));
+        }
+
+        @Test
+        @DisplayName("Should accept tokens from the previous NimbusJwtDecoder key")
+        void shouldAcceptTokensSignedWithSignalKey() throws Exception {
+            // Given
+            SignedJWT signed = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), claims(NOW.plusSeconds(60)));
+            signed.sign(new MACSigner("eyJhbGciOiJIUzI1NiIsInR5cCI6IkpXVCJ9".getBytes()));
+
+            // When & Then
+            assertEquals("U001", service.decode(signed.serialize()).getSubject());
+        }
+    }
+
+    // ==================== 2. LEGACY HS512 TESTS ====================
+
+    @Nested
+    @DisplayName("Legacy HS512 Tests")
+    class LegacyTests {
+
+        // giống token jjwt cũ: HS512, secret là chuỗi base64, chỉ có sub/iat/exp
+        private String legacyToken() throws Exception {
+            Date now = new Date();
+            SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS512), new JWTClaimsSet.Builder()
+                    .subject("U002")
+                    .issueTime(now)
+                    .expirationTime(new Date(now.getTime() + appConfig.getTokenExpirationMsec()))
+                    .build());
+            jwt.sign(new MACSigner(Base64.getDecoder().decode(LEGACY_SECRET)));
+            return jwt.serialize();
+        }
+
+        @Test
+        @DisplayName("Should verify legacy HS512 tokens signed with the base64 token secret")
+        void shouldDecodeLegacyToken() throws Exception {
+            // Given
+            JwtTokenService realClock = new JwtTokenService(appConfig);
+
+            // When
+            Jwt jwt = realClock.decode(legacyToken());
+
+            // Then
+            assertEquals("U002", jwt.getSubject());
+            assertFalse(jwt.hasClaim("scope"));
+            assertEquals("HS512", jwt.getHeaders().get("alg"));
+        }
+
+        @Test
+        @DisplayName("Should reject HS512 tokens when no legacy secret is configured")
+        void shouldRejectLegacyTokenWithoutSecret() throws Exception {
+            // Given
+            String token = legacyToken();
+            AppConfig withoutSecret = new AppConfig();
+
+            // When & Then
+            assertThrows(BadJwtException.class, () -> new JwtTokenService(withoutSecret).decode(token));
+        }
+    }
+
+    // ==================== 3. REJECTION TESTS ====================
+
+    @Nested
+    @DisplayName("Rejection Tests")
+    class RejectionTests {
+
+        @Test
+        @DisplayName("Should reject a token with a tampered payload")
+        void shouldRejectTamperedToken() {
+            // Given
+            String[] parts = service.sign(claims(NOW.plusSeconds(600))).split("\\.");
+            String forged = Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString("{\"sub\":\"ADMIN\",\"scope\":\"ROLE_ADMIN\"}".getBytes());
+
+            // When & Then
+            assertThrows(BadJwtException.class, () -> service.decode(parts[0] + "." + forged + "." + parts[2]));
+        }
+
+        @Test
+        @DisplayName("Should reject an expired token beyond the clock skew")
+        void shouldRejectExpiredToken() {
+            // Given
+            String withinSkew = service.sign(claims(NOW.minusSeconds(30)));
+            String expired = service.sign(claims(NOW.minusSeconds(120)));
+
+            // When & Then
+            assertDoesNotThrow(() -> service.decode(withinSkew));
+            assertThrows(BadJwtException.class, () -> service.decode(expired));
+            assertFalse(service.isValid(expired));
+        }
+
+        @Test
+        @DisplayName("Should reject unsupported algorithms and malformed tokens")
+        void shouldRejectUnsupportedAndMalformed() throws Exception {
+            // Given
+            SignedJWT hs384 = new SignedJWT(new JWSHeader(JWSAlgorithm.HS384), claims(NOW.plusSeconds(60)));
+            hs384.sign(new MACSigner("k".repeat(64).getBytes()));
+
+            // When & Then
+            assertThrows(BadJwtException.class, () -> service.decode(hs384.serialize()));
+            assertThrows(BadJwtException.class, () -> service.decode("not-a-token"));
+            assertFalse(service.isValid("not-a-token"));
+        }
+    }
+}
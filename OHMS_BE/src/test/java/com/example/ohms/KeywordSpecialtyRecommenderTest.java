@@ -0,0 +1,122 @@
+package com.example.ohms;
+
+import com.example.ohms.entity.MedicalExamination;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.repository.MedicleExaminatioRepository;
+import com.example.ohms.service.ai.AiContextSnapshot;
+import com.example.ohms.service.ai.AiContextSnapshotService;
+import com.example.ohms.service.ai.KeywordSpecialtyRecommender;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for KeywordSpecialtyRecommender
+ *
+ * Test Coverage:
+ * 1. recommend() - triệu chứng phổ biến, có/không dấu, không khớp
+ * 2. index - thêm tên dịch vụ khám, build lại khi snapshot đổi version
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("KeywordSpecialtyRecommender Test Suite")
+class KeywordSpecialtyRecommenderTest {
+
+    @Mock
+    private MedicleExaminatioRepository medicalExaminationRepository;
+
+    @Mock
+    private AiContextSnapshotService snapshotService;
+
+    private KeywordSpecialtyRecommender recommender;
+
+    @BeforeEach
+    void setUp() {
+        recommender = new KeywordSpecialtyRecommender(medicalExaminationRepository, snapshotService);
+        lenient().when(snapshotService.current()).thenReturn(snapshot(1));
+        lenient().when(medicalExaminationRepository.findAll()).thenReturn(List.of());
+    }
+
+    private static AiContextSnapshot snapshot(long version) {
+        return new AiContextSnapshot(version, 0, LocalDate.now(), "", "", "");
+    }
+
+    private MedicalSpecialty recommend(String message) {
+        return recommender.recommend(message).map(KeywordSpecialtyRecommender.Match::specialty).orElse(null);
+    }
+
+    // ==================== 1. RECOMMEND TESTS ====================
+
+    @Nested
+    @DisplayName("recommend() Tests")
+    class RecommendTests {
+
+        @Test
+        @DisplayName("Gợi ý đúng chuyên khoa cho triệu chứng phổ biến")
+        void shouldRecommendSpecialty_ForCommonSymptoms() {
+            assertEquals(MedicalSpecialty.DENTISTRY, recommend("Tôi bị đau răng mấy hôm nay"));
+            assertEquals(MedicalSpecialty.DERMATOLOGY, recommend("da tôi bị mẩn ngứa khắp người"));
+        }
+
+        @Test
+        @DisplayName("Khớp cả khi gõ không dấu")
+        void shouldMatch_WithoutDiacritics() {
+            assertEquals(MedicalSpecialty.DENTISTRY, recommend("toi bi dau rang"));
+        }
+
+        @Test
+        @DisplayName("Không khớp gì thì trả empty")
+        void shouldReturnEmpty_WhenNoMatch() {
+            assertTrue(recommender.recommend("xyz qwerty").isEmpty());
+            assertTrue(recommender.recommend("   ").isEmpty());
+        }
+    }
+
+    // ==================== 2. INDEX TESTS ====================
+
+    @Nested
+    @DisplayName("Index Tests")
+    class IndexTests {
+
+        @Test
+        @DisplayName("Tên dịch vụ khám được gộp về chuyên khoa gốc")
+        void shouldUseExaminationNames() {
+            // Given
+            MedicalExamination exam = new MedicalExamination();
+            exam.setName("Cạo vôi zirconia");
+            exam.setMedicalSpecialty(MedicalSpecialty.DENTISTRY_KHAM);
+            when(medicalExaminationRepository.findAll()).thenReturn(List.of(exam));
+
+            // When
+            Optional<KeywordSpecialtyRecommender.Match> match = recommender.recommend("zirconia");
+
+            // Then
+            assertTrue(match.isPresent());
+            assertEquals(MedicalSpecialty.DENTISTRY, match.get().specialty());
+        }
+
+        @Test
+        @DisplayName("Chỉ build lại index khi snapshot đổi version")
+        void shouldRebuild_OnlyWhenVersionChanges() {
+            // When
+            recommender.recommend("đau răng");
+            recommender.recommend("mẩn ngứa");
+            when(snapshotService.current()).thenReturn(snapshot(2));
+            recommender.recommend("đau răng");
+
+            // Then
+            verify(medicalExaminationRepository, times(2)).findAll();
+        }
+    }
+}
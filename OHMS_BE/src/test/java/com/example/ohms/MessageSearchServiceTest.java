@@ -0,0 +1,183 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.ChatSearchConfig;
+import com.example.ohms.dto.response.MessageSearchResponse;
+import com.example.ohms.entity.Conversation;
+import com.example.ohms.entity.RoomChat;
+import com.example.ohms.entity.User;
+import com.example.ohms.repository.ConversationRepository;
+import com.example.ohms.repository.RoomChatRepository;
+import com.example.ohms.service.MessageSearchService;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for MessageSearchService
+ *
+ * Test Coverage:
+ * 1. search() - diacritic folding, ranking, room scoping, snippets
+ * 2. index()/delete()/deleteRoom() - incremental updates
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("MessageSearchService Test Suite")
+class MessageSearchServiceTest {
+
+    @Mock
+    private ConversationRepository conversationRepository;
+
+    @Mock
+    private RoomChatRepository roomChatRepository;
+
+    private MessageSearchService messageSearchService;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        ChatSearchConfig config = new ChatSearchConfig();
+        config.setIndexDirectory(""); // index trên RAM
+        messageSearchService = new MessageSearchService(conversationRepository, roomChatRepository, config);
+
+        index("M1", "RC001", "Bệnh nhân bị dị ứng với penicillin");
+        index("M2", "RC001", "Hẹn tái khám thứ hai");
+        index("M3", "RC002", "Tôi bị dị ứng hải sản");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        messageSearchService.close();
+    }
+
+    private void index(String id, String roomId, String message) {
+        RoomChat roomChat = new RoomChat();
+        roomChat.setId(roomId);
+        Conversation conversation = new Conversation();
+        conversation.setId(id);
+        conversation.setRoomChat(roomChat);
+        conversation.setUser(User.builder().id("U001").build());
+        conversation.setMessage(message);
+        conversation.setCreatedAt(LocalDateTime.of(2025, 10, 1, 9, 30));
+        messageSearchService.index(conversation);
+    }
+
+    // ==================== 1. SEARCH TESTS ====================
+
+    @Nested
+    @DisplayName("1. search()")
+    class SearchTests {
+
+        @Test
+        @DisplayName("Should match without diacritics and highlight snippet")
+        void shouldMatch_WithoutDiacritics() {
+            // Given
+            when(roomChatRepository.findRoomIdsByUserId("U001")).thenReturn(List.of("RC001"));
+
+            // When
+            List<MessageSearchResponse> results = messageSearchService.search("U001", "di ung", 20);
+
+            // Then
+            assertEquals(1, results.size());
+            MessageSearchResponse hit = results.get(0);
+            assertEquals("M1", hit.getMessageId());
+            assertEquals("RC001", hit.getRoomId());
+            assertEquals(LocalDateTime.of(2025, 10, 1, 9, 30), hit.getCreatedAt());
+            assertTrue(hit.getSnippet().contains("<b>dị ứng</b>"));
+        }
+
+        @Test
+        @DisplayName("Should escape message HTML in snippet and keep only highlight tags")
+        void shouldEscapeSnippet() {
+            // Given
+            when(roomChatRepository.findRoomIdsByUserId("U001")).thenReturn(List.of("RC001"));
+            index("M4", "RC001", "<img src=x onerror=alert(1)> bị sốt cao");
+
+            // When
+            List<MessageSearchResponse> results = messageSearchService.search("U001", "sot cao", 20);
+
+            // Then
+            assertEquals(1, results.size());
+            String snippet = results.get(0).getSnippet();
+            assertFalse(snippet.contains("<img"));
+            assertTrue(snippet.contains("&lt;img"));
+            assertTrue(snippet.contains("<b>sốt cao</b>"));
+        }
+
+        @Test
+        @DisplayName("Should only return messages from caller's rooms")
+        void shouldScopeByRoomMembership() {
+            // Given
+            when(roomChatRepository.findRoomIdsByUserId("U002")).thenReturn(List.of("RC002"));
+
+            // When
+            List<MessageSearchResponse> results = messageSearchService.search("U002", "dị ứng", 20);
+
+            // Then
+            assertEquals(List.of("M3"), results.stream().map(MessageSearchResponse::getMessageId).toList());
+        }
+
+        @Test
+        @DisplayName("Should return empty when caller has no room")
+        void shouldReturnEmpty_WhenNoRoom() {
+            // Given
+            when(roomChatRepository.findRoomIdsByUserId("U003")).thenReturn(List.of());
+
+            // When & Then
+            assertTrue(messageSearchService.search("U003", "dị ứng", 20).isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should return empty for blank query")
+        void shouldReturnEmpty_WhenBlankQuery() {
+            // Given
+            when(roomChatRepository.findRoomIdsByUserId("U001")).thenReturn(List.of("RC001"));
+
+            // When & Then
+            assertTrue(messageSearchService.search("U001", "   ", 20).isEmpty());
+        }
+    }
+
+    // ==================== 2. INDEX UPDATE TESTS ====================
+
+    @Nested
+    @DisplayName("2. index updates")
+    class IndexUpdateTests {
+
+        @Test
+        @DisplayName("Should reflect updated message text")
+        void shouldReindex_WhenMessageUpdated() {
+            // Given
+            when(roomChatRepository.findRoomIdsByUserId("U001")).thenReturn(List.of("RC001"));
+            index("M2", "RC001", "Hẹn tái khám thứ ba");
+
+            // When & Then
+            assertTrue(messageSearchService.search("U001", "thu hai", 20).isEmpty());
+            assertEquals(1, messageSearchService.search("U001", "thu ba", 20).size());
+        }
+
+        @Test
+        @DisplayName("Should drop deleted message and deleted room")
+        void shouldRemove_WhenDeleted() {
+            // Given
+            when(roomChatRepository.findRoomIdsByUserId("U001")).thenReturn(List.of("RC001", "RC002"));
+
+            // When
+            messageSearchService.delete("M1");
+            messageSearchService.deleteRoom("RC002");
+
+            // Then
+            assertTrue(messageSearchService.search("U001", "dị ứng", 20).isEmpty());
+        }
+    }
+}
@@ -11,6 +11,9 @@ import com.example.ohms.mapper.ConversationMapper;
 import com.example.ohms.repository.ConversationRepository;
 import com.example.ohms.repository.RoomChatRepository;
 import com.example.ohms.repository.UserRepository;
+import com.example.ohms.service.ChatArchiveService;
+import com.example.ohms.service.ChatMediaService;
+import com.example.ohms.service.MessageSearchService;
 import com.example.ohms.service.MessageService;
 
 import org.junit.jupiter.api.BeforeEach;
@@ -18,6 +21,7 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -56,6 +60,15 @@ class MessageServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private ChatMediaService chatMediaService;
+
+    @Mock
+    private MessageSearchService messageSearchService;
+
+    @Mock
+    private ChatArchiveService chatArchiveService;
+
     @InjectMocks
     private MessageService messageService;
 
@@ -219,6 +232,32 @@ class MessageServiceTest {
             assertNotNull(responses);
             assertTrue(responses.isEmpty());
         }
+
+        @Test
+        @DisplayName("Should merge archived messages before hot ones and skip duplicates")
+        void shouldMergeArchivedMessages_InCreatedOrder() {
+            // Given
+            Conversation archived = new Conversation();
+            archived.setId("C000");
+            archived.setMessage("Old message");
+            archived.setCreatedAt(conversation.getCreatedAt().minusDays(200));
+            Conversation duplicate = new Conversation();
+            duplicate.setId("C001");
+            duplicate.setCreatedAt(conversation.getCreatedAt());
+            ConversationResponse archivedResponse = ConversationResponse.builder().id("C000").build();
+            when(conversationRepository.findByRoomChatIdWithUserAndRoles("RC001"))
+                    .thenReturn(List.of(conversation));
+            when(chatArchiveService.readRoom("RC001")).thenReturn(List.of(duplicate, archived));
+            when(conversationMapper.toConversationResponse(archived)).thenReturn(archivedResponse);
+            when(conversationMapper.toConversationResponse(conversation)).thenReturn(conversationResponse);
+
+            // When
+            List<ConversationResponse> responses = messageService.getMessage("RC001");
+
+            // Then
+            assertEquals(List.of("C000", "C001"), responses.stream().map(ConversationResponse::getId).toList());
+            verify(conversationMapper, never()).toConversationResponse(duplicate);
+        }
     }
 
     // ==================== 3. DELETE MESSAGE TESTS ====================
@@ -388,5 +427,20 @@ class MessageServiceTest {
             // Then
             verify(conversationRepository).deleteByRoomChatId("RC001");
         }
+
+        @Test
+        @DisplayName("Should bulk delete image rows before messages and drop the archive")
+        void shouldBulkDeleteImagesFirst_AndDropArchive() {
+            // When
+            messageService.deleteMessageByRoomId("RC001");
+
+            // Then
+            InOrder inOrder = inOrder(conversationRepository);
+            inOrder.verify(conversationRepository).deleteImageUrlsByRoomChatId("RC001");
+            inOrder.verify(conversationRepository).deleteByRoomChatId("RC001");
+            verify(conversationRepository, never()).findByRoomChatId(anyString());
+            verify(messageSearchService).deleteRoom("RC001");
+            verify(chatArchiveService).deleteRoom("RC001");
+        }
     }
 }
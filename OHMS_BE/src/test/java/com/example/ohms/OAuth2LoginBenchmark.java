@@ -0,0 +1,206 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.OAuth2LoginConfig;
+import com.example.ohms.entity.Role;
+import com.example.ohms.enums.AuthProvider;
+import com.example.ohms.repository.RoleRepository;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.repository.projection.OAuth2LoginView;
+import com.example.ohms.security.AuthorityRegistry;
+import com.example.ohms.security.UserPrincipal;
+import com.example.ohms.security.oauth2.CachingOidcIdTokenDecoderFactory;
+import com.example.ohms.security.oauth2.CustomOidcUserService;
+import com.example.ohms.security.oauth2.OAuth2UserProvisioner;
+import com.example.ohms.security.oauth2.user.OAuth2UserInfoFactory;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jose.util.JSONObjectUtils;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.security.oauth2.client.oidc.authentication.OidcIdTokenDecoderFactory;
+import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserRequest;
+import org.springframework.security.oauth2.client.oidc.userinfo.OidcUserService;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.OAuth2AccessToken;
+import org.springframework.security.oauth2.core.oidc.OidcIdToken;
+import org.springframework.security.oauth2.core.oidc.user.OidcUser;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.mockito.Mockito.*;
+
+/**
+ * JMH benchmark đăng nhập Google (phần sau khi đổi code lấy token): verify ID token, lấy thông tin user, tạo/cập nhật user.
+ * Google được thay bằng HttpServer local phục vụ JWKS và userinfo, providerLatencyMs giả lập round trip tới Google.
+ * DB là mock (user cũ đã tồn tại), số query được kiểm trong OAuth2UserProvisionerTest.
+ * before*: OidcIdTokenDecoderFactory + OidcUserService mặc định của Spring (gọi userinfo mỗi lần đăng nhập).
+ * after*: CachingOidcIdTokenDecoderFactory + CustomOidcUserService (dùng claim trong ID token).
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.include=OAuth2LoginBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OAuth2LoginBenchmark {
+
+    @Param({"0", "20"})
+    private int providerLatencyMs;
+
+    private HttpServer provider;
+    private final AtomicInteger userInfoCalls = new AtomicInteger();
+    private final AtomicInteger jwksCalls = new AtomicInteger();
+    private ClientRegistration registration;
+    private String idToken;
+    private OAuth2AccessToken accessToken;
+    private JwtDecoder defaultDecoder;
+    private JwtDecoder cachingDecoder;
+    private OidcUserService defaultUserService;
+    private OAuth2UserProvisioner provisioner;
+    private CustomOidcUserService customUserService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        RSAKey key = new RSAKeyGenerator(2048).keyID("bench-key").generate();
+        Map<String, Object> profile = Map.of("sub", "g-123", "email", "john@gmail.com", "name", "John Doe",
+                "picture", "http://pic/john.jpg");
+        // tắt Nagle, nếu không mỗi response của HttpServer JDK bị trễ ~40ms vì delayed ACK trên loopback
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        provider = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        provider.createContext("/jwks", exchange -> respond(exchange, jwksCalls,
+                new JWKSet(key.toPublicJWK()).toString()));
+        provider.createContext("/userinfo", exchange -> respond(exchange, userInfoCalls,
+                JSONObjectUtils.toJSONString(profile)));
+        provider.setExecutor(Executors.newCachedThreadPool());
+        provider.start();
+        String base = "http://127.0.0.1:" + provider.getAddress().getPort();
+
+        registration = ClientRegistration.withRegistrationId("google")
+                .clientId("ohms-client")
+                .clientSecret("secret")
+                .authorizationGrantType(AuthorizationGrantType.AUTHORIZATION_CODE)
+                .redirectUri("{baseUrl}/oauth2/callback/{registrationId}")
+                .scope("openid", "email", "profile")
+                .authorizationUri(base + "/auth")
+                .tokenUri(base + "/token")
+                .jwkSetUri(base + "/jwks")
+                .userInfoUri(base + "/userinfo")
+                .userNameAttributeName("sub")
+                .build();
+
+        JWTClaimsSet.Builder claims = new JWTClaimsSet.Builder()
+                .issuer(base)
+                .subject("g-123")
+                .audience("ohms-client")
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plusSeconds(3600)));
+        profile.forEach(claims::claim);
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID())
+                .type(JOSEObjectType.JWT).build(), claims.build());
+        jwt.sign(new RSASSASigner(key));
+        idToken = jwt.serialize();
+        accessToken = new OAuth2AccessToken(OAuth2AccessToken.TokenType.BEARER, "access-token", Instant.now(),
+                Instant.now().plusSeconds(3600), Set.of("openid", "email", "profile"));
+
+        // user Google đã đăng ký, mock không ghi lại lời gọi để heap không phình theo số lần đăng nhập
+        Map<String, Object> row = new HashMap<>();
+        row.put("id", "U001");
+        row.put("username", "John Doe");
+        row.put("imageUrl", "http://pic/john.jpg");
+        row.put("provider", AuthProvider.google);
+        row.put("enabled", true);
+        row.put("role", "PATIENT");
+        UserRepository userRepository = mock(UserRepository.class, withSettings().stubOnly());
+        when(userRepository.findOAuth2LoginRows("john@gmail.com")).thenReturn(List.of(
+                new SpelAwareProxyProjectionFactory().createProjection(OAuth2LoginView.class, row)));
+        AuthorityRegistry authorityRegistry = new AuthorityRegistry(mock(RoleRepository.class));
+        authorityRegistry.load(List.of(Role.builder().name("PATIENT").build()));
+        provisioner = new OAuth2UserProvisioner(userRepository, mock(RoleRepository.class), authorityRegistry,
+                mock(ApplicationEventPublisher.class));
+
+        defaultDecoder = new OidcIdTokenDecoderFactory().createDecoder(registration);
+        defaultUserService = new OidcUserService();
+        cachingDecoder = new CachingOidcIdTokenDecoderFactory().createDecoder(registration);
+        customUserService = new CustomOidcUserService(provisioner, new OAuth2LoginConfig());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%nprovider calls: jwks=%d userinfo=%d%n", jwksCalls.get(), userInfoCalls.get());
+        provider.stop(0);
+    }
+
+    private void respond(HttpExchange exchange, AtomicInteger counter, String body) throws IOException {
+        counter.incrementAndGet();
+        if (providerLatencyMs > 0) {
+            try {
+                Thread.sleep(providerLatencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private OidcUserRequest request(JwtDecoder decoder) {
+        Jwt jwt = decoder.decode(idToken);
+        return new OidcUserRequest(registration, accessToken,
+                new OidcIdToken(jwt.getTokenValue(), jwt.getIssuedAt(), jwt.getExpiresAt(), jwt.getClaims()));
+    }
+
+    @Benchmark
+    public UserPrincipal beforeSpringDefaults() {
+        OidcUser oidcUser = defaultUserService.loadUser(request(defaultDecoder));
+        return provisioner.provision("google", OAuth2UserInfoFactory.getOAuth2UserInfo("google", oidcUser.getAttributes()));
+    }
+
+    @Benchmark
+    public OidcUser afterIdTokenClaims() {
+        return customUserService.loadUser(request(cachingDecoder));
+    }
+}
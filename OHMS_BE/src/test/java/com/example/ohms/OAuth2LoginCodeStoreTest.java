@@ -0,0 +1,104 @@
+package com.example.ohms;
+
+import com.example.ohms.dto.response.AuthenticationResponse;
+import com.example.ohms.security.oauth2.OAuth2LoginCodeStore;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test Suite for OAuth2LoginCodeStore
+ *
+ * Test Coverage:
+ * 1. issue()/redeem() - mã dùng một lần, hết hạn, mã lạ
+ */
+@DisplayName("OAuth2LoginCodeStore Test Suite")
+class OAuth2LoginCodeStoreTest {
+
+    private final MutableClock clock = new MutableClock();
+    private OAuth2LoginCodeStore store;
+    private AuthenticationResponse tokens;
+
+    // clock chỉnh được để test hạn của mã
+    private static class MutableClock extends Clock {
+        private Instant now = Instant.parse("2025-11-10T00:00:00Z");
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        store = new OAuth2LoginCodeStore(clock);
+        tokens = AuthenticationResponse.builder()
+                .authenticated(true)
+                .token("access")
+                .refreshToken("refresh")
+                .expiresIn(900)
+                .build();
+    }
+
+    // ==================== 1. ISSUE / REDEEM TESTS ====================
+
+    @Nested
+    @DisplayName("1. issue()/redeem()")
+    class IssueRedeemTests {
+
+        @Test
+        @DisplayName("Should hand out the tokens exactly once per code")
+        void shouldRedeemOnce() {
+            // Given
+            String code = store.issue(tokens);
+
+            // When / Then
+            assertFalse(code.contains("refresh"));
+            assertEquals(Optional.of(tokens), store.redeem(code));
+            assertTrue(store.redeem(code).isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should reject an expired code")
+        void shouldReject_WhenExpired() {
+            // Given
+            String code = store.issue(tokens);
+
+            // When
+            clock.now = clock.now.plus(Duration.ofMinutes(2));
+
+            // Then
+            assertTrue(store.redeem(code).isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should reject unknown and missing codes")
+        void shouldReject_UnknownCode() {
+            store.issue(tokens);
+
+            assertTrue(store.redeem("guess").isEmpty());
+            assertTrue(store.redeem(null).isEmpty());
+        }
+    }
+}
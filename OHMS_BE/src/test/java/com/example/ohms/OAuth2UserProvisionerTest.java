@@ -0,0 +1,221 @@
+package com.example.ohms;
+
+import com.example.ohms.entity.Permission;
+import com.example.ohms.entity.Role;
+import com.example.ohms.entity.User;
+import com.example.ohms.enums.AuthProvider;
+import com.example.ohms.exception.Oauthexception.OAuth2AuthenticationProcessingException;
+import com.example.ohms.repository.RoleRepository;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.repository.projection.OAuth2LoginView;
+import com.example.ohms.security.AuthorityRegistry;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.security.UserPrincipal;
+import com.example.ohms.security.oauth2.OAuth2UserProvisioner;
+import com.example.ohms.security.oauth2.user.GoogleOAuth2UserInfo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for OAuth2UserProvisioner
+ *
+ * Test Coverage:
+ * 1. returning user - 1 query, chỉ ghi khi tên/provider đổi, quyền từ AuthorityRegistry
+ * 2. new user - đăng ký với role PATIENT
+ * 3. rejected logins - provider khác, tài khoản bị khóa, thiếu email
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("OAuth2UserProvisioner Test Suite")
+class OAuth2UserProvisionerTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private RoleRepository roleRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private OAuth2UserProvisioner provisioner;
+    private final SpelAwareProxyProjectionFactory projections = new SpelAwareProxyProjectionFactory();
+    private final Role patientRole = Role.builder().name("PATIENT").build();
+
+    @BeforeEach
+    void setUp() {
+        Permission viewAppointment = new Permission();
+        viewAppointment.setName("VIEW_APPOINTMENT");
+        AuthorityRegistry authorityRegistry = new AuthorityRegistry(roleRepository);
+        authorityRegistry.load(List.of(Role.builder().name("PATIENT").permissions(Set.of(viewAppointment)).build()));
+        provisioner = new OAuth2UserProvisioner(userRepository, roleRepository, authorityRegistry, eventPublisher);
+    }
+
+    private OAuth2LoginView row(String id, String username, String imageUrl, AuthProvider provider, Boolean enabled,
+                                String role) {
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("id", id);
+        columns.put("username", username);
+        columns.put("imageUrl", imageUrl);
+        columns.put("provider", provider);
+        columns.put("enabled", enabled);
+        columns.put("role", role);
+        return projections.createProjection(OAuth2LoginView.class, columns);
+    }
+
+    private GoogleOAuth2UserInfo google(String email, String name, String picture) {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("sub", "g-123");
+        attributes.put("email", email);
+        attributes.put("name", name);
+        attributes.put("picture", picture);
+        return new GoogleOAuth2UserInfo(attributes);
+    }
+
+    private List<String> authorities(UserPrincipal principal) {
+        return principal.getAuthorities().stream().map(GrantedAuthority::getAuthority).toList();
+    }
+
+    // ==================== 1. RETURNING USER TESTS ====================
+
+    @Nested
+    @DisplayName("1. returning user")
+    class ReturningUserTests {
+
+        @Test
+        @DisplayName("Should log in with a single read when nothing changed")
+        void shouldUseSingleQuery() {
+            // Given
+            when(userRepository.findOAuth2LoginRows("john@gmail.com")).thenReturn(List.of(
+                    row("U001", "John Doe", "http://pic/john.jpg", AuthProvider.GOOGLE, true, "PATIENT"),
+                    row("U001", "John Doe", "http://pic/john.jpg", AuthProvider.GOOGLE, true, "DOCTOR")));
+
+            // When
+            UserPrincipal principal = provisioner.provision("google", google("john@gmail.com", "John Doe", "http://pic/john.jpg"));
+
+            // Then
+            assertEquals("U001", principal.getId());
+            assertEquals(List.of("ROLE_PATIENT", "VIEW_APPOINTMENT", "ROLE_DOCTOR"), authorities(principal));
+            verify(userRepository).findOAuth2LoginRows("john@gmail.com");
+            verifyNoMoreInteractions(userRepository);
+            verifyNoInteractions(roleRepository, eventPublisher);
+        }
+
+        @Test
+        @DisplayName("Should update the name and claim a null provider but keep an uploaded avatar")
+        void shouldUpdateChangedProfile() {
+            // Given
+            when(userRepository.findOAuth2LoginRows("john@gmail.com")).thenReturn(List.of(
+                    row("U001", "John", "http://cdn/avatars/own.jpg", null, null, "PATIENT")));
+
+            // When
+            provisioner.provision("google", google("john@gmail.com", "John Doe", "http://pic/john.jpg"));
+
+            // Then
+            verify(userRepository).updateOAuth2Profile("U001", "John Doe", "http://cdn/avatars/own.jpg", AuthProvider.google);
+            verify(eventPublisher).publishEvent(PrincipalChangedEvent.user("U001"));
+        }
+
+        @Test
+        @DisplayName("Should give PATIENT to an existing user without roles")
+        void shouldAssignDefaultRole() {
+            // Given
+            User stored = User.builder().id("U001").email("john@gmail.com").build();
+            when(userRepository.findOAuth2LoginRows("john@gmail.com")).thenReturn(List.of(
+                    row("U001", "John Doe", "http://pic/john.jpg", AuthProvider.GOOGLE, true, null)));
+            when(userRepository.findById("U001")).thenReturn(Optional.of(stored));
+            when(roleRepository.findByName("PATIENT")).thenReturn(Optional.of(patientRole));
+
+            // When
+            UserPrincipal principal = provisioner.provision("google", google("john@gmail.com", "John Doe", "http://pic/john.jpg"));
+
+            // Then
+            assertEquals(Set.of(patientRole), stored.getRoles());
+            verify(userRepository).save(stored);
+            assertEquals(List.of("ROLE_PATIENT", "VIEW_APPOINTMENT"), authorities(principal));
+        }
+    }
+
+    // ==================== 2. NEW USER TESTS ====================
+
+    @Nested
+    @DisplayName("2. new user")
+    class NewUserTests {
+
+        @Test
+        @DisplayName("Should register a new Google user as PATIENT")
+        void shouldRegisterNewUser() {
+            // Given
+            when(userRepository.findOAuth2LoginRows("new@gmail.com")).thenReturn(List.of());
+            when(roleRepository.findByName("PATIENT")).thenReturn(Optional.of(patientRole));
+            when(userRepository.save(any(User.class))).thenAnswer(invocation -> {
+                User user = invocation.getArgument(0);
+                user.setId("U100");
+                return user;
+            });
+
+            // When
+            UserPrincipal principal = provisioner.provision("google", google("new@gmail.com", "New User", "http://pic/new.jpg"));
+
+            // Then
+            ArgumentCaptor<User> captor = ArgumentCaptor.forClass(User.class);
+            verify(userRepository).save(captor.capture());
+            assertEquals(AuthProvider.google, captor.getValue().getProvider());
+            assertEquals("g-123", captor.getValue().getProviderId());
+            assertEquals("http://pic/new.jpg", captor.getValue().getImageUrl());
+            assertEquals(Set.of(patientRole), captor.getValue().getRoles());
+            assertEquals("U100", principal.getId());
+            assertEquals(List.of("ROLE_PATIENT", "VIEW_APPOINTMENT"), authorities(principal));
+            verify(eventPublisher).publishEvent(PrincipalChangedEvent.user("U100"));
+        }
+    }
+
+    // ==================== 3. REJECTED LOGIN TESTS ====================
+
+    @Nested
+    @DisplayName("3. rejected logins")
+    class RejectedLoginTests {
+
+        @Test
+        @DisplayName("Should reject a user registered with another provider")
+        void shouldRejectOtherProvider() {
+            when(userRepository.findOAuth2LoginRows("john@gmail.com")).thenReturn(List.of(
+                    row("U001", "John Doe", null, AuthProvider.LOCAL, true, "PATIENT")));
+
+            assertThrows(OAuth2AuthenticationProcessingException.class,
+                    () -> provisioner.provision("google", google("john@gmail.com", "John Doe", null)));
+            verify(userRepository, never()).updateOAuth2Profile(any(), any(), any(), any());
+        }
+
+        @Test
+        @DisplayName("Should reject disabled accounts and missing emails")
+        void shouldRejectDisabledAndMissingEmail() {
+            when(userRepository.findOAuth2LoginRows("john@gmail.com")).thenReturn(List.of(
+                    row("U001", "John Doe", null, AuthProvider.GOOGLE, false, "PATIENT")));
+
+            assertThrows(OAuth2AuthenticationProcessingException.class,
+                    () -> provisioner.provision("google", google("john@gmail.com", "John Doe", null)));
+            assertThrows(OAuth2AuthenticationProcessingException.class,
+                    () -> provisioner.provision("google", google(null, "John Doe", null)));
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.PasswordHashConfig;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.exception.ErrorCode;
+import com.example.ohms.security.BoundedPasswordEncoder;
+import com.example.ohms.security.LoginThrottle;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test Suite for BoundedPasswordEncoder and LoginThrottle
+ *
+ * Test Coverage:
+ * 1. BoundedPasswordEncoder - hash trên pool riêng, từ chối khi hàng đợi đầy, nhận ra hash cần nâng cost
+ * 2. LoginThrottle - giới hạn theo IP, theo email (không phân biệt hoa thường)
+ */
+@DisplayName("Password Hashing Test Suite")
+class PasswordHashingTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PasswordHashConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new PasswordHashConfig();
+        config.setStrength(4);
+    }
+
+    // ==================== 1. BOUNDED PASSWORD ENCODER TESTS ====================
+
+    @Nested
+    @DisplayName("BoundedPasswordEncoder Tests")
+    class EncoderTests {
+
+        private BoundedPasswordEncoder encoder;
+
+        @AfterEach
+        void tearDown() {
+            if (encoder != null) {
+                encoder.close();
+            }
+        }
+
+        @Test
+        @DisplayName("Should hash on a dedicated thread and record the latency")
+        void shouldHashOnPool() {
+            // Given
+            encoder = new BoundedPasswordEncoder(config, meterRegistry);
+
+            // When
+            String hash = encoder.encode("secret");
+
+            // Then
+            assertTrue(encoder.matches("secret", hash));
+            assertFalse(encoder.matches("other", hash));
+            assertEquals(1, meterRegistry.timer("security.password.hash", "op", "encode").count());
+            assertEquals(2, meterRegistry.timer("security.password.hash", "op", "matches").count());
+        }
+
+        @Test
+        @DisplayName("Should reject immediately when the workers and queue are full")
+        void shouldRejectWhenSaturated() throws Exception {
+            // Given
+            config.setWorkers(1);
+            config.setQueueCapacity(1);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            PasswordEncoder blocking = new BCryptPasswordEncoder(4) {
+                @Override
+                public String encode(CharSequence rawPassword) {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return super.encode(rawPassword);
+                }
+            };
+            encoder = new BoundedPasswordEncoder(config, meterRegistry, blocking);
+            CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> encoder.encode("a"));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> encoder.encode("b"));
+            while (meterRegistry.get("security.password.hash.queue").gauge().value() < 1) {
+                Thread.onSpinWait();
+            }
+
+            // When
+            AppException exception = assertThrows(AppException.class, () -> encoder.encode("c"));
+
+            // Then
+            assertEquals(ErrorCode.AUTH_BUSY, exception.getErrorCode());
+            assertEquals(1.0, meterRegistry.counter("security.password.hash.rejected").count());
+            release.countDown();
+            assertNotNull(running.get(5, TimeUnit.SECONDS));
+            assertNotNull(queued.get(5, TimeUnit.SECONDS));
+        }
+
+        @Test
+        @DisplayName("Should flag hashes made with a lower work factor for upgrade")
+        void shouldDetectUpgrade() {
+            // Given
+            encoder = new BoundedPasswordEncoder(config, meterRegistry);
+            String weak = new BCryptPasswordEncoder(4).encode("secret");
+            config.setStrength(5);
+            BoundedPasswordEncoder stronger = new BoundedPasswordEncoder(config, meterRegistry);
+
+            // When & Then
+            assertFalse(encoder.upgradeEncoding(weak));
+            assertTrue(stronger.upgradeEncoding(weak));
+            stronger.close();
+        }
+    }
+
+    // ==================== 2. LOGIN THROTTLE TESTS ====================
+
+    @Nested
+    @DisplayName("LoginThrottle Tests")
+    class ThrottleTests {
+
+        private LoginThrottle throttle;
+
+        @BeforeEach
+        void setUpThrottle() {
+            config.setLoginIpCapacity(3);
+            config.setLoginIpRefillPerSecond(0.001);
+            config.setLoginAccountCapacity(2);
+            config.setLoginAccountRefillPerSecond(0.001);
+            throttle = new LoginThrottle(config, meterRegistry);
+        }
+
+        @Test
+        @DisplayName("Should throttle one IP spraying many accounts")
+        void shouldThrottleByIp() {
+            // Given
+            throttle.acquire("10.0.0.1", "a@ohms.vn");
+            throttle.acquire("10.0.0.1", "b@ohms.vn");
+            throttle.acquire("10.0.0.1", "c@ohms.vn");
+
+            // When
+            AppException exception = assertThrows(AppException.class, () -> throttle.acquire("10.0.0.1", "d@ohms.vn"));
+
+            // Then
+            assertEquals(ErrorCode.TOO_MANY_LOGIN_ATTEMPTS, exception.getErrorCode());
+            assertDoesNotThrow(() -> throttle.acquire("10.0.0.2", "d@ohms.vn"));
+            assertEquals(1.0, meterRegistry.counter("security.login.rejected", "reason", "ip").count());
+        }
+
+        @Test
+        @DisplayName("Should throttle one account attacked from many IPs regardless of case")
+        void shouldThrottleByAccount() {
+            // Given
+            throttle.acquire("10.0.0.1", "victim@ohms.vn");
+            throttle.acquire("10.0.0.2", "Victim@OHMS.vn");
+
+            // When & Then
+            assertThrows(AppException.class, () -> throttle.acquire("10.0.0.3", "VICTIM@ohms.vn"));
+            assertEquals(1.0, meterRegistry.counter("security.login.rejected", "reason", "account").count());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.PatientSearchConfig;
+import com.example.ohms.dto.response.PatientMatch;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.repository.projection.PatientIndexView;
+import com.example.ohms.service.PatientSearchService;
+import com.example.ohms.utils.VietnameseText;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * JMH benchmark typeahead tìm bệnh nhân với 1 triệu bệnh nhân sinh ngẫu nhiên (tên tiếng Việt, sđt, số định danh).
+ * before*: lọc tuần tự cả danh sách như khi load hết user rồi filter trong Java.
+ * after*: PatientSearchService (PrefixIndex) trả top 10.
+ *
+ * Chạy: mvn -Pbenchmark test-compile exec:exec -Dbenchmark.include=PatientSearchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class PatientSearchBenchmark {
+
+    private static final String[] FAMILY = {"Nguyễn", "Trần", "Lê", "Phạm", "Hoàng", "Huỳnh", "Phan", "Vũ", "Võ", "Đặng",
+            "Bùi", "Đỗ", "Hồ", "Ngô", "Dương", "Lý"};
+    private static final String[] MIDDLE = {"Văn", "Thị", "Hữu", "Đức", "Minh", "Thanh", "Ngọc", "Quốc", "Gia", "Hoài"};
+    private static final String[] GIVEN = {"An", "Anh", "Bình", "Châu", "Cúc", "Dũng", "Giang", "Hà", "Hải", "Hạnh", "Hiếu",
+            "Hoa", "Hùng", "Hương", "Khánh", "Lan", "Linh", "Long", "Mai", "Nam", "Nga", "Phúc", "Quân", "Sơn", "Tâm",
+            "Thảo", "Trang", "Trung", "Tuấn", "Vy", "Xuân", "Yến"};
+
+    @Param({"1000000"})
+    private int patients;
+
+    private PatientSearchService service;
+    private List<PatientMatch> all;
+    private String[] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        SpelAwareProxyProjectionFactory projections = new SpelAwareProxyProjectionFactory();
+        List<PatientIndexView> rows = new ArrayList<>(patients);
+        for (int i = 0; i < patients; i++) {
+            Map<String, Object> columns = new HashMap<>();
+            columns.put("id", "P" + i);
+            columns.put("username", FAMILY[random.nextInt(FAMILY.length)] + " " + MIDDLE[random.nextInt(MIDDLE.length)]
+                    + " " + GIVEN[random.nextInt(GIVEN.length)]);
+            columns.put("phone", 300_000_000 + random.nextInt(700_000_000));
+            columns.put("identification", String.format("0%011d", (long) (random.nextDouble() * 1e11)));
+            rows.add(projections.createProjection(PatientIndexView.class, columns));
+        }
+        UserRepository repository = mock(UserRepository.class);
+        when(repository.findPatientIndexRowsAfter(anyString(), anyCollection(), any(Pageable.class))).thenReturn(rows);
+        PatientSearchConfig config = new PatientSearchConfig();
+        config.setReindexBatchSize(patients + 1);
+        service = new PatientSearchService(repository, config);
+        service.reindex();
+        all = new ArrayList<>(patients);
+        for (PatientIndexView row : rows) {
+            all.add(PatientMatch.builder().id(row.getId()).username(row.getUsername())
+                    .phone("0" + row.getPhone()).identification(row.getIdentification()).build());
+        }
+        queries = new String[] {"0912", "09123", "0387", "nguyen", "nguyen van", "van an", "thi hoa", "huong",
+                "0791", "tran thi thao", "Lê Minh", "+84 98"};
+    }
+
+    private String nextQuery() {
+        next = (next + 1) % queries.length;
+        return queries[next];
+    }
+
+    @Benchmark
+    public List<PatientMatch> beforeLinearScan() {
+        String query = nextQuery();
+        String folded = VietnameseText.fold(query);
+        List<PatientMatch> matches = new ArrayList<>(10);
+        for (PatientMatch patient : all) {
+            if (patient.getPhone().startsWith(query) || VietnameseText.fold(patient.getUsername()).contains(folded)) {
+                matches.add(patient);
+                if (matches.size() == 10) {
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    @Benchmark
+    public List<PatientMatch> afterPrefixIndex() {
+        return service.search(nextQuery(), 10);
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.PatientSearchConfig;
+import com.example.ohms.dto.response.PatientMatch;
+import com.example.ohms.entity.Role;
+import com.example.ohms.entity.User;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.repository.projection.PatientIndexView;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.service.PatientSearchService;
+import com.example.ohms.utils.PhoneNumbers;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for PatientSearchService
+ *
+ * Test Coverage:
+ * 1. PhoneNumbers - chuẩn hóa số điện thoại và tiền tố đang gõ
+ * 2. search - tiền tố phone, tên bỏ dấu (từ bất kỳ), số định danh, giới hạn kết quả
+ * 3. incremental updates - tạo/sửa/mất role bệnh nhân, trộn vào mảng (compact)
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PatientSearchService Test Suite")
+class PatientSearchServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    private PatientSearchService service;
+    private final SpelAwareProxyProjectionFactory projections = new SpelAwareProxyProjectionFactory();
+    private final Role offlinePatient = Role.builder().name("OFFLINE_PATIENT").build();
+
+    @BeforeEach
+    void setUp() {
+        service = new PatientSearchService(userRepository, new PatientSearchConfig());
+    }
+
+    private PatientIndexView row(String id, String username, Integer phone, String identification) {
+        Map<String, Object> columns = new HashMap<>();
+        columns.put("id", id);
+        columns.put("username", username);
+        columns.put("phone", phone);
+        columns.put("identification", identification);
+        return projections.createProjection(PatientIndexView.class, columns);
+    }
+
+    private void load(PatientIndexView... rows) {
+        when(userRepository.findPatientIndexRowsAfter(eq(""), anyCollection(), any(Pageable.class))).thenReturn(List.of(rows));
+        service.reindex();
+    }
+
+    private List<String> ids(List<PatientMatch> matches) {
+        return matches.stream().map(PatientMatch::getId).toList();
+    }
+
+    // ==================== 1. PHONE NUMBER TESTS ====================
+
+    @Nested
+    @DisplayName("PhoneNumbers Tests")
+    class PhoneNumberTests {
+
+        @Test
+        @DisplayName("Should restore the leading zero and strip country code and separators")
+        void shouldNormalize() {
+            assertEquals("0912345678", PhoneNumbers.normalize(912345678));
+            assertEquals("0912345678", PhoneNumbers.normalize("+84 912 345 678"));
+            assertEquals("0912345678", PhoneNumbers.normalize("84912345678"));
+            assertEquals("0912", PhoneNumbers.normalize("0912"));
+            assertEquals("0912", PhoneNumbers.normalize("912"));
+            assertEquals("0843", PhoneNumbers.normalize("843"));
+            assertEquals("0912", PhoneNumbers.normalize("091.2"));
+            assertNull(PhoneNumbers.normalize("nguyen"));
+            assertNull(PhoneNumbers.normalize(" "));
+        }
+    }
+
+    // ==================== 2. SEARCH TESTS ====================
+
+    @Nested
+    @DisplayName("Search Tests")
+    class SearchTests {
+
+        @BeforeEach
+        void loadPatients() {
+            load(row("P1", "Nguyễn Văn An", 912345678, "001099000123"),
+                    row("P2", "Trần Thị Ánh", 912999888, null),
+                    row("P3", "Lê Văn Bình", 387654321, "079188000456"));
+        }
+
+        @Test
+        @DisplayName("Should match phone prefixes however the number is typed")
+        void shouldMatchPhone() {
+            assertEquals(List.of("P1", "P2"), ids(service.search("0912", 10)));
+            assertEquals(List.of("P1", "P2"), ids(service.search("912", 10)));
+            assertEquals(List.of("P1"), ids(service.search("+84 912 345", 10)));
+            assertEquals(List.of("P3"), ids(service.search("038", 10)));
+            assertEquals("0912345678", service.search("09123", 1).get(0).getPhone());
+        }
+
+        @Test
+        @DisplayName("Should match names without diacritics from any word")
+        void shouldMatchFoldedName() {
+            assertEquals(List.of("P1"), ids(service.search("nguyen v", 10)));
+            assertEquals(List.of("P1"), ids(service.search("NGUYỄN  VĂN", 10)));
+            assertEquals(List.of("P1", "P3"), ids(service.search("van", 10)));
+            assertEquals(List.of("P1", "P2"), ids(service.search("an", 10)));
+            assertEquals(List.of("P3"), ids(service.search("binh", 10)));
+            assertTrue(service.search("xyz", 10).isEmpty());
+            assertTrue(service.search("  ", 10).isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should match identification prefixes and cap the result count")
+        void shouldMatchIdentificationAndLimit() {
+            assertEquals(List.of("P3"), ids(service.search("0791", 10)));
+            assertEquals(1, service.search("van", 1).size());
+            assertEquals(3, service.size());
+        }
+    }
+
+    // ==================== 3. INCREMENTAL UPDATE TESTS ====================
+
+    @Nested
+    @DisplayName("Incremental Update Tests")
+    class UpdateTests {
+
+        @BeforeEach
+        void loadPatients() {
+            load(row("P1", "Nguyễn Văn An", 912345678, null),
+                    row("P2", "Trần Thị Ánh", 912999888, null));
+        }
+
+        @Test
+        @DisplayName("Should find a new offline patient immediately and keep it after compaction")
+        void shouldIndexNewPatient() {
+            // Given
+            User created = User.builder().id("P3").username("Nguyễn Thị Cúc").phone(912000111)
+                    .roles(Set.of(offlinePatient)).build();
+            when(userRepository.findByIdWithRoles("P3")).thenReturn(Optional.of(created));
+
+            // When
+            service.onPrincipalChanged(PrincipalChangedEvent.user("P3"));
+
+            // Then
+            assertEquals(List.of("P3", "P1", "P2"), ids(service.search("0912", 10)));
+            service.compact();
+            assertEquals(List.of("P3", "P1", "P2"), ids(service.search("0912", 10)));
+            assertEquals(List.of("P3", "P1"), ids(service.search("nguyen", 10)));
+        }
+
+        @Test
+        @DisplayName("Should drop old keys when a patient is renamed or changes phone")
+        void shouldReplaceOldKeys() {
+            // Given
+            User renamed = User.builder().id("P1").username("Phạm Văn An").phone(387000111)
+                    .roles(Set.of(offlinePatient)).build();
+            when(userRepository.findByIdWithRoles("P1")).thenReturn(Optional.of(renamed));
+
+            // When
+            service.onPrincipalChanged(PrincipalChangedEvent.user("P1"));
+
+            // Then
+            assertTrue(service.search("nguyen", 10).isEmpty());
+            assertEquals(List.of("P2"), ids(service.search("0912", 10)));
+            assertEquals(List.of("P1"), ids(service.search("pham", 10)));
+            service.compact();
+            assertTrue(service.search("nguyen", 10).isEmpty());
+            assertEquals(List.of("P1"), ids(service.search("0387", 10)));
+        }
+
+        @Test
+        @DisplayName("Should remove users who are deleted or no longer patients and ignore role-wide events")
+        void shouldRemoveNonPatients() {
+            // Given
+            User promoted = User.builder().id("P2").username("Trần Thị Ánh").phone(912999888)
+                    .roles(Set.of(Role.builder().name("DOCTOR").build())).build();
+            when(userRepository.findByIdWithRoles("P2")).thenReturn(Optional.of(promoted));
+            when(userRepository.findByIdWithRoles("P1")).thenReturn(Optional.empty());
+
+            // When
+            service.onPrincipalChanged(PrincipalChangedEvent.user("P2"));
+            service.onPrincipalChanged(PrincipalChangedEvent.user("P1"));
+            service.onPrincipalChanged(PrincipalChangedEvent.all());
+
+            // Then
+            assertTrue(service.search("0912", 10).isEmpty());
+            service.compact();
+            assertTrue(service.search("0912", 10).isEmpty());
+            assertEquals(0, service.size());
+            verify(userRepository, times(2)).findByIdWithRoles(anyString());
+        }
+    }
+}
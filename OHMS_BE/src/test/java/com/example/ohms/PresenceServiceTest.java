@@ -0,0 +1,219 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.ChatPresenceConfig;
+import com.example.ohms.dto.response.PresenceResponse;
+import com.example.ohms.repository.RoomChatRepository;
+import com.example.ohms.service.PresenceService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for PresenceService
+ *
+ * Test Coverage:
+ * 1. connect/subscribe/disconnect - online/offline events
+ * 2. typing() - coalescing, membership
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PresenceService Test Suite")
+class PresenceServiceTest {
+
+    @Mock
+    private SimpMessagingTemplate simpMessagingTemplate;
+
+    @Mock
+    private RoomChatRepository roomChatRepository;
+
+    private PresenceService presenceService;
+
+    @BeforeEach
+    void setUp() {
+        ChatPresenceConfig config = new ChatPresenceConfig();
+        config.setTypingMaxPerSecond(2);
+        presenceService = new PresenceService(simpMessagingTemplate, config, roomChatRepository);
+    }
+
+    private void online(String userId, String roomId) {
+        when(roomChatRepository.existsByIdAndUser_Id(roomId, userId)).thenReturn(true);
+        presenceService.connect("S-" + userId, userId);
+        presenceService.subscribe("S-" + userId, "sub-" + roomId, roomId);
+        clearInvocations(simpMessagingTemplate);
+    }
+
+    private List<Boolean> publishedTyping() {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(simpMessagingTemplate, atLeast(0)).convertAndSend(eq("/topic/room/RC001/presence"), captor.capture());
+        return captor.getAllValues().stream().map(event -> ((PresenceResponse) event).isTyping()).toList();
+    }
+
+    private List<String> publishedTypes() {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(simpMessagingTemplate, atLeast(0)).convertAndSend(eq("/topic/room/RC001/presence"), captor.capture());
+        return captor.getAllValues().stream().map(event -> ((PresenceResponse) event).getType()).toList();
+    }
+
+    // ==================== 1. ONLINE / OFFLINE TESTS ====================
+
+    @Nested
+    @DisplayName("1. online/offline")
+    class OnlineOfflineTests {
+
+        @Test
+        @DisplayName("Should publish ONLINE once per user even with multiple sessions")
+        void shouldPublishOnlineOnce_WhenMultipleSessions() {
+            // Given
+            when(roomChatRepository.existsByIdAndUser_Id("RC001", "U001")).thenReturn(true);
+            presenceService.connect("S1", "U001");
+            presenceService.connect("S2", "U001");
+
+            // When
+            presenceService.subscribe("S1", "sub-1", "RC001");
+            presenceService.subscribe("S2", "sub-1", "RC001");
+
+            // Then
+            assertEquals(List.of("ONLINE"), publishedTypes());
+            assertEquals(List.of("U001"), presenceService.onlineUsers("RC001"));
+            assertTrue(presenceService.isOnline("U001"));
+        }
+
+        @Test
+        @DisplayName("Should publish OFFLINE only when last session leaves")
+        void shouldPublishOffline_WhenLastSessionDisconnects() {
+            // Given
+            when(roomChatRepository.existsByIdAndUser_Id("RC001", "U001")).thenReturn(true);
+            presenceService.connect("S1", "U001");
+            presenceService.connect("S2", "U001");
+            presenceService.subscribe("S1", "sub-1", "RC001");
+            presenceService.subscribe("S2", "sub-1", "RC001");
+
+            // When
+            presenceService.disconnect("S1");
+            assertEquals(List.of("ONLINE"), publishedTypes());
+            presenceService.unsubscribe("S2", "sub-1");
+
+            // Then
+            assertEquals(List.of("ONLINE", "OFFLINE"), publishedTypes());
+            assertTrue(presenceService.onlineUsers("RC001").isEmpty());
+            presenceService.disconnect("S2");
+            assertFalse(presenceService.isOnline("U001"));
+        }
+
+        @Test
+        @DisplayName("Should ignore subscriptions from anonymous sessions")
+        void shouldIgnore_WhenSessionUnknown() {
+            // When
+            presenceService.subscribe("S9", "sub-1", "RC001");
+            presenceService.disconnect("S9");
+
+            // Then
+            verifyNoInteractions(simpMessagingTemplate);
+        }
+
+        @Test
+        @DisplayName("Should not announce users who are not members of the room")
+        void shouldIgnore_WhenNotMember() {
+            // Given
+            when(roomChatRepository.existsByIdAndUser_Id("RC001", "U009")).thenReturn(false);
+            presenceService.connect("S1", "U009");
+
+            // When
+            presenceService.subscribe("S1", "sub-1", "RC001");
+
+            // Then
+            verifyNoInteractions(simpMessagingTemplate);
+            assertTrue(presenceService.onlineUsers("RC001").isEmpty());
+            assertFalse(presenceService.typing("RC001", "U009", true));
+        }
+    }
+
+    // ==================== 2. TYPING TESTS ====================
+
+    @Nested
+    @DisplayName("2. typing()")
+    class TypingTests {
+
+        @Test
+        @DisplayName("Should drop repeated typing events inside the rate window")
+        void shouldCoalesceTypingEvents() {
+            // Given
+            online("U001", "RC001");
+
+            // When
+            boolean first = presenceService.typing("RC001", "U001", true);
+            boolean second = presenceService.typing("RC001", "U001", true);
+            boolean third = presenceService.typing("RC001", "U001", true);
+
+            // Then
+            assertTrue(first);
+            assertFalse(second);
+            assertFalse(third);
+            verify(simpMessagingTemplate, times(1)).convertAndSend(eq("/topic/room/RC001/presence"), any(Object.class));
+        }
+
+        @Test
+        @DisplayName("Should rate limit state flips and deliver the last state after the window")
+        void shouldCoalesceStateFlips() throws InterruptedException {
+            // Given
+            online("U001", "RC001");
+
+            // When - client gửi true/false xen kẽ
+            assertTrue(presenceService.typing("RC001", "U001", true));
+            for (int i = 0; i < 10; i++) {
+                assertFalse(presenceService.typing("RC001", "U001", i % 2 != 0));
+            }
+            presenceService.typing("RC001", "U001", false);
+            presenceService.flushPendingTyping();
+            assertEquals(List.of(true), publishedTyping());
+            Thread.sleep(550);
+            presenceService.flushPendingTyping();
+
+            // Then - chỉ 1 event mỗi cửa sổ, dừng gõ vẫn được gửi
+            assertEquals(List.of(true, false), publishedTyping());
+        }
+
+        @Test
+        @DisplayName("Should not flush when the flip was reverted inside the window")
+        void shouldDropRevertedFlip() throws InterruptedException {
+            // Given
+            online("U001", "RC001");
+            presenceService.typing("RC001", "U001", true);
+
+            // When
+            presenceService.typing("RC001", "U001", false);
+            presenceService.typing("RC001", "U001", true);
+            Thread.sleep(550);
+            presenceService.flushPendingTyping();
+
+            // Then
+            assertEquals(List.of(true), publishedTyping());
+        }
+
+        @Test
+        @DisplayName("Should ignore typing from users not online in the room")
+        void shouldIgnore_WhenNotInRoom() {
+            assertFalse(presenceService.typing("RC001", "U001", true));
+            verifyNoInteractions(simpMessagingTemplate);
+        }
+
+        @Test
+        @DisplayName("Should ignore typing without user")
+        void shouldIgnore_WhenNoUser() {
+            assertFalse(presenceService.typing("RC001", null, true));
+            verifyNoInteractions(simpMessagingTemplate);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.PrincipalCacheConfig;
+import com.example.ohms.security.PrincipalCache;
+import com.example.ohms.security.PrincipalChangedEvent;
+import com.example.ohms.security.TokenAuthenticationConverter;
+import com.example.ohms.security.UserPrincipal;
+import com.example.ohms.service.UserService;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.authentication.DisabledException;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for PrincipalCache
+ *
+ * Test Coverage:
+ * 1. get() - cache hit, hết hạn theo TTL, tắt cache
+ * 2. invalidation - theo user, toàn bộ, load dở khi đang invalidate
+ * 3. TokenAuthenticationConverter - quyền từ scope, token cũ lấy principal từ cache
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PrincipalCache Test Suite")
+class PrincipalCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicInteger loads = new AtomicInteger();
+    private PrincipalCacheConfig config;
+    private PrincipalCache cache;
+
+    @BeforeEach
+    void setUp() {
+        config = new PrincipalCacheConfig();
+        config.setTtlSeconds(60);
+        cache = new PrincipalCache(config, meterRegistry, clock::get);
+    }
+
+    private UserPrincipal load(String userId) {
+        loads.incrementAndGet();
+        return new UserPrincipal(userId, userId + "@ohms.vn", "hash", List.of(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    // ==================== 1. GET TESTS ====================
+
+    @Nested
+    @DisplayName("Get Tests")
+    class GetTests {
+
+        @Test
+        @DisplayName("Should load once and serve later requests from cache")
+        void shouldReuseCachedPrincipal() {
+            // When
+            UserPrincipal first = cache.get("u1", PrincipalCacheTest.this::load);
+            UserPrincipal second = cache.get("u1", PrincipalCacheTest.this::load);
+
+            // Then
+            assertSame(first, second);
+            assertEquals(1, loads.get());
+            assertEquals(1.0, meterRegistry.counter("security.principal.cache", "result", "hit").count());
+            assertEquals(1.0, meterRegistry.counter("security.principal.cache", "result", "miss").count());
+        }
+
+        @Test
+        @DisplayName("Should reload after the TTL expires")
+        void shouldReloadAfterTtl() {
+            // Given
+            cache.get("u1", PrincipalCacheTest.this::load);
+
+            // When
+            clock.addAndGet(TimeUnit.SECONDS.toNanos(61));
+            cache.get("u1", PrincipalCacheTest.this::load);
+
+            // Then
+            assertEquals(2, loads.get());
+        }
+
+        @Test
+        @DisplayName("Should always load when the cache is disabled")
+        void shouldBypassWhenDisabled() {
+            // Given
+            config.setEnabled(false);
+
+            // When
+            cache.get("u1", PrincipalCacheTest.this::load);
+            cache.get("u1", PrincipalCacheTest.this::load);
+
+            // Then
+            assertEquals(2, loads.get());
+            assertEquals(0, cache.size());
+        }
+
+        @Test
+        @DisplayName("Should not grow past maxEntries")
+        void shouldRespectMaxEntries() {
+            // Given
+            config.setMaxEntries(2);
+
+            // When
+            cache.get("u1", PrincipalCacheTest.this::load);
+            cache.get("u2", PrincipalCacheTest.this::load);
+            cache.get("u3", PrincipalCacheTest.this::load);
+
+            // Then
+            assertEquals(2, cache.size());
+        }
+    }
+
+    // ==================== 2. INVALIDATION TESTS ====================
+
+    @Nested
+    @DisplayName("Invalidation Tests")
+    class InvalidationTests {
+
+        @Test
+        @DisplayName("Should drop only the changed user on a user event")
+        void shouldInvalidateSingleUser() {
+            // Given
+            cache.get("u1", PrincipalCacheTest.this::load);
+            cache.get("u2", PrincipalCacheTest.this::load);
+
+            // When
+            cache.onPrincipalChanged(PrincipalChangedEvent.user("u1"));
+
+            // Then
+            assertEquals(1, cache.size());
+            cache.get("u2", PrincipalCacheTest.this::load);
+            assertEquals(2, loads.get());
+        }
+
+        @Test
+        @DisplayName("Should drop every user on a role or permission event")
+        void shouldInvalidateAll() {
+            // Given
+            cache.get("u1", PrincipalCacheTest.this::load);
+            cache.get("u2", PrincipalCacheTest.this::load);
+
+            // When
+            cache.onPrincipalChanged(PrincipalChangedEvent.all());
+
+            // Then
+            assertEquals(0, cache.size());
+        }
+
+        @Test
+        @DisplayName("Should not cache a principal loaded while an invalidation happened")
+        void shouldDiscardLoadRacingInvalidation() {
+            // When
+            cache.get("u1", id -> {
+                UserPrincipal stale = load(id);
+                cache.invalidate(id);
+                return stale;
+            });
+
+            // Then
+            assertEquals(0, cache.size());
+        }
+    }
+
+    // ==================== 3. CONVERTER TESTS ====================
+
+    @Nested
+    @DisplayName("TokenAuthenticationConverter Tests")
+    class ConverterTests {
+
+        @Mock
+        private UserService userService;
+
+        private TokenAuthenticationConverter converter;
+
+        @BeforeEach
+        void setUpConverter() {
+            converter = new TokenAuthenticationConverter(cache, userService);
+        }
+
+        private Jwt jwt(Map<String, Object> claims) {
+            return Jwt.withTokenValue("token-1").header("alg", "HS512").claims(c -> c.putAll(claims)).build();
+        }
+
+        @Test
+        @DisplayName("Should take authorities from the scope claim without a user lookup")
+        void shouldUseScopeClaim() {
+            // When
+            AbstractAuthenticationToken authentication = converter.convert(
+                    jwt(Map.of("sub", "u1", "scope", "ROLE_DOCTOR READ_BILL")));
+
+            // Then
+            assertEquals("u1", authentication.getName());
+            assertInstanceOf(Jwt.class, authentication.getPrincipal());
+            assertEquals(Set.of("ROLE_DOCTOR", "READ_BILL"), AuthorityUtils.authorityListToSet(authentication.getAuthorities()));
+            verifyNoInteractions(userService);
+        }
+
+        @Test
+        @DisplayName("Should look up legacy tokens once and serve later requests from cache")
+        void shouldCacheLegacyPrincipal() {
+            // Given
+            when(userService.loadUserById("u1")).thenAnswer(inv -> load("u1"));
+
+            // When
+            AbstractAuthenticationToken first = converter.convert(jwt(Map.of("sub", "u1")));
+            AbstractAuthenticationToken second = converter.convert(jwt(Map.of("sub", "u1")));
+
+            // Then
+            assertEquals(Set.of("ROLE_USER"), AuthorityUtils.authorityListToSet(first.getAuthorities()));
+            assertEquals("u1", second.getName());
+            verify(userService, times(1)).loadUserById("u1");
+        }
+
+        @Test
+        @DisplayName("Should reject a disabled user with a legacy token")
+        void shouldRejectDisabledUser() {
+            // Given
+            when(userService.loadUserById("u1")).thenReturn(
+                    new UserPrincipal("u1", "u1@ohms.vn", "hash", false, List.of(new SimpleGrantedAuthority("ROLE_USER"))));
+
+            // When & Then
+            assertThrows(DisabledException.class, () -> converter.convert(jwt(Map.of("sub", "u1"))));
+        }
+    }
+}
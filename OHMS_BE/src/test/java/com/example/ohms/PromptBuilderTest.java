@@ -0,0 +1,185 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AiFastPathConfig;
+import com.example.ohms.configuration.PromptBudgetConfig;
+import com.example.ohms.dto.request.DiagnosisRequest;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.service.ai.AiContextSnapshot;
+import com.example.ohms.service.ai.AiContextSnapshotService;
+import com.example.ohms.service.ai.PromptBuilder;
+import com.example.ohms.service.ai.SpecialtyClassifier;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for PromptBuilder
+ *
+ * Test Coverage:
+ * 1. build() - đủ ngân sách thì giữ nguyên toàn bộ context
+ * 2. budget - ưu tiên chuyên khoa liên quan, cắt hội thoại cũ
+ * 3. metrics - số token ước lượng, số lần cắt
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PromptBuilder Test Suite")
+class PromptBuilderTest {
+
+    private static final String INSTRUCTIONS = "=== HƯỚNG DẪN ===\n";
+
+    @Mock
+    private AiContextSnapshotService snapshotService;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private PromptBudgetConfig config;
+    private PromptBuilder builder;
+
+    @BeforeEach
+    void setUp() {
+        config = new PromptBudgetConfig();
+        SpecialtyClassifier classifier = new SpecialtyClassifier(new AiFastPathConfig(), meterRegistry);
+        builder = new PromptBuilder(config, snapshotService, classifier, meterRegistry);
+
+        Map<MedicalSpecialty, String> services = new EnumMap<>(MedicalSpecialty.class);
+        services.put(MedicalSpecialty.CARDIOLOGY, block("DV tim mạch"));
+        services.put(MedicalSpecialty.DENTISTRY_KHAM, block("DV răng"));
+        services.put(MedicalSpecialty.DERMATOLOGY, block("DV da liễu"));
+        Map<MedicalSpecialty, String> doctors = new EnumMap<>(MedicalSpecialty.class);
+        doctors.put(MedicalSpecialty.CARDIOLOGY, block("BS tim mạch"));
+        doctors.put(MedicalSpecialty.DENTISTRY, block("BS răng"));
+        lenient().when(snapshotService.current()).thenReturn(new AiContextSnapshot(1, 0, LocalDate.now(),
+                "- Tim mạch (CARDIOLOGY)", String.join("\n", services.values()), String.join("\n", doctors.values()),
+                services, doctors));
+    }
+
+    // block ~100 token với charsPerToken mặc định
+    private static String block(String title) {
+        return title + "\n" + "x".repeat(300);
+    }
+
+    private static DiagnosisRequest request(String message, List<DiagnosisRequest.ChatTurn> history) {
+        DiagnosisRequest request = new DiagnosisRequest();
+        request.setMessage(message);
+        request.setHistory(history);
+        return request;
+    }
+
+    // ==================== 1. BUILD TESTS ====================
+
+    @Nested
+    @DisplayName("build() Tests")
+    class BuildTests {
+
+        @Test
+        @DisplayName("Đủ ngân sách thì giữ đầy đủ mọi section")
+        void shouldIncludeEverything_WhenWithinBudget() {
+            // Given
+            DiagnosisRequest request = request("tôi bị đau răng", List.of(new DiagnosisRequest.ChatTurn("user", "xin chào bác sĩ")));
+
+            // When
+            String prompt = builder.build(INSTRUCTIONS, request, "Ngày: 01/01/2025");
+
+            // Then
+            assertTrue(prompt.startsWith(INSTRUCTIONS));
+            assertTrue(prompt.contains("Người dùng: xin chào bác sĩ"));
+            assertTrue(prompt.contains("LỊCH SỬ KHÁM BỆNH CỦA NGƯỜI DÙNG:\nNgày: 01/01/2025"));
+            assertTrue(prompt.contains("DV tim mạch") && prompt.contains("DV răng") && prompt.contains("DV da liễu"));
+            assertTrue(prompt.contains("BS tim mạch") && prompt.contains("BS răng"));
+            assertFalse(prompt.contains("Đã lược bớt"));
+            assertTrue(prompt.endsWith("CÂU HỎI/YÊU CẦU HIỆN TẠI:\ntôi bị đau răng"));
+        }
+    }
+
+    // ==================== 2. BUDGET TESTS ====================
+
+    @Nested
+    @DisplayName("Budget Tests")
+    class BudgetTests {
+
+        @Test
+        @DisplayName("Thiếu ngân sách thì chỉ giữ dịch vụ/bác sĩ của chuyên khoa liên quan")
+        void shouldKeepRelevantSpecialty_WhenBudgetTight() {
+            // Given - đủ cho phần bắt buộc + khoảng 2 block
+            config.setTopSpecialties(1);
+            config.setMaxInputTokens(builder.estimate(INSTRUCTIONS) + 300);
+
+            // When
+            String prompt = builder.build(INSTRUCTIONS, request("tôi bị đau răng", null), "");
+
+            // Then
+            assertTrue(prompt.contains("DV răng"));
+            assertTrue(prompt.contains("BS răng"));
+            assertFalse(prompt.contains("DV tim mạch"));
+            assertFalse(prompt.contains("BS tim mạch"));
+            assertTrue(prompt.contains("Đã lược bớt 2 chuyên khoa"));
+            assertEquals(1, meterRegistry.get("ai.prompt.trimmed").tag("section", "services").counter().count());
+        }
+
+        @Test
+        @DisplayName("Cắt lượt hội thoại cũ trước, giữ lượt gần nhất")
+        void shouldDropOldestTurns_WhenHistoryTooLong() {
+            // Given
+            List<DiagnosisRequest.ChatTurn> history = new ArrayList<>();
+            for (int i = 1; i <= 5; i++) {
+                history.add(new DiagnosisRequest.ChatTurn(i % 2 == 0 ? "ai" : "user", "lượt " + i + " " + "y".repeat(200)));
+            }
+            config.setMaxInputTokens(builder.estimate(INSTRUCTIONS) + 700);
+
+            // When
+            String prompt = builder.build(INSTRUCTIONS, request("đau răng", history), "");
+
+            // Then
+            assertTrue(prompt.contains("Người dùng: lượt 5"));
+            assertFalse(prompt.contains("lượt 1 "));
+            assertEquals(1, meterRegistry.get("ai.prompt.trimmed").tag("section", "history").counter().count());
+        }
+
+        @Test
+        @DisplayName("Lịch sử khám không vừa thì bỏ")
+        void shouldDropMedicalHistory_WhenNoRoom() {
+            // Given
+            config.setMaxInputTokens(builder.estimate(INSTRUCTIONS) + 100);
+
+            // When
+            String prompt = builder.build(INSTRUCTIONS, request("đau răng", null), "z".repeat(3000));
+
+            // Then
+            assertFalse(prompt.contains("LỊCH SỬ KHÁM BỆNH"));
+            assertTrue(prompt.contains("CÂU HỎI/YÊU CẦU HIỆN TẠI:\nđau răng"));
+        }
+    }
+
+    // ==================== 3. METRICS TESTS ====================
+
+    @Nested
+    @DisplayName("Metrics Tests")
+    class MetricsTests {
+
+        @Test
+        @DisplayName("Ghi số token ước lượng cho mỗi prompt")
+        void shouldRecordPromptSize() {
+            // When
+            String prompt = builder.build(INSTRUCTIONS, request("đau răng", null), "");
+
+            // Then
+            var summary = meterRegistry.get("ai.prompt.tokens").summary();
+            assertEquals(1, summary.count());
+            assertEquals(builder.estimate(prompt), summary.totalAmount());
+            assertEquals(1, meterRegistry.get("ai.prompt.section.tokens").tag("section", "services").summary().count());
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AppConfig;
+import com.example.ohms.configuration.AuthTokenConfig;
+import com.example.ohms.dto.request.AuthenticationRequest;
+import com.example.ohms.dto.response.AuthenticationResponse;
+import com.example.ohms.entity.User;
+import com.example.ohms.exception.AppException;
+import com.example.ohms.repository.RevokedTokenRepository;
+import com.example.ohms.repository.UserRepository;
+import com.example.ohms.security.AuthorityRegistry;
+import com.example.ohms.security.JwtTokenService;
+import com.example.ohms.security.LoginThrottle;
+import com.example.ohms.security.TokenRevocationService;
+import com.example.ohms.service.AuthenticationService;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for AuthenticationService.refresh() chạy transaction thật trên H2
+ *
+ * Test Coverage:
+ * 1. reuse/expiry - thu hồi phiên và xóa refresh token vẫn được commit dù refresh() ném AppException
+ * 2. concurrent rotation - 2 refresh cùng token song song thì chỉ 1 request nhận được cặp token mới
+ */
+@DataJpaTest
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// không bọc test trong transaction của test, để refresh() tự mở và commit/rollback transaction của nó
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({AuthenticationService.class, TokenRevocationService.class, JwtTokenService.class, AuthorityRegistry.class,
+        AuthTokenConfig.class, AppConfig.class, RefreshTokenTransactionTest.MetricsConfig.class})
+@DisplayName("RefreshToken Transaction Test Suite")
+class RefreshTokenTransactionTest {
+
+    @TestConfiguration
+    static class MetricsConfig {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @MockitoBean
+    private PasswordEncoder passwordEncoder;
+
+    @MockitoBean
+    private LoginThrottle loginThrottle;
+
+    @Autowired
+    private AuthenticationService authenticationService;
+
+    @Autowired
+    private AuthTokenConfig authTokenConfig;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        revokedTokenRepository.deleteAll();
+        userRepository.deleteAll();
+        authTokenConfig.setRefreshTokenDays(30);
+        user = userRepository.save(User.builder()
+                .username("John Doe")
+                .email("john@test.com")
+                .password("$2a$10$encodedPassword")
+                .build());
+        when(passwordEncoder.matches(anyString(), anyString())).thenReturn(true);
+    }
+
+    private String login() {
+        return authenticationService.loginUser(new AuthenticationRequest("john@test.com", "password123"))
+                .getRefreshToken();
+    }
+
+    private String storedRefreshToken() {
+        return userRepository.findById(user.getId()).orElseThrow().getRefreshToken();
+    }
+
+    // ==================== 1. REUSE / EXPIRY TESTS ====================
+
+    @Nested
+    @DisplayName("1. reuse/expiry")
+    class ReuseTests {
+
+        @Test
+        @DisplayName("Should commit the session revocation even though refresh() throws on reuse")
+        void shouldCommitRevocation_WhenReuseDetected() {
+            // Given
+            String stolen = login();
+            String current = authenticationService.refresh(stolen).getRefreshToken();
+            assertNotNull(storedRefreshToken());
+
+            // When
+            assertThrows(AppException.class, () -> authenticationService.refresh(stolen));
+
+            // Then - đọc lại từ DB sau khi transaction kết thúc
+            assertNull(storedRefreshToken());
+            assertTrue(revokedTokenRepository.existsById("user:" + user.getId()));
+            assertThrows(AppException.class, () -> authenticationService.refresh(current));
+        }
+
+        @Test
+        @DisplayName("Should commit clearing an expired refresh token even though refresh() throws")
+        void shouldCommitClear_WhenExpired() {
+            // Given
+            authTokenConfig.setRefreshTokenDays(-1);
+            String expired = login();
+
+            // When
+            assertThrows(AppException.class, () -> authenticationService.refresh(expired));
+
+            // Then
+            assertNull(storedRefreshToken());
+            assertFalse(revokedTokenRepository.existsById("user:" + user.getId()));
+        }
+    }
+
+    // ==================== 2. CONCURRENT ROTATION TESTS ====================
+
+    @Nested
+    @DisplayName("2. concurrent rotation")
+    class ConcurrentRotationTests {
+
+        @Test
+        @DisplayName("Should let exactly one of two concurrent refreshes with the same token win")
+        void shouldRotateOnce_WhenRefreshedConcurrently() throws Exception {
+            // Given
+            String token = login();
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService pool = Executors.newFixedThreadPool(2);
+            Callable<AuthenticationResponse> refresh = () -> {
+                start.await();
+                return authenticationService.refresh(token);
+            };
+
+            // When
+            List<Future<AuthenticationResponse>> futures = List.of(pool.submit(refresh), pool.submit(refresh));
+            start.countDown();
+            List<AuthenticationResponse> winners = new ArrayList<>();
+            int rejected = 0;
+            for (Future<AuthenticationResponse> future : futures) {
+                try {
+                    winners.add(future.get(10, TimeUnit.SECONDS));
+                } catch (ExecutionException e) {
+                    assertInstanceOf(AppException.class, e.getCause());
+                    rejected++;
+                }
+            }
+            pool.shutdownNow();
+
+            // Then - token của request thắng là token duy nhất còn dùng được, không ai bị revoke
+            assertEquals(1, winners.size());
+            assertEquals(1, rejected);
+            assertFalse(revokedTokenRepository.existsById("user:" + user.getId()));
+            assertNotNull(authenticationService.refresh(winners.get(0).getRefreshToken()).getToken());
+        }
+    }
+}
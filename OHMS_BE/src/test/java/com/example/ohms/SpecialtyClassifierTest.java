@@ -0,0 +1,111 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AiFastPathConfig;
+import com.example.ohms.enums.MedicalSpecialty;
+import com.example.ohms.service.ai.SpecialtyClassifier;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test Suite for SpecialtyClassifier
+ *
+ * Test Coverage:
+ * 1. classify() - triệu chứng rõ ràng, không dấu, câu không liên quan
+ * 2. tryLocal() - ngưỡng confidence, tắt fast path, metric
+ */
+@DisplayName("SpecialtyClassifier Test Suite")
+class SpecialtyClassifierTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AiFastPathConfig config;
+    private SpecialtyClassifier classifier;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        config = new AiFastPathConfig();
+        classifier = new SpecialtyClassifier(config, meterRegistry);
+    }
+
+    private double routed(String route) {
+        return meterRegistry.get("ai.fastpath.requests").tag("route", route).counter().count();
+    }
+
+    // ==================== 1. CLASSIFY TESTS ====================
+
+    @Nested
+    @DisplayName("classify() Tests")
+    class ClassifyTests {
+
+        @Test
+        @DisplayName("Phân loại đúng triệu chứng rõ ràng với confidence cao")
+        void shouldClassifyClearSymptoms() {
+            assertPrediction("Tôi bị đau răng mấy hôm nay", MedicalSpecialty.DENTISTRY);
+            assertPrediction("da bị mẩn ngứa", MedicalSpecialty.DERMATOLOGY);
+            assertPrediction("ho kéo dài có đờm", MedicalSpecialty.PULMONOLOGY);
+            assertPrediction("đi tiểu buốt", MedicalSpecialty.NEPHROLOGY);
+        }
+
+        @Test
+        @DisplayName("Gõ không dấu vẫn phân loại được")
+        void shouldClassify_WithoutDiacritics() {
+            assertPrediction("toi bi dau rang", MedicalSpecialty.DENTISTRY);
+        }
+
+        @Test
+        @DisplayName("Câu không có n-gram quen thuộc thì không phân loại")
+        void shouldReturnEmpty_ForUnknownText() {
+            assertTrue(classifier.classify("xyz qwerty").isEmpty());
+            assertTrue(classifier.classify("").isEmpty());
+        }
+
+        private void assertPrediction(String message, MedicalSpecialty expected) {
+            Optional<SpecialtyClassifier.Prediction> prediction = classifier.classify(message);
+            assertTrue(prediction.isPresent(), message);
+            assertEquals(expected, prediction.get().specialty(), message);
+            assertTrue(prediction.get().confidence() >= config.getMinConfidence(), message);
+        }
+    }
+
+    // ==================== 2. TRY LOCAL TESTS ====================
+
+    @Nested
+    @DisplayName("tryLocal() Tests")
+    class TryLocalTests {
+
+        @Test
+        @DisplayName("Câu rõ ràng trả lời cục bộ, câu mơ hồ gửi LLM")
+        void shouldRouteByConfidence() {
+            // When
+            Optional<MedicalSpecialty> clear = classifier.tryLocal("đau răng");
+            Optional<MedicalSpecialty> vague = classifier.tryLocal("tôi thấy không khỏe lắm");
+
+            // Then
+            assertEquals(Optional.of(MedicalSpecialty.DENTISTRY), clear);
+            assertTrue(vague.isEmpty());
+            assertEquals(1, routed("local"));
+            assertEquals(1, routed("llm"));
+            assertEquals(2, meterRegistry.get("ai.fastpath.latency").timer().count());
+            assertEquals(2, meterRegistry.get("ai.fastpath.confidence").summary().count());
+        }
+
+        @Test
+        @DisplayName("Tắt fast path thì luôn gửi LLM")
+        void shouldSkip_WhenDisabled() {
+            // Given
+            config.setEnabled(false);
+
+            // When / Then
+            assertTrue(classifier.tryLocal("đau răng").isEmpty());
+            assertEquals(0, routed("local"));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.ChatRateLimitConfig;
+import com.example.ohms.security.StompRateLimitInterceptor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Test Suite for StompRateLimitInterceptor
+ *
+ * Test Coverage:
+ * 1. per-session limit
+ * 2. per-room limit
+ * 3. frames outside the limit (subscribe, disconnect), typing only per session
+ */
+@DisplayName("StompRateLimitInterceptor Test Suite")
+class StompRateLimitInterceptorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private StompRateLimitInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        ChatRateLimitConfig config = new ChatRateLimitConfig();
+        config.setSessionCapacity(2);
+        config.setSessionRefillPerSecond(0.001);
+        config.setRoomCapacity(3);
+        config.setRoomRefillPerSecond(0.001);
+        meterRegistry = new SimpleMeterRegistry();
+        interceptor = new StompRateLimitInterceptor(config, meterRegistry);
+    }
+
+    private Message<byte[]> frame(StompCommand command, String sessionId, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        accessor.setSessionId(sessionId);
+        accessor.setDestination(destination);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private double throttled(String scope) {
+        return meterRegistry.get("chat.stomp.frames.throttled").tag("scope", scope).counter().count();
+    }
+
+    // ==================== 1. SESSION LIMIT TESTS ====================
+
+    @Nested
+    @DisplayName("1. per-session limit")
+    class SessionLimitTests {
+
+        @Test
+        @DisplayName("Should drop frames once the session bucket is empty")
+        void shouldThrottle_WhenSessionExceedsLimit() {
+            // When
+            Message<?> first = interceptor.preSend(frame(StompCommand.SEND, "S1", "/app/chat/RC001"), null);
+            Message<?> second = interceptor.preSend(frame(StompCommand.SEND, "S1", "/app/chat/update/RC001/M1"), null);
+            Message<?> third = interceptor.preSend(frame(StompCommand.SEND, "S1", "/app/chat/RC001"), null);
+
+            // Then
+            assertNotNull(first);
+            assertNotNull(second);
+            assertNull(third);
+            assertEquals(1, throttled("session"));
+        }
+
+        @Test
+        @DisplayName("Should reset bucket when session disconnects")
+        void shouldReset_WhenDisconnect() {
+            // Given
+            interceptor.preSend(frame(StompCommand.SEND, "S1", "/app/chat/RC001"), null);
+            interceptor.preSend(frame(StompCommand.SEND, "S1", "/app/chat/RC001"), null);
+
+            // When
+            interceptor.preSend(frame(StompCommand.DISCONNECT, "S1", null), null);
+
+            // Then
+            assertNotNull(interceptor.preSend(frame(StompCommand.SEND, "S1", "/app/chat/RC002"), null));
+        }
+    }
+
+    // ==================== 2. ROOM LIMIT TESTS ====================
+
+    @Nested
+    @DisplayName("2. per-room limit")
+    class RoomLimitTests {
+
+        @Test
+        @DisplayName("Should drop frames when many sessions flood one room")
+        void shouldThrottle_WhenRoomExceedsLimit() {
+            // When
+            interceptor.preSend(frame(StompCommand.SEND, "S1", "/app/chat/RC001"), null);
+            interceptor.preSend(frame(StompCommand.SEND, "S2", "/app/chat/RC001"), null);
+            interceptor.preSend(frame(StompCommand.SEND, "S3", "/app/chat/delete/RC001/M1"), null);
+            Message<?> fourth = interceptor.preSend(frame(StompCommand.SEND, "S4", "/app/chat/RC001"), null);
+
+            // Then
+            assertNull(fourth);
+            assertEquals(1, throttled("room"));
+            assertNotNull(interceptor.preSend(frame(StompCommand.SEND, "S4", "/app/chat/RC002"), null));
+        }
+    }
+
+    // ==================== 3. UNLIMITED FRAMES TESTS ====================
+
+    @Nested
+    @DisplayName("3. frames outside the limit")
+    class UnlimitedFrameTests {
+
+        @Test
+        @DisplayName("Should not limit subscribe frames")
+        void shouldPassThrough_Subscribe() {
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "S1", "/topic/room/RC001"), null));
+            }
+            assertEquals(0, throttled("session"));
+        }
+
+        @Test
+        @DisplayName("Should count typing frames against the session but not the room")
+        void shouldThrottleTyping_PerSession() {
+            // When - typing vào nhiều room khác nhau từ 1 session
+            assertNotNull(interceptor.preSend(frame(StompCommand.SEND, "S1", "/app/chat/typing/RC001"), null));
+            assertNotNull(interceptor.preSend(frame(StompCommand.SEND, "S1", "/app/chat/typing/RC002"), null));
+            assertNull(interceptor.preSend(frame(StompCommand.SEND, "S1", "/app/chat/typing/RC003"), null));
+
+            // Then
+            assertEquals(1, throttled("session"));
+            assertEquals(0, throttled("room"));
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.ohms;
+
+import com.example.ohms.configuration.AppConfig;
+import com.example.ohms.configuration.AuthTokenConfig;
+import com.example.ohms.entity.RevokedToken;
+import com.example.ohms.repository.RevokedTokenRepository;
+import com.example.ohms.security.JwtTokenService;
+import com.example.ohms.security.TokenRevocationService;
+import com.example.ohms.utils.BloomFilter;
+import com.nimbusds.jwt.JWTClaimsSet;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Test Suite for TokenRevocationService
+ *
+ * Test Coverage:
+ * 1. BloomFilter - không có âm tính giả, tỉ lệ dương tính giả gần cấu hình
+ * 2. isRevoked() - Bloom trượt thì không query DB, trùng thì kiểm tra DB
+ * 3. revokeAllSessions() - token phát hành trước thời điểm thu hồi bị từ chối
+ * 4. rebuild()/sync() - dựng filter từ DB, đọc thu hồi từ instance khác
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("TokenRevocationService Test Suite")
+class TokenRevocationServiceTest {
+
+    private static final Instant NOW = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Mock
+    private RevokedTokenRepository revokedTokenRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private AppConfig appConfig;
+    private TokenRevocationService service;
+
+    @BeforeEach
+    void setUp() {
+        appConfig = new AppConfig();
+        appConfig.setTokenExpirationMsec(3_600_000);
+        service = new TokenRevocationService(revokedTokenRepository, new AuthTokenConfig(), appConfig, meterRegistry,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+    }
+
+    private double checks(String result) {
+        return meterRegistry.counter("security.revocation.checks", "result", result).count();
+    }
+
+    // ==================== 1. BLOOM FILTER TESTS ====================
+
+    @Nested
+    @DisplayName("BloomFilter Tests")
+    class BloomFilterTests {
+
+        @Test
+        @DisplayName("Should never report an added value as absent")
+        void shouldHaveNoFalseNegatives() {
+            // Given
+            BloomFilter filter = new BloomFilter(10_000, 0.01);
+
+            // When
+            IntStream.range(0, 10_000).forEach(i -> filter.add("jti-" + i));
+
+            // Then
+            assertTrue(IntStream.range(0, 10_000).allMatch(i -> filter.mightContain("jti-" + i)));
+        }
+
+        @Test
+        @DisplayName("Should keep the false positive rate near the configured value")
+        void shouldRespectFalsePositiveRate() {
+            // Given
+            BloomFilter filter = new BloomFilter(10_000, 0.01);
+            IntStream.range(0, 10_000).forEach(i -> filter.add("jti-" + i));
+
+            // When
+            long falsePositives = IntStream.range(0, 100_000)
+                    .filter(i -> filter.mightContain("other-" + i))
+                    .count();
+
+            // Then
+            assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+        }
+    }
+
+    // ==================== 2. IS REVOKED TESTS ====================
+
+    @Nested
+    @DisplayName("isRevoked() Tests")
+    class IsRevokedTests {
+
+        @Test
+        @DisplayName("Should answer from memory without touching the database on a Bloom miss")
+        void shouldSkipDatabaseOnMiss() {
+            // When
+            boolean revoked = service.isRevoked("jti-1", "U001", NOW);
+
+            // Then
+            assertFalse(revoked);
+            assertEquals(1.0, checks("bloom_miss"));
+            verifyNoInteractions(revokedTokenRepository);
+        }
+
+        @Test
+        @DisplayName("Should confirm a revoked jti in the database")
+        void shouldRejectRevokedJti() {
+            // Given
+            service.revoke("jti-1", "U001", NOW.plus(15, ChronoUnit.MINUTES));
+            when(revokedTokenRepository.existsById("jti-1")).thenReturn(true);
+
+            // When & Then
+            assertTrue(service.isRevoked("jti-1", "U001", NOW));
+            assertEquals(1.0, checks("revoked"));
+        }
+
+        @Test
+        @DisplayName("Should count a Bloom hit without a database row as a false positive")
+        void shouldCountFalsePositive() {
+            // Given
+            service.revoke("jti-1", "U001", null);
+            when(revokedTokenRepository.existsById("jti-1")).thenReturn(false);
+
+            // When & Then
+            assertFalse(service.isRevoked("jti-1", "U001", NOW));
+            assertEquals(1.0, checks("false_positive"));
+        }
+
+        @Test
+        @DisplayName("Should make the decoder reject a revoked token")
+        void shouldRejectInDecoder() {
+            // Given
+            JwtTokenService decoder = new JwtTokenService(appConfig, Clock.fixed(NOW, ZoneOffset.UTC), service);
+            String token = decoder.sign(new JWTClaimsSet.Builder()
+                    .subject("U001")
+                    .jwtID("jti-1")
+                    .issueTime(Date.from(NOW))
+                    .expirationTime(Date.from(NOW.plus(15, ChronoUnit.MINUTES)))
+                    .build());
+            assertDoesNotThrow(() -> decoder.decode(token));
+
+            // When
+            service.revoke("jti-1", "U001", NOW.plus(15, ChronoUnit.MINUTES));
+            when(revokedTokenRepository.existsById("jti-1")).thenReturn(true);
+
+            // Then
+            assertThrows(BadJwtException.class, () -> decoder.decode(token));
+        }
+    }
+
+    // ==================== 3. REVOKE ALL SESSIONS TESTS ====================
+
+    @Nested
+    @DisplayName("revokeAllSessions() Tests")
+    class RevokeAllTests {
+
+        @Test
+        @DisplayName("Should reject tokens issued before the revocation and accept newer ones")
+        void shouldCompareIssuedAt() {
+            // Given
+            service.revokeAllSessions("U001");
+            ArgumentCaptor<RevokedToken> saved = ArgumentCaptor.forClass(RevokedToken.class);
+            verify(revokedTokenRepository).save(saved.capture());
+            when(revokedTokenRepository.findById("user:U001")).thenReturn(Optional.of(saved.getValue()));
+
+            // When & Then
+            assertTrue(service.isRevoked(null, "U001", NOW.minusSeconds(60)));
+            assertTrue(service.isRevoked(null, "U001", NOW));
+            assertFalse(service.isRevoked(null, "U001", NOW.plusSeconds(1)));
+        }
+
+        @Test
+        @DisplayName("Should keep the marker as long as the longest-lived token")
+        void shouldOutliveLegacyTokens() {
+            // When
+            service.revokeAllSessions("U001");
+
+            // Then
+            ArgumentCaptor<RevokedToken> saved = ArgumentCaptor.forClass(RevokedToken.class);
+            verify(revokedTokenRepository).save(saved.capture());
+            assertEquals("user:U001", saved.getValue().getId());
+            assertEquals(NOW.plusMillis(3_600_000), saved.getValue().getExpiresAt());
+        }
+    }
+
+    // ==================== 4. REBUILD AND SYNC TESTS ====================
+
+    @Nested
+    @DisplayName("Rebuild And Sync Tests")
+    class RebuildTests {
+
+        @Test
+        @DisplayName("Should purge expired rows and load active ids on rebuild")
+        void shouldRebuildFromDatabase() {
+            // Given
+            when(revokedTokenRepository.findActiveIds(NOW)).thenReturn(List.of("jti-7"));
+            when(revokedTokenRepository.existsById("jti-7")).thenReturn(true);
+
+            // When
+            service.rebuild();
+
+            // Then
+            verify(revokedTokenRepository).deleteExpired(NOW);
+            assertTrue(service.isRevoked("jti-7", "U001", NOW));
+        }
+
+        @Test
+        @DisplayName("Should pick up revocations written by another instance")
+        void shouldSyncNewRevocations() {
+            // Given
+            when(revokedTokenRepository.findIdsRevokedAfter(any())).thenReturn(List.of("jti-9"));
+            when(revokedTokenRepository.existsById("jti-9")).thenReturn(true);
+
+            // When
+            service.sync();
+
+            // Then
+            assertTrue(service.isRevoked("jti-9", "U001", NOW));
+        }
+    }
+}
@@ -4,17 +4,24 @@ import com.example.ohms.dto.request.ChangePasswordRequest;
 import com.example.ohms.dto.request.OfflineUserRequest;
 import com.example.ohms.dto.request.ResetPasswordRequest;
 import com.example.ohms.dto.request.UserRequest;
+import com.example.ohms.dto.request.UserSearchRequest;
+import com.example.ohms.dto.response.DoctorSummary;
 import com.example.ohms.dto.response.OfflineUserResponse;
+import com.example.ohms.dto.response.PageResponse;
+import com.example.ohms.dto.response.UserListItem;
 import com.example.ohms.dto.response.UserResponse;
 import com.example.ohms.entity.Role;
 import com.example.ohms.entity.User;
+import com.example.ohms.enums.AuthProvider;
 import com.example.ohms.enums.MedicalSpecialty;
 import com.example.ohms.exception.AppException;
 import com.example.ohms.exception.ErrorCode;
 import com.example.ohms.mapper.UserMapper;
 import com.example.ohms.repository.RoleRepository;
 import com.example.ohms.repository.UserRepository;
-import com.example.ohms.service.CloudinaryService;
+import com.example.ohms.repository.projection.UserListView;
+import com.example.ohms.service.AvatarService;
+import com.example.ohms.service.DoctorDirectoryService;
 import com.example.ohms.service.MailService;
 import com.example.ohms.service.RoleService;
 import com.example.ohms.service.UserService;
@@ -24,15 +31,24 @@ import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.web.multipart.MultipartFile;
 
 import jakarta.mail.MessagingException;
 
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -52,11 +68,12 @@ import static org.mockito.Mockito.*;
  * 7. sendCodeToEmail()
  * 8. checkResetToken()
  * 9. updateUserBankInfo()
- * 10. getListDoctor()
+ * 10. getListDoctor() / getDoctorSummaries()
  * 11. createOfflineUser()
  * 12. getOfflineUserByPhone()
  * 13. updateOfflineUser()
  * 14. getListUserHoho()
+ * 15. searchUsers() - chọn nhánh q theo input (chữ, email, khoảng phone)
  */
 @ExtendWith(MockitoExtension.class)
 @DisplayName("UserService Test Suite")
@@ -72,7 +89,7 @@ class UserServiceTest {
     private UserMapper userMapper;
 
     @Mock
-    private CloudinaryService cloudinaryService;
+    private AvatarService avatarService;
 
     @Mock
     private PasswordEncoder passwordEncoder;
@@ -83,6 +100,12 @@ class UserServiceTest {
     @Mock
     private RoleService roleService;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private DoctorDirectoryService doctorDirectoryService;
+
     @InjectMocks
     private UserService userService;
 
@@ -171,8 +194,8 @@ class UserServiceTest {
             // Given
             when(userRepository.findByEmail(userRequest.getEmail())).thenReturn(Optional.empty());
             when(userMapper.toUser(userRequest)).thenReturn(user);
-            when(avatarFile.isEmpty()).thenReturn(false);
-            when(cloudinaryService.uploadFile(avatarFile)).thenReturn("http://cloudinary.com/avatar.jpg");
+            AvatarService.PendingAvatar pending = new AvatarService.PendingAvatar(Path.of("avatar.upload"));
+            when(avatarService.accept(avatarFile)).thenReturn(pending);
             when(passwordEncoder.encode(userRequest.getPassword())).thenReturn("encodedPassword");
             when(roleService.getdetail("PATIENT")).thenReturn(patientRole);
             when(userRepository.save(any(User.class))).thenReturn(user);
@@ -181,11 +204,12 @@ class UserServiceTest {
             // When
             UserResponse response = userService.createUser(userRequest, avatarFile);
 
-            // Then
+            // Then - avatar xử lý nền sau khi lưu user
             assertNotNull(response);
             assertEquals("U001", response.getId());
-            verify(cloudinaryService).uploadFile(avatarFile);
-            verify(userRepository).save(any(User.class));
+            InOrder inOrder = inOrder(userRepository, avatarService);
+            inOrder.verify(userRepository).save(any(User.class));
+            inOrder.verify(avatarService).submit("U001", pending);
         }
 
         @Test
@@ -204,7 +228,8 @@ class UserServiceTest {
 
             // Then
             assertNotNull(response);
-            verify(cloudinaryService, never()).uploadFile(any());
+            verify(avatarService).submit("U001", null);
+            verify(userRepository).save(argThat(saved -> saved.getImageUrl().equals("http://example.com/avatar.jpg")));
         }
 
         @Test
@@ -315,8 +340,8 @@ class UserServiceTest {
             // Given
             when(userRepository.findByEmail(userRequest.getEmail())).thenReturn(Optional.empty());
             when(userMapper.toUser(userRequest)).thenReturn(user);
-            when(avatarFile.isEmpty()).thenReturn(false);
-            when(cloudinaryService.uploadFile(avatarFile)).thenReturn("http://cloudinary.com/avatar.jpg");
+            AvatarService.PendingAvatar pending = new AvatarService.PendingAvatar(Path.of("avatar.upload"));
+            when(avatarService.accept(avatarFile)).thenReturn(pending);
             when(roleRepository.findByName("PATIENT")).thenReturn(Optional.of(patientRole));
             when(passwordEncoder.encode(userRequest.getPassword())).thenReturn("encodedPassword");
             when(userRepository.save(any(User.class))).thenReturn(user);
@@ -327,8 +352,8 @@ class UserServiceTest {
 
             // Then
             assertNotNull(response);
-            verify(cloudinaryService).uploadFile(avatarFile);
             verify(userRepository).save(any(User.class));
+            verify(avatarService).submit("U001", pending);
         }
 
         @Test
@@ -386,14 +411,15 @@ class UserServiceTest {
         }
 
         @Test
-        @DisplayName("Should update user with avatar and delete old one")
+        @DisplayName("Should keep the old avatar and hand the new one to the pipeline")
         void shouldUpdateUser_WithAvatarAndDeleteOld() throws IOException {
             // Given
-            user.setImageUrl("http://cloudinary.com/upload/v123456789/old_avatar.jpg");
+            String oldImageUrl = "http://cloudinary.com/upload/v123456789/old_avatar.jpg";
+            user.setImageUrl(oldImageUrl);
+            AvatarService.PendingAvatar pending = new AvatarService.PendingAvatar(Path.of("avatar.upload"));
             
             when(userRepository.findById("U001")).thenReturn(Optional.of(user));
-            when(avatarFile.isEmpty()).thenReturn(false);
-            when(cloudinaryService.uploadFile(avatarFile)).thenReturn("http://cloudinary.com/new_avatar.jpg");
+            when(avatarService.accept(avatarFile)).thenReturn(pending);
             when(roleRepository.findById("PATIENT")).thenReturn(Optional.of(patientRole));
             when(userRepository.save(any(User.class))).thenReturn(user);
             when(userMapper.toUserResponseDto(user)).thenReturn(userResponse);
@@ -401,10 +427,11 @@ class UserServiceTest {
             // When
             UserResponse response = userService.updateUser("U001", userRequest, avatarFile);
 
-            // Then
+            // Then - ảnh cũ chỉ bị xóa khi ảnh mới xử lý xong
             assertNotNull(response);
-            verify(cloudinaryService).uploadFile(avatarFile);
+            assertEquals(oldImageUrl, user.getImageUrl());
             verify(userRepository).save(any(User.class));
+            verify(avatarService).submit("U001", pending);
         }
 
         @Test
@@ -490,19 +517,16 @@ class UserServiceTest {
         }
 
         @Test
-        @DisplayName("Should update avatar and delete old one")
+        @DisplayName("Should update avatar in the background and replace the old one when ready")
         void shouldUserUpdateUser_WithAvatarDeleteOld() throws IOException {
             // Given
             String oldImageUrl = "http://cloudinary.com/upload/v123456789/folder/old_avatar.jpg";
-            String expectedPublicId = "folder/old_avatar";
+            AvatarService.PendingAvatar pending = new AvatarService.PendingAvatar(Path.of("avatar.upload"));
             
             user.setImageUrl(oldImageUrl);
             
             when(userRepository.findById("U001")).thenReturn(Optional.of(user));
-            when(avatarFile.isEmpty()).thenReturn(false);
-            when(cloudinaryService.uploadFile(avatarFile))
-                .thenReturn("http://cloudinary.com/new_avatar.jpg");
-            when(cloudinaryService.deleteFile(expectedPublicId)).thenReturn("ok"); // Change here!
+            when(avatarService.accept(avatarFile)).thenReturn(pending);
             when(userRepository.save(any(User.class))).thenReturn(user);
             when(userMapper.toUserResponseDto(user)).thenReturn(userResponse);
 
@@ -511,9 +535,10 @@ class UserServiceTest {
 
             // Then
             assertNotNull(response);
-            verify(cloudinaryService).deleteFile(expectedPublicId); // Still verify with exact value
-            verify(cloudinaryService).uploadFile(avatarFile);
-            verify(userRepository).save(any(User.class));
+            assertEquals(oldImageUrl, user.getImageUrl());
+            InOrder inOrder = inOrder(userRepository, avatarService);
+            inOrder.verify(userRepository).save(any(User.class));
+            inOrder.verify(avatarService).submit("U001", pending);
         }
 
 
@@ -786,7 +811,7 @@ class UserServiceTest {
     class GetListDoctorTests {
 
         @Test
-        @DisplayName("Should return list of doctors only")
+        @DisplayName("Should return full doctor profiles with one role query instead of scanning users")
         void shouldGetListDoctor_Successfully() {
             // Given
             User doctor1 = User.builder()
@@ -803,30 +828,40 @@ class UserServiceTest {
                     .roles(Set.of(doctorRole))
                     .build();
 
-            User patient = User.builder()
-                    .id("P001")
-                    .username("Patient")
-                    .email("patient@test.com")
-                    .roles(Set.of(patientRole))
-                    .build();
-
-            when(userRepository.findAll()).thenReturn(List.of(doctor1, doctor2, patient));
+            when(userRepository.findByRoleNameWithRoles("DOCTOR")).thenReturn(List.of(doctor1, doctor2));
             when(userMapper.toUserResponseDto(any(User.class))).thenReturn(userResponse);
 
             // When
             List<UserResponse> doctors = userService.getListDoctor();
 
             // Then
-            assertNotNull(doctors);
             assertEquals(2, doctors.size());
             verify(userMapper, times(2)).toUserResponseDto(any(User.class));
+            verify(userRepository, never()).findAll();
+        }
+
+        @Test
+        @DisplayName("Should return slim summaries from the in-memory directory")
+        void shouldGetDoctorSummaries_FromDirectory() {
+            // Given
+            DoctorSummary smith = DoctorSummary.builder().id("D001").username("Dr. Smith").build();
+            DoctorSummary jones = DoctorSummary.builder().id("D002").username("Dr. Jones").build();
+            when(doctorDirectoryService.getDoctors()).thenReturn(List.of(jones, smith));
+
+            // When
+            List<DoctorSummary> doctors = userService.getDoctorSummaries();
+
+            // Then
+            assertEquals(List.of(jones, smith), doctors);
+            verifyNoInteractions(userRepository);
+            verifyNoInteractions(userMapper);
         }
 
         @Test
         @DisplayName("Should return empty list when no doctors")
         void shouldGetListDoctor_EmptyList() {
             // Given
-            when(userRepository.findAll()).thenReturn(List.of(user));
+            when(userRepository.findByRoleNameWithRoles("DOCTOR")).thenReturn(List.of());
 
             // When
             List<UserResponse> doctors = userService.getListDoctor();
@@ -834,6 +869,22 @@ class UserServiceTest {
             // Then
             assertNotNull(doctors);
             assertEquals(0, doctors.size());
+            verifyNoInteractions(userMapper);
+        }
+
+        @Test
+        @DisplayName("Should return doctors of a specialty from the in-memory directory")
+        void shouldGetDoctorsBySpecialty_FromDirectory() {
+            // Given
+            DoctorSummary smith = DoctorSummary.builder().id("D001").username("Dr. Smith").build();
+            when(doctorDirectoryService.getDoctors(MedicalSpecialty.CARDIOLOGY)).thenReturn(List.of(smith));
+
+            // When
+            List<DoctorSummary> doctors = userService.getDoctorsBySpecialty(MedicalSpecialty.CARDIOLOGY);
+
+            // Then
+            assertEquals(List.of(smith), doctors);
+            verifyNoInteractions(userRepository);
         }
     }
 
@@ -1069,7 +1120,7 @@ class UserServiceTest {
                     .phone(333333333)
                     .build();
 
-            when(userRepository.findAll()).thenReturn(List.of(offlineUser1, offlineUser2, normalUser));
+            when(userRepository.findOfflineUsers()).thenReturn(List.of(offlineUser1, offlineUser2));
 
             // When
             List<User> users = userService.getListUserHoho();
@@ -1077,13 +1128,15 @@ class UserServiceTest {
             // Then
             assertNotNull(users);
             assertEquals(2, users.size());
+            assertFalse(users.contains(normalUser));
+            verify(userRepository, never()).findAll();
         }
 
         @Test
         @DisplayName("Should return empty list when all users have email")
         void shouldGetListUserHoho_EmptyList() {
             // Given
-            when(userRepository.findAll()).thenReturn(List.of(user));
+            when(userRepository.findOfflineUsers()).thenReturn(List.of());
 
             // When
             List<User> users = userService.getListUserHoho();
@@ -1093,4 +1146,153 @@ class UserServiceTest {
             assertEquals(0, users.size());
         }
     }
+
+    // ==================== 15. SEARCH USERS TESTS ====================
+
+    @Nested
+    @DisplayName("15. searchUsers()")
+    class SearchUsersTests {
+
+        private final SpelAwareProxyProjectionFactory projections = new SpelAwareProxyProjectionFactory();
+
+        private UserListView row(String id, String username, Integer phone, Boolean enabled) {
+            Map<String, Object> columns = new HashMap<>();
+            columns.put("id", id);
+            columns.put("username", username);
+            columns.put("phone", phone);
+            columns.put("provider", AuthProvider.LOCAL);
+            columns.put("enabled", enabled);
+            return projections.createProjection(UserListView.class, columns);
+        }
+
+        @Test
+        @DisplayName("Should pass filters to one projection query and attach roles per page")
+        void shouldSearchWithProjection() {
+            // Given
+            UserSearchRequest filter = UserSearchRequest.builder()
+                    .role("DOCTOR")
+                    .enabled(true)
+                    .specialty(MedicalSpecialty.CARDIOLOGY)
+                    .q(" 0912_")
+                    .build();
+            DoctorSummary doctor = DoctorSummary.builder().id("D1").medicleSpecially(Set.of(MedicalSpecialty.CARDIOLOGY)).build();
+            when(doctorDirectoryService.getDoctors(MedicalSpecialty.CARDIOLOGY)).thenReturn(List.of(doctor));
+            when(doctorDirectoryService.findDoctor("D1")).thenReturn(Optional.of(doctor));
+            Page<UserListView> rows = new PageImpl<>(List.of(row("D1", "Nguyễn A", 912345678, null)),
+                    Pageable.ofSize(100), 1);
+            when(userRepository.search(eq("DOCTOR"), isNull(), eq(true), eq(true), eq(List.of("D1")),
+                    eq("0912!_%"), isNull(), isNull(), isNull(), any(Pageable.class))).thenReturn(rows);
+            when(userRepository.findRoleNamesByUserIds(List.of("D1")))
+                    .thenReturn(List.<Object[]>of(new Object[]{"D1", "DOCTOR"}, new Object[]{"D1", "ADMIN"}));
+
+            // When
+            PageResponse<UserListItem> page = userService.searchUsers(filter, 0, 500);
+
+            // Then
+            UserListItem item = page.getContent().get(0);
+            assertEquals(1, page.getTotalElements());
+            assertEquals(Set.of("ADMIN", "DOCTOR"), item.getRoles());
+            assertEquals(Set.of(MedicalSpecialty.CARDIOLOGY), item.getMedicleSpecially());
+            assertTrue(item.getEnabled());
+            assertEquals(912345678, item.getPhone());
+            ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+            verify(userRepository).search(any(), any(), any(), anyBoolean(), any(), any(), any(), any(), any(), pageable.capture());
+            assertEquals(100, pageable.getValue().getPageSize());
+            assertEquals(Sort.by("username").and(Sort.by("id")), pageable.getValue().getSort());
+            verify(userRepository, never()).findAll();
+            verifyNoInteractions(userMapper);
+        }
+
+        @Test
+        @DisplayName("Should search digits only as a phone range without the leading zero")
+        void shouldDerivePhoneRange() {
+            // Given
+            UserSearchRequest filter = UserSearchRequest.builder().q("0912").sort("phone").direction("desc").build();
+            when(userRepository.search(isNull(), isNull(), isNull(), eq(false), anyCollection(), isNull(), isNull(),
+                    eq(912_000_000), eq(912_999_999), any(Pageable.class))).thenReturn(Page.empty());
+
+            // When
+            PageResponse<UserListItem> page = userService.searchUsers(filter, 0, 20);
+
+            // Then
+            assertTrue(page.getContent().isEmpty());
+            ArgumentCaptor<Pageable> pageable = ArgumentCaptor.forClass(Pageable.class);
+            verify(userRepository).search(any(), any(), any(), anyBoolean(), any(), any(), any(), any(), any(), pageable.capture());
+            assertEquals(Sort.Direction.DESC, pageable.getValue().getSort().getOrderFor("phone").getDirection());
+            verify(userRepository, never()).findRoleNamesByUserIds(any());
+        }
+
+        @Test
+        @DisplayName("Should search only the email column when the query contains @")
+        void shouldSearchEmailOnly() {
+            // Given
+            UserSearchRequest filter = UserSearchRequest.builder().q("an@ohms").build();
+            when(userRepository.search(isNull(), isNull(), isNull(), eq(false), anyCollection(), isNull(), eq("an@ohms%"),
+                    isNull(), isNull(), any(Pageable.class))).thenReturn(Page.empty());
+
+            // When
+            PageResponse<UserListItem> page = userService.searchUsers(filter, 0, 20);
+
+            // Then
+            assertTrue(page.getContent().isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should treat +84 and separators as phone input")
+        void shouldNormalizeInternationalPhone() {
+            // Given
+            UserSearchRequest filter = UserSearchRequest.builder().q("+84 912.345").build();
+            when(userRepository.search(isNull(), isNull(), isNull(), eq(false), anyCollection(), isNull(), isNull(),
+                    eq(912_345_000), eq(912_345_999), any(Pageable.class))).thenReturn(Page.empty());
+
+            // When
+            PageResponse<UserListItem> page = userService.searchUsers(filter, 0, 20);
+
+            // Then
+            assertTrue(page.getContent().isEmpty());
+        }
+
+        @Test
+        @DisplayName("Should skip the query when the number cannot fit the phone column")
+        void shouldShortCircuitOversizedPhone() {
+            // Given
+            UserSearchRequest filter = UserSearchRequest.builder().q("99999999999").build();
+
+            // When
+            PageResponse<UserListItem> page = userService.searchUsers(filter, 0, 20);
+
+            // Then
+            assertEquals(0, page.getTotalElements());
+            verifyNoInteractions(userRepository);
+        }
+
+        @Test
+        @DisplayName("Should skip the query when no doctor has the specialty")
+        void shouldShortCircuitEmptySpecialty() {
+            // Given
+            UserSearchRequest filter = UserSearchRequest.builder().specialty(MedicalSpecialty.DERMATOLOGY).build();
+            when(doctorDirectoryService.getDoctors(MedicalSpecialty.DERMATOLOGY)).thenReturn(List.of());
+
+            // When
+            PageResponse<UserListItem> page = userService.searchUsers(filter, 0, 20);
+
+            // Then
+            assertEquals(0, page.getTotalElements());
+            verifyNoInteractions(userRepository);
+        }
+
+        @Test
+        @DisplayName("Should reject sorting by a column outside the whitelist")
+        void shouldRejectUnknownSort() {
+            // Given
+            UserSearchRequest filter = UserSearchRequest.builder().sort("password").build();
+
+            // When
+            AppException exception = assertThrows(AppException.class, () -> userService.searchUsers(filter, 0, 20));
+
+            // Then
+            assertEquals(ErrorCode.INVALID_KEY, exception.getErrorCode());
+            verifyNoInteractions(userRepository);
+        }
+    }
 }